@@ -0,0 +1,61 @@
+package com.example.health_care_system.config;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.AppointmentChange;
+import com.example.health_care_system.model.AppointmentDailyRollup;
+import com.example.health_care_system.model.EmailOutboxMessage;
+import com.example.health_care_system.model.HealthCard;
+import com.example.health_care_system.model.LeaderboardEntry;
+import com.example.health_care_system.model.ReportJob;
+import com.example.health_care_system.model.TimeSlotReservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+
+import java.util.List;
+
+/**
+ * Creates the indexes declared with @Indexed / @CompoundIndex on documents whose
+ * correctness or hot queries depend on them. Spring Boot does not create
+ * annotated indexes automatically (spring.data.mongodb.auto-index-creation is off).
+ */
+@Configuration
+public class MongoIndexConfig {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private static final List<Class<?>> INDEXED_DOCUMENTS = List.of(
+        TimeSlotReservation.class,
+        Appointment.class,
+        AppointmentDailyRollup.class,
+        LeaderboardEntry.class,
+        AppointmentChange.class,
+        ReportJob.class,
+        EmailOutboxMessage.class,
+        HealthCard.class
+    );
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+
+        for (Class<?> document : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(document);
+            for (IndexDefinition index : resolver.resolveIndexFor(document)) {
+                try {
+                    indexOps.createIndex(index);
+                } catch (Exception e) {
+                    // Existing data may violate a unique index; keep the application running
+                    System.err.println("Failed to create index " + index.getIndexOptions() + " on "
+                        + document.getSimpleName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.health_care_system.config;
+
+import com.example.health_care_system.service.QRCodeService;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Iterator;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * One-off migration moving embedded Base64 QR code images out of patient and health card documents.
+ * Each image is stored in qr_assets and the qrCode field is replaced by the reference URL,
+ * so loading a patient or card no longer transfers the PNG.
+ * Idempotent: once no document holds a data URI the query matches nothing.
+ */
+@Configuration
+public class QRCodeBlobMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void moveQRCodeBlobs() {
+        moveBlobs("users", "_id");
+        moveBlobs("health_cards", "patientId");
+    }
+
+    /**
+     * @param userIdField - Field holding the id of the user the QR code identifies
+     */
+    long moveBlobs(String collection, String userIdField) {
+        long moved = 0;
+        try {
+            Query query = new Query(Criteria.where("qrCode").regex("^" + Pattern.quote(QRCodeService.DATA_URI_PREFIX)));
+            query.fields().include("qrCode").include(userIdField);
+
+            BulkOperations bulk = null;
+            int batched = 0;
+            try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+                Iterator<Document> iterator = documents.iterator();
+                while (iterator.hasNext()) {
+                    Document document = iterator.next();
+                    String userId = String.valueOf(document.get(userIdField));
+                    byte[] png = qrCodeService.resolveQRCode(document.getString("qrCode"));
+                    String reference = qrCodeService.importQRCode(userId, png);
+
+                    if (bulk == null) {
+                        bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                    }
+                    bulk.updateOne(new Query(Criteria.where("_id").is(document.get("_id"))),
+                        new Update().set("qrCode", reference));
+                    if (++batched == BATCH_SIZE) {
+                        bulk.execute();
+                        moved += batched;
+                        bulk = null;
+                        batched = 0;
+                    }
+                }
+            }
+            if (bulk != null) {
+                bulk.execute();
+                moved += batched;
+            }
+            if (moved > 0) {
+                System.out.println("Moved " + moved + " QR code images from " + collection + " to qr_assets");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to move QR code images from " + collection + ": " + e.getMessage());
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.health_care_system.config;
+
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * One-off migration removing the appointments DBRef arrays from patient and doctor documents.
+ * Appointments are looked up in the appointments collection by patientId / doctorId instead,
+ * so the arrays only made every booking rewrite both user documents.
+ * Idempotent: once no user document has the field the update matches nothing.
+ */
+@Configuration
+public class UserAppointmentRefMigration {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeAppointmentArrays() {
+        try {
+            UpdateResult result = mongoTemplate.updateMulti(
+                new Query(Criteria.where("appointments").exists(true)),
+                new Update().unset("appointments"),
+                "users"
+            );
+            if (result.getModifiedCount() > 0) {
+                System.out.println("Removed appointments array from " + result.getModifiedCount() + " user documents");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to remove appointments arrays from users: " + e.getMessage());
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.example.health_care_system.controller;
 
 import com.example.health_care_system.dto.UserDTO;
 import com.example.health_care_system.model.*;
-import com.example.health_care_system.repository.*;
 import com.example.health_care_system.service.AnalyticsPdfService;
+import com.example.health_care_system.service.AnalyticsReportService;
+import com.example.health_care_system.service.AppointmentRollupService;
+import com.example.health_care_system.service.LeaderboardService;
+import com.example.health_care_system.service.ReportJobService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -13,13 +16,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.format.TextStyle;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -29,16 +34,23 @@ import java.util.stream.Collectors;
 public class AdminAnalyticsController {
 
     @Autowired
-    private AppointmentRepository appointmentRepository;
+    private AppointmentRollupService rollupService;
     
     @Autowired
-    private DoctorRepository doctorRepository;
+    private LeaderboardService leaderboardService;
     
     @Autowired
     private AnalyticsPdfService analyticsPdfService;
+    
+    @Autowired
+    private AnalyticsReportService analyticsReportService;
+    
+    @Autowired
+    private ReportJobService reportJobService;
 
     /**
      * Main analytics dashboard
+     * Reads the pre-aggregated daily rollups, so the cost depends on the date range, not on appointment history
      */
     @GetMapping("")
     public String viewAnalytics(
@@ -61,65 +73,49 @@ public class AdminAnalyticsController {
             endDate = LocalDate.now();
         }
         
-        LocalDateTime startDateTime = startDate.atStartOfDay();
-        LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-        
-        // Get all appointments in date range
-        List<Appointment> appointments = appointmentRepository.findAll().stream()
-                .filter(a -> a.getAppointmentDateTime() != null)
-                .filter(a -> !a.getAppointmentDateTime().isBefore(startDateTime) && 
-                           !a.getAppointmentDateTime().isAfter(endDateTime))
-                .collect(Collectors.toList());
+        // Get daily counters in date range
+        List<AppointmentDailyRollup> days = rollupService.getRollups(startDate, endDate);
+        AppointmentDailyRollup totals = rollupService.combine(days);
         
         // 1. Most booked time slots
-        Map<String, Long> timeSlotData = getTimeSlotAnalysis(appointments);
+        Map<String, Long> timeSlotData = getTimeSlotAnalysis(totals);
         
         // 2. Appointments by day of week
-        Map<String, Long> dayOfWeekData = getDayOfWeekAnalysis(appointments);
+        Map<String, Long> dayOfWeekData = getDayOfWeekAnalysis(days);
         
         // 3. Top doctors by appointment count
-        Map<String, Long> topDoctorsData = getTopDoctorsAnalysis(appointments);
+        Map<String, Long> topDoctorsData = getTopDoctorsAnalysis(totals);
         
         // 4. Specialization demand
-        Map<String, Long> specializationData = getSpecializationAnalysis(appointments);
+        Map<String, Long> specializationData = getSpecializationAnalysis(totals);
         
         // 5. Daily appointment trend
-        Map<String, Long> dailyTrendData = getDailyTrendAnalysis(appointments);
+        Map<String, Long> dailyTrendData = getDailyTrendAnalysis(days);
         
         // 6. Appointment status distribution
-        Map<String, Long> statusData = getStatusAnalysis(appointments);
+        Map<String, Long> statusData = getStatusAnalysis(totals);
         
         // 7. Monthly comparison
         Map<String, Long> monthlyData = getMonthlyAnalysis();
         
         // 8. Peak hours analysis
-        Map<String, Long> peakHoursData = getPeakHoursAnalysis(appointments);
+        Map<String, Long> peakHoursData = getPeakHoursAnalysis(totals);
         
         // Summary statistics
-        int totalAppointments = appointments.size();
-        int scheduledCount = (int) appointments.stream()
-                .filter(a -> a.getStatus() == Appointment.AppointmentStatus.SCHEDULED)
-                .count();
-        int completedCount = (int) appointments.stream()
-                .filter(a -> a.getStatus() == Appointment.AppointmentStatus.COMPLETED)
-                .count();
-        int cancelledCount = (int) appointments.stream()
-                .filter(a -> a.getStatus() == Appointment.AppointmentStatus.CANCELLED)
-                .count();
+        int totalAppointments = (int) totals.getTotal();
+        int scheduledCount = (int) statusCount(totals, Appointment.AppointmentStatus.SCHEDULED);
+        int completedCount = (int) statusCount(totals, Appointment.AppointmentStatus.COMPLETED);
+        int cancelledCount = (int) statusCount(totals, Appointment.AppointmentStatus.CANCELLED);
         
         // Calculate rates
         double completionRate = totalAppointments > 0 ? (completedCount * 100.0 / totalAppointments) : 0;
         double cancellationRate = totalAppointments > 0 ? (cancelledCount * 100.0 / totalAppointments) : 0;
         
         // Get unique counts
-        long uniqueDoctors = appointments.stream()
-                .map(Appointment::getDoctorId)
-                .distinct()
-                .count();
-        long uniquePatients = appointments.stream()
-                .map(Appointment::getPatientId)
-                .distinct()
+        long uniqueDoctors = totals.getByDoctor().values().stream()
+                .filter(count -> count > 0)
                 .count();
+        long uniquePatients = rollupService.countDistinctPatients(startDate, endDate);
         
         // Add to model
         model.addAttribute("user", user);
@@ -147,14 +143,71 @@ public class AdminAnalyticsController {
         return "admin/analytics";
     }
     
+    /**
+     * Recompute the appointment rollups from the appointments collection
+     */
+    @PostMapping("/rollups/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildRollups(HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        try {
+            int days = rollupService.rebuild();
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "Appointment rollups rebuilt",
+                "days", days
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Error: " + e.getMessage()
+            ));
+        }
+    }
+    
+    /**
+     * Recompute the top patient/doctor leaderboards
+     */
+    @PostMapping("/leaderboards/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildLeaderboards(HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        try {
+            int entries = leaderboardService.rebuild();
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", "Leaderboards rebuilt",
+                "entries", entries
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                "success", false,
+                "message", "Error: " + e.getMessage()
+            ));
+        }
+    }
+    
     /**
      * Analyze time slot bookings (grouped by hour ranges)
      */
-    private Map<String, Long> getTimeSlotAnalysis(List<Appointment> appointments) {
+    private Map<String, Long> getTimeSlotAnalysis(AppointmentDailyRollup totals) {
         Map<String, Long> timeSlots = new LinkedHashMap<>();
         
-        for (Appointment apt : appointments) {
-            int hour = apt.getAppointmentDateTime().getHour();
+        totals.getByHour().forEach((hourKey, count) -> {
+            if (count <= 0) {
+                return;
+            }
+            int hour = Integer.parseInt(hourKey);
             String slot;
             
             if (hour >= 8 && hour < 10) {
@@ -171,28 +224,20 @@ public class AdminAnalyticsController {
                 slot = "Other Hours";
             }
             
-            timeSlots.put(slot, timeSlots.getOrDefault(slot, 0L) + 1);
-        }
+            timeSlots.put(slot, timeSlots.getOrDefault(slot, 0L) + count);
+        });
         
-        return timeSlots.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        return sortByValueDescending(timeSlots);
     }
     
     /**
      * Analyze appointments by day of week
      */
-    private Map<String, Long> getDayOfWeekAnalysis(List<Appointment> appointments) {
-        Map<DayOfWeek, Long> dayCount = appointments.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getAppointmentDateTime().getDayOfWeek(),
-                        Collectors.counting()
-                ));
+    private Map<String, Long> getDayOfWeekAnalysis(List<AppointmentDailyRollup> days) {
+        Map<DayOfWeek, Long> dayCount = new EnumMap<>(DayOfWeek.class);
+        for (AppointmentDailyRollup day : days) {
+            dayCount.merge(day.getDate().getDayOfWeek(), day.getTotal(), Long::sum);
+        }
         
         Map<String, Long> result = new LinkedHashMap<>();
         result.put("Monday", dayCount.getOrDefault(DayOfWeek.MONDAY, 0L));
@@ -209,13 +254,15 @@ public class AdminAnalyticsController {
     /**
      * Get top 10 doctors by appointment count
      */
-    private Map<String, Long> getTopDoctorsAnalysis(List<Appointment> appointments) {
-        return appointments.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getDoctorName() != null ? a.getDoctorName() : "Unknown",
-                        Collectors.counting()
-                ))
-                .entrySet().stream()
+    private Map<String, Long> getTopDoctorsAnalysis(AppointmentDailyRollup totals) {
+        Map<String, Long> byName = new HashMap<>();
+        totals.getByDoctor().forEach((doctorId, count) -> {
+            if (count > 0) {
+                byName.merge(totals.getDoctorNames().getOrDefault(doctorId, "Unknown"), count, Long::sum);
+            }
+        });
+        
+        return byName.entrySet().stream()
                 .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
                 .limit(10)
                 .collect(Collectors.toMap(
@@ -229,109 +276,99 @@ public class AdminAnalyticsController {
     /**
      * Analyze specialization demand
      */
-    private Map<String, Long> getSpecializationAnalysis(List<Appointment> appointments) {
+    private Map<String, Long> getSpecializationAnalysis(AppointmentDailyRollup totals) {
         Map<String, Long> specializationCount = new HashMap<>();
-        List<Doctor> allDoctors = doctorRepository.findAll();
-        
-        for (Appointment apt : appointments) {
-            Doctor doctor = allDoctors.stream()
-                    .filter(d -> d.getId().equals(apt.getDoctorId()))
-                    .findFirst()
-                    .orElse(null);
-            
-            if (doctor != null && doctor.getSpecialization() != null) {
-                String spec = doctor.getSpecialization();
-                specializationCount.put(spec, specializationCount.getOrDefault(spec, 0L) + 1);
+        totals.getBySpecialization().forEach((spec, count) -> {
+            if (count > 0) {
+                // Keys have '.' and '$' replaced; show the stored name
+                specializationCount.merge(totals.getSpecializationNames().getOrDefault(spec, spec), count, Long::sum);
             }
-        }
+        });
         
-        return specializationCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+        return sortByValueDescending(specializationCount);
     }
     
     /**
      * Daily appointment trend
      */
-    private Map<String, Long> getDailyTrendAnalysis(List<Appointment> appointments) {
-        return appointments.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getAppointmentDateTime().toLocalDate().toString(),
-                        Collectors.counting()
-                ))
-                .entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+    private Map<String, Long> getDailyTrendAnalysis(List<AppointmentDailyRollup> days) {
+        // Rollups are already ordered by date
+        Map<String, Long> trend = new LinkedHashMap<>();
+        for (AppointmentDailyRollup day : days) {
+            if (day.getTotal() > 0) {
+                trend.put(day.getDate().toString(), day.getTotal());
+            }
+        }
+        return trend;
     }
     
     /**
      * Appointment status distribution
      */
-    private Map<String, Long> getStatusAnalysis(List<Appointment> appointments) {
-        return appointments.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getStatus().toString(),
-                        Collectors.counting()
-                ));
+    private Map<String, Long> getStatusAnalysis(AppointmentDailyRollup totals) {
+        Map<String, Long> statuses = new HashMap<>();
+        totals.getByStatus().forEach((status, count) -> {
+            if (count > 0) {
+                statuses.put(status, count);
+            }
+        });
+        return statuses;
     }
     
     /**
      * Monthly comparison (last 6 months)
      */
     private Map<String, Long> getMonthlyAnalysis() {
-        List<Appointment> allAppointments = appointmentRepository.findAll();
-        Map<String, Long> monthlyCount = new LinkedHashMap<>();
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth firstMonth = currentMonth.minusMonths(5);
         
+        Map<String, Long> monthlyCount = new LinkedHashMap<>();
         for (int i = 5; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusMonths(i);
-            String monthKey = date.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + date.getYear();
-            
-            long count = allAppointments.stream()
-                    .filter(a -> a.getAppointmentDateTime() != null)
-                    .filter(a -> {
-                        LocalDate aptDate = a.getAppointmentDateTime().toLocalDate();
-                        return aptDate.getMonth() == date.getMonth() && 
-                               aptDate.getYear() == date.getYear();
-                    })
-                    .count();
-            
-            monthlyCount.put(monthKey, count);
+            monthlyCount.put(monthLabel(currentMonth.minusMonths(i)), 0L);
+        }
+        
+        for (AppointmentDailyRollup day : rollupService.getRollups(firstMonth.atDay(1), currentMonth.atEndOfMonth())) {
+            monthlyCount.merge(monthLabel(YearMonth.from(day.getDate())), day.getTotal(), Long::sum);
         }
         
         return monthlyCount;
     }
     
+    private String monthLabel(YearMonth month) {
+        return month.getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + month.getYear();
+    }
+    
     /**
      * Peak hours analysis (hourly distribution)
      */
-    private Map<String, Long> getPeakHoursAnalysis(List<Appointment> appointments) {
-        Map<Integer, Long> hourCount = appointments.stream()
-                .collect(Collectors.groupingBy(
-                        a -> a.getAppointmentDateTime().getHour(),
-                        Collectors.counting()
-                ));
-        
+    private Map<String, Long> getPeakHoursAnalysis(AppointmentDailyRollup totals) {
         Map<String, Long> result = new LinkedHashMap<>();
         for (int hour = 8; hour <= 18; hour++) {
             String hourLabel = String.format("%02d:00", hour);
-            result.put(hourLabel, hourCount.getOrDefault(hour, 0L));
+            result.put(hourLabel, totals.getByHour().getOrDefault(String.format("%02d", hour), 0L));
         }
         
         return result;
     }
     
+    private long statusCount(AppointmentDailyRollup totals, Appointment.AppointmentStatus status) {
+        return totals.getByStatus().getOrDefault(status.name(), 0L);
+    }
+    
+    private Map<String, Long> sortByValueDescending(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        Map.Entry::getValue,
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new
+                ));
+    }
+    
     /**
      * Export analytics as PDF
+     * Generates on the request thread; the analytics page uses the report job endpoints below
      */
     @GetMapping("/export-pdf")
     public ResponseEntity<byte[]> exportPdf(
@@ -354,81 +391,210 @@ public class AdminAnalyticsController {
                 endDate = LocalDate.now();
             }
             
-            LocalDateTime startDateTime = startDate.atStartOfDay();
-            LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-            
-            // Get all appointments in date range
-            List<Appointment> appointments = appointmentRepository.findAll().stream()
-                    .filter(a -> a.getAppointmentDateTime() != null)
-                    .filter(a -> !a.getAppointmentDateTime().isBefore(startDateTime) && 
-                               !a.getAppointmentDateTime().isAfter(endDateTime))
-                    .collect(Collectors.toList());
-            
-            // Get all analysis data
-            Map<String, Long> timeSlotData = getTimeSlotAnalysis(appointments);
-            Map<String, Long> dayOfWeekData = getDayOfWeekAnalysis(appointments);
-            Map<String, Long> topDoctorsData = getTopDoctorsAnalysis(appointments);
-            Map<String, Long> specializationData = getSpecializationAnalysis(appointments);
-            Map<String, Long> statusData = getStatusAnalysis(appointments);
-            Map<String, Long> monthlyData = getMonthlyAnalysis();
-            Map<String, Long> peakHoursData = getPeakHoursAnalysis(appointments);
-            
-            // Summary statistics
-            int totalAppointments = appointments.size();
-            int scheduledCount = (int) appointments.stream()
-                    .filter(a -> a.getStatus() == Appointment.AppointmentStatus.SCHEDULED)
-                    .count();
-            int completedCount = (int) appointments.stream()
-                    .filter(a -> a.getStatus() == Appointment.AppointmentStatus.COMPLETED)
-                    .count();
-            int cancelledCount = (int) appointments.stream()
-                    .filter(a -> a.getStatus() == Appointment.AppointmentStatus.CANCELLED)
-                    .count();
-            
-            double completionRate = totalAppointments > 0 ? (completedCount * 100.0 / totalAppointments) : 0;
-            
-            long uniqueDoctors = appointments.stream()
-                    .map(Appointment::getDoctorId)
-                    .distinct()
-                    .count();
-            long uniquePatients = appointments.stream()
-                    .map(Appointment::getPatientId)
-                    .distinct()
-                    .count();
-            
-            // Generate PDF
-            byte[] pdfBytes = analyticsPdfService.generateAnalyticsReport(
-                    startDate,
-                    endDate,
-                    totalAppointments,
-                    String.format("%.1f", completionRate),
-                    uniqueDoctors,
-                    uniquePatients,
-                    scheduledCount,
-                    completedCount,
-                    cancelledCount,
-                    timeSlotData,
-                    dayOfWeekData,
-                    topDoctorsData,
-                    specializationData,
-                    statusData,
-                    monthlyData,
-                    peakHoursData
-            );
-            
-            // Set response headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "analytics-report-" + startDate + "-to-" + endDate + ".pdf");
-            headers.setContentLength(pdfBytes.length);
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(pdfBytes);
+            byte[] pdfBytes = buildAnalyticsPdf(startDate, endDate, (percent, message) -> { });
+            return pdfResponse(pdfBytes, startDate, endDate);
                     
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).build();
         }
     }
+    
+    /**
+     * Submit a report job
+     * @param type - ANALYTICS_PDF (default) or an AnalyticsReport type
+     */
+    @PostMapping("/jobs")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> submitReportJob(
+            @RequestParam(defaultValue = "ANALYTICS_PDF") ReportJob.JobType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpSession session) {
+        
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        try {
+            ReportJob job;
+            if (type == ReportJob.JobType.ANALYTICS_PDF) {
+                // Set default date range (last 30 days)
+                LocalDate start = startDate != null ? startDate : LocalDate.now().minusDays(30);
+                LocalDate end = endDate != null ? endDate : LocalDate.now();
+                job = reportJobService.submitPdf(user.getId(), start, end,
+                        progress -> buildAnalyticsPdf(start, end, progress));
+            } else {
+                job = reportJobService.submitReport(type, user.getId(), startDate, endDate);
+            }
+            return ResponseEntity.accepted().body(Map.of(
+                "success", true,
+                "message", "Report job queued",
+                "jobId", job.getId()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(503).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        }
+    }
+    
+    /**
+     * Get the status and progress of a report job
+     */
+    @GetMapping("/jobs/{jobId}")
+    @ResponseBody
+    public ResponseEntity<ReportJob> getReportJob(@PathVariable String jobId, HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        return reportJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * List the most recent report jobs
+     */
+    @GetMapping("/jobs")
+    @ResponseBody
+    public ResponseEntity<List<ReportJob>> getReportJobs(HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        return ResponseEntity.ok(reportJobService.getRecentJobs(20));
+    }
+    
+    /**
+     * Download the PDF of a completed export job
+     */
+    @GetMapping("/jobs/{jobId}/pdf")
+    public ResponseEntity<byte[]> getReportJobPdf(@PathVariable String jobId, HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        Optional<ReportJob> job = reportJobService.getJob(jobId);
+        Optional<byte[]> pdf = reportJobService.getPdf(jobId);
+        if (job.isEmpty() || pdf.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return pdfResponse(pdf.get(), job.get().getStartDate(), job.get().getEndDate());
+    }
+    
+    /**
+     * Get the AnalyticsReport produced by a completed report job
+     */
+    @GetMapping("/jobs/{jobId}/report")
+    @ResponseBody
+    public ResponseEntity<AnalyticsReport> getReportJobResult(@PathVariable String jobId, HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        return reportJobService.getJob(jobId)
+                .filter(job -> job.getReportId() != null)
+                .flatMap(job -> analyticsReportService.getReportById(job.getReportId()))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Cancel a queued or running report job
+     */
+    @PostMapping("/jobs/{jobId}/cancel")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> cancelReportJob(@PathVariable String jobId, HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        boolean cancelled = reportJobService.cancel(jobId);
+        return ResponseEntity.ok(Map.of(
+            "success", cancelled,
+            "message", cancelled ? "Report job cancelled" : "Report job has already finished"
+        ));
+    }
+    
+    /**
+     * Build the analytics PDF for a date range from the daily rollups
+     */
+    private byte[] buildAnalyticsPdf(LocalDate startDate, LocalDate endDate, ReportJobService.Progress progress) throws Exception {
+        progress.update(10, "Reading appointment rollups");
+        
+        // Get daily counters in date range
+        List<AppointmentDailyRollup> days = rollupService.getRollups(startDate, endDate);
+        AppointmentDailyRollup totals = rollupService.combine(days);
+        
+        // Get all analysis data
+        Map<String, Long> timeSlotData = getTimeSlotAnalysis(totals);
+        Map<String, Long> dayOfWeekData = getDayOfWeekAnalysis(days);
+        Map<String, Long> topDoctorsData = getTopDoctorsAnalysis(totals);
+        Map<String, Long> specializationData = getSpecializationAnalysis(totals);
+        Map<String, Long> statusData = getStatusAnalysis(totals);
+        Map<String, Long> monthlyData = getMonthlyAnalysis();
+        Map<String, Long> peakHoursData = getPeakHoursAnalysis(totals);
+        
+        // Summary statistics
+        int totalAppointments = (int) totals.getTotal();
+        int scheduledCount = (int) statusCount(totals, Appointment.AppointmentStatus.SCHEDULED);
+        int completedCount = (int) statusCount(totals, Appointment.AppointmentStatus.COMPLETED);
+        int cancelledCount = (int) statusCount(totals, Appointment.AppointmentStatus.CANCELLED);
+        
+        double completionRate = totalAppointments > 0 ? (completedCount * 100.0 / totalAppointments) : 0;
+        
+        long uniqueDoctors = totals.getByDoctor().values().stream()
+                .filter(count -> count > 0)
+                .count();
+        progress.update(40, "Counting patients");
+        long uniquePatients = rollupService.countDistinctPatients(startDate, endDate);
+        
+        // Generate PDF
+        progress.update(60, "Rendering PDF");
+        return analyticsPdfService.generateAnalyticsReport(
+                startDate,
+                endDate,
+                totalAppointments,
+                String.format("%.1f", completionRate),
+                uniqueDoctors,
+                uniquePatients,
+                scheduledCount,
+                completedCount,
+                cancelledCount,
+                timeSlotData,
+                dayOfWeekData,
+                topDoctorsData,
+                specializationData,
+                statusData,
+                monthlyData,
+                peakHoursData
+        );
+    }
+    
+    private ResponseEntity<byte[]> pdfResponse(byte[] pdfBytes, LocalDate startDate, LocalDate endDate) {
+        // Set response headers
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "analytics-report-" + startDate + "-to-" + endDate + ".pdf");
+        headers.setContentLength(pdfBytes.length);
+        
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(pdfBytes);
+    }
 }
@@ -0,0 +1,56 @@
+package com.example.health_care_system.controller;
+
+import com.example.health_care_system.dto.UserDTO;
+import com.example.health_care_system.model.UserRole;
+import com.example.health_care_system.service.EmailOutboxService;
+import com.example.health_care_system.service.SlotLockMetrics;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Admin controller exposing runtime metrics as JSON
+ */
+@RestController
+@RequestMapping("/admin/metrics")
+public class AdminMetricsController {
+    
+    @Autowired
+    private SlotLockMetrics slotLockMetrics;
+    
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+    
+    /**
+     * Booking slot lock wait/hold statistics
+     */
+    @GetMapping("/booking-locks")
+    public ResponseEntity<Map<String, Object>> getBookingLockMetrics(HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        return ResponseEntity.ok(slotLockMetrics.snapshot());
+    }
+    
+    /**
+     * Email outbox queue depth and delivery statistics
+     */
+    @GetMapping("/email-outbox")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxMetrics(HttpSession session) {
+        // Check if user is admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        return ResponseEntity.ok(emailOutboxService.getMetrics());
+    }
+}
@@ -8,8 +8,9 @@ import com.example.health_care_system.model.Patient;
 import com.example.health_care_system.model.Payment;
 import com.example.health_care_system.model.TimeSlotReservation;
 import com.example.health_care_system.service.AppointmentService;
+import com.example.health_care_system.service.ConfirmationPdfCacheService;
 import com.example.health_care_system.service.PaymentService;
-import com.example.health_care_system.service.PdfGenerationService;
+import com.example.health_care_system.service.SlotUpdateBroadcaster;
 import com.example.health_care_system.service.TimeSlotReservationService;
 import com.example.health_care_system.service.EmailService;
 import com.example.health_care_system.repository.AppointmentRepository;
@@ -18,6 +19,8 @@ import com.example.health_care_system.repository.DoctorRepository;
 import com.example.health_care_system.repository.PatientRepository;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -26,8 +29,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -61,7 +67,7 @@ public class AppointmentController {
     private PaymentService paymentService;
     
     @Autowired
-    private PdfGenerationService pdfGenerationService;
+    private ConfirmationPdfCacheService confirmationPdfCacheService;
     
     @Autowired
     private TimeSlotReservationService reservationService;
@@ -69,6 +75,9 @@ public class AppointmentController {
     @Autowired
     private EmailService emailService;
     
+    @Autowired
+    private SlotUpdateBroadcaster slotUpdateBroadcaster;
+    
     /**
      * Step 1: Show all hospitals to select from
      */
@@ -80,7 +89,7 @@ public class AppointmentController {
         }
         
         // Get patient details
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -105,7 +114,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -121,6 +130,8 @@ public class AppointmentController {
         
         model.addAttribute("hospital", hospital);
         model.addAttribute("doctors", doctors);
+        model.addAttribute("appointmentCounts", appointmentService.countAppointmentsByDoctor(
+            doctors.stream().map(Doctor::getId).collect(Collectors.toList())));
         model.addAttribute("patient", patient);
         model.addAttribute("step", 2);
         
@@ -143,7 +154,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -217,7 +228,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -265,7 +276,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             redirectAttributes.addFlashAttribute("error", "Patient not found");
             return "redirect:/appointments/book";
@@ -349,7 +360,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -396,7 +407,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             redirectAttributes.addFlashAttribute("error", "Patient not found");
             return "redirect:/appointments/book";
@@ -489,6 +500,8 @@ public class AppointmentController {
             // Check for MongoDB duplicate key error (race condition at DB level)
             if (e.getClass().getName().contains("DuplicateKey") || errorMessage.contains("duplicate key")) {
                 redirectAttributes.addFlashAttribute("error", "Sorry! This time slot was just booked by another patient at the same time. Please select a different time.");
+            } else if (errorMessage.contains("being booked")) {
+                redirectAttributes.addFlashAttribute("error", "Another patient is booking this time slot right now. Please select a different time.");
             } else if (errorMessage.contains("just been booked")) {
                 redirectAttributes.addFlashAttribute("error", "Sorry! This time slot was just booked by another patient. Please select a different time.");
             } else if (errorMessage.contains("no longer available")) {
@@ -521,7 +534,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -607,7 +620,7 @@ public class AppointmentController {
             // Send confirmation email for card payment
             try {
                 emailService.sendCardPaymentAppointmentConfirmation(
-                    (Patient) patientRepository.findById(user.getId()).orElse(null),
+                    (Patient) patientRepository.findSummaryById(user.getId()).orElse(null),
                     appointment,
                     doctor,
                     hospital,
@@ -668,7 +681,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         model.addAttribute("patient", patient);
         
         return "appointments/success";
@@ -684,7 +697,7 @@ public class AppointmentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -852,6 +865,39 @@ public class AppointmentController {
         return response;
     }
     
+    /**
+     * Stream slot state changes for a doctor and date (Server-Sent Events)
+     * Sends a "snapshot" event first, then a "slot" event whenever a slot changes
+     */
+    @GetMapping(value = "/slot-updates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter streamSlotUpdates(
+            @RequestParam String doctorId,
+            @RequestParam String date,
+            HttpSession session) throws IOException {
+        
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        String patientId = user != null ? user.getId() : null;
+        
+        LocalDate selectedDate = LocalDate.parse(date);
+        SseEmitter emitter = slotUpdateBroadcaster.subscribe(doctorId, selectedDate, patientId);
+        
+        // Snapshot after subscribing so no change between page render and subscription is lost
+        try {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("available", appointmentService.getAvailableTimeSlots(doctorId, selectedDate, patientId));
+            snapshot.put("reserved", appointmentService.getReservedTimeSlots(doctorId, selectedDate, patientId));
+            emitter.send(SseEmitter.event().name("snapshot").data(snapshot));
+        } catch (IOException | RuntimeException e) {
+            // The emitter's completion callbacks never run if it is not returned, so drop the subscriber here
+            slotUpdateBroadcaster.unsubscribe(doctorId, selectedDate, emitter);
+            emitter.completeWithError(e);
+            throw e;
+        }
+        
+        return emitter;
+    }
+    
     /**
      * Reserve a time slot temporarily (AJAX endpoint)
      */
@@ -948,11 +994,13 @@ public class AppointmentController {
     
     /**
      * Download appointment confirmation PDF
+     * The stored PDF is served from the confirmation cache; If-None-Match with the current version returns 304.
      */
     @GetMapping("/download-confirmation/{appointmentId}")
-    public ResponseEntity<byte[]> downloadAppointmentConfirmation(
+    public ResponseEntity<Resource> downloadAppointmentConfirmation(
             @PathVariable String appointmentId,
-            HttpSession session) {
+            HttpSession session,
+            WebRequest request) {
         
         UserDTO user = (UserDTO) session.getAttribute("user");
         if (user == null) {
@@ -972,7 +1020,7 @@ public class AppointmentController {
             }
             
             // Get patient details
-            Patient patient = patientRepository.findById(appointment.getPatientId()).orElse(null);
+            Patient patient = patientRepository.findSummaryById(appointment.getPatientId()).orElse(null);
             if (patient == null) {
                 return ResponseEntity.notFound().build();
             }
@@ -992,8 +1040,17 @@ public class AppointmentController {
             // Get payment details if exists (for card payment details in PDF)
             Payment payment = paymentService.getPaymentByAppointmentId(appointmentId).orElse(null);
             
-            // Generate PDF
-            byte[] pdfBytes = pdfGenerationService.generateAppointmentConfirmationPdf(
+            String version = confirmationPdfCacheService.getVersion(appointment, patient, doctor, hospital, payment);
+            // Weak: a PDF generated again for the same inputs differs only in its generation time
+            String eTag = "W/\"" + version + "\"";
+            // no-cache: browsers keep the PDF but revalidate, since the appointment can change
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch != null && (ifNoneMatch.contains("\"" + version + "\"") || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+            }
+            
+            ConfirmationPdfCacheService.ConfirmationPdf pdf = confirmationPdfCacheService.getConfirmationPdf(
                 appointment, patient, doctor, hospital, payment);
             
             // Set headers for PDF download
@@ -1002,9 +1059,11 @@ public class AppointmentController {
             headers.setContentDisposition(ContentDisposition.builder("attachment")
                 .filename("Appointment_Confirmation_" + appointmentId + ".pdf")
                 .build());
-            headers.setContentLength(pdfBytes.length);
+            headers.setContentLength(pdf.contentLength());
+            headers.setETag("W/\"" + pdf.version() + "\"");
+            headers.setCacheControl(cacheControl);
             
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            return new ResponseEntity<>(pdf.content(), headers, HttpStatus.OK);
             
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -3,10 +3,14 @@ package com.example.health_care_system.controller;
 import com.example.health_care_system.dto.HealthCardDTO;
 import com.example.health_care_system.dto.UserDTO;
 import com.example.health_care_system.model.HealthCard;
+import com.example.health_care_system.model.UserRole;
+import com.example.health_care_system.service.HealthCardIssuanceService;
 import com.example.health_care_system.service.HealthCardService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -15,9 +19,14 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Optional;
 
 @Controller
@@ -27,6 +36,8 @@ import java.util.Optional;
 public class HealthCardController {
     
     private final HealthCardService healthCardService;
+    private final HealthCardIssuanceService healthCardIssuanceService;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
     
     /**
      * View health card details
@@ -59,7 +70,7 @@ public class HealthCardController {
      * Download health card as PNG image
      */
     @GetMapping("/download")
-    public ResponseEntity<byte[]> downloadHealthCard(HttpSession session) {
+    public ResponseEntity<byte[]> downloadHealthCard(HttpSession session, WebRequest request) {
         UserDTO user = (UserDTO) session.getAttribute("user");
         if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
@@ -76,14 +87,7 @@ public class HealthCardController {
                 return ResponseEntity.notFound().build();
             }
             
-            byte[] imageBytes = healthCardService.generateHealthCardImage(healthCard.get());
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("attachment", "health-card-" + user.getName().replaceAll(" ", "_") + ".png");
-            headers.setContentLength(imageBytes.length);
-            
-            return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
+            return cardImageResponse(healthCard.get(), user.getName(), request);
             
         } catch (IOException e) {
             log.error("Error generating health card image", e);
@@ -95,7 +99,8 @@ public class HealthCardController {
      * Download health card by ID (for admin/staff)
      */
     @GetMapping("/download/{healthCardId}")
-    public ResponseEntity<byte[]> downloadHealthCardById(@PathVariable String healthCardId, HttpSession session) {
+    public ResponseEntity<byte[]> downloadHealthCardById(@PathVariable String healthCardId, HttpSession session,
+                                                         WebRequest request) {
         UserDTO user = (UserDTO) session.getAttribute("user");
         if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
@@ -107,18 +112,60 @@ public class HealthCardController {
                 return ResponseEntity.notFound().build();
             }
             
-            byte[] imageBytes = healthCardService.generateHealthCardImage(healthCard.get());
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("attachment", "health-card-" + healthCard.get().getPatientName().replaceAll(" ", "_") + ".png");
-            headers.setContentLength(imageBytes.length);
-            
-            return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
+            return cardImageResponse(healthCard.get(), healthCard.get().getPatientName(), request);
             
         } catch (IOException e) {
             log.error("Error generating health card image", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+    
+    /**
+     * Issue health cards for every matching patient and download all card images as a ZIP (admin only)
+     * @param hospitalId - Only patients registered with this hospital; all hospitals when omitted
+     */
+    @PostMapping("/issue")
+    public void issueHealthCards(
+            @RequestParam(required = false) String hospitalId,
+            @RequestParam(defaultValue = "false") boolean includeInactive,
+            HttpSession session,
+            HttpServletResponse response) throws IOException {
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || user.getRole() != UserRole.ADMIN) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Access denied");
+            return;
+        }
+        
+        response.setContentType("application/zip");
+        response.setHeader("Content-Disposition", "attachment; filename=\"health_cards_" + System.currentTimeMillis() + ".zip\"");
+        
+        try (OutputStream out = new BufferedOutputStream(response.getOutputStream(), WRITE_BUFFER_SIZE)) {
+            healthCardIssuanceService.issueCards(
+                new HealthCardIssuanceService.PatientFilter(hospitalId, includeInactive), out);
+        }
+    }
+    
+    /**
+     * PNG response for a card; If-None-Match with the current version returns 304 without rendering
+     */
+    private ResponseEntity<byte[]> cardImageResponse(HealthCard healthCard, String name, WebRequest request) throws IOException {
+        String eTag = "\"" + healthCardService.getHealthCardImageVersion(healthCard) + "\"";
+        // no-cache: browsers keep the image but revalidate, since status and expiry can change
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(eTag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+        }
+        
+        HealthCardService.HealthCardImage image = healthCardService.getHealthCardImage(healthCard);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_PNG);
+        headers.setContentDispositionFormData("attachment", "health-card-" + name.replaceAll(" ", "_") + ".png");
+        headers.setContentLength(image.png().length);
+        headers.setETag("\"" + image.version() + "\"");
+        headers.setCacheControl(cacheControl);
+        
+        return new ResponseEntity<>(image.png(), headers, HttpStatus.OK);
+    }
 }
@@ -146,7 +146,7 @@ public class MedicalRecordController {
             }
             
             // Fetch patient information
-            Optional<Patient> patientOpt = patientRepository.findById(patientId);
+            Optional<Patient> patientOpt = patientRepository.findSummaryById(patientId);
             
             if (patientOpt.isEmpty()) {
                 log.warn("Patient not found with ID: {}", patientId);
@@ -220,7 +220,7 @@ public class MedicalRecordController {
             }
             
             // Fetch patient information
-            Optional<Patient> patientOpt = patientRepository.findById(patientId);
+            Optional<Patient> patientOpt = patientRepository.findSummaryById(patientId);
             
             if (patientOpt.isEmpty()) {
                 log.warn("Patient not found with ID: {}", patientId);
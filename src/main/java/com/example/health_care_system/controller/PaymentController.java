@@ -83,7 +83,7 @@ public class PaymentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -123,7 +123,7 @@ public class PaymentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             redirectAttributes.addFlashAttribute("error", "Patient not found");
             return "redirect:/appointments/book";
@@ -203,7 +203,7 @@ public class PaymentController {
             return "redirect:/login";
         }
         
-        Patient patient = patientRepository.findById(user.getId()).orElse(null);
+        Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
         if (patient == null) {
             return "redirect:/dashboard";
         }
@@ -255,7 +255,7 @@ public class PaymentController {
             }
 
             // Get patient
-            Patient patient = patientRepository.findById(user.getId()).orElse(null);
+            Patient patient = patientRepository.findSummaryById(user.getId()).orElse(null);
             if (patient == null) {
                 return ResponseEntity.notFound().build();
             }
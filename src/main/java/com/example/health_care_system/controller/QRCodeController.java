@@ -0,0 +1,54 @@
+package com.example.health_care_system.controller;
+
+import com.example.health_care_system.dto.UserDTO;
+import com.example.health_care_system.model.UserRole;
+import com.example.health_care_system.repository.PatientRepository;
+import com.example.health_care_system.service.QRCodeService;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+/**
+ * Serves patient QR code images referenced from Patient and HealthCard documents
+ */
+@RestController
+public class QRCodeController {
+
+    @Autowired
+    private QRCodeService qrCodeService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    /**
+     * QR code PNG for a user
+     * The ETag is the content key, so revalidation with If-None-Match returns 304 without a body
+     */
+    @GetMapping("/qr-codes/{userId}.png")
+    public ResponseEntity<byte[]> getQRCode(@PathVariable String userId, HttpSession session) {
+        // Patients may only fetch their own code; staff, doctors and admins scan any patient's
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || (user.getRole() == UserRole.PATIENT && !user.getId().equals(userId))) {
+            return ResponseEntity.status(403).build();
+        }
+
+        // Only render codes for existing patients, so arbitrary ids do not fill the image cache
+        if (!patientRepository.existsById(userId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        QRCodeService.QRCodeImage image = qrCodeService.getQRCodeImage(userId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .eTag(image.key())
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                .body(image.png());
+    }
+}
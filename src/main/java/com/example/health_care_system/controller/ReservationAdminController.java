@@ -1,6 +1,7 @@
 package com.example.health_care_system.controller;
 
 import com.example.health_care_system.repository.TimeSlotReservationRepository;
+import com.example.health_care_system.service.SlotAvailabilityIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -19,6 +20,9 @@ public class ReservationAdminController {
     @Autowired
     private TimeSlotReservationRepository reservationRepository;
     
+    @Autowired
+    private SlotAvailabilityIndex slotIndex;
+    
     /**
      * Delete all reservations - USE ONLY FOR TESTING/CLEANUP
      */
@@ -27,6 +31,7 @@ public class ReservationAdminController {
         try {
             long count = reservationRepository.count();
             reservationRepository.deleteAll();
+            slotIndex.clear();
             
             return Map.of(
                 "success", true,
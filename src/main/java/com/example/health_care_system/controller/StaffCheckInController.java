@@ -6,17 +6,21 @@ import com.example.health_care_system.model.Doctor;
 import com.example.health_care_system.model.UserRole;
 import com.example.health_care_system.repository.AppointmentRepository;
 import com.example.health_care_system.repository.DoctorRepository;
+import com.example.health_care_system.service.AppointmentService;
+import com.example.health_care_system.service.CheckInBoardBroadcaster;
+import com.example.health_care_system.service.CheckInQueueService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -29,6 +33,15 @@ public class StaffCheckInController {
     
     @Autowired
     private DoctorRepository doctorRepository;
+    
+    @Autowired
+    private AppointmentService appointmentService;
+    
+    @Autowired
+    private CheckInQueueService checkInQueueService;
+    
+    @Autowired
+    private CheckInBoardBroadcaster checkInBoardBroadcaster;
 
     /**
      * View today's appointments for check-in (filtered by staff's hospital)
@@ -47,32 +60,10 @@ public class StaffCheckInController {
         
         // Get today's date
         LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.atTime(LocalTime.MAX);
         
-        // Get all appointments for today
-        List<Appointment> todaysAppointments = appointmentRepository.findAll().stream()
-                .filter(a -> a.getAppointmentDateTime() != null)
-                .filter(a -> !a.getAppointmentDateTime().isBefore(startOfDay) && 
-                           !a.getAppointmentDateTime().isAfter(endOfDay))
-                .filter(a -> a.getStatus() == Appointment.AppointmentStatus.SCHEDULED)
-                .sorted(Comparator.comparing(Appointment::getAppointmentDateTime))
-                .collect(Collectors.toList());
-        
-        // Filter by hospital if staff member has a hospitalId (Admins see all)
-        if (user.getRole() == UserRole.STAFF && user.getHospitalId() != null && !user.getHospitalId().isEmpty()) {
-            todaysAppointments = todaysAppointments.stream()
-                    .filter(appointment -> {
-                        // Get the doctor for this appointment
-                        if (appointment.getDoctorId() != null) {
-                            return doctorRepository.findById(appointment.getDoctorId())
-                                    .map(doctor -> user.getHospitalId().equals(doctor.getHospitalId()))
-                                    .orElse(false);
-                        }
-                        return false;
-                    })
-                    .collect(Collectors.toList());
-        }
+        // Today's scheduled appointments, limited to the staff member's hospital (Admins see all)
+        CheckInQueueService.QueueView queue = checkInQueueService.getQueue(queueHospitalId(user), today);
+        List<Appointment> todaysAppointments = queue.appointments();
         
         // Apply filter if needed
         List<Appointment> filteredAppointments;
@@ -90,8 +81,8 @@ public class StaffCheckInController {
         
         // Statistics
         long totalToday = todaysAppointments.size();
-        long checkedInCount = todaysAppointments.stream().filter(Appointment::isCheckedIn).count();
-        long pendingCount = todaysAppointments.stream().filter(a -> !a.isCheckedIn()).count();
+        long checkedInCount = queue.checkedInCount();
+        long pendingCount = queue.pendingCount();
         
         // Add to model
         model.addAttribute("user", user);
@@ -105,6 +96,23 @@ public class StaffCheckInController {
         return "staff/check-in";
     }
 
+    /**
+     * Stream today's check-in queue for the staff member's hospital (Server-Sent Events)
+     * Sends a "queue" event with the counts and rows now and after every change
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> streamCheckIns(HttpSession session) throws IOException {
+        
+        // Check if user is staff or admin
+        UserDTO user = (UserDTO) session.getAttribute("user");
+        if (user == null || (user.getRole() != UserRole.STAFF && user.getRole() != UserRole.ADMIN)) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        return ResponseEntity.ok(checkInBoardBroadcaster.subscribe(queueHospitalId(user), LocalDate.now()));
+    }
+
     /**
      * Check-in a patient
      */
@@ -142,13 +150,7 @@ public class StaffCheckInController {
             }
             
             // Mark as checked in
-            appointment.setCheckedIn(true);
-            appointment.setCheckInTime(LocalDateTime.now());
-            appointment.setCheckInStaffId(user.getId());
-            appointment.setCheckInStaffName(user.getName());
-            appointment.setUpdatedAt(LocalDateTime.now());
-            
-            appointmentRepository.save(appointment);
+            checkInQueueService.checkIn(appointment, user.getId(), user.getName());
             
             redirectAttributes.addFlashAttribute("success", 
                     "Patient " + appointment.getPatientName() + " checked in successfully!");
@@ -198,13 +200,7 @@ public class StaffCheckInController {
             }
             
             // Undo check-in
-            appointment.setCheckedIn(false);
-            appointment.setCheckInTime(null);
-            appointment.setCheckInStaffId(null);
-            appointment.setCheckInStaffName(null);
-            appointment.setUpdatedAt(LocalDateTime.now());
-            
-            appointmentRepository.save(appointment);
+            checkInQueueService.undoCheckIn(appointment);
             
             redirectAttributes.addFlashAttribute("success", 
                     "Check-in undone for " + appointment.getPatientName());
@@ -247,11 +243,7 @@ public class StaffCheckInController {
                 }
             }
             
-            // Mark as no show
-            appointment.setStatus(Appointment.AppointmentStatus.NO_SHOW);
-            appointment.setUpdatedAt(LocalDateTime.now());
-            
-            appointmentRepository.save(appointment);
+            appointmentService.markNoShow(appointmentId);
             
             redirectAttributes.addFlashAttribute("success", 
                     "Appointment marked as No Show for " + appointment.getPatientName());
@@ -263,4 +255,14 @@ public class StaffCheckInController {
         
         return "redirect:/staff/check-in";
     }
+
+    /**
+     * Hospital whose queue the user works on; null (all hospitals) for admins and unassigned staff
+     */
+    private String queueHospitalId(UserDTO user) {
+        if (user.getRole() == UserRole.STAFF && user.getHospitalId() != null && !user.getHospitalId().isEmpty()) {
+            return user.getHospitalId();
+        }
+        return null;
+    }
 }
@@ -1,36 +1,44 @@
 package com.example.health_care_system.controller;
 
 import com.example.health_care_system.dto.UserDTO;
-import com.example.health_care_system.model.Doctor;
-import com.example.health_care_system.model.Patient;
-import com.example.health_care_system.model.User;
 import com.example.health_care_system.model.UserRole;
-import com.example.health_care_system.service.UserService;
+import com.example.health_care_system.service.UserExportService;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
 @Controller
 @RequestMapping("/admin")
 @RequiredArgsConstructor
 public class UserExportController {
     
-    private final UserService userService;
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy");
-    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
+    private final UserExportService userExportService;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
     
+    /**
+     * Stream the user CSV export
+     * @param after - Resume an interrupted download after the row with this cursor (header omitted);
+     *                the cursor of a row is its user type and ID as <ROLE>:<ID>
+     * Compressed with gzip when the client accepts it.
+     */
     @GetMapping("/users/export")
     public void exportUsers(
             @RequestParam(required = false) String role,
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
             HttpSession session,
             HttpServletResponse response) throws IOException {
         
@@ -43,149 +51,30 @@ public class UserExportController {
         
         // Set response headers for CSV download
         response.setContentType("text/csv");
+        response.setCharacterEncoding("UTF-8");
         String filename = "users_export_" + System.currentTimeMillis() + ".csv";
         if (role != null && !role.equals("ALL")) {
             filename = role.toLowerCase() + "s_export_" + System.currentTimeMillis() + ".csv";
         }
         response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+        response.setHeader("Vary", "Accept-Encoding");
         
-        PrintWriter writer = response.getWriter();
-        
-        // Export based on filter
-        if (role == null || role.equals("ALL")) {
-            exportAllUsers(writer);
-        } else if (role.equals("PATIENT")) {
-            exportPatients(writer);
-        } else if (role.equals("DOCTOR")) {
-            exportDoctors(writer);
-        } else if (role.equals("STAFF")) {
-            exportStaff(writer);
-        }
-        
-        writer.flush();
-    }
-    
-    private void exportAllUsers(PrintWriter writer) {
-        // Write headers for all users export
-        writer.println("User Type,Name,Email,Gender,Contact Number,Specialization/DOB,Address,Joined Date,Status");
-        
-        // Export Patients
-        List<Patient> patients = userService.getAllPatients();
-        for (Patient patient : patients) {
-            writer.println(String.format("%s,%s,%s,%s,%s,%s,%s,%s,%s",
-                "Patient",
-                escapeCsv(patient.getName()),
-                escapeCsv(patient.getEmail()),
-                escapeCsv(patient.getGender()),
-                escapeCsv(patient.getContactNumber()),
-                patient.getDateOfBirth() != null ? patient.getDateOfBirth().format(DATE_FORMATTER) : "",
-                escapeCsv(patient.getAddress()),
-                patient.getCreatedAt() != null ? patient.getCreatedAt().format(DATETIME_FORMATTER) : "",
-                patient.isActive() ? "Active" : "Inactive"
-            ));
+        OutputStream out = response.getOutputStream();
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            // Sync flush so rows flushed by the export reach the client without waiting for the end
+            out = new GZIPOutputStream(out, WRITE_BUFFER_SIZE, true);
         }
         
-        // Export Doctors
-        List<Doctor> doctors = userService.getAllDoctors();
-        for (Doctor doctor : doctors) {
-            writer.println(String.format("%s,%s,%s,%s,%s,%s,%s,%s,%s",
-                "Doctor",
-                escapeCsv(doctor.getName()),
-                escapeCsv(doctor.getEmail()),
-                escapeCsv(doctor.getGender()),
-                escapeCsv(doctor.getContactNumber()),
-                escapeCsv(doctor.getSpecialization()),
-                "",
-                doctor.getCreatedAt() != null ? doctor.getCreatedAt().format(DATETIME_FORMATTER) : "",
-                "Active"
-            ));
-        }
-        
-        // Export Staff
-        List<User> staff = userService.getUsersByRole(UserRole.STAFF);
-        for (User staffMember : staff) {
-            writer.println(String.format("%s,%s,%s,%s,%s,%s,%s,%s,%s",
-                "Staff",
-                escapeCsv(staffMember.getName()),
-                escapeCsv(staffMember.getEmail()),
-                escapeCsv(staffMember.getGender()),
-                escapeCsv(staffMember.getContactNumber()),
-                "",
-                "",
-                staffMember.getCreatedAt() != null ? staffMember.getCreatedAt().format(DATETIME_FORMATTER) : "",
-                "Active"
-            ));
-        }
-    }
-    
-    private void exportPatients(PrintWriter writer) {
-        // Write headers for patients
-        writer.println("Name,Email,Gender,Contact Number,Date of Birth,Address,Joined Date,Status");
-        
-        List<Patient> patients = userService.getAllPatients();
-        for (Patient patient : patients) {
-            writer.println(String.format("%s,%s,%s,%s,%s,%s,%s,%s",
-                escapeCsv(patient.getName()),
-                escapeCsv(patient.getEmail()),
-                escapeCsv(patient.getGender()),
-                escapeCsv(patient.getContactNumber()),
-                patient.getDateOfBirth() != null ? patient.getDateOfBirth().format(DATE_FORMATTER) : "",
-                escapeCsv(patient.getAddress()),
-                patient.getCreatedAt() != null ? patient.getCreatedAt().format(DATETIME_FORMATTER) : "",
-                patient.isActive() ? "Active" : "Inactive"
-            ));
-        }
-    }
-    
-    private void exportDoctors(PrintWriter writer) {
-        // Write headers for doctors
-        writer.println("Name,Email,Gender,Contact Number,Specialization,Joined Date");
-        
-        List<Doctor> doctors = userService.getAllDoctors();
-        for (Doctor doctor : doctors) {
-            writer.println(String.format("%s,%s,%s,%s,%s,%s",
-                escapeCsv(doctor.getName()),
-                escapeCsv(doctor.getEmail()),
-                escapeCsv(doctor.getGender()),
-                escapeCsv(doctor.getContactNumber()),
-                escapeCsv(doctor.getSpecialization()),
-                doctor.getCreatedAt() != null ? doctor.getCreatedAt().format(DATETIME_FORMATTER) : ""
-            ));
-        }
-    }
-    
-    private void exportStaff(PrintWriter writer) {
-        // Write headers for staff
-        writer.println("Name,Email,Gender,Contact Number,Joined Date");
-        
-        List<User> staff = userService.getUsersByRole(UserRole.STAFF);
-        for (User staffMember : staff) {
-            writer.println(String.format("%s,%s,%s,%s,%s",
-                escapeCsv(staffMember.getName()),
-                escapeCsv(staffMember.getEmail()),
-                escapeCsv(staffMember.getGender()),
-                escapeCsv(staffMember.getContactNumber()),
-                staffMember.getCreatedAt() != null ? staffMember.getCreatedAt().format(DATETIME_FORMATTER) : ""
-            ));
-        }
-    }
-    
-    /**
-     * Escape CSV special characters
-     */
-    private String escapeCsv(String value) {
-        if (value == null) {
-            return "";
-        }
-        
-        // If the value contains comma, quote, or newline, wrap it in quotes
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
-            // Escape existing quotes by doubling them
-            value = value.replace("\"", "\"\"");
-            // Wrap in quotes
-            return "\"" + value + "\"";
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        try {
+            userExportService.writeCsv(role, after, writer);
+        } catch (IllegalArgumentException e) {
+            // A cursor is rejected before any row is written, so the response is not committed yet
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
         }
-        
-        return value;
+        writer.close();
     }
 }
@@ -20,7 +20,7 @@ public class UserDTO {
     private String bloodGroup;
     private String address;
     private String contactNumber;
-    private String qrCode; // Base64 encoded QR code image
+    private String qrCode; // Reference to the QR code image (/qr-codes/{patientId}.png)
     private HealthCardDTO healthCard; // Health card information for patients
     private String hospitalId; // Hospital assignment for staff/doctors
 }
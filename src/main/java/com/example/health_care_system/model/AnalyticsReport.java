@@ -18,6 +18,9 @@ public class AnalyticsReport {
     private LocalDateTime reportPeriodEnd;
     private String generatedBy; // User ID who generated the report
     private ReportData reportData;
+    private String watermark; // Appointment change log position (ObjectId) the report includes changes up to
+    private String baseReportId; // Report this one was refreshed from; null when computed from scratch
+    private List<String> appliedChangeIds; // Change log entries at or after the watermark the report already includes
     
     // Enums
     public enum ReportType {
@@ -392,4 +395,13 @@ public class AnalyticsReport {
     
     public ReportData getReportData() { return reportData; }
     public void setReportData(ReportData reportData) { this.reportData = reportData; }
+    
+    public String getWatermark() { return watermark; }
+    public void setWatermark(String watermark) { this.watermark = watermark; }
+    
+    public String getBaseReportId() { return baseReportId; }
+    public void setBaseReportId(String baseReportId) { this.baseReportId = baseReportId; }
+    
+    public List<String> getAppliedChangeIds() { return appliedChangeIds; }
+    public void setAppliedChangeIds(List<String> appliedChangeIds) { this.appliedChangeIds = appliedChangeIds; }
 }
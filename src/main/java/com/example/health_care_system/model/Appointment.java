@@ -5,6 +5,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -13,17 +15,23 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "appointments")
-@CompoundIndex(
-    name = "unique_scheduled_appointment_idx",
-    def = "{'doctorId': 1, 'appointmentDateTime': 1, 'status': 1}",
-    unique = true,
-    partialFilter = "{'status': 'SCHEDULED'}"
-)
+@CompoundIndexes({
+    @CompoundIndex(
+        name = "unique_scheduled_appointment_idx",
+        def = "{'doctorId': 1, 'appointmentDateTime': 1, 'status': 1}",
+        unique = true,
+        partialFilter = "{'status': 'SCHEDULED'}"
+    ),
+    // Appointment lists and counts per patient / doctor (replaces the arrays on the user documents)
+    @CompoundIndex(name = "patient_appointments_idx", def = "{'patientId': 1, 'appointmentDateTime': -1}"),
+    @CompoundIndex(name = "doctor_appointments_idx", def = "{'doctorId': 1, 'appointmentDateTime': -1}")
+})
 public class Appointment {
     
     @Id
     private String id;
     
+    @Indexed
     private LocalDateTime appointmentDateTime;
     
     private String patientId;  // References Patient.id (MongoDB ObjectId)
@@ -0,0 +1,40 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One counted appointment state entering (+1) or leaving (-1) the statistics
+ * The ObjectId order of the log is the watermark incremental reports refresh from.
+ * Entries expire after a week; older reports are recomputed from scratch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "appointment_changes")
+public class AppointmentChange {
+    
+    @Id
+    private String id;
+    
+    private String appointmentId;
+    
+    private LocalDateTime appointmentDateTime;
+    
+    private Appointment.AppointmentStatus status;
+    
+    private String doctorId;
+    
+    private String doctorName;
+    
+    private int delta;
+    
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime createdAt;
+}
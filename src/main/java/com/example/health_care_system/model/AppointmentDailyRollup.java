@@ -0,0 +1,43 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-aggregated appointment counters for one day (by appointment date)
+ * Maintained incrementally by AppointmentRollupService; the weekday of a bucket is derived from its date
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "appointment_rollups")
+public class AppointmentDailyRollup {
+    
+    @Id
+    private String id;  // ISO date, e.g. 2025-01-31
+    
+    @Indexed
+    private LocalDate date;
+    
+    private long total;
+    
+    private Map<String, Long> byStatus = new HashMap<>();  // AppointmentStatus name -> count
+    
+    private Map<String, Long> byHour = new HashMap<>();  // "09" -> count
+    
+    private Map<String, Long> byDoctor = new HashMap<>();  // Doctor id -> count
+    
+    private Map<String, String> doctorNames = new HashMap<>();  // Doctor id -> name
+    
+    private Map<String, Long> bySpecialization = new HashMap<>();  // Specialization key -> count
+    
+    private Map<String, String> specializationNames = new HashMap<>();  // Specialization key -> name
+}
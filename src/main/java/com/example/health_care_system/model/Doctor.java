@@ -22,9 +22,7 @@ public class Doctor extends User {
     // Reference to the hospital where this doctor works
     private String hospitalId;
     
-    // Reference to appointments (lazy loaded)
-    @DBRef(lazy = true)
-    private List<Appointment> appointments = new ArrayList<>();
+    // Appointments are not stored here; query the appointments collection by doctorId
     
     // Reference to medical records created by this doctor (lazy loaded)
     @DBRef(lazy = true)
@@ -0,0 +1,52 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A rendered email waiting to be sent by EmailOutboxService
+ * Sent messages are kept for a week; failed ones stay until removed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "status_next_attempt_idx", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class EmailOutboxMessage {
+
+    public enum OutboxStatus {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private String to;
+
+    private String subject;
+
+    private String htmlContent;
+
+    private OutboxStatus status;
+
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt;  // PENDING: earliest send time; SENDING: when the claim expires
+
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime sentAt;
+}
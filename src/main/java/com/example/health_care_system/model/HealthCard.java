@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -18,13 +19,14 @@ public class HealthCard {
     @Id
     private String id; // MongoDB ObjectId
     
-    private String patientId; // Reference to Patient ID
+    @Indexed(unique = true)
+    private String patientId; // Reference to Patient ID, one card per patient
     
     private String patientName;
     
     private String bloodGroup;
     
-    private String qrCode; // Base64 encoded QR code image
+    private String qrCode; // Reference to the QR code image (/qr-codes/{patientId}.png)
     
     private String status; // "ACTIVE" or "INACTIVE"
     
@@ -72,20 +72,6 @@ public class Hospital {
     
     // Business Methods
     
-    /**
-     * Manage appointments for this hospital
-     * @return List of appointments for all doctors in this hospital
-     */
-    public List<Appointment> manageAppointments() {
-        List<Appointment> allAppointments = new ArrayList<>();
-        for (Doctor doctor : doctors) {
-            if (doctor.getAppointments() != null) {
-                allAppointments.addAll(doctor.getAppointments());
-            }
-        }
-        return allAppointments;
-    }
-    
     /**
      * Manage doctors at this hospital
      * @return List of doctors
@@ -0,0 +1,45 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Activity counters for one patient or doctor on a leaderboard
+ * Maintained incrementally by LeaderboardService; the top K of a board is read from the
+ * {board, score, subjectId} index (subjectId breaks score ties) instead of sorting every patient or doctor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "leaderboards")
+@CompoundIndex(name = "board_score_subject_idx", def = "{'board': 1, 'score': -1, 'subjectId': 1}")
+public class LeaderboardEntry {
+    
+    public enum Board {
+        PATIENT_VISITS,       // score = appointments + medical records
+        DOCTOR_APPOINTMENTS   // score = appointments
+    }
+    
+    @Id
+    private String id;  // board:subjectId
+    
+    private Board board;
+    
+    private String subjectId;  // Patient or Doctor id
+    
+    private String name;
+    
+    private long appointments;
+    
+    private long completedAppointments;
+    
+    private long cancelledAppointments;
+    
+    private long medicalRecords;
+    
+    private long score;
+}
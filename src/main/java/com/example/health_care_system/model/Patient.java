@@ -26,7 +26,7 @@ public class Patient extends User {
     
     private boolean active = true;
     
-    private String qrCode; // Base64 encoded QR code image for patient identification
+    private String qrCode; // Reference to the QR code image (/qr-codes/{id}.png) for patient identification
     
     // Reference to the hospital where this patient is registered
     private String hospitalId;
@@ -35,7 +35,5 @@ public class Patient extends User {
     @DBRef(lazy = true)
     private List<MedicalRecord> medicalRecords = new ArrayList<>();
     
-    // Reference to appointments (lazy loaded)
-    @DBRef(lazy = true)
-    private List<Appointment> appointments = new ArrayList<>();
+    // Appointments are not stored here; query the appointments collection by patientId
 }
@@ -0,0 +1,29 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rendered QR code PNG, kept outside the users and health_cards documents
+ * The id is the content key computed by QRCodeService, so one asset serves every document referencing it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "qr_assets")
+public class QRCodeAsset {
+    
+    @Id
+    private String id;
+    
+    private String userId;
+    
+    private byte[] png;
+    
+    private LocalDateTime createdAt;
+}
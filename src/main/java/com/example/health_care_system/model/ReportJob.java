@@ -0,0 +1,73 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A report generation request run in the background by ReportJobService
+ * Finished jobs keep their result (report id or PDF) for a week.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "report_jobs")
+public class ReportJob {
+    
+    public enum JobType {
+        ANALYTICS_PDF,
+        PATIENT_SUMMARY,
+        DOCTOR_PERFORMANCE,
+        HOSPITAL_OVERVIEW,
+        APPOINTMENT_STATISTICS,
+        SYSTEM_OVERVIEW
+    }
+    
+    public enum JobStatus {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+    
+    @Id
+    private String id;
+    
+    private JobType type;
+    
+    private JobStatus status;
+    
+    private String requestedBy;  // Admin user ID
+    
+    private LocalDate startDate;
+    
+    private LocalDate endDate;
+    
+    private int progress;  // 0-100
+    
+    private String progressMessage;
+    
+    private String reportId;  // AnalyticsReport.reportId for report jobs
+    
+    private byte[] pdf;  // Result of ANALYTICS_PDF jobs; excluded from status reads
+    
+    private String errorMessage;
+    
+    private String owner;  // Instance id of the ReportJobService that accepted the job
+    
+    private LocalDateTime leaseExpiresAt;  // Renewed by the owner while the job is queued or running
+    
+    @Indexed(expireAfter = "7d")
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime startedAt;
+    
+    private LocalDateTime finishedAt;
+}
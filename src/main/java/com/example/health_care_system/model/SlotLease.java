@@ -0,0 +1,27 @@
+package com.example.health_care_system.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cross-instance booking lock for one doctor time slot
+ * Used by MongoLeaseSlotLockManager when app.booking.lock=mongo
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "slot_locks")
+public class SlotLease {
+    
+    @Id
+    private String id;  // doctorId|slotDateTime
+    
+    private String owner;  // Random token of the booking holding the lease
+    
+    private LocalDateTime expiresAt;
+}
@@ -38,8 +38,8 @@ public class TimeSlotReservation {
     
     private LocalDateTime createdAt;  // For application logic
     
-    // Note: We're using scheduled cleanup instead of MongoDB TTL to avoid timing issues
-    // The @Scheduled cleanup task in TimeSlotReservationService handles expiration
+    // Note: We're not using MongoDB TTL to avoid timing issues
+    // ReservationExpiryService expires each reservation at createdAt + 5 minutes
     
     private ReservationStatus status;
     
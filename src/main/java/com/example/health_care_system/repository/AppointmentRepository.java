@@ -24,4 +24,8 @@ public interface AppointmentRepository extends MongoRepository<Appointment, Stri
     List<Appointment> findByAppointmentDateTimeBetween(LocalDateTime start, LocalDateTime end);
     
     List<Appointment> findByDoctorIdAndAppointmentDateTimeBetween(String doctorId, LocalDateTime start, LocalDateTime end);
+    
+    long countByPatientId(String patientId);
+    
+    long countByDoctorId(String doctorId);
 }
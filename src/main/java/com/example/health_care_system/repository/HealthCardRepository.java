@@ -4,6 +4,8 @@ import com.example.health_care_system.model.HealthCard;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +14,6 @@ public interface HealthCardRepository extends MongoRepository<HealthCard, String
     Optional<HealthCard> findByPatientId(String patientId);
     
     boolean existsByPatientId(String patientId);
+    
+    List<HealthCard> findByPatientIdIn(Collection<String> patientIds);
 }
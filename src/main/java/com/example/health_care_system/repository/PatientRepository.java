@@ -19,6 +19,14 @@ public interface PatientRepository extends MongoRepository<Patient, String> {
     @Query("{ 'role': 'PATIENT', '_id': ?0 }")
     Optional<Patient> findById(String id);
     
+    // Read-only loads without the QR code reference and medical record refs; never save the result,
+    // it would clear those fields
+    @Query(value = "{ 'role': 'PATIENT' }", fields = "{ 'qrCode': 0, 'medicalRecords': 0 }")
+    List<Patient> findAllSummaries();
+    
+    @Query(value = "{ 'role': 'PATIENT', '_id': ?0 }", fields = "{ 'qrCode': 0, 'medicalRecords': 0 }")
+    Optional<Patient> findSummaryById(String id);
+    
     @Query("{ 'role': 'PATIENT', 'email': ?0 }")
     Optional<Patient> findByEmailAndRole(String email);
 }
@@ -20,6 +20,17 @@ public interface TimeSlotReservationRepository extends MongoRepository<TimeSlotR
         TimeSlotReservation.ReservationStatus status
     );
     
+    /**
+     * Find reservations for a specific doctor and time slot created after a specific time
+     * (active holds whose expiry has not been processed yet are excluded this way)
+     */
+    List<TimeSlotReservation> findByDoctorIdAndSlotDateTimeAndStatusAndCreatedAtAfter(
+        String doctorId,
+        LocalDateTime slotDateTime,
+        TimeSlotReservation.ReservationStatus status,
+        LocalDateTime dateTime
+    );
+    
     /**
      * Find active reservations for a specific doctor
      */
@@ -28,6 +39,15 @@ public interface TimeSlotReservationRepository extends MongoRepository<TimeSlotR
         TimeSlotReservation.ReservationStatus status
     );
     
+    /**
+     * Find reservations for a specific doctor created after a specific time
+     */
+    List<TimeSlotReservation> findByDoctorIdAndStatusAndCreatedAtAfter(
+        String doctorId,
+        TimeSlotReservation.ReservationStatus status,
+        LocalDateTime dateTime
+    );
+    
     /**
      * Find reservation by patient and session
      */
@@ -45,6 +65,11 @@ public interface TimeSlotReservationRepository extends MongoRepository<TimeSlotR
         TimeSlotReservation.ReservationStatus status
     );
     
+    /**
+     * Find all reservations with a status (used to rebuild the expiry queue on startup)
+     */
+    List<TimeSlotReservation> findByStatus(TimeSlotReservation.ReservationStatus status);
+    
     /**
      * Find active reservations created before a specific time (for cleanup)
      */
@@ -2,15 +2,29 @@ package com.example.health_care_system.service;
 
 import com.example.health_care_system.model.*;
 import com.example.health_care_system.repository.*;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.Period;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Builds analytics reports with MongoDB aggregation pipelines
+ * Grouping happens in the database; only the grouped rows are returned to the application.
+ */
 @Service
 public class AnalyticsReportService {
     
@@ -18,25 +32,38 @@ public class AnalyticsReportService {
     private AnalyticsReportRepository analyticsReportRepository;
     
     @Autowired
-    private PatientRepository patientRepository;
+    private HospitalRepository hospitalRepository;
     
     @Autowired
-    private DoctorRepository doctorRepository;
+    private AppointmentRepository appointmentRepository;
     
     @Autowired
-    private HospitalRepository hospitalRepository;
+    private MedicalRecordRepository medicalRecordRepository;
     
     @Autowired
-    private AppointmentRepository appointmentRepository;
+    private DoctorRepository doctorRepository;
     
     @Autowired
-    private MedicalRecordRepository medicalRecordRepository;
+    private MongoTemplate mongoTemplate;
     
     @Autowired
-    private UserRepository userRepository;
+    private LeaderboardService leaderboardService;
+    
+    // Age groups and their upper age limits (exclusive); the last group is open-ended
+    private static final String[] AGE_GROUPS = {"0-17", "18-29", "30-44", "45-59", "60+"};
+    private static final int[] AGE_GROUP_LIMITS = {18, 30, 45, 60};
+    
+    // Seconds a change log entry may lag behind its ObjectId timestamp (clock skew, in-flight writes)
+    private static final int CHANGE_LOG_SETTLE_SECONDS = 5;
+    
+    // Times the appointment snapshot is recomputed when changes keep arriving while it runs
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+    
+    private static final String HAS_MEDICAL_RECORDS = "{ $match: { 'medicalRecords.0': { $exists: true } } }";
     
     /**
      * Generate a comprehensive patient report
+     * All counts are computed by one $facet pipeline over the patient documents
      */
     public AnalyticsReport generatePatientReport(String generatedBy, LocalDateTime periodStart, LocalDateTime periodEnd) {
         AnalyticsReport report = new AnalyticsReport();
@@ -50,59 +77,65 @@ public class AnalyticsReportService {
         AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
         AnalyticsReport.PatientReportData patientData = new AnalyticsReport.PatientReportData();
         
-        List<Patient> allPatients = patientRepository.findAll();
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("n")).as("total")
+            .and(Aggregation.match(Criteria.where("active").is(false)), Aggregation.count().as("n")).as("inactive")
+            .and(Aggregation.group("gender").count().as("count")).as("byGender")
+            .and(Aggregation.match(Criteria.where("hospitalId").ne(null)), Aggregation.group("hospitalId").count().as("count")).as("byHospital")
+            .and(Aggregation.stage(HAS_MEDICAL_RECORDS), Aggregation.count().as("n")).as("withRecords");
+        
+        // Age groups as date-of-birth ranges, so the age is computed exactly as Period.between would
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < AGE_GROUPS.length; i++) {
+            Criteria dateOfBirth = Criteria.where("dateOfBirth");
+            if (i < AGE_GROUP_LIMITS.length) {
+                dateOfBirth = dateOfBirth.gt(today.minusYears(AGE_GROUP_LIMITS[i]));
+            }
+            if (i > 0) {
+                dateOfBirth = dateOfBirth.lte(today.minusYears(AGE_GROUP_LIMITS[i - 1]));
+            }
+            facets = facets.and(Aggregation.match(dateOfBirth), Aggregation.count().as("n")).as("age" + i);
+        }
+        facets = facets.and(Aggregation.match(Criteria.where("dateOfBirth").is(null)), Aggregation.count().as("n")).as("ageUnknown");
+        
+        Document result = facetResult(Aggregation.newAggregation(Aggregation.match(isRole(UserRole.PATIENT)), facets), Patient.class);
         
         // Total patients
-        patientData.setTotalPatients(allPatients.size());
+        int totalPatients = facetCount(result, "total");
+        patientData.setTotalPatients(totalPatients);
         
-        // Active vs Inactive patients
-        long activeCount = allPatients.stream().filter(Patient::isActive).count();
-        patientData.setActivePatients((int) activeCount);
-        patientData.setInactivePatients((int) (allPatients.size() - activeCount));
+        // Active vs Inactive patients (a missing 'active' field means active)
+        int inactiveCount = facetCount(result, "inactive");
+        patientData.setActivePatients(totalPatients - inactiveCount);
+        patientData.setInactivePatients(inactiveCount);
         
         // Patients by gender
-        Map<String, Integer> byGender = allPatients.stream()
-            .collect(Collectors.groupingBy(
-                p -> p.getGender() != null ? p.getGender() : "Not Specified",
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        patientData.setPatientsByGender(byGender);
+        patientData.setPatientsByGender(facetGroups(result, "byGender", "Not Specified"));
         
         // Patients by age group
-        Map<String, Integer> byAgeGroup = allPatients.stream()
-            .collect(Collectors.groupingBy(
-                this::getAgeGroup,
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
+        Map<String, Integer> byAgeGroup = new HashMap<>();
+        for (int i = 0; i < AGE_GROUPS.length; i++) {
+            putIfPositive(byAgeGroup, AGE_GROUPS[i], facetCount(result, "age" + i));
+        }
+        putIfPositive(byAgeGroup, "Unknown", facetCount(result, "ageUnknown"));
         patientData.setPatientsByAgeGroup(byAgeGroup);
         
         // Patients by hospital
-        Map<String, Integer> byHospital = allPatients.stream()
-            .filter(p -> p.getHospitalId() != null)
-            .collect(Collectors.groupingBy(
-                Patient::getHospitalId,
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        patientData.setPatientsByHospital(byHospital);
+        patientData.setPatientsByHospital(facetGroups(result, "byHospital", null));
         
         // Patients with appointments and medical records
-        long patientsWithAppointments = allPatients.stream()
-            .filter(p -> p.getAppointments() != null && !p.getAppointments().isEmpty())
-            .count();
-        patientData.setPatientsWithAppointments((int) patientsWithAppointments);
-        
-        long patientsWithRecords = allPatients.stream()
-            .filter(p -> p.getMedicalRecords() != null && !p.getMedicalRecords().isEmpty())
-            .count();
-        patientData.setPatientsWithMedicalRecords((int) patientsWithRecords);
+        Aggregation distinctPatients = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("patientId").ne(null)),
+            Aggregation.group("patientId"),
+            Aggregation.count().as("n")
+        );
+        patientData.setPatientsWithAppointments(singleCount(distinctPatients, Appointment.class));
+        patientData.setPatientsWithMedicalRecords(facetCount(result, "withRecords"));
         
-        // Top patients by visits
-        List<AnalyticsReport.PatientDetail> topPatients = allPatients.stream()
-            .map(this::createPatientDetail)
-            .sorted((p1, p2) -> Integer.compare(p2.getTotalVisits(), p1.getTotalVisits()))
-            .limit(10)
-            .collect(Collectors.toList());
-        patientData.setTopPatientsByVisits(topPatients);
+        // Top patients by visits, read from the maintained leaderboard
+        patientData.setTopPatientsByVisits(
+            leaderboardService.getTop(LeaderboardEntry.Board.PATIENT_VISITS, leaderboardService.getLeaderboardSize()).stream()
+                .map(this::toPatientDetail)
+                .collect(Collectors.toList()));
         
         reportData.setPatientData(patientData);
         report.setReportData(reportData);
@@ -125,57 +158,39 @@ public class AnalyticsReportService {
         AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
         AnalyticsReport.DoctorReportData doctorData = new AnalyticsReport.DoctorReportData();
         
-        List<Doctor> allDoctors = doctorRepository.findAll();
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("n")).as("total")
+            .and(Aggregation.group("specialization").count().as("count")).as("bySpecialization")
+            .and(Aggregation.match(Criteria.where("hospitalId").ne(null)), Aggregation.group("hospitalId").count().as("count")).as("byHospital")
+            .and(Aggregation.group("gender").count().as("count")).as("byGender")
+            .and(Aggregation.stage(HAS_MEDICAL_RECORDS), Aggregation.count().as("n")).as("withRecords");
+        Document result = facetResult(Aggregation.newAggregation(Aggregation.match(isRole(UserRole.DOCTOR)), facets), Doctor.class);
         
         // Total doctors
-        doctorData.setTotalDoctors(allDoctors.size());
-        doctorData.setActiveDoctors(allDoctors.size()); // Assuming all doctors are active
-        
-        // Doctors by specialization
-        Map<String, Integer> bySpecialization = allDoctors.stream()
-            .collect(Collectors.groupingBy(
-                d -> d.getSpecialization() != null ? d.getSpecialization() : "Not Specified",
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        doctorData.setDoctorsBySpecialization(bySpecialization);
-        
-        // Doctors by hospital
-        Map<String, Integer> byHospital = allDoctors.stream()
-            .filter(d -> d.getHospitalId() != null)
-            .collect(Collectors.groupingBy(
-                Doctor::getHospitalId,
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        doctorData.setDoctorsByHospital(byHospital);
-        
-        // Doctors by gender
-        Map<String, Integer> byGender = allDoctors.stream()
-            .collect(Collectors.groupingBy(
-                d -> d.getGender() != null ? d.getGender() : "Not Specified",
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        doctorData.setDoctorsByGender(byGender);
-        
-        // Top doctors by appointments
-        List<AnalyticsReport.DoctorPerformance> topDoctors = allDoctors.stream()
-            .map(this::createDoctorPerformance)
-            .sorted((d1, d2) -> Integer.compare(d2.getTotalAppointments(), d1.getTotalAppointments()))
-            .limit(10)
-            .collect(Collectors.toList());
-        doctorData.setTopDoctorsByAppointments(topDoctors);
+        int totalDoctors = facetCount(result, "total");
+        doctorData.setTotalDoctors(totalDoctors);
+        doctorData.setActiveDoctors(totalDoctors); // Assuming all doctors are active
+        
+        // Doctors by specialization, hospital and gender
+        doctorData.setDoctorsBySpecialization(facetGroups(result, "bySpecialization", "Not Specified"));
+        doctorData.setDoctorsByHospital(facetGroups(result, "byHospital", null));
+        doctorData.setDoctorsByGender(facetGroups(result, "byGender", "Not Specified"));
+        
+        // Top doctors by appointments, read from the maintained leaderboard
+        List<LeaderboardEntry> topDoctors =
+            leaderboardService.getTop(LeaderboardEntry.Board.DOCTOR_APPOINTMENTS, leaderboardService.getLeaderboardSize());
+        Map<String, String> specializations = new HashMap<>();
+        doctorRepository.findAllById(topDoctors.stream().map(LeaderboardEntry::getSubjectId).collect(Collectors.toList()))
+            .forEach(doctor -> specializations.put(doctor.getId(), doctor.getSpecialization()));
+        doctorData.setTopDoctorsByAppointments(topDoctors.stream()
+            .map(entry -> toDoctorPerformance(entry, specializations.get(entry.getSubjectId())))
+            .collect(Collectors.toList()));
         
         // Average appointments per doctor
-        double avgAppointments = allDoctors.stream()
-            .mapToInt(d -> d.getAppointments() != null ? d.getAppointments().size() : 0)
-            .average()
-            .orElse(0.0);
-        doctorData.setAverageAppointmentsPerDoctor(avgAppointments);
+        long doctorAppointments = mongoTemplate.count(new Query(Criteria.where("doctorId").ne(null)), Appointment.class);
+        doctorData.setAverageAppointmentsPerDoctor(totalDoctors > 0 ? (double) doctorAppointments / totalDoctors : 0.0);
         
         // Doctors with medical records
-        long doctorsWithRecords = allDoctors.stream()
-            .filter(d -> d.getMedicalRecords() != null && !d.getMedicalRecords().isEmpty())
-            .count();
-        doctorData.setDoctorsWithMedicalRecords((int) doctorsWithRecords);
+        doctorData.setDoctorsWithMedicalRecords(facetCount(result, "withRecords"));
         
         reportData.setDoctorData(doctorData);
         report.setReportData(reportData);
@@ -198,52 +213,78 @@ public class AnalyticsReportService {
         AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
         AnalyticsReport.HospitalReportData hospitalData = new AnalyticsReport.HospitalReportData();
         
-        List<Hospital> allHospitals = hospitalRepository.findAll();
+        // One row per hospital with its doctors' specializations joined in.
+        // The doctors array holds DBRefs; their '$id' is read through $objectToArray and the join is a
+        // plain localField/foreignField $lookup, so this runs on MongoDB 4.0 ($getField and $lookup
+        // with both localField and pipeline would need 5.0).
+        Aggregation metricsPipeline = Aggregation.newAggregation(
+            Aggregation.stage("{ $project: { name: 1, type: 1, hospitalCharges: 1, city: '$location.city', "
+                + "totalPatients: { $size: { $ifNull: ['$patients', []] } }, "
+                + "doctorRefs: { $map: { input: { $ifNull: ['$doctors', []] }, as: 'ref', "
+                + "in: { $let: { vars: { idField: { $arrayElemAt: [ { $filter: { input: { $objectToArray: '$$ref' }, "
+                + "as: 'field', cond: { $eq: ['$$field.k', { $literal: '$id' }] } } }, 0 ] } }, in: '$$idField.v' } } } } } }"),
+            Aggregation.stage("{ $addFields: { totalDoctors: { $size: '$doctorRefs' }, "
+                + "doctorKeys: { $map: { input: '$doctorRefs', as: 'id', in: { $toString: '$$id' } } } } }"),
+            Aggregation.stage("{ $lookup: { from: 'users', localField: 'doctorRefs', foreignField: '_id', as: 'doctorDocs' } }"),
+            Aggregation.stage("{ $project: { name: 1, type: 1, hospitalCharges: 1, city: 1, totalPatients: 1, totalDoctors: 1, "
+                + "doctorKeys: 1, specializations: { $map: { input: '$doctorDocs', as: 'doctor', "
+                + "in: { $ifNull: ['$$doctor.specialization', 'Not Specified'] } } } } }")
+        );
+        List<Document> hospitals = aggregate(metricsPipeline, Hospital.class);
+        
+        // Appointments per doctor of these hospitals, counted once over the doctorId index
+        List<String> doctorKeys = hospitals.stream()
+            .flatMap(h -> h.getList("doctorKeys", String.class, List.of()).stream())
+            .distinct()
+            .toList();
+        Map<String, Integer> appointmentsByDoctor = doctorKeys.isEmpty() ? Map.of() : toCounts(aggregate(
+            Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("doctorId").in(doctorKeys)),
+                Aggregation.group("doctorId").count().as("count")),
+            Appointment.class), null);
         
         // Total hospitals
-        hospitalData.setTotalHospitals(allHospitals.size());
+        hospitalData.setTotalHospitals(hospitals.size());
         
         // Government vs Private
-        long govCount = allHospitals.stream()
-            .filter(h -> h.getType() == Hospital.HospitalType.GOVERNMENT)
+        long govCount = hospitals.stream()
+            .filter(h -> Hospital.HospitalType.GOVERNMENT.name().equals(h.getString("type")))
             .count();
         hospitalData.setGovernmentHospitals((int) govCount);
-        hospitalData.setPrivateHospitals((int) (allHospitals.size() - govCount));
+        hospitalData.setPrivateHospitals((int) (hospitals.size() - govCount));
         
         // Hospitals by location
-        Map<String, Integer> byLocation = allHospitals.stream()
-            .filter(h -> h.getLocation() != null && h.getLocation().getCity() != null)
+        Map<String, Integer> byLocation = hospitals.stream()
+            .filter(h -> h.getString("city") != null)
             .collect(Collectors.groupingBy(
-                h -> h.getLocation().getCity(),
+                h -> h.getString("city"),
                 Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
             ));
         hospitalData.setHospitalsByLocation(byLocation);
         
         // Hospital metrics (using MongoDB ObjectId as key)
-        Map<String, AnalyticsReport.HospitalMetrics> metricsMap = allHospitals.stream()
-            .collect(Collectors.toMap(
-                h -> h.getId(),  // Use MongoDB ObjectId
-                this::createHospitalMetrics
-            ));
+        Map<String, AnalyticsReport.HospitalMetrics> metricsMap = hospitals.stream()
+            .map(h -> toHospitalMetrics(h, appointmentsByDoctor))
+            .collect(Collectors.toMap(AnalyticsReport.HospitalMetrics::getHospitalId, m -> m));
         hospitalData.setHospitalMetrics(metricsMap);
         
         // Total doctors and patients across all hospitals
-        int totalDoctors = allHospitals.stream()
-            .mapToInt(h -> h.getDoctors() != null ? h.getDoctors().size() : 0)
+        int totalDoctors = metricsMap.values().stream()
+            .mapToInt(AnalyticsReport.HospitalMetrics::getTotalDoctors)
             .sum();
         hospitalData.setTotalDoctorsAcrossHospitals(totalDoctors);
         
-        int totalPatients = allHospitals.stream()
-            .mapToInt(h -> h.getPatients() != null ? h.getPatients().size() : 0)
+        int totalPatients = metricsMap.values().stream()
+            .mapToInt(AnalyticsReport.HospitalMetrics::getTotalPatients)
             .sum();
         hospitalData.setTotalPatientsAcrossHospitals(totalPatients);
         
         // Averages
         hospitalData.setAverageDoctorsPerHospital(
-            allHospitals.isEmpty() ? 0.0 : (double) totalDoctors / allHospitals.size()
+            hospitals.isEmpty() ? 0.0 : (double) totalDoctors / hospitals.size()
         );
         hospitalData.setAveragePatientsPerHospital(
-            allHospitals.isEmpty() ? 0.0 : (double) totalPatients / allHospitals.size()
+            hospitals.isEmpty() ? 0.0 : (double) totalPatients / hospitals.size()
         );
         
         reportData.setHospitalData(hospitalData);
@@ -264,83 +305,88 @@ public class AnalyticsReportService {
         report.setReportPeriodEnd(periodEnd);
         report.setGeneratedBy(generatedBy);
         
+        // Entries logged within the settle window may still be in flight, so the watermark is placed before it
+        ObjectId watermark = changeLogPosition(LocalDateTime.now().minusSeconds(CHANGE_LOG_SETTLE_SECONDS));
+        report.setWatermark(watermark.toHexString());
+        
         AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
         AnalyticsReport.AppointmentReportData appointmentData = new AnalyticsReport.AppointmentReportData();
         
-        List<Appointment> allAppointments = appointmentRepository.findAll();
-        
         // Filter by period if specified
-        if (periodStart != null && periodEnd != null) {
-            allAppointments = allAppointments.stream()
-                .filter(a -> a.getAppointmentDateTime() != null &&
-                    !a.getAppointmentDateTime().isBefore(periodStart) &&
-                    !a.getAppointmentDateTime().isAfter(periodEnd))
-                .collect(Collectors.toList());
+        Criteria period = periodCriteria(periodStart, periodEnd);
+        
+        // Doctor-dependent groupings join each doctor once, after grouping appointments by doctor
+        FacetOperation facets = Aggregation.facet(Aggregation.count().as("n")).as("total")
+            .and(Aggregation.match(Criteria.where("status").ne(null)), Aggregation.group("status").count().as("count")).as("byStatus")
+            .and(Aggregation.group("doctorName").count().as("count")).as("byDoctor")
+            .and(
+                Aggregation.match(Criteria.where("appointmentDateTime").ne(null)),
+                Aggregation.project().and(DateOperators.dateOf("appointmentDateTime")
+                    .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                    .toString("%Y-%m-%d")).as("day"),
+                Aggregation.group("day").count().as("count")
+            ).as("byDate")
+            .and(
+                Aggregation.match(Criteria.where("doctorId").ne(null)),
+                Aggregation.group("doctorId").count().as("count"),
+                Aggregation.stage("{ $addFields: { doctorRef: { $convert: { input: '$_id', to: 'objectId', onError: null, onNull: null } } } }"),
+                Aggregation.stage("{ $lookup: { from: 'users', localField: 'doctorRef', foreignField: '_id', as: 'doctor' } }"),
+                Aggregation.unwind("doctor"),
+                Aggregation.stage("{ $project: { count: 1, specialization: { $ifNull: ['$doctor.specialization', 'Not Specified'] }, "
+                    + "hospitalId: '$doctor.hospitalId' } }")
+            ).as("byDoctorDetails");
+        
+        // Entries already logged when the aggregation starts are included in it, so a refresh must skip them.
+        // An entry logged while it runs may or may not be included; the snapshot is recomputed in that case.
+        List<String> applied = changeIdsSince(watermark, periodStart, periodEnd);
+        Document result = null;
+        for (int attempt = 1; attempt <= SNAPSHOT_ATTEMPTS; attempt++) {
+            result = facetResult(Aggregation.newAggregation(Aggregation.match(period), facets), Appointment.class);
+            List<String> logged = changeIdsSince(watermark, periodStart, periodEnd);
+            if (logged.equals(applied)) {
+                break;
+            }
+            if (attempt == SNAPSHOT_ATTEMPTS) {
+                System.err.println("Appointment changes kept arriving during report generation; "
+                    + (logged.size() - applied.size()) + " may be counted twice by the next refresh");
+                break;
+            }
+            applied = logged;
         }
+        report.setAppliedChangeIds(applied);
         
         // Total appointments
-        appointmentData.setTotalAppointments(allAppointments.size());
+        int totalAppointments = facetCount(result, "total");
+        appointmentData.setTotalAppointments(totalAppointments);
         
         // Appointments by status
-        Map<Appointment.AppointmentStatus, Long> byStatus = allAppointments.stream()
-            .collect(Collectors.groupingBy(Appointment::getStatus, Collectors.counting()));
-        
-        appointmentData.setScheduledAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.SCHEDULED, 0L).intValue());
-        appointmentData.setCompletedAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.COMPLETED, 0L).intValue());
-        appointmentData.setCancelledAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.CANCELLED, 0L).intValue());
-        appointmentData.setNoShowAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.NO_SHOW, 0L).intValue());
+        Map<String, Integer> byStatus = facetGroups(result, "byStatus", null);
+        appointmentData.setScheduledAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.SCHEDULED.name(), 0));
+        appointmentData.setCompletedAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.COMPLETED.name(), 0));
+        appointmentData.setCancelledAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.CANCELLED.name(), 0));
+        appointmentData.setNoShowAppointments(byStatus.getOrDefault(Appointment.AppointmentStatus.NO_SHOW.name(), 0));
         
         // Appointments by doctor
-        Map<String, Integer> byDoctor = allAppointments.stream()
-            .collect(Collectors.groupingBy(
-                a -> a.getDoctorName() != null ? a.getDoctorName() : "Unknown",
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        appointmentData.setAppointmentsByDoctor(byDoctor);
+        appointmentData.setAppointmentsByDoctor(facetGroups(result, "byDoctor", "Unknown"));
         
-        // Appointments by specialization (get from doctor, using MongoDB ObjectId)
+        // Appointments by specialization and hospital (from each appointment's doctor)
         Map<String, Integer> bySpecialization = new HashMap<>();
-        List<Doctor> allDoctors = doctorRepository.findAll();
-        for (Doctor doctor : allDoctors) {
-            long count = allAppointments.stream()
-                .filter(a -> a.getDoctorId() != null && a.getDoctorId().equals(doctor.getId()))  // Use MongoDB ObjectId
-                .count();
-            if (count > 0) {
-                String spec = doctor.getSpecialization() != null ? doctor.getSpecialization() : "Not Specified";
-                bySpecialization.put(spec, bySpecialization.getOrDefault(spec, 0) + (int) count);
-            }
-        }
-        appointmentData.setAppointmentsBySpecialization(bySpecialization);
-        
-        // Appointments by hospital (get from doctor, using MongoDB ObjectId)
         Map<String, Integer> byHospital = new HashMap<>();
-        for (Doctor doctor : allDoctors) {
-            if (doctor.getHospitalId() != null) {
-                long count = allAppointments.stream()
-                    .filter(a -> a.getDoctorId() != null && a.getDoctorId().equals(doctor.getId()))  // Use MongoDB ObjectId
-                    .count();
-                if (count > 0) {
-                    byHospital.put(doctor.getHospitalId(), byHospital.getOrDefault(doctor.getHospitalId(), 0) + (int) count);
-                }
+        for (Document row : facetRows(result, "byDoctorDetails")) {
+            int count = toInt(row.get("count"));
+            bySpecialization.merge(row.getString("specialization"), count, Integer::sum);
+            if (row.getString("hospitalId") != null) {
+                byHospital.merge(row.getString("hospitalId"), count, Integer::sum);
             }
         }
+        appointmentData.setAppointmentsBySpecialization(bySpecialization);
         appointmentData.setAppointmentsByHospital(byHospital);
         
         // Appointments by date
-        Map<String, Integer> byDate = allAppointments.stream()
-            .filter(a -> a.getAppointmentDateTime() != null)
-            .collect(Collectors.groupingBy(
-                a -> a.getAppointmentDateTime().toLocalDate().toString(),
-                Collectors.collectingAndThen(Collectors.counting(), Long::intValue)
-            ));
-        appointmentData.setAppointmentsByDate(byDate);
+        appointmentData.setAppointmentsByDate(facetGroups(result, "byDate", null));
         
         // Calculate rates
-        if (allAppointments.size() > 0) {
-            appointmentData.setCompletionRate((double) appointmentData.getCompletedAppointments() / allAppointments.size() * 100);
-            appointmentData.setCancellationRate((double) appointmentData.getCancelledAppointments() / allAppointments.size() * 100);
-            appointmentData.setNoShowRate((double) appointmentData.getNoShowAppointments() / allAppointments.size() * 100);
-        }
+        calculateRates(appointmentData);
         
         reportData.setAppointmentData(appointmentData);
         report.setReportData(reportData);
@@ -348,6 +394,144 @@ public class AnalyticsReportService {
         return analyticsReportRepository.save(report);
     }
     
+    /**
+     * Refresh the appointment statistics report for a period
+     * Starts from the latest report for the same period and applies the appointment changes logged
+     * since its watermark. Falls back to generateAppointmentReport when there is no usable snapshot.
+     */
+    public AnalyticsReport refreshAppointmentReport(String generatedBy, LocalDateTime periodStart, LocalDateTime periodEnd) {
+        Query latest = new Query(Criteria.where("reportType").is(AnalyticsReport.ReportType.APPOINTMENT_STATISTICS)
+            .and("reportPeriodStart").is(periodStart)
+            .and("reportPeriodEnd").is(periodEnd)
+            .and("watermark").ne(null))
+            .with(Sort.by(Sort.Direction.DESC, "generatedAt"));
+        AnalyticsReport previous = mongoTemplate.findOne(latest, AnalyticsReport.class);
+        
+        // Changes older than the log retention may already have expired
+        LocalDateTime now = LocalDateTime.now();
+        if (previous == null || previous.getReportData() == null || previous.getReportData().getAppointmentData() == null
+                || changeLogPosition(now.minus(AppointmentChangeLogService.RETENTION)).compareTo(new ObjectId(previous.getWatermark())) > 0) {
+            return generateAppointmentReport(generatedBy, periodStart, periodEnd);
+        }
+        
+        // Leave the most recent seconds for the next refresh, so changes being written now are not skipped
+        ObjectId from = new ObjectId(previous.getWatermark());
+        ObjectId to = changeLogPosition(now.minusSeconds(CHANGE_LOG_SETTLE_SECONDS));
+        if (to.compareTo(from) < 0) {
+            to = from;
+        }
+        
+        // Entries the previous report already includes are skipped; those past this refresh stay skipped in the next
+        List<String> previouslyApplied = previous.getAppliedChangeIds() != null ? previous.getAppliedChangeIds() : List.of();
+        Criteria changes = Criteria.where("id").gte(from).lt(to);
+        if (!previouslyApplied.isEmpty()) {
+            changes.nin(previouslyApplied.stream().map(ObjectId::new).toList());
+        }
+        final ObjectId until = to;
+        List<String> stillApplied = previouslyApplied.stream()
+            .filter(id -> new ObjectId(id).compareTo(until) >= 0)
+            .toList();
+        
+        Aggregation deltasPipeline = Aggregation.newAggregation(
+            Aggregation.match(changes.andOperator(periodCriteria(periodStart, periodEnd))),
+            Aggregation.project("status", "doctorId", "doctorName", "delta")
+                .and(DateOperators.dateOf("appointmentDateTime")
+                    .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId()))
+                    .toString("%Y-%m-%d")).as("day"),
+            Aggregation.group("status", "doctorId", "doctorName", "day").sum("delta").as("delta")
+        );
+        List<Document> deltas = aggregate(deltasPipeline, AppointmentChange.class);
+        
+        AnalyticsReport report = new AnalyticsReport();
+        report.setReportId(generateReportId("APT"));
+        report.setReportType(AnalyticsReport.ReportType.APPOINTMENT_STATISTICS);
+        report.setGeneratedAt(now);
+        report.setReportPeriodStart(periodStart);
+        report.setReportPeriodEnd(periodEnd);
+        report.setGeneratedBy(generatedBy);
+        report.setWatermark(to.toHexString());
+        report.setBaseReportId(previous.getReportId());
+        report.setAppliedChangeIds(stillApplied);
+        
+        AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
+        reportData.setAppointmentData(applyDeltas(previous.getReportData().getAppointmentData(), deltas));
+        report.setReportData(reportData);
+        
+        return analyticsReportRepository.save(report);
+    }
+    
+    /**
+     * Add grouped change log deltas to a copy of an appointment statistics snapshot
+     */
+    private AnalyticsReport.AppointmentReportData applyDeltas(AnalyticsReport.AppointmentReportData previous, List<Document> deltas) {
+        AnalyticsReport.AppointmentReportData data = new AnalyticsReport.AppointmentReportData();
+        Map<String, Integer> byStatus = new HashMap<>();
+        byStatus.put(Appointment.AppointmentStatus.SCHEDULED.name(), previous.getScheduledAppointments());
+        byStatus.put(Appointment.AppointmentStatus.COMPLETED.name(), previous.getCompletedAppointments());
+        byStatus.put(Appointment.AppointmentStatus.CANCELLED.name(), previous.getCancelledAppointments());
+        byStatus.put(Appointment.AppointmentStatus.NO_SHOW.name(), previous.getNoShowAppointments());
+        Map<String, Integer> byDoctor = copyCounts(previous.getAppointmentsByDoctor());
+        Map<String, Integer> bySpecialization = copyCounts(previous.getAppointmentsBySpecialization());
+        Map<String, Integer> byHospital = copyCounts(previous.getAppointmentsByHospital());
+        Map<String, Integer> byDate = copyCounts(previous.getAppointmentsByDate());
+        int total = previous.getTotalAppointments();
+        
+        // Specialization and hospital come from the doctors touched since the snapshot
+        Set<String> doctorIds = new HashSet<>();
+        for (Document row : deltas) {
+            String doctorId = row.get("_id", Document.class).getString("doctorId");
+            if (doctorId != null) {
+                doctorIds.add(doctorId);
+            }
+        }
+        Map<String, Doctor> doctors = new HashMap<>();
+        doctorRepository.findAllById(doctorIds).forEach(doctor -> doctors.put(doctor.getId(), doctor));
+        
+        for (Document row : deltas) {
+            Document key = row.get("_id", Document.class);
+            int delta = toInt(row.get("delta"));
+            if (delta == 0) {
+                continue;
+            }
+            total += delta;
+            if (key.getString("status") != null) {
+                byStatus.merge(key.getString("status"), delta, Integer::sum);
+            }
+            byDoctor.merge(key.getString("doctorName") != null ? key.getString("doctorName") : "Unknown", delta, Integer::sum);
+            if (key.getString("day") != null) {
+                byDate.merge(key.getString("day"), delta, Integer::sum);
+            }
+            Doctor doctor = doctors.get(key.getString("doctorId"));
+            if (doctor != null) {
+                bySpecialization.merge(doctor.getSpecialization() != null ? doctor.getSpecialization() : "Not Specified", delta, Integer::sum);
+                if (doctor.getHospitalId() != null) {
+                    byHospital.merge(doctor.getHospitalId(), delta, Integer::sum);
+                }
+            }
+        }
+        
+        data.setTotalAppointments(total);
+        data.setScheduledAppointments(byStatus.get(Appointment.AppointmentStatus.SCHEDULED.name()));
+        data.setCompletedAppointments(byStatus.get(Appointment.AppointmentStatus.COMPLETED.name()));
+        data.setCancelledAppointments(byStatus.get(Appointment.AppointmentStatus.CANCELLED.name()));
+        data.setNoShowAppointments(byStatus.get(Appointment.AppointmentStatus.NO_SHOW.name()));
+        data.setAppointmentsByDoctor(withoutEmpty(byDoctor));
+        data.setAppointmentsBySpecialization(withoutEmpty(bySpecialization));
+        data.setAppointmentsByHospital(withoutEmpty(byHospital));
+        data.setAppointmentsByDate(withoutEmpty(byDate));
+        calculateRates(data);
+        return data;
+    }
+    
+    private void calculateRates(AnalyticsReport.AppointmentReportData appointmentData) {
+        int totalAppointments = appointmentData.getTotalAppointments();
+        if (totalAppointments > 0) {
+            appointmentData.setCompletionRate((double) appointmentData.getCompletedAppointments() / totalAppointments * 100);
+            appointmentData.setCancellationRate((double) appointmentData.getCancelledAppointments() / totalAppointments * 100);
+            appointmentData.setNoShowRate((double) appointmentData.getNoShowAppointments() / totalAppointments * 100);
+        }
+    }
+    
     /**
      * Generate a comprehensive system overview report
      */
@@ -361,15 +545,15 @@ public class AnalyticsReportService {
         AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
         AnalyticsReport.SystemOverviewData systemData = new AnalyticsReport.SystemOverviewData();
         
-        // Count all users
-        int adminCount = (int) userRepository.findAll().stream()
-            .filter(u -> u.getRole() == UserRole.ADMIN)
-            .count();
-        int staffCount = (int) userRepository.findAll().stream()
-            .filter(u -> u.getRole() == UserRole.STAFF)
-            .count();
-        int patientCount = (int) patientRepository.count();
-        int doctorCount = (int) doctorRepository.count();
+        // Count all users by role in one grouped query
+        Aggregation usersByRolePipeline = Aggregation.newAggregation(
+            Aggregation.group("role").count().as("count")
+        );
+        Map<String, Integer> roleCounts = toCounts(aggregate(usersByRolePipeline, User.class), null);
+        int adminCount = roleCounts.getOrDefault(UserRole.ADMIN.name(), 0);
+        int staffCount = roleCounts.getOrDefault(UserRole.STAFF.name(), 0);
+        int patientCount = roleCounts.getOrDefault(UserRole.PATIENT.name(), 0);
+        int doctorCount = roleCounts.getOrDefault(UserRole.DOCTOR.name(), 0);
         
         systemData.setTotalAdmins(adminCount);
         systemData.setTotalStaff(staffCount);
@@ -391,12 +575,11 @@ public class AnalyticsReportService {
         systemData.setUsersByRole(usersByRole);
         
         // Active vs Inactive
-        long activePatients = patientRepository.findAll().stream()
-            .filter(Patient::isActive)
-            .count();
+        long inactivePatients = mongoTemplate.count(
+            new Query(isRole(UserRole.PATIENT).and("active").is(false)), Patient.class);
         Map<String, Integer> activeVsInactive = new HashMap<>();
-        activeVsInactive.put("Active Patients", (int) activePatients);
-        activeVsInactive.put("Inactive Patients", patientCount - (int) activePatients);
+        activeVsInactive.put("Active Patients", patientCount - (int) inactivePatients);
+        activeVsInactive.put("Inactive Patients", (int) inactivePatients);
         systemData.setActiveVsInactiveUsers(activeVsInactive);
         
         reportData.setSystemData(systemData);
@@ -410,84 +593,152 @@ public class AnalyticsReportService {
         return prefix + "-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
     
-    private String getAgeGroup(Patient patient) {
-        if (patient.getDateOfBirth() == null) {
-            return "Unknown";
+    private Criteria periodCriteria(LocalDateTime periodStart, LocalDateTime periodEnd) {
+        if (periodStart != null && periodEnd != null) {
+            return Criteria.where("appointmentDateTime").gte(periodStart).lte(periodEnd);
         }
-        
-        int age = Period.between(patient.getDateOfBirth(), LocalDate.now()).getYears();
-        
-        if (age < 18) return "0-17";
-        else if (age < 30) return "18-29";
-        else if (age < 45) return "30-44";
-        else if (age < 60) return "45-59";
-        else return "60+";
+        return new Criteria();
+    }
+    
+    /**
+     * Position in the appointment change log before any entry written at or after the given time
+     */
+    private static ObjectId changeLogPosition(LocalDateTime time) {
+        return ObjectId.getSmallestWithDate(Date.from(time.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+    
+    /**
+     * Ids of the change log entries for the period at or after a log position, in log order
+     */
+    private List<String> changeIdsSince(ObjectId position, LocalDateTime periodStart, LocalDateTime periodEnd) {
+        Query query = new Query(Criteria.where("id").gte(position).andOperator(periodCriteria(periodStart, periodEnd)))
+            .with(Sort.by("id"));
+        query.fields().include("id");
+        return mongoTemplate.find(query, AppointmentChange.class).stream()
+            .map(AppointmentChange::getId)
+            .toList();
+    }
+    
+    private static Map<String, Integer> copyCounts(Map<String, Integer> counts) {
+        return counts != null ? new HashMap<>(counts) : new HashMap<>();
     }
     
-    private AnalyticsReport.PatientDetail createPatientDetail(Patient patient) {
+    private static Map<String, Integer> withoutEmpty(Map<String, Integer> counts) {
+        counts.values().removeIf(count -> count <= 0);
+        return counts;
+    }
+    
+    private Criteria isRole(UserRole role) {
+        return Criteria.where("role").is(role.name());
+    }
+    
+    private List<Document> aggregate(Aggregation aggregation, Class<?> inputType) {
+        return mongoTemplate.aggregate(aggregation, inputType, Document.class).getMappedResults();
+    }
+    
+    /**
+     * Run a pipeline ending in $facet and return its single result document
+     */
+    private Document facetResult(Aggregation aggregation, Class<?> inputType) {
+        List<Document> results = aggregate(aggregation, inputType);
+        return results.isEmpty() ? new Document() : results.get(0);
+    }
+    
+    /**
+     * Run a pipeline ending in $count 'n' and return the count
+     */
+    private int singleCount(Aggregation aggregation, Class<?> inputType) {
+        List<Document> results = aggregate(aggregation, inputType);
+        return results.isEmpty() ? 0 : toInt(results.get(0).get("n"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Document> facetRows(Document facetResult, String facet) {
+        Object rows = facetResult.get(facet);
+        return rows instanceof List ? (List<Document>) rows : List.of();
+    }
+    
+    private int facetCount(Document facetResult, String facet) {
+        List<Document> rows = facetRows(facetResult, facet);
+        return rows.isEmpty() ? 0 : toInt(rows.get(0).get("n"));
+    }
+    
+    private Map<String, Integer> facetGroups(Document facetResult, String facet, String nullLabel) {
+        return toCounts(facetRows(facetResult, facet), nullLabel);
+    }
+    
+    /**
+     * Convert {_id, count} group rows to a map
+     * @param nullLabel - Key for the null group, or null to drop it
+     */
+    private Map<String, Integer> toCounts(List<Document> rows, String nullLabel) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Document row : rows) {
+            Object key = row.get("_id");
+            String label = key != null ? key.toString() : nullLabel;
+            if (label != null) {
+                counts.merge(label, toInt(row.get("count")), Integer::sum);
+            }
+        }
+        return counts;
+    }
+    
+    private void putIfPositive(Map<String, Integer> counts, String key, int count) {
+        if (count > 0) {
+            counts.put(key, count);
+        }
+    }
+    
+    private static int toInt(Object value) {
+        return value instanceof Number number ? number.intValue() : 0;
+    }
+    
+    private AnalyticsReport.PatientDetail toPatientDetail(LeaderboardEntry entry) {
         AnalyticsReport.PatientDetail detail = new AnalyticsReport.PatientDetail();
-        detail.setPatientId(patient.getId());  // Use MongoDB ObjectId
-        detail.setPatientName(patient.getName());
-        detail.setTotalAppointments(patient.getAppointments() != null ? patient.getAppointments().size() : 0);
-        detail.setTotalMedicalRecords(patient.getMedicalRecords() != null ? patient.getMedicalRecords().size() : 0);
+        detail.setPatientId(entry.getSubjectId());  // Use MongoDB ObjectId
+        detail.setPatientName(entry.getName());
+        detail.setTotalAppointments((int) entry.getAppointments());
+        detail.setTotalMedicalRecords((int) entry.getMedicalRecords());
         detail.setTotalVisits(detail.getTotalAppointments() + detail.getTotalMedicalRecords());
         return detail;
     }
     
-    private AnalyticsReport.DoctorPerformance createDoctorPerformance(Doctor doctor) {
+    private AnalyticsReport.DoctorPerformance toDoctorPerformance(LeaderboardEntry entry, String specialization) {
         AnalyticsReport.DoctorPerformance performance = new AnalyticsReport.DoctorPerformance();
-        performance.setDoctorId(doctor.getId());  // Use MongoDB ObjectId
-        performance.setDoctorName(doctor.getName());
-        performance.setSpecialization(doctor.getSpecialization());
+        performance.setDoctorId(entry.getSubjectId());  // Use MongoDB ObjectId
+        performance.setDoctorName(entry.getName());
+        performance.setSpecialization(specialization);
         
-        List<Appointment> appointments = doctor.getAppointments();
-        int total = appointments != null ? appointments.size() : 0;
-        performance.setTotalAppointments(total);
+        int total = (int) entry.getAppointments();
+        int completed = (int) entry.getCompletedAppointments();
         
-        if (appointments != null) {
-            long completed = appointments.stream()
-                .filter(a -> a.getStatus() == Appointment.AppointmentStatus.COMPLETED)
-                .count();
-            long cancelled = appointments.stream()
-                .filter(a -> a.getStatus() == Appointment.AppointmentStatus.CANCELLED)
-                .count();
-            
-            performance.setCompletedAppointments((int) completed);
-            performance.setCancelledAppointments((int) cancelled);
-            performance.setCompletionRate(total > 0 ? (double) completed / total * 100 : 0.0);
-        }
-        
-        performance.setTotalMedicalRecords(doctor.getMedicalRecords() != null ? doctor.getMedicalRecords().size() : 0);
+        performance.setTotalAppointments(total);
+        performance.setCompletedAppointments(completed);
+        performance.setCancelledAppointments((int) entry.getCancelledAppointments());
+        performance.setCompletionRate(total > 0 ? (double) completed / total * 100 : 0.0);
+        performance.setTotalMedicalRecords((int) entry.getMedicalRecords());
         
         return performance;
     }
     
-    private AnalyticsReport.HospitalMetrics createHospitalMetrics(Hospital hospital) {
+    private AnalyticsReport.HospitalMetrics toHospitalMetrics(Document row, Map<String, Integer> appointmentsByDoctor) {
         AnalyticsReport.HospitalMetrics metrics = new AnalyticsReport.HospitalMetrics();
-        metrics.setHospitalId(hospital.getId());  // Use MongoDB ObjectId
-        metrics.setHospitalName(hospital.getName());
-        metrics.setType(hospital.getType() != null ? hospital.getType().toString() : "Unknown");
-        metrics.setTotalDoctors(hospital.getDoctors() != null ? hospital.getDoctors().size() : 0);
-        metrics.setTotalPatients(hospital.getPatients() != null ? hospital.getPatients().size() : 0);
-    // Include hospitalCharges (may be null)
-    metrics.setHospitalCharges(hospital.getHospitalCharges() != null ? hospital.getHospitalCharges() : java.math.BigDecimal.ZERO);
-        
-        // Calculate total appointments from all doctors
-        int totalAppointments = 0;
-        Map<String, Integer> doctorsBySpec = new HashMap<>();
-        
-        if (hospital.getDoctors() != null) {
-            for (Doctor doctor : hospital.getDoctors()) {
-                if (doctor.getAppointments() != null) {
-                    totalAppointments += doctor.getAppointments().size();
-                }
-                String spec = doctor.getSpecialization() != null ? doctor.getSpecialization() : "Not Specified";
-                doctorsBySpec.put(spec, doctorsBySpec.getOrDefault(spec, 0) + 1);
-            }
-        }
-        
-        metrics.setTotalAppointments(totalAppointments);
-        metrics.setDoctorsBySpecialization(doctorsBySpec);
+        metrics.setHospitalId(row.get("_id").toString());  // Use MongoDB ObjectId
+        metrics.setHospitalName(row.getString("name"));
+        metrics.setType(row.getString("type") != null ? row.getString("type") : "Unknown");
+        metrics.setTotalDoctors(toInt(row.get("totalDoctors")));
+        metrics.setTotalPatients(toInt(row.get("totalPatients")));
+        // Include hospitalCharges (may be null; stored as a string or Decimal128)
+        Object charges = row.get("hospitalCharges");
+        metrics.setHospitalCharges(charges != null ? new BigDecimal(charges.toString()) : BigDecimal.ZERO);
+        
+        metrics.setTotalAppointments(row.getList("doctorKeys", String.class, List.of()).stream()
+            .mapToInt(doctorId -> appointmentsByDoctor.getOrDefault(doctorId, 0))
+            .sum());
+        Map<String, Integer> bySpecialization = new HashMap<>();
+        row.getList("specializations", String.class, List.of())
+            .forEach(specialization -> bySpecialization.merge(specialization, 1, Integer::sum));
+        metrics.setDoctorsBySpecialization(bySpecialization);
         
         return metrics;
     }
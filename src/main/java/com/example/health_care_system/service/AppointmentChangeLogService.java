@@ -0,0 +1,67 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.AppointmentChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Appends every appointment change to the appointment change log
+ * A change is recorded as the old state leaving the counts and the new state entering them,
+ * so a report refresh only has to sum the entries written since its previous snapshot.
+ */
+@Service
+public class AppointmentChangeLogService {
+
+    // Matches the TTL index on AppointmentChange.createdAt
+    public static final Duration RETENTION = Duration.ofDays(7);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Appointment appointment = event.appointment();
+        if (Objects.equals(event.previousDateTime(), appointment.getAppointmentDateTime())
+                && event.previousStatus() == appointment.getStatus()) {
+            return;
+        }
+
+        List<AppointmentChange> changes = new ArrayList<>();
+        if (event.previousDateTime() != null || event.previousStatus() != null) {
+            changes.add(change(appointment,
+                event.previousDateTime() != null ? event.previousDateTime() : appointment.getAppointmentDateTime(),
+                event.previousStatus() != null ? event.previousStatus() : appointment.getStatus(),
+                -1));
+        }
+        changes.add(change(appointment, appointment.getAppointmentDateTime(), appointment.getStatus(), 1));
+
+        try {
+            mongoTemplate.insertAll(changes);
+        } catch (Exception e) {
+            // Never fail the booking flow; the next full report recomputes from the appointments
+            System.err.println("Failed to log change of appointment " + appointment.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private AppointmentChange change(Appointment appointment, LocalDateTime dateTime,
+                                     Appointment.AppointmentStatus status, int delta) {
+        AppointmentChange change = new AppointmentChange();
+        change.setAppointmentId(appointment.getId());
+        change.setAppointmentDateTime(dateTime);
+        change.setStatus(status);
+        change.setDoctorId(appointment.getDoctorId());
+        change.setDoctorName(appointment.getDoctorName());
+        change.setDelta(delta);
+        change.setCreatedAt(LocalDateTime.now());
+        return change;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published after an appointment is created or its date/time or status changes
+ * @param previousDateTime - Date/time before the change (null for a new appointment)
+ * @param previousStatus - Status before the change (null for a new appointment)
+ */
+public record AppointmentChangedEvent(Appointment appointment,
+                                      LocalDateTime previousDateTime,
+                                      Appointment.AppointmentStatus previousStatus) {
+
+    public static AppointmentChangedEvent created(Appointment appointment) {
+        return new AppointmentChangedEvent(appointment, null, null);
+    }
+}
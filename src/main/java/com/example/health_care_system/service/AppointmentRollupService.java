@@ -0,0 +1,347 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.AppointmentDailyRollup;
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.repository.DoctorRepository;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps per-day appointment counters (by status, hour, doctor and specialization)
+ * so the analytics dashboard reads one small document per day instead of every appointment.
+ * Counters are moved with $inc on each AppointmentChangedEvent; rebuild() recomputes
+ * them from the appointments collection into a staging collection and renames it over
+ * the live one, then recounts the days that live updates touched while it ran.
+ */
+@Service
+public class AppointmentRollupService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private StreamingAggregator streamingAggregator;
+
+    static final String ROLLUP_COLLECTION = "appointment_rollups";
+    static final String STAGING_COLLECTION = "appointment_rollups_rebuild";
+
+    // Specialization is copied into the counters; doctors rarely change it
+    private final Map<String, String> specializationByDoctor = new ConcurrentHashMap<>();
+
+    // Days changed by live updates while a rebuild runs; null when no rebuild is running
+    private Set<LocalDate> dirtyDays;
+    private final Object dirtyDaysLock = new Object();
+
+    /**
+     * Move the appointment's counters from its previous bucket to its current one
+     */
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Appointment appointment = event.appointment();
+        if (Objects.equals(event.previousDateTime(), appointment.getAppointmentDateTime())
+                && event.previousStatus() == appointment.getStatus()) {
+            return;
+        }
+
+        try {
+            Map<LocalDate, Map<String, Long>> deltas = new HashMap<>();
+            if (event.previousDateTime() != null) {
+                addCounters(deltas, appointment, event.previousDateTime(), event.previousStatus(), -1);
+            }
+            addCounters(deltas, appointment, appointment.getAppointmentDateTime(), appointment.getStatus(), 1);
+            deltas.forEach((date, counters) -> apply(date, counters, appointment));
+            // After applying, so a rebuild that recounts the day also sees this change
+            markDirty(deltas.keySet());
+        } catch (Exception e) {
+            // Never fail the booking flow; rebuild() repairs drifted counters
+            System.err.println("Failed to update appointment rollups for " + appointment.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forget a doctor's cached specialization so the next counter update reads it again
+     */
+    @EventListener
+    public void onDoctorChanged(DoctorChangedEvent event) {
+        specializationByDoctor.remove(event.doctor().getId());
+    }
+
+    /**
+     * Get the daily rollups between two dates (inclusive), ordered by date
+     */
+    public List<AppointmentDailyRollup> getRollups(LocalDate startDate, LocalDate endDate) {
+        Query query = new Query(Criteria.where("date").gte(startDate).lte(endDate));
+        query.with(Sort.by("date"));
+        return mongoTemplate.find(query, AppointmentDailyRollup.class);
+    }
+
+    /**
+     * Add up several daily rollups into one
+     */
+    public AppointmentDailyRollup combine(List<AppointmentDailyRollup> rollups) {
+        AppointmentDailyRollup combined = new AppointmentDailyRollup();
+        for (AppointmentDailyRollup rollup : rollups) {
+            combined.setTotal(combined.getTotal() + rollup.getTotal());
+            mergeCounts(combined.getByStatus(), rollup.getByStatus());
+            mergeCounts(combined.getByHour(), rollup.getByHour());
+            mergeCounts(combined.getByDoctor(), rollup.getByDoctor());
+            mergeCounts(combined.getBySpecialization(), rollup.getBySpecialization());
+            if (rollup.getDoctorNames() != null) {
+                combined.getDoctorNames().putAll(rollup.getDoctorNames());
+            }
+            if (rollup.getSpecializationNames() != null) {
+                combined.getSpecializationNames().putAll(rollup.getSpecializationNames());
+            }
+        }
+        return combined;
+    }
+
+    /**
+     * Count distinct patients with an appointment in the date range
+     * Patient identities cannot be summed from counters, so this uses the appointmentDateTime index
+     */
+    public long countDistinctPatients(LocalDate startDate, LocalDate endDate) {
+        Query query = new Query(Criteria.where("appointmentDateTime")
+            .gte(startDate.atStartOfDay())
+            .lt(endDate.plusDays(1).atStartOfDay()));
+        return mongoTemplate.findDistinct(query, "patientId", Appointment.class, String.class).size();
+    }
+
+    /**
+     * Build the rollups on first start, when the collection is still empty
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!mongoTemplate.exists(new Query(), AppointmentDailyRollup.class)
+                    && mongoTemplate.exists(new Query(), Appointment.class)) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to initialize appointment rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recompute every rollup from the appointments collection in one streaming pass
+     * Days are written to a staging collection that then replaces the live one, so readers
+     * never see missing days. Live $incs that land while the rebuild runs are lost with the
+     * old collection, so every day they touched is recounted afterwards until none is left.
+     * @return number of days written
+     */
+    public synchronized int rebuild() {
+        synchronized (dirtyDaysLock) {
+            dirtyDays = new HashSet<>();
+        }
+        try {
+            Map<LocalDate, Map<String, Long>> counters = new TreeMap<>();
+            Map<LocalDate, Map<String, String>> names = new HashMap<>();
+
+            Query query = new Query(Criteria.where("appointmentDateTime").ne(null).and("status").ne(null));
+            query.fields().include("appointmentDateTime", "status", "doctorId", "doctorName");
+            long scanned = streamingAggregator.aggregate(query, Appointment.class,
+                apt -> addCounters(counters, apt, apt.getAppointmentDateTime(), apt.getStatus(), 1),
+                apt -> names.computeIfAbsent(apt.getAppointmentDateTime().toLocalDate(), date -> new HashMap<>())
+                    .putAll(names(apt)));
+
+            mongoTemplate.dropCollection(STAGING_COLLECTION);
+            mongoTemplate.indexOps(STAGING_COLLECTION).ensureIndex(new Index("date", Sort.Direction.ASC));
+            counters.forEach((date, dayCounters) -> mongoTemplate.upsert(
+                new Query(Criteria.where("id").is(date.toString())),
+                toReplacement(date, dayCounters, names.getOrDefault(date, Map.of())),
+                AppointmentDailyRollup.class, STAGING_COLLECTION));
+            mongoTemplate.getCollection(STAGING_COLLECTION).renameCollection(
+                new MongoNamespace(mongoTemplate.getDb().getName(), ROLLUP_COLLECTION),
+                new RenameCollectionOptions().dropTarget(true));
+
+            int recounted = recountDirtyDays();
+            System.out.println("Rebuilt appointment rollups for " + counters.size() + " days from " + scanned
+                + " appointments (" + recounted + " days recounted after live updates)");
+            return counters.size();
+        } finally {
+            synchronized (dirtyDaysLock) {
+                dirtyDays = null;
+            }
+        }
+    }
+
+    /**
+     * Recount the days marked dirty during a rebuild, until no more are marked
+     * @return number of day recounts
+     */
+    private int recountDirtyDays() {
+        int recounted = 0;
+        while (true) {
+            Set<LocalDate> days;
+            synchronized (dirtyDaysLock) {
+                if (dirtyDays.isEmpty()) {
+                    return recounted;
+                }
+                days = dirtyDays;
+                dirtyDays = new HashSet<>();
+            }
+            for (LocalDate date : days) {
+                recountDay(date);
+                recounted++;
+            }
+        }
+    }
+
+    /**
+     * Overwrite one day's rollup with counters recomputed from its appointments
+     */
+    private void recountDay(LocalDate date) {
+        Map<LocalDate, Map<String, Long>> counters = new HashMap<>();
+        Map<String, String> names = new HashMap<>();
+
+        Query query = new Query(Criteria.where("appointmentDateTime")
+            .gte(date.atStartOfDay())
+            .lt(date.plusDays(1).atStartOfDay())
+            .and("status").ne(null));
+        query.fields().include("appointmentDateTime", "status", "doctorId", "doctorName");
+        streamingAggregator.aggregate(query, Appointment.class, apt -> {
+            addCounters(counters, apt, apt.getAppointmentDateTime(), apt.getStatus(), 1);
+            names.putAll(names(apt));
+        });
+
+        Query day = new Query(Criteria.where("id").is(date.toString()));
+        if (counters.containsKey(date)) {
+            mongoTemplate.upsert(day, toReplacement(date, counters.get(date), names), AppointmentDailyRollup.class);
+        } else {
+            mongoTemplate.remove(day, AppointmentDailyRollup.class);
+        }
+    }
+
+    private void markDirty(Set<LocalDate> days) {
+        synchronized (dirtyDaysLock) {
+            if (dirtyDays != null) {
+                dirtyDays.addAll(days);
+            }
+        }
+    }
+
+    private void apply(LocalDate date, Map<String, Long> counters, Appointment appointment) {
+        counters.values().removeIf(value -> value == 0);
+        if (counters.isEmpty()) {
+            return;
+        }
+        Update update = toUpdate(date, counters);
+        names(appointment).forEach(update::set);
+        mongoTemplate.upsert(new Query(Criteria.where("id").is(date.toString())), update, AppointmentDailyRollup.class);
+    }
+
+    private Update toUpdate(LocalDate date, Map<String, Long> counters) {
+        Update update = new Update().setOnInsert("date", date);
+        counters.forEach(update::inc);
+        return update;
+    }
+
+    /**
+     * Update that sets every field of a day's rollup, replacing whatever counters it had
+     */
+    private Update toReplacement(LocalDate date, Map<String, Long> counters, Map<String, String> names) {
+        Update update = new Update()
+            .set("date", date)
+            .set("total", counters.getOrDefault("total", 0L));
+        toMaps(counters, List.of("byStatus", "byHour", "byDoctor", "bySpecialization")).forEach(update::set);
+        toMaps(names, List.of("doctorNames", "specializationNames")).forEach(update::set);
+        return update;
+    }
+
+    /**
+     * Group "field.key" paths into one map per field
+     */
+    private static <V> Map<String, Map<String, V>> toMaps(Map<String, V> paths, List<String> fields) {
+        Map<String, Map<String, V>> maps = new HashMap<>();
+        for (String field : fields) {
+            maps.put(field, new HashMap<>());
+        }
+        paths.forEach((path, value) -> {
+            int dot = path.indexOf('.');
+            if (dot > 0) {
+                maps.get(path.substring(0, dot)).put(path.substring(dot + 1), value);
+            }
+        });
+        return maps;
+    }
+
+    /**
+     * Display names of the doctor and specialization keys an appointment is counted under
+     * @return "doctorNames.<key>" / "specializationNames.<key>" paths to names
+     */
+    private Map<String, String> names(Appointment appointment) {
+        Map<String, String> names = new HashMap<>();
+        if (appointment.getDoctorId() != null) {
+            if (appointment.getDoctorName() != null) {
+                names.put("doctorNames." + key(appointment.getDoctorId()), appointment.getDoctorName());
+            }
+            String specialization = getSpecialization(appointment.getDoctorId());
+            if (!specialization.isEmpty()) {
+                names.put("specializationNames." + key(specialization), specialization);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Add the counter deltas for one appointment state to the day it falls on
+     * Deltas for the same day are merged so a status change becomes a single update
+     */
+    private void addCounters(Map<LocalDate, Map<String, Long>> deltas, Appointment appointment,
+                             LocalDateTime dateTime, Appointment.AppointmentStatus status, long delta) {
+        if (dateTime == null) {
+            return;
+        }
+        Map<String, Long> counters = deltas.computeIfAbsent(dateTime.toLocalDate(), date -> new HashMap<>());
+        counters.merge("total", delta, Long::sum);
+        counters.merge("byHour." + String.format("%02d", dateTime.getHour()), delta, Long::sum);
+        if (status != null) {
+            counters.merge("byStatus." + status.name(), delta, Long::sum);
+        }
+        if (appointment.getDoctorId() != null) {
+            counters.merge("byDoctor." + key(appointment.getDoctorId()), delta, Long::sum);
+            String specialization = getSpecialization(appointment.getDoctorId());
+            if (!specialization.isEmpty()) {
+                counters.merge("bySpecialization." + key(specialization), delta, Long::sum);
+            }
+        }
+    }
+
+    private String getSpecialization(String doctorId) {
+        // Misses are not cached, so a doctor created later is picked up
+        String specialization = specializationByDoctor.computeIfAbsent(doctorId, id -> doctorRepository.findById(id)
+            .map(Doctor::getSpecialization)
+            .orElse(null));
+        return specialization != null ? specialization : "";
+    }
+
+    private static void mergeCounts(Map<String, Long> target, Map<String, Long> source) {
+        if (source != null) {
+            source.forEach((key, count) -> target.merge(key, count, Long::sum));
+        }
+    }
+
+    // MongoDB field names cannot contain '.' or start with '$'; doctorNames/specializationNames keep the original
+    private static String key(String value) {
+        return value.replace('.', '_').replace('$', '_');
+    }
+}
@@ -2,13 +2,15 @@ package com.example.health_care_system.service;
 
 import com.example.health_care_system.model.Appointment;
 import com.example.health_care_system.model.Doctor;
-import com.example.health_care_system.model.Patient;
-import com.example.health_care_system.model.TimeSlotReservation;
 import com.example.health_care_system.repository.AppointmentRepository;
 import com.example.health_care_system.repository.DoctorRepository;
 import com.example.health_care_system.repository.PatientRepository;
-import com.example.health_care_system.repository.TimeSlotReservationRepository;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,7 +33,16 @@ public class AppointmentService {
     private PatientRepository patientRepository;
     
     @Autowired
-    private TimeSlotReservationRepository reservationRepository;
+    private SlotAvailabilityIndex slotIndex;
+    
+    @Autowired
+    private SlotLockManager slotLockManager;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
     // Working hours configuration
     private static final LocalTime WORKING_START = LocalTime.of(9, 0);  // 9:00 AM
@@ -40,6 +51,9 @@ public class AppointmentService {
     private static final LocalTime LUNCH_END = LocalTime.of(14, 0);     // 2:00 PM
     private static final int SLOT_DURATION_MINUTES = 30;                 // 30-minute slots
     
+    private static final String SLOT_LOCKED_MESSAGE =
+        "This time slot is being booked by another patient. Please select a different time.";
+    
     /**
      * Get available time slots for a doctor on a specific date
      * Excludes booked appointments and currently reserved slots
@@ -65,34 +79,9 @@ public class AppointmentService {
         
         List<LocalTime> allSlots = generateAllTimeSlots();
         
-        // Get existing appointments for this doctor on this date
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(23, 59, 59);
-        
-        List<Appointment> existingAppointments = appointmentRepository
-            .findByDoctorIdAndAppointmentDateTimeBetween(doctorId, startOfDay, endOfDay)
-            .stream()
-            .filter(apt -> apt.getStatus() == Appointment.AppointmentStatus.SCHEDULED)
-            .toList();
-        
-        // Remove booked slots
-        Set<LocalTime> bookedSlots = existingAppointments.stream()
-            .map(apt -> apt.getAppointmentDateTime().toLocalTime())
-            .collect(Collectors.toSet());
-        
-        // Get active reservations for this doctor (excluding the current patient)
-        List<TimeSlotReservation> activeReservations = reservationRepository
-            .findByDoctorIdAndStatus(
-                doctorId, 
-                TimeSlotReservation.ReservationStatus.ACTIVE
-            );
-        
-        // Filter reservations for the specific date and exclude current patient's reservations
-        Set<LocalTime> reservedSlots = activeReservations.stream()
-            .filter(res -> res.getSlotDateTime().toLocalDate().equals(date))
-            .filter(res -> excludePatientId == null || !res.getPatientId().equals(excludePatientId))
-            .map(res -> res.getSlotDateTime().toLocalTime())
-            .collect(Collectors.toSet());
+        // Booked and reserved slots come from the in-memory index (loaded from MongoDB on first use)
+        Set<LocalTime> bookedSlots = slotIndex.getBookedSlots(doctorId, date);
+        Set<LocalTime> reservedSlots = slotIndex.getReservedSlots(doctorId, date, excludePatientId);
         
         // Filter out booked and reserved slots
         List<LocalTime> availableSlots = allSlots.stream()
@@ -116,22 +105,9 @@ public class AppointmentService {
      * @param excludePatientId - Patient ID to exclude from reserved slots (their own reservation)
      */
     public List<LocalTime> getReservedTimeSlots(String doctorId, LocalDate date, String excludePatientId) {
-        // Get active reservations for this doctor
-        List<TimeSlotReservation> activeReservations = reservationRepository
-            .findByDoctorIdAndStatus(
-                doctorId, 
-                TimeSlotReservation.ReservationStatus.ACTIVE
-            );
-        
-        // Filter reservations for the specific date and exclude current patient's reservations
-        List<LocalTime> reservedSlots = activeReservations.stream()
-            .filter(res -> res.getSlotDateTime().toLocalDate().equals(date))
-            .filter(res -> excludePatientId == null || !res.getPatientId().equals(excludePatientId))
-            .map(res -> res.getSlotDateTime().toLocalTime())
+        return slotIndex.getReservedSlots(doctorId, date, excludePatientId).stream()
             .sorted()
             .collect(Collectors.toList());
-        
-        return reservedSlots;
     }
     
     /**
@@ -178,69 +154,72 @@ public class AppointmentService {
             String purpose,
             String notes) {
         
-        // Validate doctor exists
-        Doctor doctor = doctorRepository.findById(doctorId)
-            .orElseThrow(() -> new RuntimeException("Doctor not found"));
-        
-        // Validate patient exists
-        Patient patient = patientRepository.findById(patientId)
-            .orElseThrow(() -> new RuntimeException("Patient not found"));
-        
-        // CRITICAL: Check if appointment already exists for this exact time slot (prevent double booking)
-        List<Appointment> existingAppointments = appointmentRepository
-            .findByDoctorIdAndAppointmentDateTimeBetween(
-                doctorId, 
-                appointmentDateTime.minusSeconds(1), 
-                appointmentDateTime.plusSeconds(1)
-            );
-        
-        // Check if any scheduled appointment exists for this slot
-        boolean slotAlreadyBooked = existingAppointments.stream()
-            .anyMatch(apt -> apt.getStatus() == Appointment.AppointmentStatus.SCHEDULED);
-        
-        if (slotAlreadyBooked) {
-            throw new RuntimeException("This time slot has just been booked by another patient. Please select a different time.");
-        }
-        
-        // Additional validation: Check if the time slot is in the available slots
-        LocalDate date = appointmentDateTime.toLocalDate();
-        List<LocalTime> availableSlots = getAvailableTimeSlots(doctorId, date);
-        
-        if (!availableSlots.contains(appointmentDateTime.toLocalTime())) {
-            throw new RuntimeException("Selected time slot is no longer available");
-        }
-        
-        // Create appointment (using MongoDB ObjectIds)
-        Appointment appointment = new Appointment();
-        appointment.setPatientId(patientId);  // MongoDB ObjectId
-        appointment.setPatientName(patientName);
-        appointment.setDoctorId(doctorId);  // MongoDB ObjectId
-        appointment.setDoctorName(doctor.getName());
-        appointment.setAppointmentDateTime(appointmentDateTime);
-        appointment.setPurpose(purpose != null ? purpose : "General Consultation");
-        appointment.setNotes(notes);
-        appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
-        appointment.setCreatedAt(LocalDateTime.now());
-        appointment.setUpdatedAt(LocalDateTime.now());
-        
-        // Save appointment (MongoDB will auto-generate the id)
-        Appointment savedAppointment = appointmentRepository.save(appointment);
-        
-        // Update patient's appointments list
-        if (patient.getAppointments() == null) {
-            patient.setAppointments(new ArrayList<>());
-        }
-        patient.getAppointments().add(savedAppointment);
-        patientRepository.save(patient);
-        
-        // Update doctor's appointments list
-        if (doctor.getAppointments() == null) {
-            doctor.setAppointments(new ArrayList<>());
+        // Only one booking per doctor slot proceeds at a time; the others fail fast
+        // here instead of racing through the lookups below to the unique index
+        try (SlotLockManager.SlotLock lock = slotLockManager.tryLock(doctorId, appointmentDateTime)) {
+            if (lock == null) {
+                throw new RuntimeException(SLOT_LOCKED_MESSAGE);
+            }
+            
+            // Cheap in-memory check before touching the database
+            if (slotIndex.isBooked(doctorId, appointmentDateTime)) {
+                throw new RuntimeException("This time slot has just been booked by another patient. Please select a different time.");
+            }
+            
+            // CRITICAL: Check if appointment already exists for this exact time slot (prevent double booking)
+            List<Appointment> existingAppointments = appointmentRepository
+                .findByDoctorIdAndAppointmentDateTimeBetween(
+                    doctorId, 
+                    appointmentDateTime.minusSeconds(1), 
+                    appointmentDateTime.plusSeconds(1)
+                );
+            
+            // Check if any scheduled appointment exists for this slot
+            boolean slotAlreadyBooked = existingAppointments.stream()
+                .anyMatch(apt -> apt.getStatus() == Appointment.AppointmentStatus.SCHEDULED);
+            
+            if (slotAlreadyBooked) {
+                throw new RuntimeException("This time slot has just been booked by another patient. Please select a different time.");
+            }
+            
+            // Additional validation: Check if the time slot is in the available slots
+            LocalDate date = appointmentDateTime.toLocalDate();
+            List<LocalTime> availableSlots = getAvailableTimeSlots(doctorId, date);
+            
+            if (!availableSlots.contains(appointmentDateTime.toLocalTime())) {
+                throw new RuntimeException("Selected time slot is no longer available");
+            }
+            
+            // Validate doctor exists
+            Doctor doctor = doctorRepository.findById(doctorId)
+                .orElseThrow(() -> new RuntimeException("Doctor not found"));
+            
+            // Validate patient exists
+            if (!patientRepository.existsById(patientId)) {
+                throw new RuntimeException("Patient not found");
+            }
+            
+            // Create appointment (using MongoDB ObjectIds)
+            Appointment appointment = new Appointment();
+            appointment.setPatientId(patientId);  // MongoDB ObjectId
+            appointment.setPatientName(patientName);
+            appointment.setDoctorId(doctorId);  // MongoDB ObjectId
+            appointment.setDoctorName(doctor.getName());
+            appointment.setAppointmentDateTime(appointmentDateTime);
+            appointment.setPurpose(purpose != null ? purpose : "General Consultation");
+            appointment.setNotes(notes);
+            appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+            appointment.setCreatedAt(LocalDateTime.now());
+            appointment.setUpdatedAt(LocalDateTime.now());
+            
+            // Save appointment (MongoDB will auto-generate the id)
+            // Patient and doctor documents are not touched; their appointments are queried by id
+            Appointment savedAppointment = appointmentRepository.save(appointment);
+            slotIndex.markBooked(doctorId, appointmentDateTime);
+            eventPublisher.publishEvent(AppointmentChangedEvent.created(savedAppointment));
+            
+            return savedAppointment;
         }
-        doctor.getAppointments().add(savedAppointment);
-        doctorRepository.save(doctor);
-        
-        return savedAppointment;
     }
     
     /**
@@ -272,6 +251,23 @@ public class AppointmentService {
         return appointmentRepository.findByDoctorId(doctorId);
     }
     
+    /**
+     * Count appointments per doctor for the given doctors in one grouped query
+     * Doctors without appointments are absent from the map
+     */
+    public Map<String, Long> countAppointmentsByDoctor(Collection<String> doctorIds) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("doctorId").in(doctorIds)),
+            Aggregation.group("doctorId").count().as("count")
+        );
+        
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Appointment.class, Document.class).getMappedResults()) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+    
     /**
      * Cancel an appointment
      */
@@ -292,6 +288,9 @@ public class AppointmentService {
         appointment.setStatus(Appointment.AppointmentStatus.CANCELLED);
         appointment.setUpdatedAt(LocalDateTime.now());
         appointmentRepository.save(appointment);
+        slotIndex.markFree(appointment.getDoctorId(), appointment.getAppointmentDateTime());
+        eventPublisher.publishEvent(new AppointmentChangedEvent(
+            appointment, appointment.getAppointmentDateTime(), Appointment.AppointmentStatus.SCHEDULED));
     }
     
     /**
@@ -301,12 +300,20 @@ public class AppointmentService {
         Appointment appointment = appointmentRepository.findById(appointmentId)
             .orElseThrow(() -> new RuntimeException("Appointment not found"));
         
+        Appointment.AppointmentStatus previousStatus = appointment.getStatus();
+        boolean wasScheduled = previousStatus == Appointment.AppointmentStatus.SCHEDULED;
+        
         appointment.setStatus(Appointment.AppointmentStatus.COMPLETED);
         if (notes != null && !notes.isEmpty()) {
             appointment.setNotes(appointment.getNotes() + "\n" + notes);
         }
         appointment.setUpdatedAt(LocalDateTime.now());
         appointmentRepository.save(appointment);
+        if (wasScheduled) {
+            slotIndex.markFree(appointment.getDoctorId(), appointment.getAppointmentDateTime());
+        }
+        eventPublisher.publishEvent(new AppointmentChangedEvent(
+            appointment, appointment.getAppointmentDateTime(), previousStatus));
     }
     
     /**
@@ -316,9 +323,17 @@ public class AppointmentService {
         Appointment appointment = appointmentRepository.findById(appointmentId)
             .orElseThrow(() -> new RuntimeException("Appointment not found"));
         
+        Appointment.AppointmentStatus previousStatus = appointment.getStatus();
+        boolean wasScheduled = previousStatus == Appointment.AppointmentStatus.SCHEDULED;
+        
         appointment.setStatus(Appointment.AppointmentStatus.NO_SHOW);
         appointment.setUpdatedAt(LocalDateTime.now());
         appointmentRepository.save(appointment);
+        if (wasScheduled) {
+            slotIndex.markFree(appointment.getDoctorId(), appointment.getAppointmentDateTime());
+        }
+        eventPublisher.publishEvent(new AppointmentChangedEvent(
+            appointment, appointment.getAppointmentDateTime(), previousStatus));
     }
     
     /**
@@ -335,18 +350,34 @@ public class AppointmentService {
         Appointment appointment = appointmentRepository.findById(appointmentId)
             .orElseThrow(() -> new RuntimeException("Appointment not found"));
         
-        // Check if the new time slot is available
-        LocalDate newDate = newDateTime.toLocalDate();
-        List<LocalTime> availableSlots = getAvailableTimeSlots(appointment.getDoctorId(), newDate);
-        
-        if (!availableSlots.contains(newDateTime.toLocalTime())) {
-            throw new RuntimeException("Selected time slot is not available");
+        try (SlotLockManager.SlotLock lock = slotLockManager.tryLock(appointment.getDoctorId(), newDateTime)) {
+            if (lock == null) {
+                throw new RuntimeException(SLOT_LOCKED_MESSAGE);
+            }
+            
+            // Check if the new time slot is available
+            LocalDate newDate = newDateTime.toLocalDate();
+            List<LocalTime> availableSlots = getAvailableTimeSlots(appointment.getDoctorId(), newDate);
+            
+            if (!availableSlots.contains(newDateTime.toLocalTime())) {
+                throw new RuntimeException("Selected time slot is not available");
+            }
+            
+            LocalDateTime previousDateTime = appointment.getAppointmentDateTime();
+            Appointment.AppointmentStatus previousStatus = appointment.getStatus();
+            boolean wasScheduled = previousStatus == Appointment.AppointmentStatus.SCHEDULED;
+            
+            appointment.setAppointmentDateTime(newDateTime);
+            appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+            appointment.setUpdatedAt(LocalDateTime.now());
+            
+            Appointment savedAppointment = appointmentRepository.save(appointment);
+            if (wasScheduled) {
+                slotIndex.markFree(appointment.getDoctorId(), previousDateTime);
+            }
+            slotIndex.markBooked(appointment.getDoctorId(), newDateTime);
+            eventPublisher.publishEvent(new AppointmentChangedEvent(savedAppointment, previousDateTime, previousStatus));
+            return savedAppointment;
         }
-        
-        appointment.setAppointmentDateTime(newDateTime);
-        appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
-        appointment.setUpdatedAt(LocalDateTime.now());
-        
-        return appointmentRepository.save(appointment);
     }
 }
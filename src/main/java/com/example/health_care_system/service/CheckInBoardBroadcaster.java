@@ -0,0 +1,162 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes the check-in queue of a hospital and day to the front-desk screens watching it.
+ * Each change to the queue produces one "queue" event (counts and rows) that is built once
+ * from the in-memory CheckInQueueService and sent to every subscriber of that hospital and day,
+ * so desks no longer refresh the page to see arrivals.
+ */
+@Service
+public class CheckInBoardBroadcaster {
+
+    @Autowired
+    private CheckInQueueService checkInQueueService;
+
+    // Matches the HTTP session timeout; the page reconnects automatically after that
+    private static final long STREAM_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final Map<StreamKey, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    // Boards with a change waiting to be sent; a burst of changes is sent as one event
+    private final Set<StreamKey> pending = ConcurrentHashMap.newKeySet();
+
+    // Single thread keeps events for a board in order and off the request thread
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "check-in-board");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Open a stream of queue changes for a hospital on a specific date
+     * The current queue is sent first as a "queue" event.
+     * @param hospitalId - Hospital to watch; null for all hospitals
+     */
+    public SseEmitter subscribe(String hospitalId, LocalDate date) throws IOException {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        StreamKey key = new StreamKey(hospitalId, date);
+
+        subscribers.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(emitter);
+
+        emitter.onCompletion(() -> unsubscribe(key, emitter));
+        emitter.onTimeout(() -> unsubscribe(key, emitter));
+        emitter.onError(e -> unsubscribe(key, emitter));
+
+        // Snapshot after subscribing so no change between page render and subscription is lost
+        try {
+            emitter.send(SseEmitter.event().name("queue").data(toPayload(checkInQueueService.getQueue(hospitalId, date))));
+        } catch (IOException | RuntimeException e) {
+            unsubscribe(key, emitter);
+            emitter.completeWithError(e);
+            throw e;
+        }
+        return emitter;
+    }
+
+    /**
+     * Get number of open streams (all hospitals and dates)
+     */
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    @EventListener
+    public void onQueueChanged(CheckInQueueService.QueueChangedEvent event) {
+        StreamKey key = new StreamKey(event.hospitalId(), event.date());
+        if (subscribers.containsKey(key) && pending.add(key)) {
+            dispatcher.execute(() -> publish(key));
+        }
+    }
+
+    /**
+     * Scheduled task to keep idle streams open through proxies and drop dead ones
+     * Streams of a past day are closed; the page reconnects and subscribes to today's queue.
+     * Runs every 25 seconds
+     */
+    @Scheduled(fixedRate = 25000)
+    public void sendHeartbeats() {
+        LocalDate today = LocalDate.now();
+        subscribers.forEach((key, list) -> list.forEach(emitter -> {
+            if (key.date().isBefore(today)) {
+                unsubscribe(key, emitter);
+                emitter.complete();
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(key, emitter);
+            }
+        }));
+    }
+
+    private void publish(StreamKey key) {
+        pending.remove(key);
+        List<SseEmitter> list = subscribers.get(key);
+        if (list == null) {
+            return;
+        }
+
+        // One snapshot per change, shared by every desk watching this board
+        Map<String, Object> payload = toPayload(checkInQueueService.getQueue(key.hospitalId(), key.date()));
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name("queue").data(payload));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(key, emitter);
+            }
+        }
+    }
+
+    private Map<String, Object> toPayload(CheckInQueueService.QueueView queue) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Appointment appointment : queue.appointments()) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", appointment.getId());
+            row.put("time", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
+            row.put("patientName", appointment.getPatientName());
+            row.put("doctorName", appointment.getDoctorName());
+            row.put("purpose", appointment.getPurpose());
+            row.put("notes", appointment.getNotes());
+            row.put("checkedIn", appointment.isCheckedIn());
+            row.put("checkInTime", appointment.getCheckInTime() != null ? appointment.getCheckInTime().format(TIME_FORMATTER) : "");
+            row.put("checkInStaffName", appointment.getCheckInStaffName());
+            rows.add(row);
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("totalToday", rows.size());
+        payload.put("checkedInCount", queue.checkedInCount());
+        payload.put("pendingCount", queue.pendingCount());
+        payload.put("appointments", rows);
+        return payload;
+    }
+
+    private void unsubscribe(StreamKey key, SseEmitter emitter) {
+        subscribers.computeIfPresent(key, (k, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private record StreamKey(String hospitalId, LocalDate date) {
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.model.UserRole;
+import com.example.health_care_system.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Front-desk check-in queues: the scheduled appointments of one hospital (or all hospitals) on one day.
+ * A queue is loaded with one query for the hospital's doctor ids and one date-ranged query on the
+ * appointments, then kept up to date by check-in/undo and AppointmentChangedEvent, so refreshing
+ * the check-in page does not query the database.
+ * Every change to a loaded queue is published as a QueueChangedEvent for the live check-in board.
+ */
+@Service
+public class CheckInQueueService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Loaded queues are re-read after this long to pick up changes made by other instances
+    private static final long REFRESH_INTERVAL_MINUTES = 2;
+
+    private final Map<QueueKey, DayQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Today's queue as shown on the check-in page
+     * @param appointments - Scheduled appointments ordered by time
+     */
+    public record QueueView(List<Appointment> appointments, long checkedInCount, long pendingCount) {
+    }
+
+    /**
+     * Published after a loaded queue gains, loses or updates an appointment
+     * @param hospitalId - Hospital of the queue; null for the all-hospitals queue
+     */
+    public record QueueChangedEvent(String hospitalId, LocalDate date) {
+    }
+
+    /**
+     * Get the queue of scheduled appointments for a day
+     * @param hospitalId - Hospital whose doctors' appointments are included; null for all hospitals
+     */
+    public QueueView getQueue(String hospitalId, LocalDate date) {
+        return queue(hospitalId, date).view();
+    }
+
+    /**
+     * Mark the patient as checked in and update the loaded queues
+     */
+    public Appointment checkIn(Appointment appointment, String staffId, String staffName) {
+        appointment.setCheckedIn(true);
+        appointment.setCheckInTime(LocalDateTime.now());
+        appointment.setCheckInStaffId(staffId);
+        appointment.setCheckInStaffName(staffName);
+        appointment.setUpdatedAt(LocalDateTime.now());
+        return refresh(appointmentRepository.save(appointment));
+    }
+
+    /**
+     * Undo a check-in and update the loaded queues
+     */
+    public Appointment undoCheckIn(Appointment appointment) {
+        appointment.setCheckedIn(false);
+        appointment.setCheckInTime(null);
+        appointment.setCheckInStaffId(null);
+        appointment.setCheckInStaffName(null);
+        appointment.setUpdatedAt(LocalDateTime.now());
+        return refresh(appointmentRepository.save(appointment));
+    }
+
+    /**
+     * Move booked, rescheduled, cancelled, completed and no-show appointments in or out of the loaded queues
+     */
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Appointment appointment = event.appointment();
+        LocalDate date = appointment.getAppointmentDateTime() != null
+            ? appointment.getAppointmentDateTime().toLocalDate() : null;
+
+        if (event.previousDateTime() != null && !event.previousDateTime().toLocalDate().equals(date)) {
+            LocalDate previousDate = event.previousDateTime().toLocalDate();
+            queues.forEach((key, queue) -> {
+                if (key.date().equals(previousDate) && queue.remove(appointment.getId())) {
+                    publishChange(key);
+                }
+            });
+        }
+        refresh(appointment);
+    }
+
+    /**
+     * Drop every loaded queue so the next read goes back to MongoDB
+     */
+    public void clear() {
+        queues.clear();
+    }
+
+    /**
+     * Scheduled task to drop queues of days that are already in the past
+     * Runs every hour
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        queues.keySet().removeIf(key -> key.date().isBefore(today));
+    }
+
+    private Appointment refresh(Appointment appointment) {
+        if (appointment.getAppointmentDateTime() != null) {
+            LocalDate date = appointment.getAppointmentDateTime().toLocalDate();
+            queues.forEach((key, queue) -> {
+                if (key.date().equals(date) && queue.apply(appointment)) {
+                    publishChange(key);
+                }
+            });
+        }
+        return appointment;
+    }
+
+    private void publishChange(QueueKey key) {
+        eventPublisher.publishEvent(new QueueChangedEvent(key.hospitalId(), key.date()));
+    }
+
+    private DayQueue queue(String hospitalId, LocalDate date) {
+        QueueKey key = new QueueKey(hospitalId, date);
+        DayQueue queue = queues.computeIfAbsent(key, this::load);
+        if (queue.isStale()) {
+            // Replace rather than mutate so concurrent readers keep a consistent view
+            queue = queues.compute(key, (k, current) -> current == null || current.isStale() ? load(k) : current);
+        }
+        return queue;
+    }
+
+    private DayQueue load(QueueKey key) {
+        Criteria criteria = Criteria.where("appointmentDateTime")
+            .gte(key.date().atStartOfDay())
+            .lt(key.date().plusDays(1).atStartOfDay())
+            .and("status").is(Appointment.AppointmentStatus.SCHEDULED);
+
+        Set<String> doctorIds = null;
+        if (key.hospitalId() != null) {
+            Query doctorQuery = new Query(Criteria.where("role").is(UserRole.DOCTOR.name()).and("hospitalId").is(key.hospitalId()));
+            doctorQuery.fields().include("id");
+            doctorIds = mongoTemplate.find(doctorQuery, Doctor.class).stream()
+                .map(Doctor::getId)
+                .collect(Collectors.toSet());
+            if (doctorIds.isEmpty()) {
+                return new DayQueue(doctorIds, List.of());
+            }
+            criteria = criteria.and("doctorId").in(doctorIds);
+        }
+
+        Query query = new Query(criteria).with(Sort.by("appointmentDateTime"));
+        return new DayQueue(doctorIds, mongoTemplate.find(query, Appointment.class));
+    }
+
+    private record QueueKey(String hospitalId, LocalDate date) {
+    }
+
+    /**
+     * Scheduled appointments of one queue ordered by time, with the checked-in count kept alongside
+     * Appointments are replaced, never modified in place, so views handed out stay consistent.
+     */
+    private static class DayQueue {
+
+        private static final Comparator<Appointment> BY_TIME = Comparator
+            .comparing(Appointment::getAppointmentDateTime)
+            .thenComparing(Appointment::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        // Null for the all-hospitals queue
+        private final Set<String> doctorIds;
+
+        private final TreeSet<Appointment> ordered = new TreeSet<>(BY_TIME);
+
+        private final Map<String, Appointment> byId = new HashMap<>();
+
+        private final LocalDateTime loadedAt = LocalDateTime.now();
+
+        private long checkedInCount;
+
+        DayQueue(Set<String> doctorIds, List<Appointment> appointments) {
+            this.doctorIds = doctorIds;
+            appointments.forEach(this::apply);
+        }
+
+        boolean isStale() {
+            return loadedAt.plusMinutes(REFRESH_INTERVAL_MINUTES).isBefore(LocalDateTime.now());
+        }
+
+        synchronized QueueView view() {
+            List<Appointment> appointments = new ArrayList<>(ordered);
+            return new QueueView(appointments, checkedInCount, appointments.size() - checkedInCount);
+        }
+
+        /**
+         * Add or replace a scheduled appointment of this queue's doctors; remove anything else
+         * @return true if the queue changed
+         */
+        synchronized boolean apply(Appointment appointment) {
+            boolean removed = remove(appointment.getId());
+            boolean belongs = doctorIds == null || doctorIds.contains(appointment.getDoctorId());
+            if (belongs && appointment.getStatus() == Appointment.AppointmentStatus.SCHEDULED) {
+                ordered.add(appointment);
+                byId.put(appointment.getId(), appointment);
+                if (appointment.isCheckedIn()) {
+                    checkedInCount++;
+                }
+                return true;
+            }
+            return removed;
+        }
+
+        synchronized boolean remove(String appointmentId) {
+            Appointment previous = byId.remove(appointmentId);
+            if (previous == null) {
+                return false;
+            }
+            ordered.remove(previous);
+            if (previous.isCheckedIn()) {
+                checkedInCount--;
+            }
+            return true;
+        }
+    }
+}
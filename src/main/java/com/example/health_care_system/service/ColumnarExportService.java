@@ -0,0 +1,214 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.*;
+import com.example.health_care_system.service.ColumnarFile.Column;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Nightly bulk extracts of appointments, payments, medical records and users for the data team
+ * Each collection is streamed from a cursor into a columnar file (see ColumnarFile) under
+ * app.export.dir/yyyy-MM-dd/. Files are written under a temporary name and renamed when complete,
+ * so readers never see a partial extract.
+ */
+@Service
+public class ColumnarExportService {
+
+    static final String EXTENSION = ".hcol";
+    static final int CHUNK_ROWS = 16384;
+    static final int CURSOR_BATCH_SIZE = 1000;
+
+    private static final List<Column<Appointment>> APPOINTMENT_COLUMNS = List.of(
+        Column.string("id", Appointment::getId),
+        Column.timestamp("appointmentDateTime", Appointment::getAppointmentDateTime),
+        Column.dictionary("status", Appointment::getStatus),
+        Column.string("patientId", Appointment::getPatientId),
+        Column.string("patientName", Appointment::getPatientName),
+        Column.dictionary("doctorId", Appointment::getDoctorId),
+        Column.dictionary("doctorName", Appointment::getDoctorName),
+        Column.string("purpose", Appointment::getPurpose),
+        Column.bool("checkedIn", Appointment::isCheckedIn),
+        Column.timestamp("checkInTime", Appointment::getCheckInTime),
+        Column.timestamp("createdAt", Appointment::getCreatedAt),
+        Column.timestamp("updatedAt", Appointment::getUpdatedAt)
+    );
+
+    // Insurance policy numbers are left out of the extract
+    private static final List<Column<Payment>> PAYMENT_COLUMNS = List.of(
+        Column.string("id", Payment::getId),
+        Column.string("appointmentId", Payment::getAppointmentId),
+        Column.string("patientId", Payment::getPatientId),
+        Column.dictionary("hospitalId", Payment::getHospitalId),
+        Column.dictionary("hospitalName", Payment::getHospitalName),
+        Column.dictionary("doctorId", Payment::getDoctorId),
+        Column.dictionary("doctorName", Payment::getDoctorName),
+        Column.dictionary("doctorSpecialization", Payment::getDoctorSpecialization),
+        Column.decimal("amount", Payment::getAmount),
+        Column.dictionary("paymentMethod", Payment::getPaymentMethod),
+        Column.dictionary("status", Payment::getStatus),
+        Column.dictionary("insuranceProvider", Payment::getInsuranceProvider),
+        Column.string("transactionId", Payment::getTransactionId),
+        Column.timestamp("paymentDate", Payment::getPaymentDate),
+        Column.timestamp("createdAt", Payment::getCreatedAt)
+    );
+
+    private static final List<Column<MedicalRecord>> MEDICAL_RECORD_COLUMNS = List.of(
+        Column.string("id", MedicalRecord::getId),
+        Column.date("recordDate", MedicalRecord::getRecordDate),
+        Column.string("patientId", MedicalRecord::getPatientId),
+        Column.string("patientName", MedicalRecord::getPatientName),
+        Column.dictionary("doctorId", MedicalRecord::getDoctorId),
+        Column.dictionary("doctorName", MedicalRecord::getDoctorName),
+        Column.string("diagnosis", MedicalRecord::getDiagnosis),
+        Column.string("prescription", MedicalRecord::getPrescription),
+        Column.string("notes", MedicalRecord::getNotes),
+        Column.timestamp("createdAt", MedicalRecord::getCreatedAt)
+    );
+
+    // One schema for every role; columns that do not apply to a role are null
+    private static final List<Column<User>> USER_COLUMNS = List.of(
+        Column.string("id", User::getId),
+        Column.dictionary("role", User::getRole),
+        Column.string("name", User::getName),
+        Column.string("email", User::getEmail),
+        Column.dictionary("gender", User::getGender),
+        Column.string("contactNumber", User::getContactNumber),
+        Column.dictionary("specialization", user -> user instanceof Doctor doctor ? doctor.getSpecialization() : null),
+        Column.dictionary("hospitalId", user -> user instanceof Doctor doctor ? doctor.getHospitalId()
+            : user instanceof Patient patient ? patient.getHospitalId()
+            : user instanceof Staff staff ? staff.getHospitalId() : null),
+        Column.date("dateOfBirth", user -> user instanceof Patient patient ? patient.getDateOfBirth() : null),
+        Column.dictionary("bloodGroup", user -> user instanceof Patient patient ? patient.getBloodGroup() : null),
+        Column.bool("active", user -> user instanceof Patient patient ? patient.isActive() : null),
+        Column.timestamp("createdAt", User::getCreatedAt)
+    );
+
+    private static final Map<UserRole, Class<? extends User>> USER_TYPES = Map.of(
+        UserRole.PATIENT, Patient.class,
+        UserRole.DOCTOR, Doctor.class,
+        UserRole.STAFF, Staff.class,
+        UserRole.ADMIN, User.class
+    );
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.export.dir:exports}")
+    private String exportDir = "exports";
+
+    @FunctionalInterface
+    private interface ExportBody<T> {
+        void write(ColumnarFile.Writer<T> writer) throws IOException;
+    }
+
+    /**
+     * Scheduled nightly extract
+     * Runs at 02:30 unless app.export.cron says otherwise
+     */
+    @Scheduled(cron = "${app.export.cron:0 30 2 * * *}")
+    public void exportNightly() {
+        try {
+            exportAll(LocalDate.now());
+        } catch (Exception e) {
+            System.err.println("Nightly columnar export failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Export all four collections into the directory for the given date
+     * @return rows written per collection
+     */
+    public Map<String, Long> exportAll(LocalDate date) throws IOException {
+        Path directory = Paths.get(exportDir, date.toString());
+        Files.createDirectories(directory);
+
+        long started = System.currentTimeMillis();
+        Map<String, Long> rows = new LinkedHashMap<>();
+        rows.put("appointments", exportAppointments(directory.resolve("appointments" + EXTENSION)));
+        rows.put("payments", exportPayments(directory.resolve("payments" + EXTENSION)));
+        rows.put("medical_records", exportMedicalRecords(directory.resolve("medical_records" + EXTENSION)));
+        rows.put("users", exportUsers(directory.resolve("users" + EXTENSION)));
+
+        System.out.println("Exported " + rows + " to " + directory.toAbsolutePath()
+            + " in " + (System.currentTimeMillis() - started) + " ms");
+        return rows;
+    }
+
+    /**
+     * Appointments in appointmentDateTime order (indexed), so chunk date ranges do not overlap
+     */
+    public long exportAppointments(Path path) throws IOException {
+        return export(path, "appointments", APPOINTMENT_COLUMNS, writer ->
+            stream(new Query().with(Sort.by("appointmentDateTime")), Appointment.class, APPOINTMENT_COLUMNS, writer));
+    }
+
+    public long exportPayments(Path path) throws IOException {
+        return export(path, "payments", PAYMENT_COLUMNS, writer ->
+            stream(new Query().with(Sort.by("id")), Payment.class, PAYMENT_COLUMNS, writer));
+    }
+
+    public long exportMedicalRecords(Path path) throws IOException {
+        return export(path, "medical_records", MEDICAL_RECORD_COLUMNS, writer ->
+            stream(new Query().with(Sort.by("id")), MedicalRecord.class, MEDICAL_RECORD_COLUMNS, writer));
+    }
+
+    /**
+     * Users of every role, one role after the other, each read as its own document type
+     */
+    public long exportUsers(Path path) throws IOException {
+        return export(path, "users", USER_COLUMNS, writer -> {
+            for (UserRole role : UserRole.values()) {
+                Query query = new Query(Criteria.where("role").is(role.name())).with(Sort.by("id"));
+                stream(query, USER_TYPES.get(role), USER_COLUMNS, writer);
+            }
+        });
+    }
+
+    private <T> long export(Path path, String dataset, List<Column<T>> columns, ExportBody<T> body) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long rows;
+        try (ColumnarFile.Writer<T> writer = new ColumnarFile.Writer<>(temp, dataset, columns, CHUNK_ROWS)) {
+            body.write(writer);
+            rows = writer.getRowCount();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Stream the documents matching the query into the writer, reading only the exported fields
+     */
+    private <T, S extends T> void stream(Query query, Class<S> type, List<Column<T>> columns,
+                                         ColumnarFile.Writer<T> writer) throws IOException {
+        columns.forEach(column -> query.fields().include(column.name()));
+        query.cursorBatchSize(CURSOR_BATCH_SIZE);
+
+        try (Stream<S> documents = mongoTemplate.stream(query, type)) {
+            Iterator<S> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+    }
+}
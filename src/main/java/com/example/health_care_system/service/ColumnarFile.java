@@ -0,0 +1,591 @@
+package com.example.health_care_system.service;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact columnar file format (.hcol) for the bulk exports
+ * Rows are written in chunks. Inside a chunk each column is stored contiguously and deflated:
+ * a null bitmap followed by the non-null values. Strings are length-prefixed, dictionary columns
+ * are varint codes into a file-level dictionary, and numbers are zigzag varint deltas.
+ * The footer holds the schema, the dictionaries and, for every chunk, its offset and each
+ * column's null count and min/max, so readers can skip chunks without decompressing them.
+ *
+ * Layout: "HCOL" version chunk* footer footerLength:int "HCOL"
+ */
+public final class ColumnarFile {
+
+    static final byte[] MAGIC = {'H', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+
+    // Longer strings are not kept as chunk statistics
+    static final int MAX_STATS_LENGTH = 64;
+
+    private ColumnarFile() {
+    }
+
+    /**
+     * Logical column types; everything except STRING and DICTIONARY is stored as a long
+     */
+    public enum ColumnType {
+        STRING,
+        DICTIONARY,
+        INT64,
+        TIMESTAMP,  // LocalDateTime as epoch milliseconds (UTC)
+        DATE,       // LocalDate as epoch day
+        DECIMAL,    // BigDecimal in hundredths
+        BOOLEAN;
+
+        boolean isNumeric() {
+            return this != STRING && this != DICTIONARY;
+        }
+    }
+
+    /**
+     * An exported column: a name, a type and how to read the value from a row
+     * The extractor returns the stored form (String or Long); use the factory methods.
+     */
+    public record Column<T>(String name, ColumnType type, Function<? super T, ?> extractor) {
+
+        public static <T> Column<T> string(String name, Function<? super T, String> getter) {
+            return new Column<>(name, ColumnType.STRING, getter);
+        }
+
+        /**
+         * A low-cardinality column (status, role, specialization...); enums are stored by name
+         */
+        public static <T> Column<T> dictionary(String name, Function<? super T, ?> getter) {
+            return new Column<>(name, ColumnType.DICTIONARY, row -> {
+                Object value = getter.apply(row);
+                if (value == null) {
+                    return null;
+                }
+                return value instanceof Enum<?> constant ? constant.name() : value.toString();
+            });
+        }
+
+        public static <T> Column<T> int64(String name, Function<? super T, ? extends Number> getter) {
+            return new Column<>(name, ColumnType.INT64, row -> {
+                Number value = getter.apply(row);
+                return value != null ? value.longValue() : null;
+            });
+        }
+
+        public static <T> Column<T> timestamp(String name, Function<? super T, LocalDateTime> getter) {
+            return new Column<>(name, ColumnType.TIMESTAMP, row -> {
+                LocalDateTime value = getter.apply(row);
+                return value != null ? value.toInstant(ZoneOffset.UTC).toEpochMilli() : null;
+            });
+        }
+
+        public static <T> Column<T> date(String name, Function<? super T, LocalDate> getter) {
+            return new Column<>(name, ColumnType.DATE, row -> {
+                LocalDate value = getter.apply(row);
+                return value != null ? value.toEpochDay() : null;
+            });
+        }
+
+        public static <T> Column<T> decimal(String name, Function<? super T, BigDecimal> getter) {
+            return new Column<>(name, ColumnType.DECIMAL, row -> {
+                BigDecimal value = getter.apply(row);
+                return value != null ? value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : null;
+            });
+        }
+
+        public static <T> Column<T> bool(String name, Function<? super T, Boolean> getter) {
+            return new Column<>(name, ColumnType.BOOLEAN, row -> {
+                Boolean value = getter.apply(row);
+                return value != null ? (value ? 1L : 0L) : null;
+            });
+        }
+    }
+
+    /**
+     * Name and type of a column as stored in a file
+     */
+    public record ColumnSchema(String name, ColumnType type) {
+    }
+
+    /**
+     * Statistics of one column in one chunk; min and max are null when not recorded
+     */
+    public record ColumnStats(int nullCount, Object min, Object max) {
+    }
+
+    /**
+     * Directory entry of one chunk
+     */
+    public record Chunk(int rowCount, List<ColumnStats> stats) {
+    }
+
+    /**
+     * Writes rows into a columnar file; close() writes the footer
+     */
+    public static final class Writer<T> implements Closeable {
+
+        private final OutputStream out;
+        private final String dataset;
+        private final List<Column<T>> columns;
+        private final int chunkRows;
+        private final Object[][] buffer;
+        private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        private final List<ChunkEntry> chunks = new ArrayList<>();
+        private final Deflater deflater = new Deflater();
+        private long position;
+        private int buffered;
+        private long rowCount;
+
+        public Writer(Path path, String dataset, List<Column<T>> columns, int chunkRows) throws IOException {
+            if (chunkRows < 1) {
+                throw new IllegalArgumentException("Chunks must hold at least one row");
+            }
+            this.dataset = dataset;
+            this.columns = List.copyOf(columns);
+            this.chunkRows = chunkRows;
+            this.buffer = new Object[columns.size()][chunkRows];
+            for (Column<T> column : columns) {
+                dictionaries.add(column.type() == ColumnType.DICTIONARY ? new LinkedHashMap<>() : null);
+            }
+
+            this.out = new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024);
+            out.write(MAGIC);
+            out.write(VERSION);
+            position = MAGIC.length + 1;
+        }
+
+        public void write(T row) throws IOException {
+            for (int c = 0; c < columns.size(); c++) {
+                buffer[c][buffered] = columns.get(c).extractor().apply(row);
+            }
+            buffered++;
+            rowCount++;
+            if (buffered == chunkRows) {
+                flushChunk();
+            }
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushChunk();
+                byte[] footer = footer();
+                out.write(footer);
+                DataOutputStream trailer = new DataOutputStream(out);
+                trailer.writeInt(footer.length);
+                trailer.write(MAGIC);
+                trailer.flush();
+            } finally {
+                deflater.end();
+                out.close();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (buffered == 0) {
+                return;
+            }
+            ChunkEntry chunk = new ChunkEntry(position, buffered);
+            for (int c = 0; c < columns.size(); c++) {
+                byte[] block = encode(c, chunk);
+                byte[] compressed = deflate(block);
+                out.write(compressed);
+                position += compressed.length;
+                chunk.lengths.add(new int[]{compressed.length, block.length});
+                Arrays.fill(buffer[c], 0, buffered, null);
+            }
+            chunks.add(chunk);
+            buffered = 0;
+        }
+
+        private byte[] encode(int c, ChunkEntry chunk) throws IOException {
+            ColumnType type = columns.get(c).type();
+            Object[] values = buffer[c];
+            Map<String, Integer> dictionary = dictionaries.get(c);
+
+            byte[] present = new byte[(buffered + 7) / 8];
+            ByteArrayOutputStream data = new ByteArrayOutputStream(buffered * 4);
+            int nullCount = 0;
+            Object min = null;
+            Object max = null;
+            boolean keepStats = true;
+            long previous = 0;
+
+            for (int i = 0; i < buffered; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    nullCount++;
+                    continue;
+                }
+                present[i >> 3] |= (byte) (1 << (i & 7));
+
+                if (type.isNumeric()) {
+                    long number = (Long) value;
+                    writeVarint(data, zigzag(number - previous));
+                    previous = number;
+                    if (min == null || number < (Long) min) {
+                        min = number;
+                    }
+                    if (max == null || number > (Long) max) {
+                        max = number;
+                    }
+                } else {
+                    String text = (String) value;
+                    if (dictionary != null) {
+                        Integer code = dictionary.get(text);
+                        if (code == null) {
+                            code = dictionary.size();
+                            dictionary.put(text, code);
+                        }
+                        writeVarint(data, code);
+                    } else {
+                        writeString(data, text);
+                        keepStats &= text.length() <= MAX_STATS_LENGTH;
+                    }
+                    if (min == null || text.compareTo((String) min) < 0) {
+                        min = text;
+                    }
+                    if (max == null || text.compareTo((String) max) > 0) {
+                        max = text;
+                    }
+                }
+            }
+
+            chunk.stats.add(keepStats ? new ColumnStats(nullCount, min, max) : new ColumnStats(nullCount, null, null));
+
+            ByteArrayOutputStream block = new ByteArrayOutputStream(present.length + data.size());
+            block.write(present);
+            data.writeTo(block);
+            return block.toByteArray();
+        }
+
+        private byte[] deflate(byte[] block) {
+            deflater.reset();
+            deflater.setInput(block);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, block.length / 2));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                compressed.write(buf, 0, n);
+            }
+            return compressed.toByteArray();
+        }
+
+        private byte[] footer() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(bytes);
+            footer.writeUTF(dataset);
+            footer.writeLong(rowCount);
+
+            footer.writeInt(columns.size());
+            for (Column<T> column : columns) {
+                footer.writeUTF(column.name());
+                footer.writeByte(column.type().ordinal());
+            }
+            for (Map<String, Integer> dictionary : dictionaries) {
+                if (dictionary != null) {
+                    footer.writeInt(dictionary.size());
+                    for (String value : dictionary.keySet()) {
+                        writeString(footer, value);
+                    }
+                }
+            }
+
+            footer.writeInt(chunks.size());
+            for (ChunkEntry chunk : chunks) {
+                footer.writeLong(chunk.offset);
+                footer.writeInt(chunk.rowCount);
+                for (int c = 0; c < columns.size(); c++) {
+                    int[] lengths = chunk.lengths.get(c);
+                    ColumnStats stats = chunk.stats.get(c);
+                    footer.writeInt(lengths[0]);
+                    footer.writeInt(lengths[1]);
+                    footer.writeInt(stats.nullCount());
+                    footer.writeBoolean(stats.min() != null);
+                    if (stats.min() != null) {
+                        if (columns.get(c).type().isNumeric()) {
+                            footer.writeLong((Long) stats.min());
+                            footer.writeLong((Long) stats.max());
+                        } else {
+                            writeString(footer, (String) stats.min());
+                            writeString(footer, (String) stats.max());
+                        }
+                    }
+                }
+            }
+            footer.flush();
+            return bytes.toByteArray();
+        }
+
+        private static final class ChunkEntry {
+            private final long offset;
+            private final int rowCount;
+            private final List<int[]> lengths = new ArrayList<>();  // compressed, uncompressed
+            private final List<ColumnStats> stats = new ArrayList<>();
+
+            private ChunkEntry(long offset, int rowCount) {
+                this.offset = offset;
+                this.rowCount = rowCount;
+            }
+        }
+    }
+
+    /**
+     * Reads the footer of a columnar file and decodes column chunks on demand
+     */
+    public static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final String dataset;
+        private final long rowCount;
+        private final List<ColumnSchema> columns = new ArrayList<>();
+        private final List<List<String>> dictionaries = new ArrayList<>();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final List<long[]> offsets = new ArrayList<>();   // per chunk, start of each column block
+        private final List<int[][]> lengths = new ArrayList<>();  // per chunk, compressed/uncompressed per column
+
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                ByteBuffer trailer = read(size - 8, 8);
+                int footerLength = trailer.getInt();
+                byte[] magic = new byte[4];
+                trailer.get(magic);
+                ByteBuffer header = read(0, MAGIC.length + 1);
+                byte[] headerMagic = new byte[4];
+                header.get(headerMagic);
+                if (!Arrays.equals(magic, MAGIC) || !Arrays.equals(headerMagic, MAGIC)) {
+                    throw new IOException("Not a columnar export file: " + path);
+                }
+                if (header.get() != VERSION) {
+                    throw new IOException("Unsupported columnar file version in " + path);
+                }
+
+                ByteBuffer footerBytes = read(size - 8 - footerLength, footerLength);
+                DataInputStream footer = new DataInputStream(new ByteArrayInputStream(
+                    footerBytes.array(), footerBytes.arrayOffset(), footerLength));
+                dataset = footer.readUTF();
+                rowCount = footer.readLong();
+
+                int columnCount = footer.readInt();
+                for (int c = 0; c < columnCount; c++) {
+                    columns.add(new ColumnSchema(footer.readUTF(), ColumnType.values()[footer.readByte()]));
+                }
+                for (ColumnSchema column : columns) {
+                    List<String> dictionary = null;
+                    if (column.type() == ColumnType.DICTIONARY) {
+                        int entries = footer.readInt();
+                        dictionary = new ArrayList<>(entries);
+                        for (int i = 0; i < entries; i++) {
+                            dictionary.add(readString(footer));
+                        }
+                    }
+                    dictionaries.add(dictionary);
+                }
+
+                int chunkCount = footer.readInt();
+                for (int k = 0; k < chunkCount; k++) {
+                    long offset = footer.readLong();
+                    int chunkRowCount = footer.readInt();
+                    long[] columnOffsets = new long[columnCount];
+                    int[][] columnLengths = new int[columnCount][2];
+                    List<ColumnStats> stats = new ArrayList<>(columnCount);
+                    for (int c = 0; c < columnCount; c++) {
+                        columnOffsets[c] = offset;
+                        columnLengths[c][0] = footer.readInt();
+                        columnLengths[c][1] = footer.readInt();
+                        offset += columnLengths[c][0];
+                        int nullCount = footer.readInt();
+                        ColumnType type = columns.get(c).type();
+                        if (footer.readBoolean()) {
+                            Object min = type.isNumeric() ? decode(type, footer.readLong()) : readString(footer);
+                            Object max = type.isNumeric() ? decode(type, footer.readLong()) : readString(footer);
+                            stats.add(new ColumnStats(nullCount, min, max));
+                        } else {
+                            stats.add(new ColumnStats(nullCount, null, null));
+                        }
+                    }
+                    chunks.add(new Chunk(chunkRowCount, List.copyOf(stats)));
+                    offsets.add(columnOffsets);
+                    lengths.add(columnLengths);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public String getDataset() {
+            return dataset;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public List<ColumnSchema> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        public List<Chunk> getChunks() {
+            return Collections.unmodifiableList(chunks);
+        }
+
+        /**
+         * Decode one column of one chunk
+         * Values are String, Long, LocalDateTime, LocalDate, BigDecimal or Boolean by column type, or null.
+         */
+        public List<Object> readColumn(int chunkIndex, String columnName) throws IOException {
+            int c = indexOf(columnName);
+            ColumnType type = columns.get(c).type();
+            List<String> dictionary = dictionaries.get(c);
+            int rows = chunks.get(chunkIndex).rowCount();
+            int[] length = lengths.get(chunkIndex)[c];
+
+            ByteBuffer compressed = read(offsets.get(chunkIndex)[c], length[0]);
+            byte[] block = inflate(compressed.array(), length[0], length[1]);
+            int bitmapLength = (rows + 7) / 8;
+            DataInputStream data = new DataInputStream(
+                new ByteArrayInputStream(block, bitmapLength, block.length - bitmapLength));
+
+            List<Object> values = new ArrayList<>(rows);
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                if ((block[i >> 3] & (1 << (i & 7))) == 0) {
+                    values.add(null);
+                } else if (type.isNumeric()) {
+                    previous += unzigzag(readVarint(data));
+                    values.add(decode(type, previous));
+                } else if (dictionary != null) {
+                    values.add(dictionary.get((int) readVarint(data)));
+                } else {
+                    values.add(readString(data));
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private int indexOf(String columnName) {
+            for (int c = 0; c < columns.size(); c++) {
+                if (columns.get(c).name().equals(columnName)) {
+                    return c;
+                }
+            }
+            throw new IllegalArgumentException("Unknown column: " + columnName);
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            if (position < 0 || length < 0) {
+                throw new IOException("Corrupt columnar file");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Truncated columnar file");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        private static byte[] inflate(byte[] compressed, int compressedLength, int length) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed, 0, compressedLength);
+                byte[] block = new byte[length];
+                int read = 0;
+                while (read < length && !inflater.finished()) {
+                    int n = inflater.inflate(block, read, length - read);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    read += n;
+                }
+                if (read != length) {
+                    throw new IOException("Corrupt column block");
+                }
+                return block;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt column block", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    static Object decode(ColumnType type, long value) {
+        return switch (type) {
+            case TIMESTAMP -> LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneOffset.UTC);
+            case DATE -> LocalDate.ofEpochDay(value);
+            case DECIMAL -> BigDecimal.valueOf(value, 2);
+            case BOOLEAN -> value != 0;
+            default -> value;
+        };
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
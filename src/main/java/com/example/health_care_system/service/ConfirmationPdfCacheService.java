@@ -0,0 +1,169 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.model.Hospital;
+import com.example.health_care_system.model.Patient;
+import com.example.health_care_system.model.Payment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Generated appointment confirmation PDFs kept in app.pdf.cache-dir
+ * Each PDF is stored under its appointment as <version>.pdf, where the version is a hash of the ids and
+ * updatedAt times of the appointment, patient, doctor, hospital and payment it was generated from, so a
+ * changed input is never answered with an older file. AppointmentChangedEvent (booking, reschedule,
+ * cancel, complete, no-show) and PaymentChangedEvent delete the appointment's stored PDFs. Check-in and
+ * undo publish no such event; they only move updatedAt, so the old file is replaced on the next download.
+ */
+@Service
+@Slf4j
+public class ConfirmationPdfCacheService {
+
+    @Autowired
+    private PdfGenerationService pdfGenerationService;
+
+    @Value("${app.pdf.cache-dir:}")
+    private String cacheDir = "";
+
+    // Part of every version; change it when the confirmation layout changes so stored PDFs are regenerated
+    private static final String LAYOUT_VERSION = "1";
+
+    /**
+     * A confirmation PDF, on disk when the cache is enabled
+     */
+    public record ConfirmationPdf(String version, Resource content, long contentLength) {
+    }
+
+    /**
+     * Version of the confirmation PDF for these inputs; usable as an ETag
+     * @param payment - May be null
+     */
+    public String getVersion(Appointment appointment, Patient patient, Doctor doctor, Hospital hospital, Payment payment) {
+        String inputs = String.join("|", LAYOUT_VERSION,
+            appointment.getId(), String.valueOf(appointment.getUpdatedAt()),
+            patient.getId(), String.valueOf(patient.getUpdatedAt()),
+            doctor.getId(), String.valueOf(doctor.getUpdatedAt()),
+            hospital.getId(), String.valueOf(hospital.getUpdatedAt()),
+            payment != null ? payment.getId() + "|" + payment.getUpdatedAt() : "-");
+        return sha256(inputs).substring(0, 32);
+    }
+
+    /**
+     * Get the stored confirmation PDF for these inputs, generating and storing it on a miss
+     * @param payment - May be null
+     */
+    public ConfirmationPdf getConfirmationPdf(Appointment appointment, Patient patient, Doctor doctor,
+                                              Hospital hospital, Payment payment) {
+        String version = getVersion(appointment, patient, doctor, hospital, payment);
+        if (!cacheDir.isEmpty()) {
+            Path path = appointmentDir(appointment.getId()).resolve(version + ".pdf");
+            try {
+                return new ConfirmationPdf(version, new FileSystemResource(path), Files.size(path));
+            } catch (NoSuchFileException e) {
+                // Not generated yet for this version
+            } catch (IOException e) {
+                log.warn("Failed to read cached confirmation PDF {}: {}", path, e.getMessage());
+            }
+        }
+
+        byte[] pdf = pdfGenerationService.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, payment);
+        if (!cacheDir.isEmpty()) {
+            store(appointment.getId(), version, pdf);
+        }
+        return new ConfirmationPdf(version, new ByteArrayResource(pdf), pdf.length);
+    }
+
+    /**
+     * Delete all stored confirmation PDFs of an appointment
+     */
+    public void evict(String appointmentId) {
+        if (cacheDir.isEmpty() || appointmentId == null) {
+            return;
+        }
+        Path dir = appointmentDir(appointmentId);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            // Stale files are never served, since their version no longer matches
+            log.warn("Failed to evict confirmation PDFs of appointment {}: {}", appointmentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the stored PDFs of a booked, rescheduled, cancelled, completed or no-show appointment
+     */
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        evict(event.appointment().getId());
+    }
+
+    @EventListener
+    public void onPaymentChanged(PaymentChangedEvent event) {
+        if (event.payment() != null) {
+            evict(event.payment().getAppointmentId());
+        }
+    }
+
+    private void store(String appointmentId, String version, byte[] pdf) {
+        Path dir = appointmentDir(appointmentId);
+        Path path = dir.resolve(version + ".pdf");
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, version, ".tmp");
+            Files.write(temp, pdf);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // Older versions of this appointment's PDF can never be served again
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.pdf")) {
+                for (Path file : files) {
+                    if (!file.equals(path)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The PDF is still returned; the next download generates it again
+            log.warn("Failed to cache confirmation PDF of appointment {}: {}", appointmentId, e.getMessage());
+        }
+    }
+
+    // Appointment ids come from request paths, so directories are named by their hash
+    private Path appointmentDir(String appointmentId) {
+        String key = sha256(appointmentId);
+        return Paths.get(cacheDir, key.substring(0, 2), key);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Doctor;
+
+/**
+ * Published after a doctor's profile is updated
+ */
+public record DoctorChangedEvent(Doctor doctor) {
+}
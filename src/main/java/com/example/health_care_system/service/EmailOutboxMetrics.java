@@ -0,0 +1,80 @@
+package com.example.health_care_system.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivery statistics for the email outbox
+ * Send time is the SMTP time per message; delivery time runs from enqueue to a successful send.
+ */
+@Service
+public class EmailOutboxMetrics {
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private final LongAccumulator maxSendNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder totalDeliveryMillis = new LongAdder();
+    private final LongAccumulator maxDeliveryMillis = new LongAccumulator(Long::max, 0);
+
+    public void recordEnqueued() {
+        enqueued.increment();
+    }
+
+    public void recordBatch(int size, long sendNanos) {
+        batches.increment();
+        long perMessage = sendNanos / Math.max(1, size);
+        totalSendNanos.add(sendNanos);
+        maxSendNanos.accumulate(perMessage);
+    }
+
+    public void recordSent(long deliveryMillis) {
+        sent.increment();
+        totalDeliveryMillis.add(deliveryMillis);
+        maxDeliveryMillis.accumulate(deliveryMillis);
+    }
+
+    public void recordRetry() {
+        retried.increment();
+    }
+
+    public void recordFailed() {
+        failed.increment();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * Get a snapshot of the statistics (times in milliseconds)
+     */
+    public Map<String, Object> snapshot() {
+        long sentCount = sent.sum();
+        long attempted = sentCount + retried.sum() + failed.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enqueued", enqueued.sum());
+        stats.put("sent", sentCount);
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("avgSendMs", attempted == 0 ? 0.0 : toMillis(totalSendNanos.sum()) / attempted);
+        stats.put("maxSendMs", toMillis(maxSendNanos.get()));
+        stats.put("avgDeliveryMs", sentCount == 0 ? 0.0 : totalDeliveryMillis.sum() / (double) sentCount);
+        stats.put("maxDeliveryMs", maxDeliveryMillis.get());
+        return stats;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.EmailOutboxMessage;
+import com.example.health_care_system.model.EmailOutboxMessage.OutboxStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable outbox for outgoing email.
+ * Request threads only insert an email_outbox document; worker threads claim due messages in batches,
+ * send each batch over a single SMTP connection and retry failed messages with exponential backoff.
+ * Claims expire, so messages held by a crashed instance are picked up again.
+ */
+@Service
+public class EmailOutboxService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private EmailOutboxMetrics metrics;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail.outbox.workers:2}")
+    private int workers = 2;
+
+    @Value("${app.mail.outbox.batch-size:20}")
+    private int batchSize = 20;
+
+    @Value("${app.mail.outbox.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    // Idle workers look for due retries this often; new messages wake a worker at once
+    @Value("${app.mail.outbox.poll-interval-ms:5000}")
+    private long pollIntervalMillis = 5000;
+
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final Semaphore wakeUp = new Semaphore(0);
+
+    private volatile boolean running;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::runWorker);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue an HTML email for sending
+     */
+    public EmailOutboxMessage enqueue(String to, String subject, String htmlContent) {
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setTo(to);
+        message.setSubject(subject);
+        message.setHtmlContent(htmlContent);
+        message.setStatus(OutboxStatus.PENDING);
+        message.setNextAttemptAt(now);
+        message.setCreatedAt(now);
+
+        EmailOutboxMessage saved = mongoTemplate.insert(message);
+        metrics.recordEnqueued();
+        wakeUp.release();
+        return saved;
+    }
+
+    /**
+     * Get number of messages waiting to be sent (pending, retrying or being sent)
+     */
+    public long getQueueDepth() {
+        return mongoTemplate.count(
+            new Query(Criteria.where("status").in(OutboxStatus.PENDING, OutboxStatus.SENDING)),
+            EmailOutboxMessage.class);
+    }
+
+    /**
+     * Delivery statistics plus the current queue depth
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> stats = metrics.snapshot();
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("failedInOutbox", mongoTemplate.count(
+            new Query(Criteria.where("status").is(OutboxStatus.FAILED)), EmailOutboxMessage.class));
+        return stats;
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                List<EmailOutboxMessage> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    wakeUp.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    sendBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Email outbox worker error: " + e.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim up to batchSize due messages for this worker, oldest first
+     */
+    List<EmailOutboxMessage> claimBatch() {
+        List<EmailOutboxMessage> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize) {
+            LocalDateTime now = LocalDateTime.now();
+            // Due pending messages, and messages whose sender stopped before finishing
+            EmailOutboxMessage claimed = mongoTemplate.findAndModify(
+                new Query(Criteria.where("status").in(OutboxStatus.PENDING, OutboxStatus.SENDING)
+                    .and("nextAttemptAt").lte(now))
+                    .with(Sort.by("nextAttemptAt")),
+                new Update().set("status", OutboxStatus.SENDING).set("nextAttemptAt", now.plus(CLAIM_TIMEOUT)),
+                FindAndModifyOptions.options().returnNew(true),
+                EmailOutboxMessage.class);
+            if (claimed == null) {
+                break;
+            }
+            batch.add(claimed);
+        }
+        return batch;
+    }
+
+    /**
+     * Send claimed messages over one SMTP connection and record the outcome of each
+     */
+    void sendBatch(List<EmailOutboxMessage> batch) {
+        Map<MimeMessage, EmailOutboxMessage> byMime = new LinkedHashMap<>();
+        for (EmailOutboxMessage message : batch) {
+            try {
+                byMime.put(toMimeMessage(message), message);
+            } catch (MessagingException e) {
+                // Invalid address or content: retrying cannot help
+                markFailed(message, e, true);
+            }
+        }
+        if (byMime.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Collections.emptyMap();
+        long start = System.nanoTime();
+        try {
+            mailSender.send(byMime.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Messages missing from the failed map were delivered
+            failures = e.getFailedMessages();
+            if (failures.isEmpty()) {
+                failures = allFailed(byMime.keySet(), e);
+            }
+        } catch (MailException e) {
+            // Connection or authentication failure: nothing was sent
+            failures = allFailed(byMime.keySet(), e);
+        }
+        metrics.recordBatch(byMime.size(), System.nanoTime() - start);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<MimeMessage, EmailOutboxMessage> entry : byMime.entrySet()) {
+            Exception failure = failures.get(entry.getKey());
+            if (failure == null) {
+                markSent(entry.getValue(), now);
+            } else {
+                markFailed(entry.getValue(), failure, false);
+            }
+        }
+    }
+
+    /**
+     * Delay before the next attempt: 30s doubling per attempt, at most an hour
+     */
+    static Duration retryDelay(int attempts) {
+        Duration delay = FIRST_RETRY_DELAY.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+
+    private MimeMessage toMimeMessage(EmailOutboxMessage message) throws MessagingException {
+        MimeMessage mime = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mime, true, "UTF-8");
+
+        helper.setFrom(fromEmail);
+        helper.setTo(message.getTo());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getHtmlContent(), true);
+        return mime;
+    }
+
+    /**
+     * Matches the message only while this worker's claim on it holds
+     * Once the claim has expired another worker may have claimed it again, and its outcome wins.
+     */
+    private Query claimed(EmailOutboxMessage message) {
+        return new Query(Criteria.where("id").is(message.getId())
+            .and("status").is(OutboxStatus.SENDING)
+            .and("nextAttemptAt").is(message.getNextAttemptAt()));
+    }
+
+    private void markSent(EmailOutboxMessage message, LocalDateTime now) {
+        long updated = mongoTemplate.updateFirst(
+            claimed(message),
+            new Update().set("status", OutboxStatus.SENT).set("sentAt", now).unset("nextAttemptAt")
+                .inc("attempts", 1),
+            EmailOutboxMessage.class).getModifiedCount();
+        if (updated == 0) {
+            System.err.println("Email outbox claim on " + message.getId() + " expired before it was marked sent");
+            return;
+        }
+        metrics.recordSent(Duration.between(message.getCreatedAt(), now).toMillis());
+    }
+
+    /**
+     * Schedule a retry, or give up once maxAttempts is reached or the failure is permanent
+     */
+    private void markFailed(EmailOutboxMessage message, Exception error, boolean permanent) {
+        int attempts = message.getAttempts() + 1;
+        String lastError = String.valueOf(error.getMessage());
+        if (lastError.length() > MAX_ERROR_LENGTH) {
+            lastError = lastError.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        boolean giveUp = permanent || attempts >= maxAttempts;
+        Update update = new Update().set("attempts", attempts).set("lastError", lastError);
+        if (giveUp) {
+            update.set("status", OutboxStatus.FAILED).unset("nextAttemptAt");
+        } else {
+            update.set("status", OutboxStatus.PENDING).set("nextAttemptAt", LocalDateTime.now().plus(retryDelay(attempts)));
+        }
+        long updated = mongoTemplate.updateFirst(claimed(message), update, EmailOutboxMessage.class).getModifiedCount();
+        if (updated == 0) {
+            System.err.println("Email outbox claim on " + message.getId() + " expired before it was marked failed");
+            return;
+        }
+
+        if (giveUp) {
+            metrics.recordFailed();
+            System.err.println("Giving up on email to " + message.getTo() + " after " + attempts + " attempts: " + lastError);
+        } else {
+            metrics.recordRetry();
+        }
+    }
+
+    private static Map<Object, Exception> allFailed(Collection<MimeMessage> messages, Exception error) {
+        Map<Object, Exception> failures = new HashMap<>();
+        messages.forEach(message -> failures.put(message, error));
+        return failures;
+    }
+}
@@ -5,31 +5,24 @@ import com.example.health_care_system.model.Doctor;
 import com.example.health_care_system.model.Hospital;
 import com.example.health_care_system.model.Patient;
 import com.example.health_care_system.model.Payment;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
 
 @Service
 public class EmailService {
     
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutboxService emailOutboxService;
     
     @Autowired
-    private TemplateEngine templateEngine;
-    
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    private EmailTemplateRenderer emailTemplateRenderer;
     
     @Value("${app.base.url}")
     private String baseUrl;
@@ -44,26 +37,12 @@ public class EmailService {
             Patient patient,
             Appointment appointment,
             Doctor doctor,
-            Hospital hospital) throws MessagingException {
+            Hospital hospital) {
         
-        Context context = new Context();
-        context.setVariable("patientName", patient.getName());
-        context.setVariable("appointmentId", appointment.getId());
-        context.setVariable("appointmentDate", appointment.getAppointmentDateTime().format(DATE_FORMATTER));
-        context.setVariable("appointmentTime", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
-        context.setVariable("doctorName", doctor.getName());
-        context.setVariable("doctorSpecialization", doctor.getSpecialization());
-        context.setVariable("hospitalName", hospital.getName());
-        context.setVariable("hospitalAddress", hospital.getLocation().getAddress());
-        context.setVariable("hospitalCity", hospital.getLocation().getCity());
-        context.setVariable("hospitalPhone", hospital.getContactInfo().getPhoneNumber());
-        context.setVariable("hospitalEmail", hospital.getContactInfo().getEmail());
-        context.setVariable("purpose", appointment.getPurpose() != null && !appointment.getPurpose().isEmpty() 
-                ? appointment.getPurpose() : "General Consultation");
-        context.setVariable("currentYear", String.valueOf(LocalDateTime.now().getYear()));
-        context.setVariable("baseUrl", baseUrl);
+        Map<String, String> variables = appointmentVariables(patient, appointment);
         
-        String htmlContent = templateEngine.process("emails/appointment-confirmation-government", context);
+        String htmlContent = emailTemplateRenderer.render("emails/appointment-confirmation-government",
+                staticVariables(doctor, hospital), variables);
         
         sendEmail(
             patient.getEmail(),
@@ -80,28 +59,14 @@ public class EmailService {
             Appointment appointment,
             Doctor doctor,
             Hospital hospital,
-            Payment payment) throws MessagingException {
+            Payment payment) {
         
-        Context context = new Context();
-        context.setVariable("patientName", patient.getName());
-        context.setVariable("appointmentId", appointment.getId());
-        context.setVariable("appointmentDate", appointment.getAppointmentDateTime().format(DATE_FORMATTER));
-        context.setVariable("appointmentTime", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
-        context.setVariable("doctorName", doctor.getName());
-        context.setVariable("doctorSpecialization", doctor.getSpecialization());
-        context.setVariable("hospitalName", hospital.getName());
-        context.setVariable("hospitalAddress", hospital.getLocation().getAddress());
-        context.setVariable("hospitalCity", hospital.getLocation().getCity());
-        context.setVariable("hospitalPhone", hospital.getContactInfo().getPhoneNumber());
-        context.setVariable("hospitalEmail", hospital.getContactInfo().getEmail());
-        context.setVariable("purpose", appointment.getPurpose() != null && !appointment.getPurpose().isEmpty() 
-                ? appointment.getPurpose() : "General Consultation");
-        context.setVariable("amount", formatCurrency(payment.getAmount()));
-        context.setVariable("paymentId", payment.getId());
-        context.setVariable("currentYear", String.valueOf(LocalDateTime.now().getYear()));
-        context.setVariable("baseUrl", baseUrl);
+        Map<String, String> variables = appointmentVariables(patient, appointment);
+        variables.put("amount", formatCurrency(payment.getAmount()));
+        variables.put("paymentId", payment.getId());
         
-        String htmlContent = templateEngine.process("emails/appointment-confirmation-cash", context);
+        String htmlContent = emailTemplateRenderer.render("emails/appointment-confirmation-cash",
+                staticVariables(doctor, hospital), variables);
         
         sendEmail(
             patient.getEmail(),
@@ -118,30 +83,16 @@ public class EmailService {
             Appointment appointment,
             Doctor doctor,
             Hospital hospital,
-            Payment payment) throws MessagingException {
+            Payment payment) {
         
-        Context context = new Context();
-        context.setVariable("patientName", patient.getName());
-        context.setVariable("appointmentId", appointment.getId());
-        context.setVariable("appointmentDate", appointment.getAppointmentDateTime().format(DATE_FORMATTER));
-        context.setVariable("appointmentTime", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
-        context.setVariable("doctorName", doctor.getName());
-        context.setVariable("doctorSpecialization", doctor.getSpecialization());
-        context.setVariable("hospitalName", hospital.getName());
-        context.setVariable("hospitalAddress", hospital.getLocation().getAddress());
-        context.setVariable("hospitalCity", hospital.getLocation().getCity());
-        context.setVariable("hospitalPhone", hospital.getContactInfo().getPhoneNumber());
-        context.setVariable("hospitalEmail", hospital.getContactInfo().getEmail());
-        context.setVariable("purpose", appointment.getPurpose() != null && !appointment.getPurpose().isEmpty() 
-                ? appointment.getPurpose() : "General Consultation");
-        context.setVariable("amount", formatCurrency(payment.getAmount()));
-        context.setVariable("paymentId", payment.getId());
-        context.setVariable("transactionId", payment.getTransactionId());
-        context.setVariable("paymentDate", payment.getCreatedAt().format(DATE_FORMATTER));
-        context.setVariable("currentYear", String.valueOf(LocalDateTime.now().getYear()));
-        context.setVariable("baseUrl", baseUrl);
+        Map<String, String> variables = appointmentVariables(patient, appointment);
+        variables.put("amount", formatCurrency(payment.getAmount()));
+        variables.put("paymentId", payment.getId());
+        variables.put("transactionId", payment.getTransactionId());
+        variables.put("paymentDate", payment.getCreatedAt().format(DATE_FORMATTER));
         
-        String htmlContent = templateEngine.process("emails/appointment-confirmation-card", context);
+        String htmlContent = emailTemplateRenderer.render("emails/appointment-confirmation-card",
+                staticVariables(doctor, hospital), variables);
         
         sendEmail(
             patient.getEmail(),
@@ -158,30 +109,16 @@ public class EmailService {
             Appointment appointment,
             Doctor doctor,
             Hospital hospital,
-            Payment payment) throws MessagingException {
+            Payment payment) {
         
-        Context context = new Context();
-        context.setVariable("patientName", patient.getName());
-        context.setVariable("appointmentId", appointment.getId());
-        context.setVariable("appointmentDate", appointment.getAppointmentDateTime().format(DATE_FORMATTER));
-        context.setVariable("appointmentTime", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
-        context.setVariable("doctorName", doctor.getName());
-        context.setVariable("doctorSpecialization", doctor.getSpecialization());
-        context.setVariable("hospitalName", hospital.getName());
-        context.setVariable("hospitalAddress", hospital.getLocation().getAddress());
-        context.setVariable("hospitalCity", hospital.getLocation().getCity());
-        context.setVariable("hospitalPhone", hospital.getContactInfo().getPhoneNumber());
-        context.setVariable("hospitalEmail", hospital.getContactInfo().getEmail());
-        context.setVariable("purpose", appointment.getPurpose() != null && !appointment.getPurpose().isEmpty() 
-                ? appointment.getPurpose() : "General Consultation");
-        context.setVariable("amount", formatCurrency(payment.getAmount()));
-        context.setVariable("insuranceProvider", payment.getInsuranceProvider());
-        context.setVariable("policyNumber", payment.getInsurancePolicyNumber());
-        context.setVariable("paymentId", payment.getId());
-        context.setVariable("currentYear", String.valueOf(LocalDateTime.now().getYear()));
-        context.setVariable("baseUrl", baseUrl);
+        Map<String, String> variables = appointmentVariables(patient, appointment);
+        variables.put("amount", formatCurrency(payment.getAmount()));
+        variables.put("insuranceProvider", payment.getInsuranceProvider());
+        variables.put("policyNumber", payment.getInsurancePolicyNumber());
+        variables.put("paymentId", payment.getId());
         
-        String htmlContent = templateEngine.process("emails/appointment-confirmation-insurance", context);
+        String htmlContent = emailTemplateRenderer.render("emails/appointment-confirmation-insurance",
+                staticVariables(doctor, hospital), variables);
         
         sendEmail(
             patient.getEmail(),
@@ -190,19 +127,43 @@ public class EmailService {
         );
     }
     
+    /**
+     * Values shared by every confirmation for the same doctor and hospital (cached with the rendered template)
+     */
+    private Map<String, Object> staticVariables(Doctor doctor, Hospital hospital) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("doctorName", doctor.getName());
+        variables.put("doctorSpecialization", doctor.getSpecialization());
+        variables.put("hospitalName", hospital.getName());
+        variables.put("hospitalAddress", hospital.getLocation().getAddress());
+        variables.put("hospitalCity", hospital.getLocation().getCity());
+        variables.put("hospitalPhone", hospital.getContactInfo().getPhoneNumber());
+        variables.put("hospitalEmail", hospital.getContactInfo().getEmail());
+        variables.put("currentYear", String.valueOf(LocalDateTime.now().getYear()));
+        variables.put("baseUrl", baseUrl);
+        return variables;
+    }
+    
+    /**
+     * Values of a single appointment, common to all confirmation emails
+     */
+    private Map<String, String> appointmentVariables(Patient patient, Appointment appointment) {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("patientName", patient.getName());
+        variables.put("appointmentId", appointment.getId());
+        variables.put("appointmentDate", appointment.getAppointmentDateTime().format(DATE_FORMATTER));
+        variables.put("appointmentTime", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
+        variables.put("purpose", appointment.getPurpose() != null && !appointment.getPurpose().isEmpty() 
+                ? appointment.getPurpose() : "General Consultation");
+        return variables;
+    }
+    
     /**
      * Helper method to send email
+     * The message is written to the outbox and sent by EmailOutboxService, off the request thread.
      */
-    private void sendEmail(String to, String subject, String htmlContent) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-        
-        helper.setFrom(fromEmail);
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
-        
-        mailSender.send(message);
+    private void sendEmail(String to, String subject, String htmlContent) {
+        emailOutboxService.enqueue(to, subject, htmlContent);
     }
     
     /**
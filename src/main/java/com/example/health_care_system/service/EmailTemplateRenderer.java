@@ -0,0 +1,122 @@
+package com.example.health_care_system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.unbescape.html.HtmlEscape;
+
+import java.util.*;
+
+/**
+ * Renders confirmation emails in two stages.
+ * A template is rendered once per set of static values (hospital, doctor, year) with a marker in place
+ * of each per-appointment value, and the output is kept split at the markers. Each email is then
+ * the cached text with the escaped per-appointment values spliced in, without running Thymeleaf.
+ * Per-appointment values may only be used as plain th:text in the templates.
+ */
+@Service
+public class EmailTemplateRenderer {
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Value("${app.mail.template-cache-entries:512}")
+    private int cacheEntries = 512;
+
+    static final List<String> TEMPLATES = List.of(
+        "emails/appointment-confirmation-government",
+        "emails/appointment-confirmation-cash",
+        "emails/appointment-confirmation-card",
+        "emails/appointment-confirmation-insurance"
+    );
+
+    private static final String MARKER_START = "@@EMAIL_VAR_";
+    private static final String MARKER_END = "@@";
+
+    private final Map<String, CompiledEmail> compiled = Collections.synchronizedMap(
+        new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledEmail> eldest) {
+                return size() > cacheEntries;
+            }
+        });
+
+    /**
+     * Template output split at the per-appointment values: literal text alternating with variable names
+     */
+    private record CompiledEmail(List<String> literals, List<String> variables, int length) {
+    }
+
+    /**
+     * Parse the email templates at startup so the first confirmation after a deploy does not pay for it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precompileTemplates() {
+        for (String template : TEMPLATES) {
+            try {
+                templateEngine.process(template, new Context());
+            } catch (Exception e) {
+                System.err.println("Failed to precompile email template " + template + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Render an email template
+     * @param staticVariables - Values shared by many emails (hospital, doctor); part of the cache key
+     * @param appointmentVariables - Values of this email only; null renders as empty text like th:text
+     */
+    public String render(String template, Map<String, Object> staticVariables, Map<String, String> appointmentVariables) {
+        String key = cacheKey(template, staticVariables, appointmentVariables.keySet());
+        CompiledEmail email = compiled.get(key);
+        if (email == null) {
+            email = compile(template, staticVariables, appointmentVariables.keySet());
+            compiled.put(key, email);
+        }
+
+        StringBuilder html = new StringBuilder(email.length() + 512);
+        for (int i = 0; i < email.variables().size(); i++) {
+            html.append(email.literals().get(i));
+            String value = appointmentVariables.get(email.variables().get(i));
+            if (value != null) {
+                html.append(HtmlEscape.escapeHtml4Xml(value));
+            }
+        }
+        html.append(email.literals().get(email.literals().size() - 1));
+        return html.toString();
+    }
+
+    private CompiledEmail compile(String template, Map<String, Object> staticVariables, Set<String> appointmentVariables) {
+        Context context = new Context();
+        context.setVariables(staticVariables);
+        for (String name : appointmentVariables) {
+            context.setVariable(name, MARKER_START + name + MARKER_END);
+        }
+        String rendered = templateEngine.process(template, context);
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        int start;
+        while ((start = rendered.indexOf(MARKER_START, position)) >= 0) {
+            int end = rendered.indexOf(MARKER_END, start + MARKER_START.length());
+            String name = rendered.substring(start + MARKER_START.length(), end);
+            literals.add(rendered.substring(position, start));
+            variables.add(name);
+            position = end + MARKER_END.length();
+        }
+        literals.add(rendered.substring(position));
+        return new CompiledEmail(literals, variables, rendered.length());
+    }
+
+    private static String cacheKey(String template, Map<String, Object> staticVariables, Set<String> appointmentVariables) {
+        StringBuilder key = new StringBuilder(template);
+        new TreeMap<>(staticVariables).forEach((name, value) -> key.append('\u0000').append(name).append('=').append(value));
+        new TreeSet<>(appointmentVariables).forEach(name -> key.append('\u0000').append(name));
+        return key.toString();
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.HealthCard;
+import com.example.health_care_system.model.Patient;
+import com.example.health_care_system.model.UserRole;
+import com.example.health_care_system.repository.HealthCardRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Issues health cards for a whole patient population at once.
+ * Patients matching a filter are read in batches: cards missing in a batch are created with one
+ * insert, QR codes and card images are rendered in parallel on a bounded worker pool that reuses
+ * card canvases, and the PNGs are written to a ZIP stream in patient order while later cards render.
+ */
+@Service
+@Slf4j
+public class HealthCardIssuanceService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private HealthCardRepository healthCardRepository;
+
+    @Autowired
+    private HealthCardService healthCardService;
+
+    // 0 uses one worker per core
+    @Value("${app.health-card.issuance-workers:0}")
+    private int workers = 0;
+
+    static final int BATCH_SIZE = 256;
+
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    private ExecutorService executor;
+
+    // One canvas per worker; drawHealthCard repaints the whole image, so canvases are reused as is
+    private BlockingQueue<BufferedImage> canvases;
+
+    /**
+     * Which patients to issue cards for
+     * @param hospitalId - Hospital the patients are registered with; null for all hospitals
+     * @param includeInactive - Also issue cards for deactivated patients
+     */
+    public record PatientFilter(String hospitalId, boolean includeInactive) {
+    }
+
+    /**
+     * Outcome of an issuance run
+     */
+    public record IssuanceReport(int patients, int cardsCreated, long elapsedMillis) {
+        public double cardsPerSecond() {
+            return elapsedMillis == 0 ? patients : patients * 1000.0 / elapsedMillis;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "card-issuance-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        canvases = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Create missing health cards for the matching patients and write every card image to a ZIP
+     * The archive ends with issuance-report.txt holding the counts and throughput.
+     */
+    public IssuanceReport issueCards(PatientFilter filter, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        int patientCount = 0;
+        int created = 0;
+
+        Criteria criteria = Criteria.where("role").is(UserRole.PATIENT.name());
+        if (filter.hospitalId() != null) {
+            criteria.and("hospitalId").is(filter.hospitalId());
+        }
+        if (!filter.includeInactive()) {
+            criteria.and("active").ne(false);
+        }
+        Query query = new Query(criteria).with(Sort.by("id")).cursorBatchSize(CURSOR_BATCH_SIZE);
+        query.fields().include("name").include("bloodGroup");
+
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // PNG data does not compress further
+        zip.setLevel(Deflater.NO_COMPRESSION);
+
+        List<Patient> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Patient> patients = mongoTemplate.stream(query, Patient.class)) {
+            Iterator<Patient> iterator = patients.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == BATCH_SIZE) {
+                    created += issueBatch(batch, zip);
+                    patientCount += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            created += issueBatch(batch, zip);
+            patientCount += batch.size();
+        }
+
+        IssuanceReport report = new IssuanceReport(patientCount, created,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        zip.putNextEntry(new ZipEntry("issuance-report.txt"));
+        zip.write(String.format(Locale.ROOT, "patients=%d%ncardsCreated=%d%nelapsedMillis=%d%ncardsPerSecond=%.1f%n",
+            report.patients(), report.cardsCreated(), report.elapsedMillis(), report.cardsPerSecond())
+            .getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        zip.finish();
+
+        log.info("Issued {} health cards ({} new) in {} ms, {} cards/s", report.patients(), report.cardsCreated(),
+            report.elapsedMillis(), String.format(Locale.ROOT, "%.1f", report.cardsPerSecond()));
+        return report;
+    }
+
+    /**
+     * @return Number of cards created for the batch
+     */
+    private int issueBatch(List<Patient> batch, ZipOutputStream zip) throws IOException {
+        Map<String, HealthCard> cards = new HashMap<>();
+        healthCardRepository.findByPatientIdIn(batch.stream().map(Patient::getId).toList())
+            .forEach(card -> cards.put(card.getPatientId(), card));
+
+        // QR codes for the missing cards in parallel, then one insert
+        List<Future<HealthCard>> pendingCards = new ArrayList<>();
+        for (Patient patient : batch) {
+            if (!cards.containsKey(patient.getId())) {
+                pendingCards.add(executor.submit(() -> healthCardService.newHealthCard(patient)));
+            }
+        }
+        List<HealthCard> newCards = new ArrayList<>(pendingCards.size());
+        for (Future<HealthCard> pending : pendingCards) {
+            newCards.add(await(pending));
+        }
+        int created = newCards.isEmpty() ? 0 : insertCards(newCards, cards);
+
+        // Render in parallel; write in order as each image completes
+        List<Future<byte[]>> images = new ArrayList<>(batch.size());
+        for (Patient patient : batch) {
+            HealthCard card = cards.get(patient.getId());
+            images.add(executor.submit(() -> render(card)));
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            zip.putNextEntry(new ZipEntry(entryName(cards.get(batch.get(i).getId()))));
+            zip.write(await(images.get(i)));
+            zip.closeEntry();
+        }
+        return created;
+    }
+
+    /**
+     * Insert the new cards of a batch and add them to the patient → card map
+     * A card created concurrently for the same patient fails the insert on the unique patientId index;
+     * the stored cards are then re-read and used, and only cards written by this run are counted.
+     * @return Number of cards inserted
+     */
+    private int insertCards(List<HealthCard> newCards, Map<String, HealthCard> cards) {
+        // Ids are assigned up front so the cards this run wrote can be told apart after a failed insert
+        newCards.forEach(card -> card.setId(new ObjectId().toHexString()));
+        try {
+            healthCardRepository.insert(newCards).forEach(card -> cards.put(card.getPatientId(), card));
+            return newCards.size();
+        } catch (DuplicateKeyException e) {
+            log.info("Some health cards of the batch already exist, re-reading them: {}", e.getMessage());
+        }
+
+        // The ordered insert stops at the first duplicate; insert the cards still missing one by one
+        Map<String, HealthCard> stored = new HashMap<>();
+        healthCardRepository.findByPatientIdIn(newCards.stream().map(HealthCard::getPatientId).toList())
+            .forEach(card -> stored.put(card.getPatientId(), card));
+        int created = 0;
+        for (HealthCard card : newCards) {
+            HealthCard existing = stored.get(card.getPatientId());
+            if (existing == null) {
+                try {
+                    existing = healthCardRepository.insert(card);
+                    created++;
+                } catch (DuplicateKeyException e) {
+                    existing = healthCardRepository.findByPatientId(card.getPatientId()).orElseThrow(() -> e);
+                }
+            } else if (existing.getId().equals(card.getId())) {
+                created++;
+            }
+            cards.put(card.getPatientId(), existing);
+        }
+        return created;
+    }
+
+    private byte[] render(HealthCard card) throws IOException {
+        BufferedImage canvas = canvases.poll();
+        if (canvas == null) {
+            canvas = healthCardService.newCardCanvas();
+        }
+        try {
+            healthCardService.drawHealthCard(card, canvas);
+            return healthCardService.encodePng(canvas);
+        } finally {
+            canvases.offer(canvas);
+        }
+    }
+
+    private static String entryName(HealthCard card) {
+        String name = card.getPatientName() != null ? card.getPatientName().replaceAll("[^A-Za-z0-9_-]", "_") : "patient";
+        return "health-card-" + name + "-" + card.getPatientId() + ".png";
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Health card issuance interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to issue health card: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -6,6 +6,8 @@ import com.example.health_care_system.model.Patient;
 import com.example.health_care_system.repository.HealthCardRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
@@ -14,10 +16,16 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Base64;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -25,9 +33,62 @@ import java.util.Optional;
 @Slf4j
 public class HealthCardService {
     
+    // Card dimensions (Credit card ratio - 1.586:1)
+    static final int CARD_WIDTH = 1000;
+    static final int CARD_HEIGHT = 630;
+    
+    // Drawing resources shared by every render (immutable, safe across threads)
+    private static final Color BLUE_50 = new Color(239, 246, 255);
+    private static final Color BLUE_100 = new Color(219, 234, 254);
+    private static final Color BLUE_200 = new Color(191, 219, 254);
+    private static final Color BLUE_300 = new Color(147, 197, 253);
+    private static final Color BLUE_400 = new Color(96, 165, 250);
+    private static final Color BLUE_500 = new Color(59, 130, 246);
+    private static final Color BLUE_800 = new Color(30, 64, 175);
+    private static final Color GRAY_500 = new Color(107, 114, 128);
+    private static final Color GRAY_700 = new Color(55, 65, 81);
+    private static final Color GRAY_900 = new Color(17, 24, 39);
+    private static final Color GREEN_200 = new Color(187, 247, 208);
+    private static final Color GREEN_600 = new Color(22, 163, 74);
+    private static final Color GREEN_700 = new Color(21, 128, 61);
+    private static final Color RED_200 = new Color(254, 202, 202);
+    private static final Color RED_600 = new Color(220, 38, 38);
+    private static final Color RED_700 = new Color(185, 28, 28);
+    private static final Font MONO_PLAIN_20 = new Font("Monospaced", Font.PLAIN, 20);
+    private static final Font SANS_BOLD_14 = new Font("SansSerif", Font.BOLD, 14);
+    private static final Font SANS_BOLD_16 = new Font("SansSerif", Font.BOLD, 16);
+    private static final Font SANS_BOLD_28 = new Font("SansSerif", Font.BOLD, 28);
+    private static final Font SANS_BOLD_30 = new Font("SansSerif", Font.BOLD, 30);
+    private static final Font SANS_BOLD_40 = new Font("SansSerif", Font.BOLD, 40);
+    private static final Font SANS_PLAIN_12 = new Font("SansSerif", Font.PLAIN, 12);
+    private static final Font SANS_PLAIN_16 = new Font("SansSerif", Font.PLAIN, 16);
+    private static final Font SANS_PLAIN_18 = new Font("SansSerif", Font.PLAIN, 18);
+    private static final BasicStroke STROKE_2 = new BasicStroke(2);
+    private static final BasicStroke STROKE_3 = new BasicStroke(3);
+    private static final BasicStroke STROKE_8 = new BasicStroke(8);
+    private static final DateTimeFormatter CARD_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    
     private final HealthCardRepository healthCardRepository;
     private final QRCodeService qrCodeService;
     
+    @Value("${app.health-card.image-cache-entries:256}")
+    private int imageCacheEntries = 256;
+    
+    // Rendered card PNGs by card id; an entry is only served while its version still matches the card
+    private final Map<String, HealthCardImage> renderedImages = Collections.synchronizedMap(
+        new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HealthCardImage> eldest) {
+                return size() > imageCacheEntries;
+            }
+        });
+    
+    /**
+     * A rendered health card; the version doubles as a strong ETag
+     */
+    public record HealthCardImage(String version, byte[] png) {
+    }
+    
     /**
      * Create a new health card for a patient
      */
@@ -39,6 +100,25 @@ public class HealthCardService {
             return existingCard.get();
         }
         
+        HealthCard healthCard = newHealthCard(patient);
+        
+        HealthCard savedCard;
+        try {
+            savedCard = healthCardRepository.save(healthCard);
+        } catch (DuplicateKeyException e) {
+            // Created concurrently; patientId is unique
+            log.info("Health card already exists for patient: {}", patient.getId());
+            return healthCardRepository.findByPatientId(patient.getId()).orElseThrow(() -> e);
+        }
+        log.info("Health card created successfully for patient: {}", patient.getId());
+        
+        return savedCard;
+    }
+    
+    /**
+     * Build an unsaved, active health card for a patient, generating its QR code
+     */
+    HealthCard newHealthCard(Patient patient) {
         // Generate QR code for the patient
         String qrCode = qrCodeService.generateQRCode(patient.getId());
         
@@ -53,11 +133,7 @@ public class HealthCardService {
         healthCard.setExpireDate(LocalDate.now().plusYears(1)); // Valid for 1 year
         healthCard.setCreatedAt(LocalDateTime.now());
         healthCard.setUpdatedAt(LocalDateTime.now());
-        
-        HealthCard savedCard = healthCardRepository.save(healthCard);
-        log.info("Health card created successfully for patient: {}", patient.getId());
-        
-        return savedCard;
+        return healthCard;
     }
     
     /**
@@ -84,14 +160,18 @@ public class HealthCardService {
         healthCard.setStatus(status);
         healthCard.setUpdatedAt(LocalDateTime.now());
         
-        return healthCardRepository.save(healthCard);
+        HealthCard savedCard = healthCardRepository.save(healthCard);
+        evictHealthCardImage(healthCardId);
+        return savedCard;
     }
     
     /**
      * Update health card
      */
     public HealthCard updateHealthCard(HealthCard healthCard) {
-        return healthCardRepository.save(healthCard);
+        HealthCard savedCard = healthCardRepository.save(healthCard);
+        evictHealthCardImage(savedCard.getId());
+        return savedCard;
     }
     
     /**
@@ -105,7 +185,9 @@ public class HealthCardService {
         healthCard.setStatus("ACTIVE");
         healthCard.setUpdatedAt(LocalDateTime.now());
         
-        return healthCardRepository.save(healthCard);
+        HealthCard savedCard = healthCardRepository.save(healthCard);
+        evictHealthCardImage(healthCardId);
+        return savedCard;
     }
     
     /**
@@ -131,16 +213,75 @@ public class HealthCardService {
         return dto;
     }
     
+    /**
+     * Version of the card image: the card id plus a hash of everything drawn on it
+     * Includes the expired flag, so the image changes the day the card expires without any write.
+     */
+    public String getHealthCardImageVersion(HealthCard healthCard) {
+        String rendered = String.join("|",
+                String.valueOf(healthCard.getPatientName()),
+                String.valueOf(healthCard.getBloodGroup()),
+                String.valueOf(healthCard.getQrCode()),
+                String.valueOf(healthCard.getStatus()),
+                String.valueOf(healthCard.getCreateDate()),
+                String.valueOf(healthCard.getExpireDate()),
+                String.valueOf(healthCard.getUpdatedAt()),
+                String.valueOf(isHealthCardExpired(healthCard)));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(rendered.getBytes(StandardCharsets.UTF_8));
+            return healthCard.getId() + "-" + HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Get the card image from the cache, rendering it only when the card changed since it was cached
+     */
+    public HealthCardImage getHealthCardImage(HealthCard healthCard) throws IOException {
+        String version = getHealthCardImageVersion(healthCard);
+        HealthCardImage cached = renderedImages.get(healthCard.getId());
+        if (cached != null && cached.version().equals(version)) {
+            return cached;
+        }
+        
+        HealthCardImage image = new HealthCardImage(version, generateHealthCardImage(healthCard));
+        renderedImages.put(healthCard.getId(), image);
+        return image;
+    }
+    
+    /**
+     * Drop the cached image of a card after it was changed
+     */
+    public void evictHealthCardImage(String healthCardId) {
+        if (healthCardId != null) {
+            renderedImages.remove(healthCardId);
+        }
+    }
+    
     /**
      * Generate a visual health card image with all details
      */
     public byte[] generateHealthCardImage(HealthCard healthCard) throws IOException {
-        // Card dimensions (Credit card ratio - 1.586:1)
-        int cardWidth = 1000;
-        int cardHeight = 630;
+        BufferedImage cardImage = newCardCanvas();
+        drawHealthCard(healthCard, cardImage);
+        return encodePng(cardImage);
+    }
+    
+    /**
+     * Blank image to draw a card on; drawHealthCard repaints every pixel, so one canvas can be reused
+     */
+    BufferedImage newCardCanvas() {
+        return new BufferedImage(CARD_WIDTH, CARD_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+    
+    /**
+     * Draw a card onto a canvas from newCardCanvas
+     */
+    void drawHealthCard(HealthCard healthCard, BufferedImage cardImage) {
+        int cardWidth = CARD_WIDTH;
+        int cardHeight = CARD_HEIGHT;
         
-        // Create buffered image with higher quality
-        BufferedImage cardImage = new BufferedImage(cardWidth, cardHeight, BufferedImage.TYPE_INT_RGB);
         Graphics2D g2d = cardImage.createGraphics();
         
         // Enable anti-aliasing for better quality
@@ -153,41 +294,41 @@ public class HealthCardService {
         g2d.fillRect(0, 0, cardWidth, cardHeight);
         
         // Draw subtle light blue border
-        g2d.setColor(new Color(191, 219, 254)); // Light blue 200
-        g2d.setStroke(new BasicStroke(8));
+        g2d.setColor(BLUE_200);
+        g2d.setStroke(STROKE_8);
         g2d.drawRoundRect(4, 4, cardWidth - 8, cardHeight - 8, 30, 30);
         
         // ==== HEADER SECTION ====
         // Draw light blue header background
-        g2d.setColor(new Color(219, 234, 254)); // Light blue 100
+        g2d.setColor(BLUE_100);
         g2d.fillRoundRect(30, 30, cardWidth - 60, 100, 20, 20);
         
         // Draw header text
-        g2d.setColor(new Color(30, 64, 175)); // Blue 800
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 40));
+        g2d.setColor(BLUE_800);
+        g2d.setFont(SANS_BOLD_40);
         g2d.drawString("HEALTH CARD", 50, 90);
         
         // Draw subtitle
-        g2d.setColor(new Color(96, 165, 250)); // Blue 400
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 16));
+        g2d.setColor(BLUE_400);
+        g2d.setFont(SANS_PLAIN_16);
         g2d.drawString("Official Medical Identification", 50, 115);
         
         // Draw status badge
         int badgeX = cardWidth - 160;
         int badgeY = 50;
         if (isHealthCardExpired(healthCard)) {
-            g2d.setColor(new Color(254, 202, 202)); // Red 200
+            g2d.setColor(RED_200);
         } else {
-            g2d.setColor(new Color(187, 247, 208)); // Green 200
+            g2d.setColor(GREEN_200);
         }
         g2d.fillRoundRect(badgeX, badgeY, 110, 45, 23, 23);
         
         if (isHealthCardExpired(healthCard)) {
-            g2d.setColor(new Color(185, 28, 28)); // Red 700
+            g2d.setColor(RED_700);
         } else {
-            g2d.setColor(new Color(21, 128, 61)); // Green 700
+            g2d.setColor(GREEN_700);
         }
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 16));
+        g2d.setFont(SANS_BOLD_16);
         String statusText = isHealthCardExpired(healthCard) ? "EXPIRED" : "ACTIVE";
         FontMetrics statusFm = g2d.getFontMetrics();
         int statusWidth = statusFm.stringWidth(statusText);
@@ -197,83 +338,76 @@ public class HealthCardService {
         int contentY = 160;
         
         // Patient Name Section
-        g2d.setColor(new Color(147, 197, 253)); // Blue 300
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setColor(BLUE_300);
+        g2d.setFont(SANS_BOLD_14);
         g2d.drawString("PATIENT NAME", 50, contentY + 20);
         
-        g2d.setColor(new Color(17, 24, 39)); // Gray 900
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 30));
+        g2d.setColor(GRAY_900);
+        g2d.setFont(SANS_BOLD_30);
         g2d.drawString(healthCard.getPatientName().toUpperCase(), 50, contentY + 55);
         
         // Draw divider line
-        g2d.setColor(new Color(219, 234, 254)); // Light blue 100
-        g2d.setStroke(new BasicStroke(2));
+        g2d.setColor(BLUE_100);
+        g2d.setStroke(STROKE_2);
         g2d.drawLine(50, contentY + 75, cardWidth - 300, contentY + 75);
         
         // Card ID Section - Only show last 6 digits
-        g2d.setColor(new Color(147, 197, 253)); // Blue 300
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setColor(BLUE_300);
+        g2d.setFont(SANS_BOLD_14);
         g2d.drawString("CARD NUMBER", 50, contentY + 110);
         
-        g2d.setColor(new Color(55, 65, 81)); // Gray 700
-        g2d.setFont(new Font("Monospaced", Font.PLAIN, 20));
+        g2d.setColor(GRAY_700);
+        g2d.setFont(MONO_PLAIN_20);
         String fullCardId = healthCard.getId();
         // Show only last 12 digits
         String lastTwelveDigits = fullCardId.substring(Math.max(0, fullCardId.length() - 12));
         g2d.drawString(lastTwelveDigits.toUpperCase(), 50, contentY + 140);
         
         // Blood Group Section
-        g2d.setColor(new Color(147, 197, 253)); // Blue 300
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setColor(BLUE_300);
+        g2d.setFont(SANS_BOLD_14);
         g2d.drawString("BLOOD GROUP", 400, contentY + 110);
         
-        g2d.setColor(new Color(220, 38, 38)); // Red 600
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 28));
+        g2d.setColor(RED_600);
+        g2d.setFont(SANS_BOLD_28);
         String bloodGroup = healthCard.getBloodGroup() != null && !healthCard.getBloodGroup().isEmpty() 
                             ? healthCard.getBloodGroup() : "N/A";
         g2d.drawString(bloodGroup, 400, contentY + 145);
         
         // Date Information Section
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd MMM yyyy");
-        
         // Issue Date
-        g2d.setColor(new Color(147, 197, 253)); // Blue 300
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setColor(BLUE_300);
+        g2d.setFont(SANS_BOLD_14);
         g2d.drawString("ISSUED", 50, contentY + 185);
         
-        g2d.setColor(new Color(55, 65, 81)); // Gray 700
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 18));
-        g2d.drawString(healthCard.getCreateDate().format(formatter), 50, contentY + 210);
+        g2d.setColor(GRAY_700);
+        g2d.setFont(SANS_PLAIN_18);
+        g2d.drawString(healthCard.getCreateDate().format(CARD_DATE_FORMATTER), 50, contentY + 210);
         
         // Expiry Date
-        g2d.setColor(new Color(147, 197, 253)); // Blue 300
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setColor(BLUE_300);
+        g2d.setFont(SANS_BOLD_14);
         g2d.drawString("EXPIRES", 250, contentY + 185);
         
-        g2d.setColor(new Color(55, 65, 81)); // Gray 700
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 18));
-        g2d.drawString(healthCard.getExpireDate().format(formatter), 250, contentY + 210);
+        g2d.setColor(GRAY_700);
+        g2d.setFont(SANS_PLAIN_18);
+        g2d.drawString(healthCard.getExpireDate().format(CARD_DATE_FORMATTER), 250, contentY + 210);
         
         // Validity indicator
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setFont(SANS_BOLD_14);
         if (isHealthCardExpired(healthCard)) {
-            g2d.setColor(new Color(220, 38, 38)); // Red 600
+            g2d.setColor(RED_600);
             g2d.drawString("⚠ Card Expired - Please Renew", 50, contentY + 255);
         } else {
-            g2d.setColor(new Color(22, 163, 74)); // Green 600
+            g2d.setColor(GREEN_600);
             g2d.drawString("✓ Valid for Medical Services", 50, contentY + 255);
         }
         
         // ==== QR CODE SECTION ====
         if (healthCard.getQrCode() != null && !healthCard.getQrCode().isEmpty()) {
             try {
-                // Extract base64 data
-                String base64Data = healthCard.getQrCode();
-                if (base64Data.startsWith("data:image/png;base64,")) {
-                    base64Data = base64Data.substring("data:image/png;base64,".length());
-                }
-                
-                byte[] imageBytes = Base64.getDecoder().decode(base64Data);
+                // Cached PNG behind the stored reference (or a legacy embedded image)
+                byte[] imageBytes = qrCodeService.resolveQRCode(healthCard.getQrCode());
                 BufferedImage qrImage = ImageIO.read(new ByteArrayInputStream(imageBytes));
                 
                 int qrSize = 240;
@@ -281,20 +415,20 @@ public class HealthCardService {
                 int qrY = contentY + 10;
                 
                 // Draw light background for QR code
-                g2d.setColor(new Color(239, 246, 255)); // Blue 50
+                g2d.setColor(BLUE_50);
                 g2d.fillRoundRect(qrX - 20, qrY - 20, qrSize + 40, qrSize + 75, 20, 20);
                 
                 // Draw simple border
-                g2d.setColor(new Color(191, 219, 254)); // Light blue 200
-                g2d.setStroke(new BasicStroke(3));
+                g2d.setColor(BLUE_200);
+                g2d.setStroke(STROKE_3);
                 g2d.drawRoundRect(qrX - 20, qrY - 20, qrSize + 40, qrSize + 75, 20, 20);
                 
                 // Draw QR code
                 g2d.drawImage(qrImage, qrX, qrY, qrSize, qrSize, null);
                 
                 // Draw "SCAN HERE" label
-                g2d.setColor(new Color(59, 130, 246)); // Blue 500
-                g2d.setFont(new Font("SansSerif", Font.BOLD, 16));
+                g2d.setColor(BLUE_500);
+                g2d.setFont(SANS_BOLD_16);
                 String scanText = "SCAN HERE";
                 FontMetrics fm = g2d.getFontMetrics();
                 int textWidth = fm.stringWidth(scanText);
@@ -307,21 +441,25 @@ public class HealthCardService {
         
         // ==== FOOTER SECTION ====
         // Draw light footer background
-        g2d.setColor(new Color(239, 246, 255)); // Blue 50
+        g2d.setColor(BLUE_50);
         g2d.fillRoundRect(30, cardHeight - 80, cardWidth - 60, 50, 20, 20);
         
         // Draw footer text
-        g2d.setColor(new Color(55, 65, 81)); // Gray 700
-        g2d.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2d.setColor(GRAY_700);
+        g2d.setFont(SANS_BOLD_14);
         g2d.drawString("Healthcare System", 50, cardHeight - 47);
         
-        g2d.setColor(new Color(107, 114, 128)); // Gray 500
-        g2d.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        g2d.setColor(GRAY_500);
+        g2d.setFont(SANS_PLAIN_12);
         g2d.drawString("Keep this card safe and present at every visit  •  Emergency: +1-800-HEALTH", 230, cardHeight - 47);
         
         g2d.dispose();
-        
-        // Convert to byte array with high quality
+    }
+    
+    /**
+     * Encode a drawn card as PNG
+     */
+    byte[] encodePng(BufferedImage cardImage) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ImageIO.write(cardImage, "PNG", baos);
         return baos.toByteArray();
@@ -0,0 +1,342 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.LeaderboardEntry;
+import com.example.health_care_system.model.LeaderboardEntry.Board;
+import com.example.health_care_system.model.MedicalRecord;
+import com.example.health_care_system.model.User;
+import com.example.health_care_system.model.UserRole;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Maintains the "top patients" and "top doctors" leaderboards
+ * Counters are moved with $inc on appointment and medical record events, so the top K is
+ * an index read. Before the leaderboards are built, the top K is selected with a bounded heap
+ * over one streaming scan instead of sorting everyone. rebuild() writes into a staging collection
+ * and renames it over the live one, so readers never see an empty board and live $inc updates
+ * never race the bulk inserts.
+ */
+@Service
+public class LeaderboardService {
+
+    static final String LEADERBOARD_COLLECTION = "leaderboards";
+    static final String STAGING_COLLECTION = "leaderboards_rebuild";
+    private static final int BULK_BATCH_SIZE = 500;
+
+    // Entry ids updated by live events while a rebuild is running; null otherwise
+    private Set<String> dirtyEntries;
+    private final Object dirtyEntriesLock = new Object();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private StreamingAggregator streamingAggregator;
+
+    @Value("${app.analytics.leaderboard-size:10}")
+    private int leaderboardSize = 10;
+
+    /**
+     * Number of entries shown in report leaderboards
+     */
+    public int getLeaderboardSize() {
+        return leaderboardSize;
+    }
+
+    /**
+     * Count new appointments and move the doctor's completed/cancelled counters on status changes
+     */
+    @EventListener
+    public void onAppointmentChanged(AppointmentChangedEvent event) {
+        Appointment appointment = event.appointment();
+        boolean created = event.previousDateTime() == null && event.previousStatus() == null;
+
+        try {
+            if (created && appointment.getPatientId() != null) {
+                Map<String, Long> deltas = new HashMap<>();
+                deltas.put("appointments", 1L);
+                deltas.put("score", 1L);
+                apply(Board.PATIENT_VISITS, appointment.getPatientId(), appointment.getPatientName(), deltas);
+            }
+
+            if (appointment.getDoctorId() != null) {
+                Map<String, Long> deltas = new HashMap<>();
+                if (created) {
+                    deltas.put("appointments", 1L);
+                    deltas.put("score", 1L);
+                }
+                if (event.previousStatus() != appointment.getStatus()) {
+                    addStatusDelta(deltas, event.previousStatus(), -1);
+                    addStatusDelta(deltas, appointment.getStatus(), 1);
+                }
+                apply(Board.DOCTOR_APPOINTMENTS, appointment.getDoctorId(), appointment.getDoctorName(), deltas);
+            }
+        } catch (Exception e) {
+            // Never fail the booking flow; rebuild() repairs drifted counters
+            System.err.println("Failed to update leaderboards for appointment " + appointment.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Count medical records for the patient (as visits) and the doctor
+     */
+    @EventListener
+    public void onMedicalRecordChanged(MedicalRecordChangedEvent event) {
+        MedicalRecord record = event.medicalRecord();
+        long delta = event.delta();
+
+        try {
+            if (record.getPatientId() != null) {
+                Map<String, Long> deltas = new HashMap<>();
+                deltas.put("medicalRecords", delta);
+                deltas.put("score", delta);
+                apply(Board.PATIENT_VISITS, record.getPatientId(), record.getPatientName(), deltas);
+            }
+            if (record.getDoctorId() != null) {
+                Map<String, Long> deltas = new HashMap<>();
+                deltas.put("medicalRecords", delta);
+                apply(Board.DOCTOR_APPOINTMENTS, record.getDoctorId(), record.getDoctorName(), deltas);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to update leaderboards for medical record " + record.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the K highest scoring entries of a board, highest first
+     */
+    public List<LeaderboardEntry> getTop(Board board, int k) {
+        Query query = new Query(Criteria.where("board").is(board))
+            .with(Sort.by(Sort.Order.desc("score"), Sort.Order.asc("subjectId")))
+            .limit(k);
+        List<LeaderboardEntry> top = mongoTemplate.find(query, LeaderboardEntry.class);
+        if (!top.isEmpty()) {
+            return top;
+        }
+
+        // Not built yet: keep only the K best while scanning
+        StreamingAggregator.TopK<LeaderboardEntry> heap = new StreamingAggregator.TopK<>(k,
+            Comparator.comparingLong(LeaderboardEntry::getScore)
+                .thenComparing(LeaderboardEntry::getSubjectId, Comparator.reverseOrder()));
+        scan(board, heap);
+        return heap.getTop();
+    }
+
+    /**
+     * Build the leaderboards on first start, when the collection is still empty
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!mongoTemplate.exists(new Query(), LeaderboardEntry.class)) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to initialize leaderboards: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recompute both leaderboards from the appointments and medical records collections
+     * Entries are written to a staging collection that replaces the live one in a single rename;
+     * subjects updated by live events in the meantime are recounted afterwards.
+     * @return number of entries written
+     */
+    public synchronized int rebuild() {
+        synchronized (dirtyEntriesLock) {
+            dirtyEntries = new HashSet<>();
+        }
+        try {
+            mongoTemplate.dropCollection(STAGING_COLLECTION);
+            mongoTemplate.indexOps(STAGING_COLLECTION).ensureIndex(new CompoundIndexDefinition(
+                new Document("board", 1).append("score", -1).append("subjectId", 1)).named("board_score_subject_idx"));
+
+            int written = 0;
+            for (Board board : Board.values()) {
+                List<LeaderboardEntry> batch = new ArrayList<>();
+                written += scan(board, entry -> {
+                    batch.add(entry);
+                    if (batch.size() == BULK_BATCH_SIZE) {
+                        insert(batch);
+                    }
+                });
+                insert(batch);
+            }
+            mongoTemplate.getCollection(STAGING_COLLECTION).renameCollection(
+                new MongoNamespace(mongoTemplate.getDb().getName(), LEADERBOARD_COLLECTION),
+                new RenameCollectionOptions().dropTarget(true));
+
+            int recounted = recountDirtyEntries();
+            System.out.println("Rebuilt leaderboards with " + written + " entries ("
+                + recounted + " entries recounted after live updates)");
+            return written;
+        } finally {
+            synchronized (dirtyEntriesLock) {
+                dirtyEntries = null;
+            }
+        }
+    }
+
+    /**
+     * Recount the entries marked dirty during a rebuild, until no more are marked
+     * @return number of entry recounts
+     */
+    private int recountDirtyEntries() {
+        int recounted = 0;
+        while (true) {
+            Set<String> ids;
+            synchronized (dirtyEntriesLock) {
+                if (dirtyEntries.isEmpty()) {
+                    return recounted;
+                }
+                ids = dirtyEntries;
+                dirtyEntries = new HashSet<>();
+            }
+            for (String id : ids) {
+                int separator = id.indexOf(':');
+                recountEntry(Board.valueOf(id.substring(0, separator)), id.substring(separator + 1));
+                recounted++;
+            }
+        }
+    }
+
+    /**
+     * Replace one entry with counts read from the source collections
+     */
+    private void recountEntry(Board board, String subjectId) {
+        boolean patients = board == Board.PATIENT_VISITS;
+        String subjectField = patients ? "patientId" : "doctorId";
+
+        User user = mongoTemplate.findById(subjectId, User.class);
+        if (user == null) {
+            mongoTemplate.remove(new Query(Criteria.where("id").is(entryId(board, subjectId))), LeaderboardEntry.class);
+            return;
+        }
+
+        LeaderboardEntry entry = new LeaderboardEntry();
+        entry.setId(entryId(board, subjectId));
+        entry.setBoard(board);
+        entry.setSubjectId(subjectId);
+        entry.setName(user.getName());
+        entry.setAppointments(mongoTemplate.count(
+            new Query(Criteria.where(subjectField).is(subjectId)), Appointment.class));
+        if (!patients) {
+            entry.setCompletedAppointments(mongoTemplate.count(new Query(Criteria.where(subjectField).is(subjectId)
+                .and("status").is(Appointment.AppointmentStatus.COMPLETED)), Appointment.class));
+            entry.setCancelledAppointments(mongoTemplate.count(new Query(Criteria.where(subjectField).is(subjectId)
+                .and("status").is(Appointment.AppointmentStatus.CANCELLED)), Appointment.class));
+        }
+        entry.setMedicalRecords(mongoTemplate.count(
+            new Query(Criteria.where(subjectField).is(subjectId)), MedicalRecord.class));
+        entry.setScore(patients ? entry.getAppointments() + entry.getMedicalRecords() : entry.getAppointments());
+        mongoTemplate.save(entry);
+    }
+
+    /**
+     * Compute every entry of a board in streaming passes over appointments, medical records and users
+     * Memory is bounded by the number of patients/doctors with activity, not the number of rows.
+     * @return number of entries passed to the sink
+     */
+    private int scan(Board board, StreamingAggregator.Accumulator<LeaderboardEntry> sink) {
+        boolean patients = board == Board.PATIENT_VISITS;
+
+        StreamingAggregator.GroupCount<Appointment> appointments = new StreamingAggregator.GroupCount<>(
+            patients ? Appointment::getPatientId : Appointment::getDoctorId);
+        StreamingAggregator.GroupCount<Appointment> completed = new StreamingAggregator.GroupCount<>(
+            apt -> !patients && apt.getStatus() == Appointment.AppointmentStatus.COMPLETED ? apt.getDoctorId() : null);
+        StreamingAggregator.GroupCount<Appointment> cancelled = new StreamingAggregator.GroupCount<>(
+            apt -> !patients && apt.getStatus() == Appointment.AppointmentStatus.CANCELLED ? apt.getDoctorId() : null);
+        Query appointmentQuery = new Query();
+        appointmentQuery.fields().include("patientId", "doctorId", "status");
+        streamingAggregator.aggregate(appointmentQuery, Appointment.class, appointments, completed, cancelled);
+
+        StreamingAggregator.GroupCount<MedicalRecord> records = new StreamingAggregator.GroupCount<>(
+            patients ? MedicalRecord::getPatientId : MedicalRecord::getDoctorId);
+        Query recordQuery = new Query();
+        recordQuery.fields().include("patientId", "doctorId");
+        streamingAggregator.aggregate(recordQuery, MedicalRecord.class, records);
+
+        UserRole role = patients ? UserRole.PATIENT : UserRole.DOCTOR;
+        Query userQuery = new Query(Criteria.where("role").is(role.name()));
+        userQuery.fields().include("name");
+        return (int) streamingAggregator.aggregate(userQuery, User.class, user -> {
+            LeaderboardEntry entry = new LeaderboardEntry();
+            entry.setId(entryId(board, user.getId()));
+            entry.setBoard(board);
+            entry.setSubjectId(user.getId());
+            entry.setName(user.getName());
+            entry.setAppointments(appointments.getCounts().getOrDefault(user.getId(), 0L));
+            entry.setCompletedAppointments(completed.getCounts().getOrDefault(user.getId(), 0L));
+            entry.setCancelledAppointments(cancelled.getCounts().getOrDefault(user.getId(), 0L));
+            entry.setMedicalRecords(records.getCounts().getOrDefault(user.getId(), 0L));
+            entry.setScore(patients ? entry.getAppointments() + entry.getMedicalRecords() : entry.getAppointments());
+            sink.accept(entry);
+        });
+    }
+
+    private void insert(List<LeaderboardEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LeaderboardEntry.class, STAGING_COLLECTION)
+            .insert(batch)
+            .execute();
+        batch.clear();
+    }
+
+    private void apply(Board board, String subjectId, String name, Map<String, Long> deltas) {
+        deltas.values().removeIf(value -> value == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Update update = new Update()
+            .setOnInsert("board", board)
+            .setOnInsert("subjectId", subjectId);
+        if (name != null) {
+            update.set("name", name);
+        }
+        deltas.forEach(update::inc);
+        mongoTemplate.upsert(new Query(Criteria.where("id").is(entryId(board, subjectId))), update, LeaderboardEntry.class);
+        markDirty(entryId(board, subjectId));
+    }
+
+    /**
+     * Remember an updated entry while a rebuild runs, so it is recounted once the rebuilt board is live
+     * Called after the $inc: an update that landed on the old collection is then always recounted.
+     */
+    private void markDirty(String id) {
+        synchronized (dirtyEntriesLock) {
+            if (dirtyEntries != null) {
+                dirtyEntries.add(id);
+            }
+        }
+    }
+
+    private static void addStatusDelta(Map<String, Long> deltas, Appointment.AppointmentStatus status, long delta) {
+        if (status == Appointment.AppointmentStatus.COMPLETED) {
+            deltas.merge("completedAppointments", delta, Long::sum);
+        } else if (status == Appointment.AppointmentStatus.CANCELLED) {
+            deltas.merge("cancelledAppointments", delta, Long::sum);
+        }
+    }
+
+    private static String entryId(Board board, String subjectId) {
+        return board.name() + ":" + subjectId;
+    }
+}
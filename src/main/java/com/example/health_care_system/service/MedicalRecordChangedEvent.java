@@ -0,0 +1,9 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.MedicalRecord;
+
+/**
+ * Published after a medical record is created (delta 1) or deleted (delta -1)
+ */
+public record MedicalRecordChangedEvent(MedicalRecord medicalRecord, int delta) {
+}
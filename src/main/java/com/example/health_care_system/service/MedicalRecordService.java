@@ -4,6 +4,7 @@ import com.example.health_care_system.model.MedicalRecord;
 import com.example.health_care_system.repository.MedicalRecordRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -16,6 +17,7 @@ import java.util.Optional;
 public class MedicalRecordService {
     
     private final MedicalRecordRepository medicalRecordRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     /**
      * Get all medical records for a specific patient
@@ -56,7 +58,9 @@ public class MedicalRecordService {
         log.info("Creating new medical record for patient: {}", medicalRecord.getPatientName());
         medicalRecord.setCreatedAt(LocalDateTime.now());
         medicalRecord.setUpdatedAt(LocalDateTime.now());
-        return medicalRecordRepository.save(medicalRecord);
+        MedicalRecord saved = medicalRecordRepository.save(medicalRecord);
+        eventPublisher.publishEvent(new MedicalRecordChangedEvent(saved, 1));
+        return saved;
     }
     
     /**
@@ -82,7 +86,9 @@ public class MedicalRecordService {
      */
     public void deleteMedicalRecord(String recordId) {
         log.info("Deleting medical record with ID: {}", recordId);
+        Optional<MedicalRecord> existingRecord = medicalRecordRepository.findById(recordId);
         medicalRecordRepository.deleteById(recordId);
+        existingRecord.ifPresent(record -> eventPublisher.publishEvent(new MedicalRecordChangedEvent(record, -1)));
     }
     
     /**
@@ -0,0 +1,60 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.SlotLease;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Slot lock shared by all application instances, stored as a lease in slot_locks.
+ * Acquiring upserts the lease only if it is missing or expired; a live lease held
+ * by another booking makes the insert fail on _id, so the caller is rejected at once.
+ */
+@Service
+@ConditionalOnProperty(name = "app.booking.lock", havingValue = "mongo")
+public class MongoLeaseSlotLockManager implements SlotLockManager {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SlotLockMetrics metrics;
+
+    // A crashed instance's lease is taken over after this long
+    private static final long LEASE_SECONDS = 30;
+
+    @Override
+    public SlotLock tryLock(String doctorId, LocalDateTime slotDateTime) {
+        String key = doctorId + "|" + slotDateTime;
+        String owner = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        Query freeLease = new Query(Criteria.where("id").is(key).and("expiresAt").lt(now));
+        Update take = new Update()
+            .set("owner", owner)
+            .set("expiresAt", now.plusSeconds(LEASE_SECONDS));
+
+        long waitStart = System.nanoTime();
+        try {
+            mongoTemplate.upsert(freeLease, take, SlotLease.class);
+        } catch (DuplicateKeyException e) {
+            metrics.recordRejected(System.nanoTime() - waitStart);
+            return null;
+        }
+        long heldFrom = System.nanoTime();
+        metrics.recordAcquired(heldFrom - waitStart);
+
+        return () -> {
+            metrics.recordReleased(System.nanoTime() - heldFrom);
+            mongoTemplate.remove(new Query(Criteria.where("id").is(key).and("owner").is(owner)), SlotLease.class);
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Payment;
+
+/**
+ * Published after a payment is created or its status changes
+ */
+public record PaymentChangedEvent(Payment payment) {
+}
@@ -11,6 +11,7 @@ import com.example.health_care_system.repository.DoctorRepository;
 import com.example.health_care_system.repository.HospitalRepository;
 import com.example.health_care_system.repository.PatientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -36,6 +37,9 @@ public class PaymentService {
     @Autowired
     private PatientRepository patientRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     /**
      * Create a payment record for card payment after successful Stripe transaction
      * 
@@ -50,7 +54,7 @@ public class PaymentService {
                 .orElseThrow(() -> new RuntimeException("Appointment not found"));
         
         // Get patient
-        Patient patient = patientRepository.findById(appointment.getPatientId())
+        Patient patient = patientRepository.findSummaryById(appointment.getPatientId())
                 .orElseThrow(() -> new RuntimeException("Patient not found"));
         
         // Get doctor
@@ -91,7 +95,7 @@ public class PaymentService {
         payment.setUpdatedAt(now);
         
         // Save and return
-        return paymentRepository.save(payment);
+        return saveAndPublish(payment);
     }
     
     /**
@@ -101,7 +105,7 @@ public class PaymentService {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new RuntimeException("Appointment not found"));
         
-        Patient patient = patientRepository.findById(appointment.getPatientId())
+        Patient patient = patientRepository.findSummaryById(appointment.getPatientId())
                 .orElseThrow(() -> new RuntimeException("Patient not found"));
         
         Doctor doctor = doctorRepository.findById(appointment.getDoctorId())
@@ -128,7 +132,7 @@ public class PaymentService {
         payment.setCreatedAt(now);
         payment.setUpdatedAt(now);
         
-        return paymentRepository.save(payment);
+        return saveAndPublish(payment);
     }
     
     /**
@@ -139,7 +143,7 @@ public class PaymentService {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new RuntimeException("Appointment not found"));
         
-        Patient patient = patientRepository.findById(appointment.getPatientId())
+        Patient patient = patientRepository.findSummaryById(appointment.getPatientId())
                 .orElseThrow(() -> new RuntimeException("Patient not found"));
         
         Doctor doctor = doctorRepository.findById(appointment.getDoctorId())
@@ -168,7 +172,7 @@ public class PaymentService {
         payment.setCreatedAt(now);
         payment.setUpdatedAt(now);
         
-        return paymentRepository.save(payment);
+        return saveAndPublish(payment);
     }
     
     /**
@@ -202,7 +206,7 @@ public class PaymentService {
         payment.setStatus(status);
         payment.setUpdatedAt(LocalDateTime.now());
         
-        return paymentRepository.save(payment);
+        return saveAndPublish(payment);
     }
     
     /**
@@ -218,4 +222,10 @@ public class PaymentService {
     public List<Payment> getPaymentsByDoctorId(String doctorId) {
         return paymentRepository.findByDoctorId(doctorId);
     }
+    
+    private Payment saveAndPublish(Payment payment) {
+        Payment saved = paymentRepository.save(payment);
+        eventPublisher.publishEvent(new PaymentChangedEvent(saved));
+        return saved;
+    }
 }
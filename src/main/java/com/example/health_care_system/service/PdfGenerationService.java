@@ -5,24 +5,299 @@ import com.example.health_care_system.model.Doctor;
 import com.example.health_care_system.model.Hospital;
 import com.example.health_care_system.model.Patient;
 import com.example.health_care_system.model.Payment;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.colors.Color;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.CompressionConstants;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvasConstants;
 import com.itextpdf.layout.Document;
+import com.itextpdf.layout.Style;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.borders.SolidBorder;
 import com.itextpdf.layout.element.Cell;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.Property;
 import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.TransparentColor;
 import com.itextpdf.layout.properties.UnitValue;
+import com.itextpdf.layout.renderer.DrawContext;
+import com.itextpdf.layout.renderer.IRenderer;
+import com.itextpdf.layout.renderer.ParagraphRenderer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Appointment confirmation PDFs
+ * Colours, borders, paragraph styles, formatters and the font program are shared by every document;
+ * only the per-document font binding and the layout are created per PDF. Output buffers are pooled,
+ * and generateAppointmentConfirmationPdfs renders many confirmations in parallel.
+ * With template stamping on, each layout (government, cash, card, insurance) is laid out once as a master
+ * template with blank one-line slots for the per-appointment values; later PDFs copy the master and draw
+ * the values into the slots instead of running the layout engine again.
+ */
 @Service
 public class PdfGenerationService {
 
+    // Appointment confirmation palette
+    private static final DeviceRgb PRIMARY_BLUE = new DeviceRgb(37, 99, 235);
+    private static final DeviceRgb LIGHT_GRAY = new DeviceRgb(249, 250, 251);
+    private static final DeviceRgb DARK_GRAY = new DeviceRgb(55, 65, 81);
+    private static final DeviceRgb SUCCESS_GREEN = new DeviceRgb(34, 197, 94);
+    private static final DeviceRgb NOTES_AMBER = new DeviceRgb(234, 179, 8);
+
+    // Insurance confirmation palette
+    private static final DeviceRgb INSURANCE_BLUE = new DeviceRgb(30, 64, 175);
+    private static final DeviceRgb INSURANCE_GREEN = new DeviceRgb(16, 185, 129);
+    private static final DeviceRgb INSURANCE_AMBER = new DeviceRgb(245, 158, 11);
+    private static final DeviceRgb INSURANCE_LIGHT_GRAY = new DeviceRgb(243, 244, 246);
+    private static final DeviceRgb INSURANCE_DARK_GRAY = new DeviceRgb(31, 41, 55);
+    private static final DeviceRgb INSURANCE_WHITE = new DeviceRgb(255, 255, 255);
+    private static final DeviceRgb INSURANCE_HIGHLIGHT = new DeviceRgb(243, 232, 255); // Light purple
+    private static final DeviceRgb FOOTER_GRAY = new DeviceRgb(107, 114, 128);
+
+    private static final Border ROW_BORDER = new SolidBorder(new DeviceRgb(229, 231, 235), 0.5f);
+    private static final Border INSTRUCTION_BORDER = new SolidBorder(INSURANCE_BLUE, 1);
+
+    // Never modified after class initialisation, so safe to share between concurrent renders
+    private static final Style LABEL_STYLE = new Style().setFontSize(10).setBold();
+    private static final Style VALUE_STYLE = new Style().setFontSize(10);
+    private static final Style SECTION_HEADER_STYLE = new Style().setFontSize(14).setBold().setMarginTop(10).setMarginBottom(8);
+
+    private static final DateTimeFormatter LONG_DATE_FORMATTER = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy");
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMMM dd, yyyy");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("h:mm a");
+    private static final DateTimeFormatter GENERATED_FORMATTER = DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' h:mm a");
+
+    // Stroke width of iText's simulated bold, relative to the font size
+    private static final float BOLD_STROKE_RATIO = 1 / 30f;
+
+    // Parsed once; each document binds its own PdfFont to it
+    private static final FontProgram HELVETICA = loadFont(StandardFonts.HELVETICA);
+
+    private static final int BUFFER_POOL_SIZE = 16;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private final BlockingQueue<ByteArrayOutputStream> buffers = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    // 0 uses one worker per core
+    @Value("${app.pdf.workers:0}")
+    private int workers = 0;
+
+    @Value("${app.pdf.template-stamping:true}")
+    private boolean templateStamping = true;
+
+    private ExecutorService executor;
+
+    // Master templates by layout and optional rows present; a bounded set of combinations
+    private final Map<String, PdfTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Lays out the content of one PDF
+     */
+    @FunctionalInterface
+    private interface PdfLayout {
+        void layout(Document document) throws Exception;
+    }
+
+    /**
+     * Lays out a PDF whose per-appointment values come from fields
+     */
+    @FunctionalInterface
+    private interface FieldLayout {
+        void layout(Document document, PdfFields fields) throws Exception;
+    }
+
+    /**
+     * Fixed parts of a confirmation that select its master template
+     */
+    private enum ConfirmationLayout {
+        GOVERNMENT,
+        // Private hospital without card payment details
+        CASH,
+        CARD,
+        CARD_PAID,
+        INSURANCE;
+
+        static ConfirmationLayout of(Hospital hospital, Payment payment) {
+            if (hospital.getType() == Hospital.HospitalType.GOVERNMENT) {
+                return GOVERNMENT;
+            }
+            if (payment != null && payment.getPaymentMethod() == Payment.PaymentMethod.CARD) {
+                return payment.getStatus() == Payment.PaymentStatus.COMPLETED ? CARD_PAID : CARD;
+            }
+            return CASH;
+        }
+    }
+
+    /**
+     * Master template: a laid out PDF with blank slots, and where each value goes
+     */
+    private record PdfTemplate(byte[] pdf, List<FieldSlot> slots) {
+    }
+
+    /**
+     * Position and text style of one value in a master template
+     * @param box - Content box of the value's paragraph
+     * @param baseline - Baseline of its first line
+     */
+    private record FieldSlot(String name, int page, Rectangle box, float baseline, float fontSize, boolean bold,
+                             Color color, TextAlignment alignment) {
+    }
+
+    /**
+     * Per-appointment values of a layout.
+     * For a full layout the values become text; when building a master template each value becomes a
+     * blank line of the same height whose position and style are recorded as a slot.
+     */
+    private static final class PdfFields {
+        // Not trimmed like a plain space, so the line keeps the height of a line of text
+        private static final String PLACEHOLDER = "\u00a0";
+
+        private final Map<String, String> values;
+        private final List<FieldSlot> slots;
+
+        /**
+         * @param slots - Collects the slots of a master template; null for a full layout
+         */
+        PdfFields(Map<String, String> values, List<FieldSlot> slots) {
+            this.values = values;
+            this.slots = slots;
+        }
+
+        boolean has(String name) {
+            return values.containsKey(name);
+        }
+
+        Paragraph paragraph(String name) {
+            if (slots == null) {
+                return new Paragraph(values.get(name));
+            }
+            Paragraph paragraph = new Paragraph(PLACEHOLDER);
+            paragraph.setNextRenderer(new FieldSlotRenderer(paragraph, name, slots));
+            return paragraph;
+        }
+    }
+
+    /**
+     * Records where a placeholder paragraph ends up and the text style it was given
+     */
+    private static final class FieldSlotRenderer extends ParagraphRenderer {
+        private final String name;
+        private final List<FieldSlot> slots;
+
+        FieldSlotRenderer(Paragraph paragraph, String name, List<FieldSlot> slots) {
+            super(paragraph);
+            this.name = name;
+            this.slots = slots;
+        }
+
+        @Override
+        public void draw(DrawContext drawContext) {
+            // The placeholder itself is not drawn; the slot stays blank in the master
+            UnitValue fontSize = this.<UnitValue>getProperty(Property.FONT_SIZE);
+            TransparentColor color = this.<TransparentColor>getProperty(Property.FONT_COLOR);
+            slots.add(new FieldSlot(name, getOccupiedArea().getPageNumber(), getInnerAreaBBox(),
+                getFirstYLineRecursively(), fontSize.getValue(),
+                Boolean.TRUE.equals(getPropertyAsBoolean(Property.BOLD_SIMULATION)),
+                color != null ? color.getColor() : null,
+                this.<TextAlignment>getProperty(Property.TEXT_ALIGNMENT)));
+        }
+
+        @Override
+        public IRenderer getNextRenderer() {
+            return new FieldSlotRenderer((Paragraph) modelElement, name, slots);
+        }
+    }
+
+    /**
+     * One confirmation for generateAppointmentConfirmationPdfs
+     * @param payment - May be null
+     */
+    public record ConfirmationPdfRequest(Appointment appointment, Patient patient, Doctor doctor,
+                                         Hospital hospital, Payment payment) {
+    }
+
+    @PostConstruct
+    public void start() {
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generate appointment confirmation PDFs in parallel on the PDF worker pool
+     * @return PDFs in the order of the requests
+     */
+    public List<byte[]> generateAppointmentConfirmationPdfs(List<ConfirmationPdfRequest> requests) {
+        List<Future<byte[]>> pending = new ArrayList<>(requests.size());
+        for (ConfirmationPdfRequest request : requests) {
+            pending.add(executor.submit(() -> generateAppointmentConfirmationPdf(
+                request.appointment(), request.patient(), request.doctor(), request.hospital(), request.payment())));
+        }
+
+        List<byte[]> pdfs = new ArrayList<>(requests.size());
+        try {
+            for (Future<byte[]> future : pending) {
+                pdfs.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            pending.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("PDF generation interrupted", e);
+        } catch (ExecutionException e) {
+            pending.forEach(future -> future.cancel(true));
+            throw new RuntimeException("Error generating PDF: " + e.getCause().getMessage(), e.getCause());
+        }
+        return pdfs;
+    }
+
     /**
      * Generate appointment confirmation PDF
      */
@@ -32,266 +307,400 @@ public class PdfGenerationService {
             Doctor doctor,
             Hospital hospital,
             Payment payment) {
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
-        try {
-            PdfWriter writer = new PdfWriter(baos);
-            PdfDocument pdfDoc = new PdfDocument(writer);
-            Document document = new Document(pdfDoc);
-            
-            // Define colors
-            DeviceRgb primaryBlue = new DeviceRgb(37, 99, 235);
-            DeviceRgb lightGray = new DeviceRgb(249, 250, 251);
-            DeviceRgb darkGray = new DeviceRgb(55, 65, 81);
-            DeviceRgb successGreen = new DeviceRgb(34, 197, 94);
-            
-            // Header
-            Paragraph header = new Paragraph("APPOINTMENT CONFIRMATION")
-                .setFontSize(24)
-                .setBold()
-                .setFontColor(primaryBlue)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5);
-            document.add(header);
-            
-            Paragraph subHeader = new Paragraph("Healthcare System - Sri Lanka")
-                .setFontSize(12)
-                .setFontColor(darkGray)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(20);
-            document.add(subHeader);
-            
-            // Confirmation badge
-            Paragraph confirmed = new Paragraph("✓ CONFIRMED")
-                .setFontSize(14)
-                .setBold()
-                .setFontColor(successGreen)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(20);
-            document.add(confirmed);
-            
-            // Appointment ID
-            Paragraph appointmentId = new Paragraph("Appointment ID: " + appointment.getId())
-                .setFontSize(10)
-                .setFontColor(darkGray)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(20);
-            document.add(appointmentId);
-            
-            // Patient Information Section
-            document.add(createSectionHeader("Patient Information", primaryBlue));
-            Table patientTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
-                .setWidth(UnitValue.createPercentValue(100))
-                .setMarginBottom(15);
-            
-            addTableRow(patientTable, "Patient Name:", patient.getName(), lightGray);
-            addTableRow(patientTable, "Patient ID:", patient.getId(), ColorConstants.WHITE);
-            addTableRow(patientTable, "Email:", patient.getEmail(), lightGray);
-            addTableRow(patientTable, "Contact Number:", patient.getContactNumber() != null ? patient.getContactNumber() : "N/A", ColorConstants.WHITE);
-            
-            document.add(patientTable);
-            
-            // Hospital Information Section
-            document.add(createSectionHeader("Hospital Information", primaryBlue));
-            Table hospitalTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
-                .setWidth(UnitValue.createPercentValue(100))
-                .setMarginBottom(15);
-            
-            addTableRow(hospitalTable, "Hospital Name:", hospital.getName(), lightGray);
-            addTableRow(hospitalTable, "Hospital Type:", hospital.getType().toString(), ColorConstants.WHITE);
-            if (hospital.getLocation() != null) {
-                String address = hospital.getLocation().getAddress() + ", " + 
-                               hospital.getLocation().getCity() + ", " + 
-                               hospital.getLocation().getState();
-                addTableRow(hospitalTable, "Address:", address, lightGray);
+
+        ConfirmationLayout layout = ConfirmationLayout.of(hospital, payment);
+
+        Map<String, String> values = new HashMap<>();
+        values.put("appointmentId", "Appointment ID: " + appointment.getId());
+        values.put("patientName", patient.getName());
+        values.put("patientId", patient.getId());
+        values.put("patientEmail", patient.getEmail());
+        values.put("patientContact", patient.getContactNumber() != null ? patient.getContactNumber() : "N/A");
+        values.put("hospitalName", hospital.getName());
+        values.put("hospitalType", hospital.getType().toString());
+        if (hospital.getLocation() != null) {
+            values.put("hospitalAddress", hospital.getLocation().getAddress() + ", " +
+                hospital.getLocation().getCity() + ", " +
+                hospital.getLocation().getState());
+        }
+        if (hospital.getContactInfo() != null && hospital.getContactInfo().getPhoneNumber() != null) {
+            values.put("hospitalPhone", hospital.getContactInfo().getPhoneNumber());
+        }
+        values.put("doctorName", "Dr. " + doctor.getName());
+        values.put("doctorSpecialization", doctor.getSpecialization());
+        values.put("doctorId", doctor.getId());
+        values.put("doctorEmail", doctor.getEmail());
+        values.put("appointmentDate", appointment.getAppointmentDateTime().format(LONG_DATE_FORMATTER));
+        values.put("appointmentTime", appointment.getAppointmentDateTime().format(TIME_FORMATTER));
+        values.put("appointmentStatus", appointment.getStatus().toString());
+        if (appointment.getPurpose() != null && !appointment.getPurpose().isEmpty()) {
+            values.put("purpose", appointment.getPurpose());
+        }
+        if (layout != ConfirmationLayout.GOVERNMENT) {
+            values.put("consultationFee", "Rs. " + hospital.getHospitalCharges());
+        }
+        if (layout == ConfirmationLayout.CARD || layout == ConfirmationLayout.CARD_PAID) {
+            values.put("paymentAmount", "Rs. " + payment.getAmount());
+            values.put("paymentStatus", payment.getStatus().toString());
+            if (payment.getTransactionId() != null && !payment.getTransactionId().isEmpty()) {
+                values.put("transactionId", payment.getTransactionId());
             }
-            if (hospital.getContactInfo() != null && hospital.getContactInfo().getPhoneNumber() != null) {
-                addTableRow(hospitalTable, "Phone:", hospital.getContactInfo().getPhoneNumber(), ColorConstants.WHITE);
+        }
+        values.put("generatedOn", "Generated on: " + LocalDateTime.now().format(GENERATED_FORMATTER));
+
+        return generate(layout, values, (document, fields) -> layoutConfirmation(document, layout, fields));
+    }
+
+    /**
+     * Lay out an appointment confirmation
+     */
+    private void layoutConfirmation(Document document, ConfirmationLayout layout, PdfFields fields) {
+        // Header
+        Paragraph header = new Paragraph("APPOINTMENT CONFIRMATION")
+            .setFontSize(24)
+            .setBold()
+            .setFontColor(PRIMARY_BLUE)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setMarginBottom(5);
+        document.add(header);
+
+        Paragraph subHeader = new Paragraph("Healthcare System - Sri Lanka")
+            .setFontSize(12)
+            .setFontColor(DARK_GRAY)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setMarginBottom(20);
+        document.add(subHeader);
+
+        // Confirmation badge
+        Paragraph confirmed = new Paragraph("✓ CONFIRMED")
+            .setFontSize(14)
+            .setBold()
+            .setFontColor(SUCCESS_GREEN)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setMarginBottom(20);
+        document.add(confirmed);
+
+        // Appointment ID
+        Paragraph appointmentId = fields.paragraph("appointmentId")
+            .setFontSize(10)
+            .setFontColor(DARK_GRAY)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setMarginBottom(20);
+        document.add(appointmentId);
+
+        // Patient Information Section
+        document.add(createSectionHeader("Patient Information", PRIMARY_BLUE));
+        Table patientTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
+            .setWidth(UnitValue.createPercentValue(100))
+            .setMarginBottom(15);
+
+        addTableRow(patientTable, "Patient Name:", fields.paragraph("patientName"), LIGHT_GRAY);
+        addTableRow(patientTable, "Patient ID:", fields.paragraph("patientId"), ColorConstants.WHITE);
+        addTableRow(patientTable, "Email:", fields.paragraph("patientEmail"), LIGHT_GRAY);
+        addTableRow(patientTable, "Contact Number:", fields.paragraph("patientContact"), ColorConstants.WHITE);
+
+        document.add(patientTable);
+
+        // Hospital Information Section
+        document.add(createSectionHeader("Hospital Information", PRIMARY_BLUE));
+        Table hospitalTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
+            .setWidth(UnitValue.createPercentValue(100))
+            .setMarginBottom(15);
+
+        addTableRow(hospitalTable, "Hospital Name:", fields.paragraph("hospitalName"), LIGHT_GRAY);
+        addTableRow(hospitalTable, "Hospital Type:", fields.paragraph("hospitalType"), ColorConstants.WHITE);
+        if (fields.has("hospitalAddress")) {
+            addTableRow(hospitalTable, "Address:", fields.paragraph("hospitalAddress"), LIGHT_GRAY);
+        }
+        if (fields.has("hospitalPhone")) {
+            addTableRow(hospitalTable, "Phone:", fields.paragraph("hospitalPhone"), ColorConstants.WHITE);
+        }
+
+        document.add(hospitalTable);
+
+        // Doctor Information Section
+        document.add(createSectionHeader("Doctor Information", PRIMARY_BLUE));
+        Table doctorTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
+            .setWidth(UnitValue.createPercentValue(100))
+            .setMarginBottom(15);
+
+        addTableRow(doctorTable, "Doctor Name:", fields.paragraph("doctorName"), LIGHT_GRAY);
+        addTableRow(doctorTable, "Specialization:", fields.paragraph("doctorSpecialization"), ColorConstants.WHITE);
+        addTableRow(doctorTable, "Doctor ID:", fields.paragraph("doctorId"), LIGHT_GRAY);
+        addTableRow(doctorTable, "Email:", fields.paragraph("doctorEmail"), ColorConstants.WHITE);
+
+        document.add(doctorTable);
+
+        // Appointment Details Section
+        document.add(createSectionHeader("Appointment Details", PRIMARY_BLUE));
+        Table appointmentTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
+            .setWidth(UnitValue.createPercentValue(100))
+            .setMarginBottom(15);
+
+        addTableRow(appointmentTable, "Date:", fields.paragraph("appointmentDate"), LIGHT_GRAY);
+        addTableRow(appointmentTable, "Time:", fields.paragraph("appointmentTime"), ColorConstants.WHITE);
+        addTableRow(appointmentTable, "Status:", fields.paragraph("appointmentStatus"), LIGHT_GRAY);
+
+        if (fields.has("purpose")) {
+            addTableRow(appointmentTable, "Purpose:", fields.paragraph("purpose"), ColorConstants.WHITE);
+        }
+
+        document.add(appointmentTable);
+
+        // Payment Information
+        document.add(createSectionHeader("Payment Information", PRIMARY_BLUE));
+        Table paymentTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
+            .setWidth(UnitValue.createPercentValue(100))
+            .setMarginBottom(20);
+
+        if (layout == ConfirmationLayout.GOVERNMENT) {
+            addTableRow(paymentTable, "Consultation Fee:", new Paragraph("FREE (Government Hospital)"), SUCCESS_GREEN, true);
+        } else {
+            addTableRow(paymentTable, "Consultation Fee:", fields.paragraph("consultationFee"), LIGHT_GRAY);
+
+            // Add detailed payment information for CARD payments only
+            if (layout == ConfirmationLayout.CARD || layout == ConfirmationLayout.CARD_PAID) {
+                addTableRow(paymentTable, "Payment Method:", new Paragraph("Card Payment (Stripe)"), ColorConstants.WHITE);
+                addTableRow(paymentTable, "Payment Amount:", fields.paragraph("paymentAmount"), LIGHT_GRAY);
+
+                if (layout == ConfirmationLayout.CARD_PAID) {
+                    addTableRow(paymentTable, "Payment Status:", fields.paragraph("paymentStatus"), SUCCESS_GREEN, true);
+
+                    // Add payment success confirmation message
+                    Cell confirmationLabelCell = new Cell()
+                        .add(new Paragraph("Confirmation:").addStyle(LABEL_STYLE))
+                        .setBackgroundColor(ColorConstants.WHITE)
+                        .setPadding(8);
+
+                    Cell confirmationValueCell = new Cell()
+                        .add(new Paragraph("✓ Payment Successfully Completed - Your appointment has been confirmed and paid.")
+                            .setFontSize(10)
+                            .setFontColor(SUCCESS_GREEN)
+                            .setBold())
+                        .setBackgroundColor(ColorConstants.WHITE)
+                        .setPadding(8);
+
+                    paymentTable.addCell(confirmationLabelCell);
+                    paymentTable.addCell(confirmationValueCell);
+                } else {
+                    addTableRow(paymentTable, "Payment Status:", fields.paragraph("paymentStatus"), ColorConstants.WHITE);
+                }
+
+                // Add transaction ID if available
+                if (fields.has("transactionId")) {
+                    addTableRow(paymentTable, "Transaction ID:", fields.paragraph("transactionId"), LIGHT_GRAY);
+                }
             }
-            
-            document.add(hospitalTable);
-            
-            // Doctor Information Section
-            document.add(createSectionHeader("Doctor Information", primaryBlue));
-            Table doctorTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
-                .setWidth(UnitValue.createPercentValue(100))
-                .setMarginBottom(15);
-            
-            addTableRow(doctorTable, "Doctor Name:", "Dr. " + doctor.getName(), lightGray);
-            addTableRow(doctorTable, "Specialization:", doctor.getSpecialization(), ColorConstants.WHITE);
-            addTableRow(doctorTable, "Doctor ID:", doctor.getId(), lightGray);
-            addTableRow(doctorTable, "Email:", doctor.getEmail(), ColorConstants.WHITE);
-            
-            document.add(doctorTable);
-            
-            // Appointment Details Section
-            document.add(createSectionHeader("Appointment Details", primaryBlue));
-            Table appointmentTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
-                .setWidth(UnitValue.createPercentValue(100))
-                .setMarginBottom(15);
-            
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy");
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("h:mm a");
-            
-            addTableRow(appointmentTable, "Date:", appointment.getAppointmentDateTime().format(dateFormatter), lightGray);
-            addTableRow(appointmentTable, "Time:", appointment.getAppointmentDateTime().format(timeFormatter), ColorConstants.WHITE);
-            addTableRow(appointmentTable, "Status:", appointment.getStatus().toString(), lightGray);
-            
-            if (appointment.getPurpose() != null && !appointment.getPurpose().isEmpty()) {
-                addTableRow(appointmentTable, "Purpose:", appointment.getPurpose(), ColorConstants.WHITE);
+        }
+
+        document.add(paymentTable);
+
+        // Important Notes
+        document.add(createSectionHeader("Important Notes", NOTES_AMBER));
+        Paragraph notes = new Paragraph()
+            .setFontSize(10)
+            .setMarginBottom(10);
+
+        notes.add("• Please arrive 15 minutes before your scheduled appointment time.\n");
+        notes.add("• Bring your ID card and this confirmation document.\n");
+        notes.add("• If you need to cancel or reschedule, please do so at least 24 hours in advance.\n");
+
+        if (layout != ConfirmationLayout.GOVERNMENT) {
+            notes.add("• Please bring the required payment method for consultation fees.\n");
+        }
+
+        notes.add("• For any queries, contact the hospital directly.\n");
+
+        document.add(notes);
+
+        // Footer
+        Paragraph footer = new Paragraph("\nThis is a computer-generated document. No signature is required.")
+            .setFontSize(8)
+            .setFontColor(DARK_GRAY)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setMarginTop(20);
+        document.add(footer);
+
+        Paragraph generatedDate = fields.paragraph("generatedOn")
+            .setFontSize(8)
+            .setFontColor(DARK_GRAY)
+            .setTextAlignment(TextAlignment.CENTER);
+        document.add(generatedDate);
+    }
+
+    /**
+     * Produce a PDF by stamping its values into the master template of its layout, or by a full layout
+     * when stamping is disabled or a value is too long for its slot
+     */
+    private byte[] generate(ConfirmationLayout layout, Map<String, String> values, FieldLayout fieldLayout) {
+        if (templateStamping) {
+            // Optional rows change the layout, so they are part of the template key
+            String key = layout + ":" + new TreeSet<>(values.keySet());
+            PdfTemplate template = templates.get(key);
+            if (template == null) {
+                List<FieldSlot> slots = new ArrayList<>();
+                byte[] pdf = render(document -> fieldLayout.layout(document, new PdfFields(values, slots)));
+                template = new PdfTemplate(pdf, List.copyOf(slots));
+                templates.putIfAbsent(key, template);
             }
-            
-            document.add(appointmentTable);
-            
-            // Payment Information
-            document.add(createSectionHeader("Payment Information", primaryBlue));
-            Table paymentTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}))
-                .setWidth(UnitValue.createPercentValue(100))
-                .setMarginBottom(20);
-            
-            if (hospital.getType() == Hospital.HospitalType.GOVERNMENT) {
-                addTableRow(paymentTable, "Consultation Fee:", "FREE (Government Hospital)", successGreen, true);
-            } else {
-                String fee = "Rs. " + hospital.getHospitalCharges();
-                addTableRow(paymentTable, "Consultation Fee:", fee, lightGray);
-                
-                // Add detailed payment information for CARD payments only
-                if (payment != null && payment.getPaymentMethod() == Payment.PaymentMethod.CARD) {
-                    addTableRow(paymentTable, "Payment Method:", "Card Payment (Stripe)", ColorConstants.WHITE);
-                    addTableRow(paymentTable, "Payment Amount:", "Rs. " + payment.getAmount(), lightGray);
-                    
-                    String paymentStatus = payment.getStatus().toString();
-                    if (payment.getStatus() == Payment.PaymentStatus.COMPLETED) {
-                        addTableRow(paymentTable, "Payment Status:", paymentStatus, successGreen, true);
-                        
-                        // Add payment success confirmation message
-                        Cell confirmationLabelCell = new Cell()
-                            .add(new Paragraph("Confirmation:").setFontSize(10).setBold())
-                            .setBackgroundColor(ColorConstants.WHITE)
-                            .setPadding(8);
-                        
-                        Cell confirmationValueCell = new Cell()
-                            .add(new Paragraph("✓ Payment Successfully Completed - Your appointment has been confirmed and paid.")
-                                .setFontSize(10)
-                                .setFontColor(successGreen)
-                                .setBold())
-                            .setBackgroundColor(ColorConstants.WHITE)
-                            .setPadding(8);
-                        
-                        paymentTable.addCell(confirmationLabelCell);
-                        paymentTable.addCell(confirmationValueCell);
-                    } else {
-                        addTableRow(paymentTable, "Payment Status:", paymentStatus, ColorConstants.WHITE);
-                    }
-                    
-                    // Add transaction ID if available
-                    if (payment.getTransactionId() != null && !payment.getTransactionId().isEmpty()) {
-                        addTableRow(paymentTable, "Transaction ID:", payment.getTransactionId(), lightGray);
-                    }
-                }
+
+            byte[] pdf = stamp(template, values);
+            if (pdf != null) {
+                return pdf;
+            }
+        }
+        return render(document -> fieldLayout.layout(document, new PdfFields(values, null)));
+    }
+
+    /**
+     * Write the values into the slots of a master template
+     * @return null if a value would wrap, which moves everything below it
+     */
+    private byte[] stamp(PdfTemplate template, Map<String, String> values) {
+        PdfFont font = PdfFontFactory.createFont(HELVETICA, PdfEncodings.WINANSI);
+        for (FieldSlot slot : template.slots()) {
+            if (!fitsOnOneLine(values.get(slot.name()), slot, font)) {
+                return null;
             }
-            
-            document.add(paymentTable);
-            
-            // Important Notes
-            document.add(createSectionHeader("Important Notes", new DeviceRgb(234, 179, 8)));
-            Paragraph notes = new Paragraph()
-                .setFontSize(10)
-                .setMarginBottom(10);
-            
-            notes.add("• Please arrive 15 minutes before your scheduled appointment time.\n");
-            notes.add("• Bring your ID card and this confirmation document.\n");
-            notes.add("• If you need to cancel or reschedule, please do so at least 24 hours in advance.\n");
-            
-            if (hospital.getType() == Hospital.HospitalType.PRIVATE) {
-                notes.add("• Please bring the required payment method for consultation fees.\n");
+        }
+
+        ByteArrayOutputStream baos = borrowBuffer();
+        try {
+            PdfDocument pdfDoc = new PdfDocument(
+                new PdfReader(new ByteArrayInputStream(template.pdf())),
+                new PdfWriter(baos, writerProperties()));
+
+            Map<Integer, PdfCanvas> canvases = new HashMap<>();
+            for (FieldSlot slot : template.slots()) {
+                PdfCanvas canvas = canvases.computeIfAbsent(slot.page(), page -> new PdfCanvas(pdfDoc.getPage(page)));
+                drawValue(canvas, font, slot, values.get(slot.name()));
             }
-            
-            notes.add("• For any queries, contact the hospital directly.\n");
-            
-            document.add(notes);
-            
-            // Footer
-            Paragraph footer = new Paragraph("\nThis is a computer-generated document. No signature is required.")
-                .setFontSize(8)
-                .setFontColor(darkGray)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginTop(20);
-            document.add(footer);
-            
-            Paragraph generatedDate = new Paragraph("Generated on: " + 
-                java.time.LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' h:mm a")))
-                .setFontSize(8)
-                .setFontColor(darkGray)
-                .setTextAlignment(TextAlignment.CENTER);
-            document.add(generatedDate);
-            
+
+            pdfDoc.close();
+            return baos.toByteArray();
+        } catch (Exception e) {
+            throw new RuntimeException("Error generating PDF: " + e.getMessage(), e);
+        } finally {
+            returnBuffer(baos);
+        }
+    }
+
+    private static boolean fitsOnOneLine(String value, FieldSlot slot, PdfFont font) {
+        if (value == null || value.indexOf('\n') >= 0) {
+            return false;
+        }
+        return textWidth(value, slot, font) <= slot.box().getWidth();
+    }
+
+    /**
+     * Draw a value on its slot's baseline the way the layout engine draws a one-line paragraph
+     */
+    private static void drawValue(PdfCanvas canvas, PdfFont font, FieldSlot slot, String value) {
+        float x = slot.box().getX();
+        if (slot.alignment() == TextAlignment.CENTER) {
+            x += (slot.box().getWidth() - textWidth(value, slot, font)) / 2;
+        } else if (slot.alignment() == TextAlignment.RIGHT) {
+            x += slot.box().getWidth() - textWidth(value, slot, font);
+        }
+        Color color = slot.color() != null ? slot.color() : ColorConstants.BLACK;
+
+        canvas.saveState().beginText().setFontAndSize(font, slot.fontSize()).setFillColor(color);
+        if (slot.bold()) {
+            canvas.setTextRenderingMode(PdfCanvasConstants.TextRenderingMode.FILL_STROKE)
+                .setLineWidth(slot.fontSize() * BOLD_STROKE_RATIO)
+                .setStrokeColor(color);
+        }
+        canvas.moveText(x, slot.baseline()).showText(value).endText().restoreState();
+    }
+
+    private static float textWidth(String value, FieldSlot slot, PdfFont font) {
+        // Simulated bold is drawn with a stroke that the layout engine counts as extra width
+        return font.getWidth(value, slot.fontSize()) + (slot.bold() ? slot.fontSize() * BOLD_STROKE_RATIO : 0);
+    }
+
+    /**
+     * Create a document on a pooled buffer, lay it out and return the finished PDF bytes
+     */
+    private byte[] render(PdfLayout layout) {
+        ByteArrayOutputStream baos = borrowBuffer();
+        try {
+            PdfWriter writer = new PdfWriter(baos, writerProperties());
+            PdfDocument pdfDoc = new PdfDocument(writer);
+            Document document = new Document(pdfDoc);
+            document.setFont(PdfFontFactory.createFont(HELVETICA, PdfEncodings.WINANSI));
+
+            layout.layout(document);
+
             document.close();
-            
+            return baos.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Error generating PDF: " + e.getMessage(), e);
+        } finally {
+            returnBuffer(baos);
+        }
+    }
+
+    private static WriterProperties writerProperties() {
+        // Content streams are small; fastest deflate keeps nearly all of the size reduction
+        return new WriterProperties().setCompressionLevel(CompressionConstants.BEST_SPEED);
+    }
+
+    private ByteArrayOutputStream borrowBuffer() {
+        ByteArrayOutputStream baos = buffers.poll();
+        return baos != null ? baos : new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    }
+
+    private void returnBuffer(ByteArrayOutputStream baos) {
+        // Keep the grown buffer for the next PDF unless an unusually large document inflated it
+        if (baos.size() <= MAX_POOLED_BUFFER_SIZE) {
+            baos.reset();
+            buffers.offer(baos);
+        }
+    }
+
+    private static FontProgram loadFont(String name) {
+        try {
+            return FontProgramFactory.createFont(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        
-        return baos.toByteArray();
     }
-    
+
     /**
      * Create a section header
      */
     private Paragraph createSectionHeader(String title, DeviceRgb color) {
         return new Paragraph(title)
-            .setFontSize(14)
-            .setBold()
-            .setFontColor(color)
-            .setMarginTop(10)
-            .setMarginBottom(8);
+            .addStyle(SECTION_HEADER_STYLE)
+            .setFontColor(color);
     }
-    
+
     /**
      * Add a row to a table with alternating background colors
      */
-    private void addTableRow(Table table, String label, String value, DeviceRgb backgroundColor) {
+    private void addTableRow(Table table, String label, Paragraph value, Color backgroundColor) {
         addTableRow(table, label, value, backgroundColor, false);
     }
-    
+
     /**
      * Add a row to a table with custom styling
      */
-    private void addTableRow(Table table, String label, String value, DeviceRgb backgroundColor, boolean bold) {
+    private void addTableRow(Table table, String label, Paragraph value, Color backgroundColor, boolean bold) {
         Cell labelCell = new Cell()
-            .add(new Paragraph(label).setFontSize(10).setBold())
+            .add(new Paragraph(label).addStyle(LABEL_STYLE))
             .setBackgroundColor(backgroundColor)
             .setPadding(8);
-        
-        Paragraph valueParagraph = new Paragraph(value).setFontSize(10);
+
+        value.addStyle(VALUE_STYLE);
         if (bold) {
-            valueParagraph.setBold();
+            value.setBold();
         }
-        
-        Cell valueCell = new Cell()
-            .add(valueParagraph)
-            .setBackgroundColor(backgroundColor)
-            .setPadding(8);
-        
-        table.addCell(labelCell);
-        table.addCell(valueCell);
-    }
-    
-    /**
-     * Helper method to add table row with ColorConstants (overload)
-     */
-    private void addTableRow(Table table, String label, String value, com.itextpdf.kernel.colors.Color backgroundColor) {
-        Cell labelCell = new Cell()
-            .add(new Paragraph(label).setFontSize(10).setBold())
-            .setBackgroundColor(backgroundColor)
-            .setPadding(8);
-        
+
         Cell valueCell = new Cell()
-            .add(new Paragraph(value).setFontSize(10))
+            .add(value)
             .setBackgroundColor(backgroundColor)
             .setPadding(8);
-        
+
         table.addCell(labelCell);
         table.addCell(valueCell);
     }
@@ -307,324 +716,326 @@ public class PdfGenerationService {
             String insuranceProvider,
             String policyNumber
     ) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
         try {
-            PdfWriter writer = new PdfWriter(baos);
-            PdfDocument pdfDoc = new PdfDocument(writer);
-            Document document = new Document(pdfDoc);
-            document.setMargins(30, 30, 30, 30);
-
-            // Color scheme
-            DeviceRgb primaryBlue = new DeviceRgb(30, 64, 175);
-            DeviceRgb accentGreen = new DeviceRgb(16, 185, 129);
-            DeviceRgb amberColor = new DeviceRgb(245, 158, 11);
-            DeviceRgb lightGray = new DeviceRgb(243, 244, 246);
-            DeviceRgb darkGray = new DeviceRgb(31, 41, 55);
-            DeviceRgb white = new DeviceRgb(255, 255, 255);
-
-            // ========== HEADER ==========
-            Paragraph mainHeader = new Paragraph("HEALTHCARE SYSTEM")
-                    .setFontSize(26)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .setMarginBottom(3);
-            document.add(mainHeader);
-
-            Paragraph subHeader = new Paragraph("Smart Healthcare Management")
-                    .setFontSize(11)
-                    .setFontColor(primaryBlue)
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .setMarginBottom(15);
-            document.add(subHeader);
-
-            // Horizontal line
-            Table headerLine = new Table(1).setWidth(UnitValue.createPercentValue(100));
-            headerLine.addCell(new Cell()
-                    .add(new Paragraph(""))
-                    .setHeight(3)
-                    .setBackgroundColor(primaryBlue)
-                    .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER));
-            document.add(headerLine);
-
-            document.add(new Paragraph("\n"));
-
-            // ========== TITLE ==========
-            Paragraph title = new Paragraph("Appointment Confirmation with Insurance Claim")
-                    .setFontSize(18)
-                    .setBold()
-                    .setFontColor(darkGray)
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .setMarginBottom(15);
-            document.add(title);
-
-            // ========== STATUS BADGE ==========
-            Table statusBadge = new Table(1).setWidth(UnitValue.createPercentValue(60))
-                    .setHorizontalAlignment(com.itextpdf.layout.properties.HorizontalAlignment.CENTER);
-            Cell statusCell = new Cell()
-                    .add(new Paragraph("⏳ INSURANCE CLAIM PENDING")
-                            .setFontSize(12)
-                            .setBold()
-                            .setFontColor(white)
-                            .setTextAlignment(TextAlignment.CENTER))
-                    .setBackgroundColor(amberColor)
-                    .setPadding(10)
-                    .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER);
-            statusBadge.addCell(statusCell);
-            document.add(statusBadge);
-
-            document.add(new Paragraph("\n"));
-
-            // ========== PATIENT INFORMATION ==========
-            Paragraph patientTitle = new Paragraph("Patient Information")
-                    .setFontSize(14)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setMarginBottom(8);
-            document.add(patientTitle);
-
-            Table patientTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
-                    .setWidth(UnitValue.createPercentValue(100));
-            
-            addStyledTableRow(patientTable, "Patient ID:", patient.getId(), lightGray);
-            addStyledTableRow(patientTable, "Full Name:", patient.getName(), white);
-            addStyledTableRow(patientTable, "Date of Birth:", 
-                    patient.getDateOfBirth() != null ? patient.getDateOfBirth().toString() : "N/A", lightGray);
-            addStyledTableRow(patientTable, "Gender:", 
-                    patient.getGender() != null ? patient.getGender() : "N/A", white);
-            addStyledTableRow(patientTable, "Contact Number:", 
-                    patient.getContactNumber() != null ? patient.getContactNumber() : "N/A", lightGray);
-            addStyledTableRow(patientTable, "Email:", 
-                    patient.getEmail() != null ? patient.getEmail() : "N/A", white);
-            addStyledTableRow(patientTable, "Address:", 
-                    patient.getAddress() != null ? patient.getAddress() : "N/A", lightGray);
-            
-            document.add(patientTable);
-            document.add(new Paragraph("\n"));
-
-            // ========== HOSPITAL INFORMATION ==========
-            Paragraph hospitalTitle = new Paragraph("Hospital Information")
-                    .setFontSize(14)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setMarginBottom(8);
-            document.add(hospitalTitle);
-
+            Map<String, String> values = new HashMap<>();
+            values.put("patientId", orNotAvailable(patient.getId()));
+            values.put("patientName", orNotAvailable(patient.getName()));
+            values.put("patientDateOfBirth", patient.getDateOfBirth() != null ? patient.getDateOfBirth().toString() : "N/A");
+            values.put("patientGender", orNotAvailable(patient.getGender()));
+            values.put("patientContact", orNotAvailable(patient.getContactNumber()));
+            values.put("patientEmail", orNotAvailable(patient.getEmail()));
+            values.put("patientAddress", orNotAvailable(patient.getAddress()));
             if (hospital != null) {
-                Table hospitalTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
-                        .setWidth(UnitValue.createPercentValue(100));
-                
-                addStyledTableRow(hospitalTable, "Hospital Name:", hospital.getName(), lightGray);
-                addStyledTableRow(hospitalTable, "Address:", 
-                        hospital.getLocation() != null && hospital.getLocation().getAddress() != null ? 
-                                hospital.getLocation().getAddress() : "N/A", white);
-                addStyledTableRow(hospitalTable, "Contact:", 
-                        hospital.getContactInfo() != null && hospital.getContactInfo().getPhoneNumber() != null ? 
-                                hospital.getContactInfo().getPhoneNumber() : "N/A", lightGray);
-                addStyledTableRow(hospitalTable, "Type:", 
-                        hospital.getType() != null ? hospital.getType().toString() : "N/A", white);
-                
-                document.add(hospitalTable);
-            } else {
-                document.add(new Paragraph("Hospital information not available").setItalic().setFontSize(10));
+                values.put("hospitalName", orNotAvailable(hospital.getName()));
+                values.put("hospitalAddress", hospital.getLocation() != null ? orNotAvailable(hospital.getLocation().getAddress()) : "N/A");
+                values.put("hospitalContact", hospital.getContactInfo() != null ? orNotAvailable(hospital.getContactInfo().getPhoneNumber()) : "N/A");
+                values.put("hospitalType", hospital.getType() != null ? hospital.getType().toString() : "N/A");
             }
-            
-            document.add(new Paragraph("\n"));
-
-            // ========== DOCTOR INFORMATION ==========
-            Paragraph doctorTitle = new Paragraph("Doctor Information")
-                    .setFontSize(14)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setMarginBottom(8);
-            document.add(doctorTitle);
-
             if (doctor != null) {
-                Table doctorTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
-                        .setWidth(UnitValue.createPercentValue(100));
-                
-                addStyledTableRow(doctorTable, "Doctor Name:", "Dr. " + doctor.getName(), lightGray);
-                addStyledTableRow(doctorTable, "Specialization:", 
-                        doctor.getSpecialization() != null ? doctor.getSpecialization() : "N/A", white);
-                addStyledTableRow(doctorTable, "Contact:", 
-                        doctor.getContactNumber() != null ? doctor.getContactNumber() : "N/A", lightGray);
-                
-                document.add(doctorTable);
-            } else {
-                document.add(new Paragraph("Doctor information not available").setItalic().setFontSize(10));
+                values.put("doctorName", "Dr. " + doctor.getName());
+                values.put("doctorSpecialization", orNotAvailable(doctor.getSpecialization()));
+                values.put("doctorContact", orNotAvailable(doctor.getContactNumber()));
             }
-            
-            document.add(new Paragraph("\n"));
-
-            // ========== APPOINTMENT DETAILS ==========
-            Paragraph appointmentTitle = new Paragraph("Appointment Details")
-                    .setFontSize(14)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setMarginBottom(8);
-            document.add(appointmentTitle);
-
-            Table appointmentTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
-                    .setWidth(UnitValue.createPercentValue(100));
-            
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MMMM dd, yyyy");
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("h:mm a");
-
-            addStyledTableRow(appointmentTable, "Appointment ID:", appointment.getId(), lightGray);
-            addStyledTableRow(appointmentTable, "Date:", 
-                    appointment.getAppointmentDateTime() != null ? 
-                            appointment.getAppointmentDateTime().format(dateFormatter) : "N/A", white);
-            addStyledTableRow(appointmentTable, "Time:", 
-                    appointment.getAppointmentDateTime() != null ? 
-                            appointment.getAppointmentDateTime().format(timeFormatter) : "N/A", lightGray);
-            addStyledTableRow(appointmentTable, "Status:", 
-                    appointment.getStatus() != null ? appointment.getStatus().toString() : "SCHEDULED", white);
-            addStyledTableRow(appointmentTable, "Purpose:", 
-                    appointment.getPurpose() != null ? appointment.getPurpose() : "General Consultation", lightGray);
-            
-            document.add(appointmentTable);
-            document.add(new Paragraph("\n"));
-
-            // ========== INSURANCE INFORMATION ==========
-            Paragraph insuranceTitle = new Paragraph("Insurance Information")
-                    .setFontSize(14)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setMarginBottom(8);
-            document.add(insuranceTitle);
-
-            Table insuranceTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
-                    .setWidth(UnitValue.createPercentValue(100))
-                    .setBackgroundColor(new DeviceRgb(243, 232, 255)); // Light purple highlight
-            
-            Cell insuranceLabel1 = new Cell()
-                    .add(new Paragraph("Insurance Provider:").setFontSize(10).setBold())
-                    .setPadding(10);
-            Cell insuranceValue1 = new Cell()
-                    .add(new Paragraph(insuranceProvider != null ? insuranceProvider : "N/A").setFontSize(10))
-                    .setPadding(10);
-            insuranceTable.addCell(insuranceLabel1);
-            insuranceTable.addCell(insuranceValue1);
-
-            Cell insuranceLabel2 = new Cell()
-                    .add(new Paragraph("Policy Number:").setFontSize(10).setBold())
-                    .setPadding(10);
-            Cell insuranceValue2 = new Cell()
-                    .add(new Paragraph(policyNumber != null ? policyNumber : "N/A").setFontSize(10))
-                    .setPadding(10);
-            insuranceTable.addCell(insuranceLabel2);
-            insuranceTable.addCell(insuranceValue2);
-
-            Cell insuranceLabel3 = new Cell()
-                    .add(new Paragraph("Claim Status:").setFontSize(10).setBold())
-                    .setPadding(10);
-            Cell insuranceValue3 = new Cell()
-                    .add(new Paragraph("PENDING VERIFICATION").setFontSize(10).setBold().setFontColor(amberColor))
-                    .setPadding(10);
-            insuranceTable.addCell(insuranceLabel3);
-            insuranceTable.addCell(insuranceValue3);
-            
-            document.add(insuranceTable);
-            document.add(new Paragraph("\n"));
-
-            // ========== CONFIRMATION MESSAGE ==========
-            Table confirmBox = new Table(1).setWidth(UnitValue.createPercentValue(100));
-            Cell confirmCell = new Cell()
-                    .add(new Paragraph("✓ APPOINTMENT CONFIRMED")
-                            .setFontSize(14)
-                            .setBold()
-                            .setFontColor(white)
-                            .setTextAlignment(TextAlignment.CENTER)
-                            .setMarginBottom(5))
-                    .add(new Paragraph("Your appointment has been successfully booked. Your insurance claim is currently under review and you will be contacted if additional information is needed.")
-                            .setFontSize(10)
-                            .setFontColor(white)
-                            .setTextAlignment(TextAlignment.CENTER))
-                    .setBackgroundColor(accentGreen)
-                    .setPadding(15)
-                    .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER);
-            confirmBox.addCell(confirmCell);
-            document.add(confirmBox);
-
-            document.add(new Paragraph("\n"));
-
-            // ========== IMPORTANT INSTRUCTIONS ==========
-            Paragraph instructionTitle = new Paragraph("Important Instructions")
-                    .setFontSize(12)
-                    .setBold()
-                    .setFontColor(primaryBlue)
-                    .setMarginBottom(8);
-            document.add(instructionTitle);
-
-            Table instructionBox = new Table(1).setWidth(UnitValue.createPercentValue(100));
-            Cell instructionCell = new Cell()
-                    .add(new Paragraph("• Please arrive 15 minutes before your scheduled appointment time.")
-                            .setFontSize(9)
-                            .setMarginBottom(4))
-                    .add(new Paragraph("• Bring a valid photo ID and your insurance card.")
-                            .setFontSize(9)
-                            .setMarginBottom(4))
-                    .add(new Paragraph("• Your insurance claim is being verified. You will be contacted if additional information is needed.")
-                            .setFontSize(9)
-                            .setMarginBottom(4))
-                    .add(new Paragraph("• If you need to reschedule or cancel, please contact us at least 24 hours in advance.")
-                            .setFontSize(9)
-                            .setMarginBottom(4))
-                    .add(new Paragraph("• Keep this document for your records and bring it to your appointment.")
-                            .setFontSize(9))
-                    .setBackgroundColor(lightGray)
-                    .setPadding(12)
-                    .setBorder(new com.itextpdf.layout.borders.SolidBorder(primaryBlue, 1));
-            instructionBox.addCell(instructionCell);
-            document.add(instructionBox);
-
-            document.add(new Paragraph("\n\n"));
-
-            // ========== FOOTER ==========
-            Table footerLine = new Table(1).setWidth(UnitValue.createPercentValue(100));
-            footerLine.addCell(new Cell()
-                    .add(new Paragraph(""))
-                    .setHeight(1)
-                    .setBackgroundColor(lightGray)
-                    .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER));
-            document.add(footerLine);
-
-            Paragraph footer = new Paragraph(
-                    "Healthcare System - Smart Healthcare Management\n" +
-                    "For inquiries: support@healthcare.com | Phone: 1-800-HEALTH-CARE\n" +
-                    "This is a computer-generated document and does not require a signature.")
-                    .setFontSize(8)
-                    .setFontColor(new DeviceRgb(107, 114, 128))
-                    .setTextAlignment(TextAlignment.CENTER)
-                    .setMarginTop(10);
-            document.add(footer);
+            values.put("appointmentId", orNotAvailable(appointment.getId()));
+            values.put("appointmentDate", appointment.getAppointmentDateTime() != null ?
+                appointment.getAppointmentDateTime().format(DATE_FORMATTER) : "N/A");
+            values.put("appointmentTime", appointment.getAppointmentDateTime() != null ?
+                appointment.getAppointmentDateTime().format(TIME_FORMATTER) : "N/A");
+            values.put("appointmentStatus", appointment.getStatus() != null ? appointment.getStatus().toString() : "SCHEDULED");
+            values.put("purpose", appointment.getPurpose() != null ? appointment.getPurpose() : "General Consultation");
+            values.put("insuranceProvider", orNotAvailable(insuranceProvider));
+            values.put("policyNumber", orNotAvailable(policyNumber));
 
-            document.close();
+            return generate(ConfirmationLayout.INSURANCE, values, this::layoutInsurance);
         } catch (Exception e) {
             e.printStackTrace();
+            return new byte[0];
         }
+    }
+
+    /**
+     * Lay out an insurance appointment confirmation
+     */
+    private void layoutInsurance(Document document, PdfFields fields) {
+        document.setMargins(30, 30, 30, 30);
+
+        // ========== HEADER ==========
+        Paragraph mainHeader = new Paragraph("HEALTHCARE SYSTEM")
+                .setFontSize(26)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(3);
+        document.add(mainHeader);
+
+        Paragraph subHeader = new Paragraph("Smart Healthcare Management")
+                .setFontSize(11)
+                .setFontColor(INSURANCE_BLUE)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(15);
+        document.add(subHeader);
+
+        // Horizontal line
+        Table headerLine = new Table(1).setWidth(UnitValue.createPercentValue(100));
+        headerLine.addCell(new Cell()
+                .add(new Paragraph(""))
+                .setHeight(3)
+                .setBackgroundColor(INSURANCE_BLUE)
+                .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER));
+        document.add(headerLine);
 
-        return baos.toByteArray();
+        document.add(new Paragraph("\n"));
+
+        // ========== TITLE ==========
+        Paragraph title = new Paragraph("Appointment Confirmation with Insurance Claim")
+                .setFontSize(18)
+                .setBold()
+                .setFontColor(INSURANCE_DARK_GRAY)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(15);
+        document.add(title);
+
+        // ========== STATUS BADGE ==========
+        Table statusBadge = new Table(1).setWidth(UnitValue.createPercentValue(60))
+                .setHorizontalAlignment(com.itextpdf.layout.properties.HorizontalAlignment.CENTER);
+        Cell statusCell = new Cell()
+                .add(new Paragraph("⏳ INSURANCE CLAIM PENDING")
+                        .setFontSize(12)
+                        .setBold()
+                        .setFontColor(INSURANCE_WHITE)
+                        .setTextAlignment(TextAlignment.CENTER))
+                .setBackgroundColor(INSURANCE_AMBER)
+                .setPadding(10)
+                .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER);
+        statusBadge.addCell(statusCell);
+        document.add(statusBadge);
+
+        document.add(new Paragraph("\n"));
+
+        // ========== PATIENT INFORMATION ==========
+        Paragraph patientTitle = new Paragraph("Patient Information")
+                .setFontSize(14)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setMarginBottom(8);
+        document.add(patientTitle);
+
+        Table patientTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
+                .setWidth(UnitValue.createPercentValue(100));
+
+        addStyledTableRow(patientTable, "Patient ID:", fields.paragraph("patientId"), INSURANCE_LIGHT_GRAY);
+        addStyledTableRow(patientTable, "Full Name:", fields.paragraph("patientName"), INSURANCE_WHITE);
+        addStyledTableRow(patientTable, "Date of Birth:", fields.paragraph("patientDateOfBirth"), INSURANCE_LIGHT_GRAY);
+        addStyledTableRow(patientTable, "Gender:", fields.paragraph("patientGender"), INSURANCE_WHITE);
+        addStyledTableRow(patientTable, "Contact Number:", fields.paragraph("patientContact"), INSURANCE_LIGHT_GRAY);
+        addStyledTableRow(patientTable, "Email:", fields.paragraph("patientEmail"), INSURANCE_WHITE);
+        addStyledTableRow(patientTable, "Address:", fields.paragraph("patientAddress"), INSURANCE_LIGHT_GRAY);
+
+        document.add(patientTable);
+        document.add(new Paragraph("\n"));
+
+        // ========== HOSPITAL INFORMATION ==========
+        Paragraph hospitalTitle = new Paragraph("Hospital Information")
+                .setFontSize(14)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setMarginBottom(8);
+        document.add(hospitalTitle);
+
+        if (fields.has("hospitalName")) {
+            Table hospitalTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
+                    .setWidth(UnitValue.createPercentValue(100));
+
+            addStyledTableRow(hospitalTable, "Hospital Name:", fields.paragraph("hospitalName"), INSURANCE_LIGHT_GRAY);
+            addStyledTableRow(hospitalTable, "Address:", fields.paragraph("hospitalAddress"), INSURANCE_WHITE);
+            addStyledTableRow(hospitalTable, "Contact:", fields.paragraph("hospitalContact"), INSURANCE_LIGHT_GRAY);
+            addStyledTableRow(hospitalTable, "Type:", fields.paragraph("hospitalType"), INSURANCE_WHITE);
+
+            document.add(hospitalTable);
+        } else {
+            document.add(new Paragraph("Hospital information not available").setItalic().setFontSize(10));
+        }
+
+        document.add(new Paragraph("\n"));
+
+        // ========== DOCTOR INFORMATION ==========
+        Paragraph doctorTitle = new Paragraph("Doctor Information")
+                .setFontSize(14)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setMarginBottom(8);
+        document.add(doctorTitle);
+
+        if (fields.has("doctorName")) {
+            Table doctorTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
+                    .setWidth(UnitValue.createPercentValue(100));
+
+            addStyledTableRow(doctorTable, "Doctor Name:", fields.paragraph("doctorName"), INSURANCE_LIGHT_GRAY);
+            addStyledTableRow(doctorTable, "Specialization:", fields.paragraph("doctorSpecialization"), INSURANCE_WHITE);
+            addStyledTableRow(doctorTable, "Contact:", fields.paragraph("doctorContact"), INSURANCE_LIGHT_GRAY);
+
+            document.add(doctorTable);
+        } else {
+            document.add(new Paragraph("Doctor information not available").setItalic().setFontSize(10));
+        }
+
+        document.add(new Paragraph("\n"));
+
+        // ========== APPOINTMENT DETAILS ==========
+        Paragraph appointmentTitle = new Paragraph("Appointment Details")
+                .setFontSize(14)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setMarginBottom(8);
+        document.add(appointmentTitle);
+
+        Table appointmentTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
+                .setWidth(UnitValue.createPercentValue(100));
+
+        addStyledTableRow(appointmentTable, "Appointment ID:", fields.paragraph("appointmentId"), INSURANCE_LIGHT_GRAY);
+        addStyledTableRow(appointmentTable, "Date:", fields.paragraph("appointmentDate"), INSURANCE_WHITE);
+        addStyledTableRow(appointmentTable, "Time:", fields.paragraph("appointmentTime"), INSURANCE_LIGHT_GRAY);
+        addStyledTableRow(appointmentTable, "Status:", fields.paragraph("appointmentStatus"), INSURANCE_WHITE);
+        addStyledTableRow(appointmentTable, "Purpose:", fields.paragraph("purpose"), INSURANCE_LIGHT_GRAY);
+
+        document.add(appointmentTable);
+        document.add(new Paragraph("\n"));
+
+        // ========== INSURANCE INFORMATION ==========
+        Paragraph insuranceTitle = new Paragraph("Insurance Information")
+                .setFontSize(14)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setMarginBottom(8);
+        document.add(insuranceTitle);
+
+        Table insuranceTable = new Table(UnitValue.createPercentArray(new float[]{35f, 65f}))
+                .setWidth(UnitValue.createPercentValue(100))
+                .setBackgroundColor(INSURANCE_HIGHLIGHT);
+
+        Cell insuranceLabel1 = new Cell()
+                .add(new Paragraph("Insurance Provider:").setFontSize(10).setBold())
+                .setPadding(10);
+        Cell insuranceValue1 = new Cell()
+                .add(fields.paragraph("insuranceProvider").setFontSize(10))
+                .setPadding(10);
+        insuranceTable.addCell(insuranceLabel1);
+        insuranceTable.addCell(insuranceValue1);
+
+        Cell insuranceLabel2 = new Cell()
+                .add(new Paragraph("Policy Number:").setFontSize(10).setBold())
+                .setPadding(10);
+        Cell insuranceValue2 = new Cell()
+                .add(fields.paragraph("policyNumber").setFontSize(10))
+                .setPadding(10);
+        insuranceTable.addCell(insuranceLabel2);
+        insuranceTable.addCell(insuranceValue2);
+        Cell insuranceLabel3 = new Cell()
+                .add(new Paragraph("Claim Status:").setFontSize(10).setBold())
+                .setPadding(10);
+        Cell insuranceValue3 = new Cell()
+                .add(new Paragraph("PENDING VERIFICATION").setFontSize(10).setBold().setFontColor(INSURANCE_AMBER))
+                .setPadding(10);
+        insuranceTable.addCell(insuranceLabel3);
+        insuranceTable.addCell(insuranceValue3);
+
+        document.add(insuranceTable);
+        document.add(new Paragraph("\n"));
+
+        // ========== CONFIRMATION MESSAGE ==========
+        Table confirmBox = new Table(1).setWidth(UnitValue.createPercentValue(100));
+        Cell confirmCell = new Cell()
+                .add(new Paragraph("✓ APPOINTMENT CONFIRMED")
+                        .setFontSize(14)
+                        .setBold()
+                        .setFontColor(INSURANCE_WHITE)
+                        .setTextAlignment(TextAlignment.CENTER)
+                        .setMarginBottom(5))
+                .add(new Paragraph("Your appointment has been successfully booked. Your insurance claim is currently under review and you will be contacted if additional information is needed.")
+                        .setFontSize(10)
+                        .setFontColor(INSURANCE_WHITE)
+                        .setTextAlignment(TextAlignment.CENTER))
+                .setBackgroundColor(INSURANCE_GREEN)
+                .setPadding(15)
+                .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER);
+        confirmBox.addCell(confirmCell);
+        document.add(confirmBox);
+
+        document.add(new Paragraph("\n"));
+
+        // ========== IMPORTANT INSTRUCTIONS ==========
+        Paragraph instructionTitle = new Paragraph("Important Instructions")
+                .setFontSize(12)
+                .setBold()
+                .setFontColor(INSURANCE_BLUE)
+                .setMarginBottom(8);
+        document.add(instructionTitle);
+
+        Table instructionBox = new Table(1).setWidth(UnitValue.createPercentValue(100));
+        Cell instructionCell = new Cell()
+                .add(new Paragraph("• Please arrive 15 minutes before your scheduled appointment time.")
+                        .setFontSize(9)
+                        .setMarginBottom(4))
+                .add(new Paragraph("• Bring a valid photo ID and your insurance card.")
+                        .setFontSize(9)
+                        .setMarginBottom(4))
+                .add(new Paragraph("• Your insurance claim is being verified. You will be contacted if additional information is needed.")
+                        .setFontSize(9)
+                        .setMarginBottom(4))
+                .add(new Paragraph("• If you need to reschedule or cancel, please contact us at least 24 hours in advance.")
+                        .setFontSize(9)
+                        .setMarginBottom(4))
+                .add(new Paragraph("• Keep this document for your records and bring it to your appointment.")
+                        .setFontSize(9))
+                .setBackgroundColor(INSURANCE_LIGHT_GRAY)
+                .setPadding(12)
+                .setBorder(INSTRUCTION_BORDER);
+        instructionBox.addCell(instructionCell);
+        document.add(instructionBox);
+
+        document.add(new Paragraph("\n\n"));
+
+        // ========== FOOTER ==========
+        Table footerLine = new Table(1).setWidth(UnitValue.createPercentValue(100));
+        footerLine.addCell(new Cell()
+                .add(new Paragraph(""))
+                .setHeight(1)
+                .setBackgroundColor(INSURANCE_LIGHT_GRAY)
+                .setBorder(com.itextpdf.layout.borders.Border.NO_BORDER));
+        document.add(footerLine);
+
+        Paragraph footer = new Paragraph(
+                "Healthcare System - Smart Healthcare Management\n" +
+                "For inquiries: support@healthcare.com | Phone: 1-800-HEALTH-CARE\n" +
+                "This is a computer-generated document and does not require a signature.")
+                .setFontSize(8)
+                .setFontColor(FOOTER_GRAY)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginTop(10);
+        document.add(footer);
     }
 
     /**
      * Helper method to add styled table rows with alternating colors
      */
-    private void addStyledTableRow(Table table, String label, String value, DeviceRgb backgroundColor) {
+    private void addStyledTableRow(Table table, String label, Paragraph value, DeviceRgb backgroundColor) {
         Cell labelCell = new Cell()
-                .add(new Paragraph(label).setFontSize(10).setBold())
+                .add(new Paragraph(label).addStyle(LABEL_STYLE))
                 .setBackgroundColor(backgroundColor)
                 .setPadding(8)
-                .setBorder(new com.itextpdf.layout.borders.SolidBorder(new DeviceRgb(229, 231, 235), 0.5f));
+                .setBorder(ROW_BORDER);
 
         Cell valueCell = new Cell()
-                .add(new Paragraph(value != null ? value : "N/A").setFontSize(10))
+                .add(value.addStyle(VALUE_STYLE))
                 .setBackgroundColor(backgroundColor)
                 .setPadding(8)
-                .setBorder(new com.itextpdf.layout.borders.SolidBorder(new DeviceRgb(229, 231, 235), 0.5f));
+                .setBorder(ROW_BORDER);
 
         table.addCell(labelCell);
         table.addCell(valueCell);
     }
+
+    private static String orNotAvailable(String value) {
+        return value != null ? value : "N/A";
+    }
 }
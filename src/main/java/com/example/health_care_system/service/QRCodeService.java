@@ -1,5 +1,6 @@
 package com.example.health_care_system.service;
 
+import com.example.health_care_system.model.QRCodeAsset;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
@@ -8,38 +9,166 @@ import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
 
+/**
+ * QR codes for patient identification
+ * Images are content-addressed: the key is a SHA-256 of the QR content and rendering settings.
+ * Rendered PNGs are stored in the qr_assets collection and cached in an in-memory LRU and in
+ * app.qr.cache-dir, so a code is encoded once and later requests are byte copies.
+ * Documents store only a reference URL (see generateQRCode).
+ */
 @Service
 @Slf4j
 public class QRCodeService {
-    
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     private static final int QR_CODE_WIDTH = 300;
     private static final int QR_CODE_HEIGHT = 300;
-    
+
+    private static final String QR_CONTENT_PREFIX = "HEALTHCARE_USER:";
+
     /**
-     * Generate QR code for user identification
+     * Prefix of the reference stored on Patient and HealthCard documents; served by QRCodeController
+     */
+    public static final String QR_CODE_URL_PREFIX = "/qr-codes/";
+
+    // Legacy documents embed the image itself
+    public static final String DATA_URI_PREFIX = "data:image/png;base64,";
+
+    @Value("${app.qr.cache-dir:}")
+    private String cacheDir = "";
+
+    @Value("${app.qr.memory-entries:1024}")
+    private int memoryEntries = 1024;
+
+    private final Map<String, byte[]> memoryCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > memoryEntries;
+            }
+        });
+
+    /**
+     * A rendered QR code; the key doubles as a strong ETag
+     */
+    public record QRCodeImage(String key, byte[] png) {
+    }
+
+    /**
+     * Make sure the user's QR code is rendered and return the reference to store on documents
      * QR code contains user ID which can be used to fetch user details
      */
     public String generateQRCode(String userId) {
+        getQRCodeImage(userId);
+        return getQRCodeUrl(userId);
+    }
+
+    /**
+     * Reference URL of a user's QR code image
+     */
+    public String getQRCodeUrl(String userId) {
+        return QR_CODE_URL_PREFIX + userId + ".png";
+    }
+
+    /**
+     * Get the PNG of a user's QR code from the memory cache, the disk cache, qr_assets, or by rendering it
+     */
+    public QRCodeImage getQRCodeImage(String userId) {
+        String qrContent = QR_CONTENT_PREFIX + userId;
+        String key = contentKey(qrContent);
+
+        byte[] png = memoryCache.get(key);
+        if (png == null) {
+            png = readFromDisk(key);
+            if (png == null) {
+                QRCodeAsset asset = mongoTemplate.findById(key, QRCodeAsset.class);
+                if (asset != null) {
+                    png = asset.getPng();
+                } else {
+                    png = render(qrContent);
+                    storeAsset(key, userId, png);
+                    log.info("QR code generated successfully for user: {}", userId);
+                }
+                writeToDisk(key, png);
+            }
+            memoryCache.put(key, png);
+        }
+        return new QRCodeImage(key, png);
+    }
+
+    /**
+     * Store an already rendered QR code (e.g. a legacy embedded image) for a user
+     * Keeps the existing asset if the user's code is stored already.
+     * @return Reference URL to store on documents in place of the image
+     */
+    public String importQRCode(String userId, byte[] png) {
+        String key = contentKey(QR_CONTENT_PREFIX + userId);
+        if (!mongoTemplate.exists(new Query(Criteria.where("_id").is(key)), QRCodeAsset.class)) {
+            storeAsset(key, userId, png);
+        }
+        return getQRCodeUrl(userId);
+    }
+
+    /**
+     * Get the PNG bytes behind a stored qrCode value: a legacy Base64 data URI or a reference URL
+     * @return null if the value is neither
+     */
+    public byte[] resolveQRCode(String storedValue) {
+        if (storedValue == null || storedValue.isEmpty()) {
+            return null;
+        }
+        if (storedValue.startsWith(DATA_URI_PREFIX)) {
+            return Base64.getDecoder().decode(storedValue.substring(DATA_URI_PREFIX.length()));
+        }
+        if (storedValue.startsWith(QR_CODE_URL_PREFIX) && storedValue.endsWith(".png")) {
+            String userId = storedValue.substring(QR_CODE_URL_PREFIX.length(), storedValue.length() - ".png".length());
+            return getQRCodeImage(userId).png();
+        }
+        return null;
+    }
+
+    /**
+     * Extract user ID from QR code content
+     */
+    public String extractUserIdFromQRContent(String qrContent) {
+        if (qrContent != null && qrContent.startsWith(QR_CONTENT_PREFIX)) {
+            return qrContent.substring(QR_CONTENT_PREFIX.length());
+        }
+        throw new IllegalArgumentException("Invalid QR code format");
+    }
+
+    private byte[] render(String qrContent) {
         try {
-            // Create QR code content with user ID
-            String qrContent = "HEALTHCARE_USER:" + userId;
-            
             // Set QR code parameters
             Map<EncodeHintType, Object> hints = new HashMap<>();
             hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
             hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
             hints.put(EncodeHintType.MARGIN, 1);
-            
+
             // Generate QR code
             QRCodeWriter qrCodeWriter = new QRCodeWriter();
             BitMatrix bitMatrix = qrCodeWriter.encode(
@@ -49,32 +178,70 @@ public class QRCodeService {
                 QR_CODE_HEIGHT,
                 hints
             );
-            
+
             // Convert to buffered image
             BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-            
-            // Convert to Base64 string
+
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             ImageIO.write(qrImage, "PNG", outputStream);
-            byte[] imageBytes = outputStream.toByteArray();
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-            
-            log.info("QR code generated successfully for user: {}", userId);
-            return "data:image/png;base64," + base64Image;
-            
+            return outputStream.toByteArray();
+
         } catch (WriterException | IOException e) {
-            log.error("Error generating QR code for user: {}", userId, e);
+            log.error("Error generating QR code for content: {}", qrContent, e);
             throw new RuntimeException("Failed to generate QR code", e);
         }
     }
-    
-    /**
-     * Extract user ID from QR code content
-     */
-    public String extractUserIdFromQRContent(String qrContent) {
-        if (qrContent != null && qrContent.startsWith("HEALTHCARE_USER:")) {
-            return qrContent.substring("HEALTHCARE_USER:".length());
+
+    private void storeAsset(String key, String userId, byte[] png) {
+        try {
+            mongoTemplate.insert(new QRCodeAsset(key, userId, png, LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            // Rendered concurrently by another request or instance; the content is identical
+        }
+    }
+
+    // Rendering settings are part of the key so changing them never serves stale images
+    private static String contentKey(String qrContent) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((qrContent + "|" + QR_CODE_WIDTH + "x" + QR_CODE_HEIGHT + "|H|1")
+                .getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path diskPath(String key) {
+        return Paths.get(cacheDir, key.substring(0, 2), key + ".png");
+    }
+
+    private byte[] readFromDisk(String key) {
+        if (cacheDir.isEmpty()) {
+            return null;
+        }
+        try {
+            Path path = diskPath(key);
+            return Files.exists(path) ? Files.readAllBytes(path) : null;
+        } catch (IOException e) {
+            log.warn("Failed to read cached QR code {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] png) {
+        if (cacheDir.isEmpty()) {
+            return;
+        }
+        try {
+            Path path = diskPath(key);
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.write(temp, png);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The memory cache still holds the image; the next miss renders it again
+            log.warn("Failed to cache QR code {} on disk: {}", key, e.getMessage());
         }
-        throw new IllegalArgumentException("Invalid QR code format");
     }
 }
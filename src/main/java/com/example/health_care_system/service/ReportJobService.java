@@ -0,0 +1,313 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.AnalyticsReport;
+import com.example.health_care_system.model.ReportJob;
+import com.example.health_care_system.model.ReportJob.JobStatus;
+import com.example.health_care_system.model.ReportJob.JobType;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs report generation in the background so admin requests return immediately with a job id
+ * Jobs wait in a bounded queue for a fixed pool of workers; status, progress and the result
+ * are stored in the report_jobs collection for clients to poll.
+ * Jobs run in the instance that accepted them, which holds a lease on them while they are queued
+ * or running; jobs whose lease expired (their instance stopped) are failed by any instance.
+ */
+@Service
+public class ReportJobService {
+
+    public static final String QUEUE_FULL_MESSAGE = "Too many report jobs are queued. Please try again later.";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AnalyticsReportService analyticsReportService;
+
+    @Value("${app.reports.workers:2}")
+    private int workers = 2;
+
+    @Value("${app.reports.queue-capacity:20}")
+    private int queueCapacity = 20;
+
+    @Value("${app.reports.instance-id:}")
+    private String instanceId = "";
+
+    @Value("${app.reports.lease-seconds:120}")
+    private long leaseSeconds = 120;
+
+    private ExecutorService executor;
+
+    private final Map<String, Future<?>> futures = new ConcurrentHashMap<>();
+
+    /**
+     * Reports how far a job has got; throws CancellationException once the job is cancelled
+     */
+    @FunctionalInterface
+    public interface Progress {
+        void update(int percent, String message);
+    }
+
+    /**
+     * The work of a job; returns the generated PDF bytes or AnalyticsReport
+     */
+    @FunctionalInterface
+    public interface ReportWork<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (instanceId == null || instanceId.isBlank()) {
+            instanceId = UUID.randomUUID().toString();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "report-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Fail jobs left queued or running by a previous run of this instance, or by an instance whose lease expired
+     * Jobs held by other live instances are left alone.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        failJobs(new Criteria().orOperator(
+            Criteria.where("owner").is(instanceId),
+            Criteria.where("leaseExpiresAt").lt(LocalDateTime.now()),
+            // Jobs created before leases were recorded
+            Criteria.where("leaseExpiresAt").is(null)));
+    }
+
+    /**
+     * Renew the leases of this instance's unfinished jobs, then fail jobs whose owner stopped renewing
+     */
+    @Scheduled(fixedRateString = "${app.reports.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        try {
+            mongoTemplate.updateMulti(
+                new Query(Criteria.where("owner").is(instanceId).and("status").in(JobStatus.QUEUED, JobStatus.RUNNING)),
+                new Update().set("leaseExpiresAt", leaseExpiry()),
+                ReportJob.class);
+        } catch (Exception e) {
+            System.err.println("Failed to renew report job leases: " + e.getMessage());
+            return;
+        }
+        failJobs(Criteria.where("owner").ne(instanceId).and("leaseExpiresAt").lt(LocalDateTime.now()));
+    }
+
+    private void failJobs(Criteria interrupted) {
+        try {
+            UpdateResult result = mongoTemplate.updateMulti(
+                new Query(new Criteria().andOperator(
+                    Criteria.where("status").in(JobStatus.QUEUED, JobStatus.RUNNING), interrupted)),
+                new Update()
+                    .set("status", JobStatus.FAILED)
+                    .set("errorMessage", "Interrupted by a server restart")
+                    .set("finishedAt", LocalDateTime.now()),
+                ReportJob.class);
+            if (result.getModifiedCount() > 0) {
+                System.out.println("Marked " + result.getModifiedCount() + " interrupted report jobs as failed");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to clean up interrupted report jobs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queue an analytics PDF export
+     */
+    public ReportJob submitPdf(String requestedBy, LocalDate startDate, LocalDate endDate, ReportWork<byte[]> work) {
+        return submit(JobType.ANALYTICS_PDF, requestedBy, startDate, endDate, work);
+    }
+
+    /**
+     * Queue an AnalyticsReport generation; the dates bound the report period where the report type has one
+     */
+    public ReportJob submitReport(JobType type, String requestedBy, LocalDate startDate, LocalDate endDate) {
+        if (type == JobType.ANALYTICS_PDF) {
+            throw new IllegalArgumentException("PDF exports are submitted with submitPdf");
+        }
+        LocalDateTime periodStart = startDate != null ? startDate.atStartOfDay() : null;
+        LocalDateTime periodEnd = endDate != null ? endDate.atTime(LocalTime.MAX) : null;
+
+        return submit(type, requestedBy, startDate, endDate, progress -> {
+            progress.update(10, "Generating report");
+            return switch (type) {
+                case PATIENT_SUMMARY -> analyticsReportService.generatePatientReport(requestedBy, periodStart, periodEnd);
+                case DOCTOR_PERFORMANCE -> analyticsReportService.generateDoctorReport(requestedBy, periodStart, periodEnd);
+                case HOSPITAL_OVERVIEW -> analyticsReportService.generateHospitalReport(requestedBy, periodStart, periodEnd);
+                case APPOINTMENT_STATISTICS -> analyticsReportService.refreshAppointmentReport(requestedBy, periodStart, periodEnd);
+                case SYSTEM_OVERVIEW -> analyticsReportService.generateSystemOverviewReport(requestedBy);
+                case ANALYTICS_PDF -> throw new IllegalStateException();
+            };
+        });
+    }
+
+    /**
+     * Get a job's status without its result
+     */
+    public Optional<ReportJob> getJob(String jobId) {
+        Query query = new Query(Criteria.where("id").is(jobId));
+        query.fields().exclude("pdf");
+        return Optional.ofNullable(mongoTemplate.findOne(query, ReportJob.class));
+    }
+
+    /**
+     * Get the most recent jobs, newest first, without their results
+     */
+    public List<ReportJob> getRecentJobs(int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(limit);
+        query.fields().exclude("pdf");
+        return mongoTemplate.find(query, ReportJob.class);
+    }
+
+    /**
+     * Get the PDF of a completed ANALYTICS_PDF job
+     */
+    public Optional<byte[]> getPdf(String jobId) {
+        Query query = new Query(Criteria.where("id").is(jobId).and("status").is(JobStatus.COMPLETED));
+        query.fields().include("pdf");
+        ReportJob job = mongoTemplate.findOne(query, ReportJob.class);
+        return Optional.ofNullable(job).map(ReportJob::getPdf);
+    }
+
+    /**
+     * Cancel a queued or running job
+     * @return false if the job does not exist or has already finished
+     */
+    public boolean cancel(String jobId) {
+        UpdateResult result = mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(jobId).and("status").in(JobStatus.QUEUED, JobStatus.RUNNING)),
+            new Update().set("status", JobStatus.CANCELLED).set("finishedAt", LocalDateTime.now()),
+            ReportJob.class);
+        if (result.getMatchedCount() == 0) {
+            return false;
+        }
+
+        Future<?> future = futures.remove(jobId);
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    private ReportJob submit(JobType type, String requestedBy, LocalDate startDate, LocalDate endDate, ReportWork<?> work) {
+        ReportJob job = new ReportJob();
+        job.setType(type);
+        job.setStatus(JobStatus.QUEUED);
+        job.setRequestedBy(requestedBy);
+        job.setStartDate(startDate);
+        job.setEndDate(endDate);
+        job.setProgressMessage("Queued");
+        job.setCreatedAt(LocalDateTime.now());
+        job.setOwner(instanceId);
+        job.setLeaseExpiresAt(leaseExpiry());
+        job = mongoTemplate.insert(job);
+
+        String jobId = job.getId();
+        try {
+            Future<?> future = executor.submit(() -> runJob(jobId, work));
+            futures.put(jobId, future);
+            if (future.isDone()) {
+                futures.remove(jobId);
+            }
+        } catch (RejectedExecutionException e) {
+            finish(jobId, JobStatus.QUEUED, new Update().set("status", JobStatus.FAILED).set("errorMessage", QUEUE_FULL_MESSAGE));
+            throw new RuntimeException(QUEUE_FULL_MESSAGE);
+        }
+        return job;
+    }
+
+    /**
+     * Run a job on a worker thread; a job cancelled while queued is skipped
+     */
+    void runJob(String jobId, ReportWork<?> work) {
+        try {
+            ReportJob job = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(jobId).and("status").is(JobStatus.QUEUED)),
+                new Update().set("status", JobStatus.RUNNING).set("progressMessage", "Started").set("startedAt", LocalDateTime.now()),
+                ReportJob.class);
+            if (job == null) {
+                return;
+            }
+
+            Object result = work.run((percent, message) -> updateProgress(jobId, percent, message));
+
+            Update completed = new Update()
+                .set("status", JobStatus.COMPLETED)
+                .set("progress", 100)
+                .set("progressMessage", "Completed");
+            if (result instanceof byte[] pdf) {
+                completed.set("pdf", pdf);
+            } else if (result instanceof AnalyticsReport report) {
+                completed.set("reportId", report.getReportId());
+            }
+            finish(jobId, JobStatus.RUNNING, completed);
+        } catch (CancellationException e) {
+            // Already marked CANCELLED by cancel()
+        } catch (Exception e) {
+            System.err.println("Report job " + jobId + " failed: " + e.getMessage());
+            finish(jobId, JobStatus.RUNNING, new Update()
+                .set("status", JobStatus.FAILED)
+                .set("errorMessage", e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        } finally {
+            futures.remove(jobId);
+        }
+    }
+
+    private void updateProgress(String jobId, int percent, String message) {
+        UpdateResult result = mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(jobId).and("status").is(JobStatus.RUNNING)),
+            new Update().set("progress", Math.max(0, Math.min(99, percent))).set("progressMessage", message),
+            ReportJob.class);
+        if (result.getMatchedCount() == 0 || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Report job " + jobId + " was cancelled");
+        }
+    }
+
+    private LocalDateTime leaseExpiry() {
+        return LocalDateTime.now().plusSeconds(leaseSeconds);
+    }
+
+    // Only moves the job out of the expected state, so a cancelled job stays cancelled
+    private void finish(String jobId, JobStatus expected, Update update) {
+        mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(jobId).and("status").is(expected)),
+            update.set("finishedAt", LocalDateTime.now()),
+            ReportJob.class);
+    }
+}
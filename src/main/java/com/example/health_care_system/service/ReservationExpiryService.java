@@ -0,0 +1,190 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.TimeSlotReservation;
+import com.example.health_care_system.repository.TimeSlotReservationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires time slot reservations at their exact deadline.
+ * Each active reservation sits in a DelayQueue until createdAt + 5 minutes;
+ * a worker thread takes every hold that is due and flips them to EXPIRED
+ * with a single bulk update, then releases them from the SlotAvailabilityIndex.
+ * The queue is rebuilt from time_slot_reservations when the application starts.
+ */
+@Service
+public class ReservationExpiryService {
+
+    @Autowired
+    private TimeSlotReservationRepository reservationRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SlotAvailabilityIndex slotIndex;
+
+    private final DelayQueue<PendingExpiry> queue = new DelayQueue<>();
+
+    // Holds that are still waiting to expire, so confirmed or cancelled ones are skipped
+    private final Map<String, PendingExpiry> pending = new ConcurrentHashMap<>();
+
+    private Thread worker;
+
+    /**
+     * Schedule an active reservation to expire at its deadline
+     */
+    public void schedule(TimeSlotReservation reservation) {
+        if (reservation.getId() == null || reservation.getCreatedAt() == null) {
+            return;
+        }
+
+        PendingExpiry expiry = new PendingExpiry(reservation, deadlineOf(reservation));
+        PendingExpiry previous = pending.put(reservation.getId(), expiry);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        queue.add(expiry);
+    }
+
+    /**
+     * Stop tracking a reservation that was confirmed or cancelled
+     */
+    public void cancel(String reservationId) {
+        if (reservationId == null) {
+            return;
+        }
+
+        PendingExpiry expiry = pending.remove(reservationId);
+        if (expiry != null) {
+            queue.remove(expiry);
+        }
+    }
+
+    /**
+     * Expire the given reservations now with one bulk update
+     * @return number of reservations that were still active
+     */
+    public long expireNow(Collection<TimeSlotReservation> reservations) {
+        if (reservations.isEmpty()) {
+            return 0;
+        }
+
+        List<String> ids = new ArrayList<>();
+        for (TimeSlotReservation reservation : reservations) {
+            ids.add(reservation.getId());
+            cancel(reservation.getId());
+        }
+
+        Query query = new Query(Criteria.where("id").in(ids)
+            .and("status").is(TimeSlotReservation.ReservationStatus.ACTIVE));
+        Update update = new Update().set("status", TimeSlotReservation.ReservationStatus.EXPIRED);
+        long expired = mongoTemplate.updateMulti(query, update, TimeSlotReservation.class).getModifiedCount();
+
+        for (TimeSlotReservation reservation : reservations) {
+            slotIndex.releaseReservation(
+                reservation.getDoctorId(),
+                reservation.getSlotDateTime(),
+                reservation.getPatientId()
+            );
+        }
+
+        return expired;
+    }
+
+    /**
+     * Get number of reservations waiting to expire
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Rebuild the expiry queue from active reservations and start the worker
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reservationRepository.findByStatus(TimeSlotReservation.ReservationStatus.ACTIVE)
+            .forEach(this::schedule);
+
+        worker = new Thread(this::run, "reservation-expiry");
+        worker.setDaemon(true);
+        worker.start();
+
+        System.out.println("Reservation expiry started with " + pending.size() + " active reservations");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<PendingExpiry> due = new ArrayList<>();
+                due.add(queue.take());
+                queue.drainTo(due);
+                expireDue(due);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("Failed to expire reservations: " + e.getMessage());
+            }
+        }
+    }
+
+    private void expireDue(List<PendingExpiry> due) {
+        List<TimeSlotReservation> reservations = new ArrayList<>();
+        for (PendingExpiry expiry : due) {
+            // Skip holds that were confirmed, cancelled or rescheduled after being queued
+            if (pending.remove(expiry.reservation().getId(), expiry)) {
+                reservations.add(expiry.reservation());
+            }
+        }
+
+        long expired = expireNow(reservations);
+        if (expired > 0) {
+            System.out.println("Expired " + expired + " reservations");
+        }
+    }
+
+    private static long deadlineOf(TimeSlotReservation reservation) {
+        LocalDateTime expiryTime = reservation.getCreatedAt()
+            .plusMinutes(TimeSlotReservationService.RESERVATION_DURATION_MINUTES);
+        return System.currentTimeMillis() + Duration.between(LocalDateTime.now(), expiryTime).toMillis();
+    }
+
+    private record PendingExpiry(TimeSlotReservation reservation, long deadlineMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.TimeSlotReservation;
+import com.example.health_care_system.repository.AppointmentRepository;
+import com.example.health_care_system.repository.TimeSlotReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of booked and reserved time slots per doctor and day.
+ * A day is loaded from MongoDB the first time it is requested and is then kept
+ * up to date by AppointmentService and TimeSlotReservationService, so rendering
+ * the slot grid does not need to query the database.
+ * Every change is published as a SlotChangedEvent for live slot-grid updates.
+ */
+@Service
+public class SlotAvailabilityIndex {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private TimeSlotReservationRepository reservationRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Loaded days are re-read from MongoDB after this long to pick up changes made by other instances
+    private static final long REFRESH_INTERVAL_MINUTES = 10;
+
+    private final Map<DayKey, DaySlots> days = new ConcurrentHashMap<>();
+
+    /**
+     * Check if a scheduled appointment occupies the slot
+     */
+    public boolean isBooked(String doctorId, LocalDateTime slotDateTime) {
+        return day(doctorId, slotDateTime.toLocalDate()).isBooked(slotDateTime.toLocalTime());
+    }
+
+    /**
+     * Check if the slot is reserved by a patient other than the given one
+     */
+    public boolean isReservedByOther(String doctorId, LocalDateTime slotDateTime, String excludePatientId) {
+        return day(doctorId, slotDateTime.toLocalDate()).isReservedByOther(slotDateTime.toLocalTime(), excludePatientId);
+    }
+
+    /**
+     * Get booked slot times for a doctor on a specific date
+     */
+    public Set<LocalTime> getBookedSlots(String doctorId, LocalDate date) {
+        return day(doctorId, date).bookedSlots();
+    }
+
+    /**
+     * Get reserved slot times for a doctor on a specific date
+     * @param excludePatientId - Patient whose own reservations are ignored (may be null)
+     */
+    public Set<LocalTime> getReservedSlots(String doctorId, LocalDate date, String excludePatientId) {
+        return day(doctorId, date).reservedSlots(excludePatientId);
+    }
+
+    /**
+     * Record a newly scheduled appointment
+     */
+    public void markBooked(String doctorId, LocalDateTime slotDateTime) {
+        update(doctorId, slotDateTime, slots -> slots.setBooked(slotDateTime.toLocalTime(), true));
+    }
+
+    /**
+     * Record that a slot no longer holds a scheduled appointment
+     * (cancelled, completed, no-show or moved away by a reschedule)
+     */
+    public void markFree(String doctorId, LocalDateTime slotDateTime) {
+        update(doctorId, slotDateTime, slots -> slots.setBooked(slotDateTime.toLocalTime(), false));
+    }
+
+    /**
+     * Record a new active reservation
+     */
+    public void markReserved(String doctorId, LocalDateTime slotDateTime, String patientId) {
+        update(doctorId, slotDateTime, slots -> slots.addHolder(slotDateTime.toLocalTime(), patientId));
+    }
+
+    /**
+     * Record that a reservation is no longer active (confirmed, cancelled or expired)
+     */
+    public void releaseReservation(String doctorId, LocalDateTime slotDateTime, String patientId) {
+        update(doctorId, slotDateTime, slots -> slots.removeHolder(slotDateTime.toLocalTime(), patientId));
+    }
+
+    /**
+     * Drop every loaded day so the next read goes back to MongoDB
+     */
+    public void clear() {
+        days.clear();
+    }
+
+    /**
+     * Scheduled task to drop days that are already in the past
+     * Runs every hour
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now();
+        days.keySet().removeIf(key -> key.date().isBefore(today));
+    }
+
+    private DaySlots day(String doctorId, LocalDate date) {
+        DayKey key = new DayKey(doctorId, date);
+        DaySlots slots = days.computeIfAbsent(key, this::load);
+        if (slots.isStale()) {
+            // Replace rather than mutate so concurrent readers keep a consistent view
+            slots = days.compute(key, (k, current) -> current == null || current.isStale() ? load(k) : current);
+        }
+        return slots;
+    }
+
+    private void update(String doctorId, LocalDateTime slotDateTime, Consumer<DaySlots> change) {
+        if (doctorId == null || slotDateTime == null) {
+            return;
+        }
+        // Days that are not loaded will pick the change up from MongoDB when first read
+        days.computeIfPresent(new DayKey(doctorId, slotDateTime.toLocalDate()), (key, slots) -> {
+            change.accept(slots);
+            return slots;
+        });
+        eventPublisher.publishEvent(new SlotChangedEvent(doctorId, slotDateTime));
+    }
+
+    private DaySlots load(DayKey key) {
+        DaySlots slots = new DaySlots();
+
+        appointmentRepository
+            .findByDoctorIdAndAppointmentDateTimeBetween(key.doctorId(), key.date().atStartOfDay(), key.date().atTime(23, 59, 59))
+            .stream()
+            .filter(apt -> apt.getStatus() == Appointment.AppointmentStatus.SCHEDULED)
+            .forEach(apt -> slots.setBooked(apt.getAppointmentDateTime().toLocalTime(), true));
+
+        // Holds past their deadline are left out even if their expiry has not run yet
+        reservationRepository
+            .findByDoctorIdAndStatusAndCreatedAtAfter(key.doctorId(), TimeSlotReservation.ReservationStatus.ACTIVE,
+                TimeSlotReservationService.activeSince())
+            .stream()
+            .filter(res -> res.getSlotDateTime().toLocalDate().equals(key.date()))
+            .forEach(res -> slots.addHolder(res.getSlotDateTime().toLocalTime(), res.getPatientId()));
+
+        return slots;
+    }
+
+    private record DayKey(String doctorId, LocalDate date) {
+    }
+
+    /**
+     * Published after a slot is booked, freed, reserved or released
+     */
+    public record SlotChangedEvent(String doctorId, LocalDateTime slotDateTime) {
+    }
+
+    /**
+     * Slot state for one doctor on one day, indexed by minute of the day
+     */
+    private static class DaySlots {
+
+        private final BitSet booked = new BitSet(24 * 60);
+
+        private final Map<Integer, Set<String>> holders = new HashMap<>();
+
+        private final LocalDateTime loadedAt = LocalDateTime.now();
+
+        boolean isStale() {
+            return loadedAt.plusMinutes(REFRESH_INTERVAL_MINUTES).isBefore(LocalDateTime.now());
+        }
+
+        synchronized boolean isBooked(LocalTime time) {
+            return booked.get(minuteOf(time));
+        }
+
+        synchronized void setBooked(LocalTime time, boolean value) {
+            booked.set(minuteOf(time), value);
+        }
+
+        synchronized void addHolder(LocalTime time, String patientId) {
+            holders.computeIfAbsent(minuteOf(time), minute -> new HashSet<>()).add(patientId);
+        }
+
+        synchronized void removeHolder(LocalTime time, String patientId) {
+            Set<String> patients = holders.get(minuteOf(time));
+            if (patients != null) {
+                patients.remove(patientId);
+                if (patients.isEmpty()) {
+                    holders.remove(minuteOf(time));
+                }
+            }
+        }
+
+        synchronized boolean isReservedByOther(LocalTime time, String excludePatientId) {
+            Set<String> patients = holders.get(minuteOf(time));
+            return patients != null && patients.stream()
+                .anyMatch(patientId -> excludePatientId == null || !excludePatientId.equals(patientId));
+        }
+
+        synchronized Set<LocalTime> bookedSlots() {
+            Set<LocalTime> slots = new HashSet<>();
+            for (int minute = booked.nextSetBit(0); minute >= 0; minute = booked.nextSetBit(minute + 1)) {
+                slots.add(LocalTime.of(minute / 60, minute % 60));
+            }
+            return slots;
+        }
+
+        synchronized Set<LocalTime> reservedSlots(String excludePatientId) {
+            Set<LocalTime> slots = new HashSet<>();
+            holders.keySet().forEach(minute -> {
+                LocalTime time = LocalTime.of(minute / 60, minute % 60);
+                if (isReservedByOther(time, excludePatientId)) {
+                    slots.add(time);
+                }
+            });
+            return slots;
+        }
+
+        private static int minuteOf(LocalTime time) {
+            return time.getHour() * 60 + time.getMinute();
+        }
+    }
+}
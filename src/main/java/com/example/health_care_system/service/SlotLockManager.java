@@ -0,0 +1,26 @@
+package com.example.health_care_system.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Serialises booking work for a single doctor time slot.
+ * The default implementation is StripedSlotLockManager (in-process); set
+ * app.booking.lock=mongo to use MongoLeaseSlotLockManager across instances.
+ */
+public interface SlotLockManager {
+
+    /**
+     * Try to take the lock for a doctor's time slot without queueing behind other bookings
+     * @return the held lock (release with close()), or null if another booking holds it
+     */
+    SlotLock tryLock(String doctorId, LocalDateTime slotDateTime);
+
+    /**
+     * A held slot lock; close() releases it
+     */
+    interface SlotLock extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.health_care_system.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wait and hold time statistics for booking slot locks
+ */
+@Service
+public class SlotLockMetrics {
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalHoldNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+    private final LongAccumulator maxHoldNanos = new LongAccumulator(Long::max, 0);
+
+    public void recordAcquired(long waitNanos) {
+        acquired.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public void recordRejected(long waitNanos) {
+        rejected.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+    }
+
+    public void recordReleased(long holdNanos) {
+        totalHoldNanos.add(holdNanos);
+        maxHoldNanos.accumulate(holdNanos);
+    }
+
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Get a snapshot of the statistics (times in milliseconds)
+     */
+    public Map<String, Object> snapshot() {
+        long acquiredCount = acquired.sum();
+        long attempts = acquiredCount + rejected.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquired", acquiredCount);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgWaitMs", attempts == 0 ? 0.0 : toMillis(totalWaitNanos.sum()) / attempts);
+        stats.put("maxWaitMs", toMillis(maxWaitNanos.get()));
+        stats.put("avgHoldMs", acquiredCount == 0 ? 0.0 : toMillis(totalHoldNanos.sum()) / acquiredCount);
+        stats.put("maxHoldMs", toMillis(maxHoldNanos.get()));
+        return stats;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.health_care_system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes slot state changes to patients viewing a doctor's time slots for a date.
+ * Subscribers receive a "slot" event (time + AVAILABLE/RESERVED/BOOKED) whenever
+ * the SlotAvailabilityIndex reports a change, instead of polling for the full grid.
+ */
+@Service
+public class SlotUpdateBroadcaster {
+
+    @Autowired
+    private SlotAvailabilityIndex slotIndex;
+
+    // Matches the HTTP session timeout; the page reconnects automatically after that
+    private static final long STREAM_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    private final Map<StreamKey, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // Single thread keeps events for a slot in order and off the booking request thread
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slot-updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Open a stream of slot changes for a doctor on a specific date
+     * @param patientId - Viewing patient; their own reservation is reported as AVAILABLE
+     */
+    public SseEmitter subscribe(String doctorId, LocalDate date, String patientId) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        StreamKey key = new StreamKey(doctorId, date);
+        Subscriber subscriber = new Subscriber(emitter, patientId);
+
+        subscribers.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(subscriber);
+
+        emitter.onCompletion(() -> unsubscribe(key, subscriber));
+        emitter.onTimeout(() -> unsubscribe(key, subscriber));
+        emitter.onError(e -> unsubscribe(key, subscriber));
+
+        return emitter;
+    }
+
+    /**
+     * Close a stream that failed before it was handed to the client
+     */
+    public void unsubscribe(String doctorId, LocalDate date, SseEmitter emitter) {
+        StreamKey key = new StreamKey(doctorId, date);
+        List<Subscriber> list = subscribers.get(key);
+        if (list != null) {
+            list.stream()
+                .filter(subscriber -> subscriber.emitter() == emitter)
+                .findFirst()
+                .ifPresent(subscriber -> unsubscribe(key, subscriber));
+        }
+    }
+
+    /**
+     * Get number of open streams (all doctors and dates)
+     */
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    @EventListener
+    public void onSlotChanged(SlotAvailabilityIndex.SlotChangedEvent event) {
+        StreamKey key = new StreamKey(event.doctorId(), event.slotDateTime().toLocalDate());
+        if (subscribers.containsKey(key)) {
+            dispatcher.execute(() -> publish(key, event.slotDateTime()));
+        }
+    }
+
+    /**
+     * Scheduled task to keep idle streams open through proxies and drop dead ones
+     * Runs every 25 seconds
+     */
+    @Scheduled(fixedRate = 25000)
+    public void sendHeartbeats() {
+        subscribers.forEach((key, list) -> list.forEach(subscriber -> {
+            try {
+                subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(key, subscriber);
+            }
+        }));
+    }
+
+    private void publish(StreamKey key, LocalDateTime slotDateTime) {
+        List<Subscriber> list = subscribers.get(key);
+        if (list == null) {
+            return;
+        }
+
+        boolean booked = slotIndex.isBooked(key.doctorId(), slotDateTime);
+        String time = slotDateTime.toLocalTime().toString();
+
+        for (Subscriber subscriber : list) {
+            String state;
+            if (booked) {
+                state = "BOOKED";
+            } else if (slotIndex.isReservedByOther(key.doctorId(), slotDateTime, subscriber.patientId())) {
+                state = "RESERVED";
+            } else {
+                state = "AVAILABLE";
+            }
+
+            try {
+                subscriber.emitter().send(SseEmitter.event()
+                    .name("slot")
+                    .data(Map.of("time", time, "state", state)));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(key, subscriber);
+            }
+        }
+    }
+
+    private void unsubscribe(StreamKey key, Subscriber subscriber) {
+        subscribers.computeIfPresent(key, (k, list) -> {
+            list.remove(subscriber);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private record StreamKey(String doctorId, LocalDate date) {
+    }
+
+    private record Subscriber(SseEmitter emitter, String patientId) {
+    }
+}
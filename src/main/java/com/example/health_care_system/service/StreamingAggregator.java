@@ -0,0 +1,118 @@
+package com.example.health_care_system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Single-pass aggregation over a MongoDB cursor
+ * Documents are read in batches and handed to every accumulator in turn, so memory is
+ * bounded by the accumulators' state (distinct keys, K) rather than the collection size.
+ */
+@Service
+public class StreamingAggregator {
+
+    static final int CURSOR_BATCH_SIZE = 1000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Receives each streamed document once
+     */
+    @FunctionalInterface
+    public interface Accumulator<T> {
+        void accept(T item);
+    }
+
+    /**
+     * Stream the documents matching the query through all accumulators in one traversal
+     * Restrict query.fields() to what the accumulators read to keep documents small.
+     * @return number of documents read
+     */
+    @SafeVarargs
+    public final <T> long aggregate(Query query, Class<T> type, Accumulator<? super T>... accumulators) {
+        if (query.getMeta().getCursorBatchSize() == null) {
+            query.cursorBatchSize(CURSOR_BATCH_SIZE);
+        }
+
+        long count = 0;
+        try (Stream<T> documents = mongoTemplate.stream(query, type)) {
+            Iterator<T> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                T document = iterator.next();
+                for (Accumulator<? super T> accumulator : accumulators) {
+                    accumulator.accept(document);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts documents per key; documents with a null key are skipped
+     */
+    public static class GroupCount<T> implements Accumulator<T> {
+        private final Function<? super T, String> keyFunction;
+        private final Map<String, Long> counts = new HashMap<>();
+
+        public GroupCount(Function<? super T, String> keyFunction) {
+            this.keyFunction = keyFunction;
+        }
+
+        @Override
+        public void accept(T item) {
+            String key = keyFunction.apply(item);
+            if (key != null) {
+                counts.merge(key, 1L, Long::sum);
+            }
+        }
+
+        public Map<String, Long> getCounts() {
+            return counts;
+        }
+    }
+
+    /**
+     * Keeps the K largest documents by the comparator in a min-heap of size K
+     */
+    public static class TopK<T> implements Accumulator<T> {
+        private final int k;
+        private final Comparator<? super T> comparator;
+        private final PriorityQueue<T> heap;
+
+        public TopK(int k, Comparator<? super T> comparator) {
+            if (k < 1) {
+                throw new IllegalArgumentException("K must be at least 1");
+            }
+            this.k = k;
+            this.comparator = comparator;
+            this.heap = new PriorityQueue<>(k, comparator);
+        }
+
+        @Override
+        public void accept(T item) {
+            if (heap.size() < k) {
+                heap.offer(item);
+            } else if (comparator.compare(item, heap.peek()) > 0) {
+                heap.poll();
+                heap.offer(item);
+            }
+        }
+
+        /**
+         * The retained documents, largest first
+         */
+        public List<T> getTop() {
+            List<T> top = new ArrayList<>(heap);
+            top.sort(comparator.reversed());
+            return top;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.health_care_system.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process slot lock with one ReentrantLock per (doctorId, slot) key.
+ * Only bookings for the same slot contend. A key's lock is reference counted and
+ * removed from the map once no thread holds or waits for it, so the map stays as
+ * small as the number of slots being booked right now.
+ * (Selected with app.booking.lock=striped; the name predates per-slot locks.)
+ */
+@Service
+@ConditionalOnProperty(name = "app.booking.lock", havingValue = "striped", matchIfMissing = true)
+public class StripedSlotLockManager implements SlotLockManager {
+
+    @Autowired
+    private SlotLockMetrics metrics;
+
+    // Short wait for a booking of the same slot to finish before rejecting
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    private record SlotKey(String doctorId, LocalDateTime slotDateTime) {
+    }
+
+    private static final class KeyLock {
+        final ReentrantLock lock = new ReentrantLock();
+        int users;  // Holders and waiters; only changed inside ConcurrentHashMap.compute
+    }
+
+    private final ConcurrentHashMap<SlotKey, KeyLock> locks = new ConcurrentHashMap<>();
+
+    @Override
+    public SlotLock tryLock(String doctorId, LocalDateTime slotDateTime) {
+        SlotKey key = new SlotKey(doctorId, slotDateTime);
+        KeyLock keyLock = locks.compute(key, (k, existing) -> {
+            KeyLock entry = existing != null ? existing : new KeyLock();
+            entry.users++;
+            return entry;
+        });
+
+        long waitStart = System.nanoTime();
+        boolean locked;
+        try {
+            locked = keyLock.lock.tryLock(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            locked = false;
+        }
+        long heldFrom = System.nanoTime();
+
+        if (!locked) {
+            release(key);
+            metrics.recordRejected(heldFrom - waitStart);
+            return null;
+        }
+        metrics.recordAcquired(heldFrom - waitStart);
+
+        return () -> {
+            metrics.recordReleased(System.nanoTime() - heldFrom);
+            keyLock.lock.unlock();
+            release(key);
+        };
+    }
+
+    /**
+     * Number of slot keys with a holder or waiter
+     */
+    int activeKeys() {
+        return locks.size();
+    }
+
+    private void release(SlotKey key) {
+        locks.computeIfPresent(key, (k, entry) -> --entry.users == 0 ? null : entry);
+    }
+}
@@ -3,6 +3,12 @@ package com.example.health_care_system.service;
 import com.example.health_care_system.model.TimeSlotReservation;
 import com.example.health_care_system.repository.TimeSlotReservationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,43 +23,101 @@ public class TimeSlotReservationService {
     @Autowired
     private TimeSlotReservationRepository reservationRepository;
     
-    private static final int RESERVATION_DURATION_MINUTES = 5;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private SlotAvailabilityIndex slotIndex;
+    
+    @Autowired
+    private ReservationExpiryService expiryService;
+    
+    static final int RESERVATION_DURATION_MINUTES = 5;
+    
+    /**
+     * Holds created before this time have expired, even while they are still ACTIVE in the database
+     * (their expiry runs on another instance or was missed, and the sweep has not reached them yet)
+     */
+    static LocalDateTime activeSince() {
+        return LocalDateTime.now().minusMinutes(RESERVATION_DURATION_MINUTES);
+    }
     
     /**
      * Create a new reservation for a time slot
-     * Returns the reservation ID if successful, null if slot is already reserved
+     * Returns the reservation if successful, null if slot is already reserved
+     * 
+     * The hold is a single atomic upsert: it matches this patient's own active hold on the
+     * slot (refreshing it) or inserts a new one. If another patient already holds the slot,
+     * the insert violates the unique_active_slot_idx partial index and is rejected - unless
+     * that hold has already expired, in which case it is expired in place and the upsert retried.
      */
-    @Transactional
     public TimeSlotReservation reserveTimeSlot(String doctorId, LocalDateTime slotDateTime, 
                                                 String patientId, String sessionId) {
-        // Check if slot is already reserved by someone else
-        List<TimeSlotReservation> existingReservations = reservationRepository
-            .findByDoctorIdAndSlotDateTimeAndStatus(
-                doctorId, 
-                slotDateTime, 
-                TimeSlotReservation.ReservationStatus.ACTIVE
-            );
+        Query holdQuery = new Query(Criteria.where("doctorId").is(doctorId)
+            .and("slotDateTime").is(slotDateTime)
+            .and("status").is(TimeSlotReservation.ReservationStatus.ACTIVE)
+            .and("patientId").is(patientId));
+        Update hold = new Update()
+            .set("sessionId", sessionId)
+            .set("createdAt", LocalDateTime.now());
         
-        // If there's an active reservation by another user, slot is not available
-        for (TimeSlotReservation reservation : existingReservations) {
-            if (!reservation.getPatientId().equals(patientId)) {
-                return null; // Slot is reserved by another user
-            }
+        TimeSlotReservation reservation = upsertHold(holdQuery, hold);
+        if (reservation == null && expireStaleHold(doctorId, slotDateTime)) {
+            reservation = upsertHold(holdQuery, hold);
+        }
+        if (reservation == null) {
+            return null; // Slot is reserved by another user
         }
         
         // Cancel any previous active reservation by this patient (they're selecting a new slot)
-        cancelPatientActiveReservations(patientId);
+        cancelActiveReservations(patientId, reservation.getId());
         
-        // Create new reservation
-        TimeSlotReservation reservation = new TimeSlotReservation();
-        reservation.setDoctorId(doctorId);
-        reservation.setSlotDateTime(slotDateTime);
-        reservation.setPatientId(patientId);
-        reservation.setSessionId(sessionId);
-        reservation.setCreatedAt(LocalDateTime.now());
-        reservation.setStatus(TimeSlotReservation.ReservationStatus.ACTIVE);
+        slotIndex.markReserved(doctorId, slotDateTime, patientId);
+        expiryService.schedule(reservation);
+        return reservation;
+    }
+    
+    /**
+     * Insert or refresh this patient's hold on a slot
+     * Returns null if another patient's active hold is in the way
+     */
+    private TimeSlotReservation upsertHold(Query holdQuery, Update hold) {
+        try {
+            return mongoTemplate.findAndModify(
+                holdQuery,
+                hold,
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                TimeSlotReservation.class
+            );
+        } catch (DuplicateKeyException e) {
+            // Either another patient holds the slot, or a concurrent request by this
+            // patient (double click) inserted the hold first - only the latter matches
+            return mongoTemplate.findAndModify(
+                holdQuery,
+                hold,
+                FindAndModifyOptions.options().returnNew(true),
+                TimeSlotReservation.class
+            );
+        }
+    }
+    
+    /**
+     * Expire the hold on a slot if its 5 minutes are over but it is still ACTIVE
+     * @return true if a hold was expired, so the slot can be reserved again
+     */
+    private boolean expireStaleHold(String doctorId, LocalDateTime slotDateTime) {
+        Query staleQuery = new Query(Criteria.where("doctorId").is(doctorId)
+            .and("slotDateTime").is(slotDateTime)
+            .and("status").is(TimeSlotReservation.ReservationStatus.ACTIVE)
+            .and("createdAt").lt(activeSince()));
+        Update expire = new Update().set("status", TimeSlotReservation.ReservationStatus.EXPIRED);
         
-        return reservationRepository.save(reservation);
+        TimeSlotReservation stale = mongoTemplate.findAndModify(staleQuery, expire, TimeSlotReservation.class);
+        if (stale == null) {
+            return false;
+        }
+        releaseHold(stale);
+        return true;
     }
     
     /**
@@ -61,10 +125,11 @@ public class TimeSlotReservationService {
      */
     public boolean isSlotReserved(String doctorId, LocalDateTime slotDateTime, String excludePatientId) {
         List<TimeSlotReservation> reservations = reservationRepository
-            .findByDoctorIdAndSlotDateTimeAndStatus(
+            .findByDoctorIdAndSlotDateTimeAndStatusAndCreatedAtAfter(
                 doctorId, 
                 slotDateTime, 
-                TimeSlotReservation.ReservationStatus.ACTIVE
+                TimeSlotReservation.ReservationStatus.ACTIVE,
+                activeSince()
             );
         
         // Check if any reservation exists from a different patient
@@ -88,6 +153,7 @@ public class TimeSlotReservationService {
             TimeSlotReservation reservation = reservationOpt.get();
             reservation.setStatus(TimeSlotReservation.ReservationStatus.CONFIRMED);
             reservationRepository.save(reservation);
+            releaseHold(reservation);
             System.out.println("Reservation confirmed (by session): " + reservation.getId());
         } else {
             // Fallback: find by patient ID only
@@ -100,6 +166,7 @@ public class TimeSlotReservationService {
                 TimeSlotReservation reservation = patientReservations.get(0);
                 reservation.setStatus(TimeSlotReservation.ReservationStatus.CONFIRMED);
                 reservationRepository.save(reservation);
+                releaseHold(reservation);
                 System.out.println("Reservation confirmed (by patient ID fallback): " + reservation.getId());
             } else {
                 System.out.println("WARNING: No reservation to confirm for patient: " + patientId);
@@ -123,23 +190,33 @@ public class TimeSlotReservationService {
             TimeSlotReservation reservation = reservationOpt.get();
             reservation.setStatus(TimeSlotReservation.ReservationStatus.CANCELLED);
             reservationRepository.save(reservation);
+            releaseHold(reservation);
         }
     }
     
     /**
      * Cancel all active reservations for a patient
      */
-    @Transactional
     public void cancelPatientActiveReservations(String patientId) {
-        List<TimeSlotReservation> activeReservations = reservationRepository
-            .findByPatientIdAndStatus(
-                patientId, 
-                TimeSlotReservation.ReservationStatus.ACTIVE
-            );
+        cancelActiveReservations(patientId, null);
+    }
+    
+    /**
+     * Cancel a patient's active reservations one atomic findAndModify at a time
+     * A patient normally holds at most one slot, so this is usually a single round trip
+     * @param keepReservationId - Reservation to leave active (may be null)
+     */
+    private void cancelActiveReservations(String patientId, String keepReservationId) {
+        Criteria criteria = Criteria.where("patientId").is(patientId)
+            .and("status").is(TimeSlotReservation.ReservationStatus.ACTIVE);
+        if (keepReservationId != null) {
+            criteria = criteria.and("id").ne(keepReservationId);
+        }
+        Update cancel = new Update().set("status", TimeSlotReservation.ReservationStatus.CANCELLED);
         
-        for (TimeSlotReservation reservation : activeReservations) {
-            reservation.setStatus(TimeSlotReservation.ReservationStatus.CANCELLED);
-            reservationRepository.save(reservation);
+        TimeSlotReservation previous;
+        while ((previous = mongoTemplate.findAndModify(new Query(criteria), cancel, TimeSlotReservation.class)) != null) {
+            releaseHold(previous);
         }
     }
     
@@ -154,13 +231,16 @@ public class TimeSlotReservationService {
         );
     }
     
-        /**
-     * Scheduled task to clean up expired reservations
-     * Runs every 60 seconds
+    /**
+     * Fallback sweep for expired reservations
+     * Holds normally expire at their exact deadline through ReservationExpiryService;
+     * this catches any that were created on another instance or missed after a restart.
+     * Availability checks already ignore holds past their deadline, so this only tidies up.
+     * Runs every app.reservations.sweep-interval-ms (default 60 seconds)
      */
-    @Scheduled(fixedRate = 60000)
+    @Scheduled(fixedRateString = "${app.reservations.sweep-interval-ms:60000}")
     public void cleanupExpiredReservations() {
-        LocalDateTime expiryTime = LocalDateTime.now().minusMinutes(RESERVATION_DURATION_MINUTES);
+        LocalDateTime expiryTime = activeSince();
         
         List<TimeSlotReservation> expiredReservations = reservationRepository
             .findByStatusAndCreatedAtBefore(
@@ -168,13 +248,10 @@ public class TimeSlotReservationService {
                 expiryTime
             );
         
-        for (TimeSlotReservation reservation : expiredReservations) {
-            reservation.setStatus(TimeSlotReservation.ReservationStatus.EXPIRED);
-            reservationRepository.save(reservation);
-        }
+        long expiredCount = expiryService.expireNow(expiredReservations);
         
-        if (!expiredReservations.isEmpty()) {
-            System.out.println("Cleaned up " + expiredReservations.size() + " expired reservations");
+        if (expiredCount > 0) {
+            System.out.println("Cleaned up " + expiredCount + " expired reservations");
         }
     }
     
@@ -234,4 +311,17 @@ public class TimeSlotReservationService {
         long remainingSeconds = java.time.Duration.between(LocalDateTime.now(), expiryTime).getSeconds();
         return Math.max(0, remainingSeconds);
     }
+    
+    /**
+     * Stop the expiry timer of a reservation that is no longer active
+     * and remove it from the slot availability index
+     */
+    private void releaseHold(TimeSlotReservation reservation) {
+        expiryService.cancel(reservation.getId());
+        slotIndex.releaseReservation(
+            reservation.getDoctorId(),
+            reservation.getSlotDateTime(),
+            reservation.getPatientId()
+        );
+    }
 }
@@ -0,0 +1,231 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.model.Patient;
+import com.example.health_care_system.model.User;
+import com.example.health_care_system.model.UserRole;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes the admin user CSV export straight from a MongoDB cursor
+ * Only the exported columns are read, rows are formatted into one reused buffer and
+ * nothing is collected, so memory stays flat whatever the number of users.
+ * Rows are ordered by _id within each user type and end with the user's ID, so an interrupted
+ * download can be resumed after its last received row with a cursor of the form <ROLE>:<ID>
+ * (ROLE being the row's user type); users added or removed meanwhile do not shift the rows.
+ */
+@Service
+public class UserExportService {
+
+    static final int CURSOR_BATCH_SIZE = 500;
+
+    // Flush regularly so the client receives the first rows immediately
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @FunctionalInterface
+    private interface RowFormat<T> {
+        void format(T user, StringBuilder row);
+    }
+
+    private record Section<T extends User>(UserRole role, Class<T> type, List<String> fields, RowFormat<T> format) {
+    }
+
+    /**
+     * Write the CSV for a role filter
+     * @param role - ALL (or null), PATIENT, DOCTOR or STAFF; any other value writes nothing
+     * @param after - Cursor of the last row the client already has, or null to start with the header
+     * @return cursor of the last row written (after itself when nothing was written)
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another role filter
+     */
+    public String writeCsv(String role, String after, Writer writer) throws IOException {
+        String header;
+        List<Section<?>> sections;
+
+        if (role == null || role.equals("ALL")) {
+            header = "User Type,Name,Email,Gender,Contact Number,Specialization/DOB,Address,Joined Date,Status,ID";
+            sections = List.of(
+                new Section<>(UserRole.PATIENT, Patient.class,
+                    List.of("name", "email", "gender", "contactNumber", "dateOfBirth", "address", "createdAt", "active"),
+                    (patient, row) -> {
+                        row.append("Patient").append(',');
+                        appendPatientColumns(patient, row);
+                    }),
+                new Section<>(UserRole.DOCTOR, Doctor.class,
+                    List.of("name", "email", "gender", "contactNumber", "specialization", "createdAt"),
+                    (doctor, row) -> {
+                        row.append("Doctor").append(',');
+                        appendContactColumns(doctor, row);
+                        appendEscaped(row, doctor.getSpecialization()).append(',');
+                        row.append(',');
+                        appendDateTime(row, doctor).append(',');
+                        row.append("Active");
+                    }),
+                new Section<>(UserRole.STAFF, User.class,
+                    List.of("name", "email", "gender", "contactNumber", "createdAt"),
+                    (staff, row) -> {
+                        row.append("Staff").append(',');
+                        appendContactColumns(staff, row);
+                        row.append(',').append(',');
+                        appendDateTime(row, staff).append(',');
+                        row.append("Active");
+                    })
+            );
+        } else if (role.equals("PATIENT")) {
+            header = "Name,Email,Gender,Contact Number,Date of Birth,Address,Joined Date,Status,ID";
+            sections = List.of(new Section<>(UserRole.PATIENT, Patient.class,
+                List.of("name", "email", "gender", "contactNumber", "dateOfBirth", "address", "createdAt", "active"),
+                this::appendPatientColumns));
+        } else if (role.equals("DOCTOR")) {
+            header = "Name,Email,Gender,Contact Number,Specialization,Joined Date,ID";
+            sections = List.of(new Section<>(UserRole.DOCTOR, Doctor.class,
+                List.of("name", "email", "gender", "contactNumber", "specialization", "createdAt"),
+                (doctor, row) -> {
+                    appendContactColumns(doctor, row);
+                    appendEscaped(row, doctor.getSpecialization()).append(',');
+                    appendDateTime(row, doctor);
+                }));
+        } else if (role.equals("STAFF")) {
+            header = "Name,Email,Gender,Contact Number,Joined Date,ID";
+            sections = List.of(new Section<>(UserRole.STAFF, User.class,
+                List.of("name", "email", "gender", "contactNumber", "createdAt"),
+                (staff, row) -> {
+                    appendContactColumns(staff, row);
+                    appendDateTime(row, staff);
+                }));
+        } else {
+            return after;
+        }
+
+        // Resume inside the cursor's section; earlier sections were already received
+        int firstSection = 0;
+        ObjectId afterId = null;
+        if (after != null && !after.isEmpty()) {
+            int separator = after.indexOf(':');
+            String cursorRole = separator > 0 ? after.substring(0, separator).toUpperCase() : "";
+            String cursorId = after.substring(separator + 1);
+            while (firstSection < sections.size() && !sections.get(firstSection).role().name().equals(cursorRole)) {
+                firstSection++;
+            }
+            if (firstSection == sections.size() || !ObjectId.isValid(cursorId)) {
+                throw new IllegalArgumentException("Invalid export cursor: " + after);
+            }
+            afterId = new ObjectId(cursorId);
+        } else {
+            writer.write(header);
+            writer.write('\n');
+            writer.flush();
+        }
+
+        String cursor = after;
+        long[] written = {0};
+        StringBuilder row = new StringBuilder(256);
+        for (int i = firstSection; i < sections.size(); i++) {
+            String last = writeSection(sections.get(i), i == firstSection ? afterId : null, writer, row, written);
+            if (last != null) {
+                cursor = last;
+            }
+        }
+        writer.flush();
+        return cursor;
+    }
+
+    /**
+     * Write one user type's rows with an _id greater than afterId
+     * @return cursor of the last row written, or null if none
+     */
+    private <T extends User> String writeSection(Section<T> section, ObjectId afterId, Writer writer,
+                                                 StringBuilder row, long[] written) throws IOException {
+        Criteria criteria = Criteria.where("role").is(section.role().name());
+        if (afterId != null) {
+            criteria = criteria.and("id").gt(afterId);
+        }
+        Query query = new Query(criteria)
+            .with(Sort.by("id"))
+            .cursorBatchSize(CURSOR_BATCH_SIZE);
+        section.fields().forEach(field -> query.fields().include(field));
+
+        String[] lastId = {null};
+        try (Stream<T> users = mongoTemplate.stream(query, section.type())) {
+            users.forEach(user -> {
+                row.setLength(0);
+                section.format().format(user, row);
+                row.append(',').append(user.getId()).append('\n');
+                try {
+                    writer.append(row);
+                    lastId[0] = user.getId();
+                    if (++written[0] % FLUSH_EVERY_ROWS == 0) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Client went away; stop reading from the cursor
+            throw e.getCause();
+        }
+        return lastId[0] != null ? section.role().name() + ":" + lastId[0] : null;
+    }
+
+    private void appendPatientColumns(Patient patient, StringBuilder row) {
+        appendContactColumns(patient, row);
+        if (patient.getDateOfBirth() != null) {
+            row.append(patient.getDateOfBirth().format(DATE_FORMATTER));
+        }
+        row.append(',');
+        appendEscaped(row, patient.getAddress()).append(',');
+        appendDateTime(row, patient).append(',');
+        row.append(patient.isActive() ? "Active" : "Inactive");
+    }
+
+    // Name, email, gender and contact number, each followed by a comma
+    private void appendContactColumns(User user, StringBuilder row) {
+        appendEscaped(row, user.getName()).append(',');
+        appendEscaped(row, user.getEmail()).append(',');
+        appendEscaped(row, user.getGender()).append(',');
+        appendEscaped(row, user.getContactNumber()).append(',');
+    }
+
+    private StringBuilder appendDateTime(StringBuilder row, User user) {
+        if (user.getCreatedAt() != null) {
+            row.append(user.getCreatedAt().format(DATETIME_FORMATTER));
+        }
+        return row;
+    }
+
+    /**
+     * Append a value, escaping CSV special characters
+     */
+    private StringBuilder appendEscaped(StringBuilder row, String value) {
+        if (value == null) {
+            return row;
+        }
+
+        // If the value contains comma, quote, or newline, wrap it in quotes
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            // Escape existing quotes by doubling them
+            return row.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+
+        return row.append(value);
+    }
+}
@@ -14,6 +14,7 @@ import com.example.health_care_system.repository.DoctorRepository;
 import com.example.health_care_system.repository.StaffRepository;
 import com.example.health_care_system.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -32,6 +33,7 @@ public class UserService {
     private final BCryptPasswordEncoder passwordEncoder;
     private final QRCodeService qrCodeService;
     private final HealthCardService healthCardService;
+    private final ApplicationEventPublisher eventPublisher;
     
     public UserDTO registerPatient(RegisterRequest request) {
         // Check if passwords match
@@ -313,6 +315,7 @@ public class UserService {
             doctor.setUpdatedAt(LocalDateTime.now());
             
             Doctor updatedDoctor = doctorRepository.save(doctor);
+            eventPublisher.publishEvent(new DoctorChangedEvent(updatedDoctor));
             return convertToDTO(updatedDoctor);
         }
         
@@ -439,7 +442,7 @@ public class UserService {
     
     // User Management Methods for Admin
     public List<Patient> getAllPatients() {
-        return patientRepository.findAll();
+        return patientRepository.findAllSummaries();
     }
     
     public List<Doctor> getAllDoctors() {
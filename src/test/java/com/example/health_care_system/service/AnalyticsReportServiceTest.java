@@ -2,14 +2,21 @@ package com.example.health_care_system.service;
 
 import com.example.health_care_system.model.*;
 import com.example.health_care_system.repository.*;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -19,17 +26,17 @@ class AnalyticsReportServiceTest {
     @Mock
     private AnalyticsReportRepository analyticsReportRepository;
     @Mock
-    private PatientRepository patientRepository;
-    @Mock
-    private DoctorRepository doctorRepository;
-    @Mock
     private HospitalRepository hospitalRepository;
     @Mock
     private AppointmentRepository appointmentRepository;
     @Mock
     private MedicalRecordRepository medicalRecordRepository;
     @Mock
-    private UserRepository userRepository;
+    private DoctorRepository doctorRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private LeaderboardService leaderboardService;
 
     private AnalyticsReportService service;
 
@@ -38,54 +45,219 @@ class AnalyticsReportServiceTest {
         MockitoAnnotations.openMocks(this);
         service = new AnalyticsReportService();
         TestUtils.injectField(service, "analyticsReportRepository", analyticsReportRepository);
-        TestUtils.injectField(service, "patientRepository", patientRepository);
-        TestUtils.injectField(service, "doctorRepository", doctorRepository);
         TestUtils.injectField(service, "hospitalRepository", hospitalRepository);
         TestUtils.injectField(service, "appointmentRepository", appointmentRepository);
         TestUtils.injectField(service, "medicalRecordRepository", medicalRecordRepository);
-        TestUtils.injectField(service, "userRepository", userRepository);
+        TestUtils.injectField(service, "doctorRepository", doctorRepository);
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "leaderboardService", leaderboardService);
+        when(leaderboardService.getLeaderboardSize()).thenReturn(10);
+        when(mongoTemplate.aggregate(any(Aggregation.class), any(Class.class), eq(Document.class)))
+            .thenReturn(results(List.of()));
+        when(analyticsReportRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+    }
+
+    private static AggregationResults<Document> results(List<Document> rows) {
+        return new AggregationResults<>(rows, new Document());
+    }
+
+    private static Document group(String id, int count) {
+        return new Document("_id", id).append("count", count);
     }
 
     @Test
     void generatePatientReport_and_others_saveReport() {
-        // Setup patients
-        Patient p1 = new Patient(); p1.setId("p1"); p1.setName("P1"); p1.setGender("Male"); p1.setActive(true);
-        when(patientRepository.findAll()).thenReturn(List.of(p1));
-        when(analyticsReportRepository.save(any())).thenAnswer(i -> i.getArgument(0));
-
         var rpt = service.generatePatientReport("admin", LocalDateTime.now().minusDays(7), LocalDateTime.now());
         assertNotNull(rpt);
+        assertEquals(0, rpt.getReportData().getPatientData().getTotalPatients());
         verify(analyticsReportRepository).save(any());
 
-        // Doctors
-        Doctor d1 = new Doctor(); d1.setId("d1"); d1.setName("Dr"); d1.setSpecialization("S");
-        when(doctorRepository.findAll()).thenReturn(List.of(d1));
         var drRpt = service.generateDoctorReport("admin", LocalDateTime.now().minusDays(7), LocalDateTime.now());
         assertNotNull(drRpt);
 
-        // Hospitals
-        Hospital h1 = new Hospital(); h1.setId("h1"); h1.setName("H1"); h1.setType(Hospital.HospitalType.PRIVATE);
-        when(hospitalRepository.findAll()).thenReturn(List.of(h1));
         var hosRpt = service.generateHospitalReport("admin", LocalDateTime.now().minusDays(7), LocalDateTime.now());
         assertNotNull(hosRpt);
 
-        // Appointments
-        Appointment a1 = new Appointment(); a1.setId("a1"); a1.setAppointmentDateTime(LocalDateTime.now()); a1.setStatus(Appointment.AppointmentStatus.SCHEDULED);
-        when(appointmentRepository.findAll()).thenReturn(List.of(a1));
-        when(doctorRepository.findAll()).thenReturn(List.of(d1));
         var aptRpt = service.generateAppointmentReport("admin", LocalDateTime.now().minusDays(7), LocalDateTime.now());
         assertNotNull(aptRpt);
 
-        // System overview
-        when(userRepository.findAll()).thenReturn(List.of(new User()));
-        when(patientRepository.count()).thenReturn(1L);
-        when(doctorRepository.count()).thenReturn(1L);
         when(hospitalRepository.count()).thenReturn(1L);
         when(appointmentRepository.count()).thenReturn(1L);
         when(medicalRecordRepository.count()).thenReturn(1L);
-
         var sysRpt = service.generateSystemOverviewReport("admin");
         assertNotNull(sysRpt);
+        assertEquals(1, sysRpt.getReportData().getSystemData().getTotalHospitals());
     }
-}
 
+    @Test
+    void generatePatientReport_readsFacetCounts() {
+        Document facets = new Document("total", List.of(new Document("n", 5)))
+            .append("inactive", List.of(new Document("n", 1)))
+            .append("byGender", List.of(group("Male", 3), group(null, 2)))
+            .append("byHospital", List.of(group("h1", 4)))
+            .append("withRecords", List.of(new Document("n", 2)))
+            .append("age1", List.of(new Document("n", 3)))
+            .append("ageUnknown", List.of(new Document("n", 2)));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Patient.class), eq(Document.class)))
+            .thenReturn(results(List.of(facets)));
+        LeaderboardEntry p1 = new LeaderboardEntry();
+        p1.setSubjectId("p1"); p1.setName("P1"); p1.setAppointments(2); p1.setMedicalRecords(1); p1.setScore(3);
+        when(leaderboardService.getTop(LeaderboardEntry.Board.PATIENT_VISITS, 10)).thenReturn(List.of(p1));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class)))
+            .thenReturn(results(List.of(new Document("n", 4))));
+
+        var data = service.generatePatientReport("admin", null, null).getReportData().getPatientData();
+
+        assertEquals(5, data.getTotalPatients());
+        assertEquals(4, data.getActivePatients());
+        assertEquals(1, data.getInactivePatients());
+        assertEquals(Integer.valueOf(2), data.getPatientsByGender().get("Not Specified"));
+        assertEquals(Integer.valueOf(3), data.getPatientsByAgeGroup().get("18-29"));
+        assertEquals(Integer.valueOf(2), data.getPatientsByAgeGroup().get("Unknown"));
+        assertEquals(4, data.getPatientsWithAppointments());
+        assertEquals(2, data.getPatientsWithMedicalRecords());
+        assertEquals(3, data.getTopPatientsByVisits().get(0).getTotalVisits());
+    }
+
+    @Test
+    void generateDoctorReport_readsTopDoctorsFromLeaderboard() {
+        LeaderboardEntry d1 = new LeaderboardEntry();
+        d1.setSubjectId("d1"); d1.setName("Dr"); d1.setAppointments(4); d1.setCompletedAppointments(3); d1.setCancelledAppointments(1); d1.setScore(4);
+        when(leaderboardService.getTop(LeaderboardEntry.Board.DOCTOR_APPOINTMENTS, 10)).thenReturn(List.of(d1));
+        Doctor doctor = new Doctor(); doctor.setId("d1"); doctor.setSpecialization("S");
+        when(doctorRepository.findAllById(any())).thenReturn(List.of(doctor));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Doctor.class), eq(Document.class)))
+            .thenReturn(results(List.of(new Document("total", List.of(new Document("n", 1))))));
+        when(mongoTemplate.count(any(Query.class), eq(Appointment.class))).thenReturn(4L);
+
+        var rpt = service.generateDoctorReport("admin", LocalDateTime.now().minusDays(7), LocalDateTime.now());
+
+        var top = rpt.getReportData().getDoctorData().getTopDoctorsByAppointments().get(0);
+        assertEquals(4, top.getTotalAppointments());
+        assertEquals(3, top.getCompletedAppointments());
+        assertEquals(1, top.getCancelledAppointments());
+        assertEquals("S", top.getSpecialization());
+        assertEquals(75.0, top.getCompletionRate());
+        assertEquals(4.0, rpt.getReportData().getDoctorData().getAverageAppointmentsPerDoctor());
+    }
+
+    @Test
+    void generateHospitalReport_sumsAppointmentsOfEachHospitalsDoctors() {
+        Document hospital = new Document("_id", new ObjectId()).append("name", "City").append("type", "PRIVATE")
+            .append("totalDoctors", 2).append("totalPatients", 5)
+            .append("doctorKeys", List.of("d1", "d2"))
+            .append("specializations", List.of("Cardiology", "Cardiology"));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Hospital.class), eq(Document.class)))
+            .thenReturn(results(List.of(hospital)));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class)))
+            .thenReturn(results(List.of(group("d1", 3), group("d2", 2))));
+
+        var data = service.generateHospitalReport("admin", null, null).getReportData().getHospitalData();
+        var metrics = data.getHospitalMetrics().get(hospital.get("_id").toString());
+
+        assertEquals(5, metrics.getTotalAppointments());
+        assertEquals(Map.of("Cardiology", 2), metrics.getDoctorsBySpecialization());
+        assertEquals(2, data.getTotalDoctorsAcrossHospitals());
+    }
+
+    @Test
+    void generateAppointmentReport_mergesDoctorDetailsIntoSpecializationAndHospital() {
+        Document facets = new Document("total", List.of(new Document("n", 4)))
+            .append("byStatus", List.of(group("COMPLETED", 3), group("CANCELLED", 1)))
+            .append("byDoctorDetails", List.of(
+                new Document("_id", "d1").append("count", 3).append("specialization", "Cardiology").append("hospitalId", "h1"),
+                new Document("_id", "d2").append("count", 1).append("specialization", "Cardiology").append("hospitalId", "h2")));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class)))
+            .thenReturn(results(List.of(facets)));
+
+        var data = service.generateAppointmentReport("admin", null, null).getReportData().getAppointmentData();
+
+        assertEquals(4, data.getTotalAppointments());
+        assertEquals(75.0, data.getCompletionRate());
+        assertEquals(Integer.valueOf(4), data.getAppointmentsBySpecialization().get("Cardiology"));
+        assertEquals(Integer.valueOf(1), data.getAppointmentsByHospital().get("h2"));
+    }
+
+    @Test
+    void refreshAppointmentReport_withoutSnapshot_computesFullReportWithWatermark() {
+        var rpt = service.refreshAppointmentReport("admin", null, null);
+
+        assertNotNull(rpt.getWatermark());
+        assertNull(rpt.getBaseReportId());
+        verify(mongoTemplate).aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class));
+    }
+
+    @Test
+    void refreshAppointmentReport_appliesLoggedChangesToPreviousSnapshot() {
+        AnalyticsReport.AppointmentReportData previousData = new AnalyticsReport.AppointmentReportData();
+        previousData.setTotalAppointments(2);
+        previousData.setScheduledAppointments(2);
+        previousData.setAppointmentsByDoctor(new HashMap<>(Map.of("Dr A", 2)));
+        previousData.setAppointmentsBySpecialization(new HashMap<>(Map.of("Cardiology", 2)));
+        previousData.setAppointmentsByDate(new HashMap<>(Map.of("2030-01-15", 2)));
+        AnalyticsReport previous = new AnalyticsReport();
+        previous.setReportId("APT-1");
+        previous.setWatermark(new ObjectId().toHexString());
+        AnalyticsReport.ReportData reportData = new AnalyticsReport.ReportData();
+        reportData.setAppointmentData(previousData);
+        previous.setReportData(reportData);
+        when(mongoTemplate.findOne(any(Query.class), eq(AnalyticsReport.class))).thenReturn(previous);
+
+        // One appointment completed, one new appointment booked on another day
+        Document completedKey = new Document("status", "COMPLETED").append("doctorId", "d1").append("doctorName", "Dr A").append("day", "2030-01-15");
+        Document scheduledKey = new Document("status", "SCHEDULED").append("doctorId", "d1").append("doctorName", "Dr A").append("day", "2030-01-15");
+        Document newKey = new Document("status", "SCHEDULED").append("doctorId", "d1").append("doctorName", "Dr A").append("day", "2030-01-16");
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(AppointmentChange.class), eq(Document.class)))
+            .thenReturn(results(List.of(
+                new Document("_id", completedKey).append("delta", 1),
+                new Document("_id", scheduledKey).append("delta", -1),
+                new Document("_id", newKey).append("delta", 1))));
+        Doctor doctor = new Doctor(); doctor.setId("d1"); doctor.setSpecialization("Cardiology"); doctor.setHospitalId("h1");
+        when(doctorRepository.findAllById(any())).thenReturn(List.of(doctor));
+
+        var rpt = service.refreshAppointmentReport("admin", null, null);
+        var data = rpt.getReportData().getAppointmentData();
+
+        assertEquals("APT-1", rpt.getBaseReportId());
+        assertEquals(3, data.getTotalAppointments());
+        assertEquals(2, data.getScheduledAppointments());
+        assertEquals(1, data.getCompletedAppointments());
+        assertEquals(Integer.valueOf(3), data.getAppointmentsByDoctor().get("Dr A"));
+        assertEquals(Integer.valueOf(3), data.getAppointmentsBySpecialization().get("Cardiology"));
+        assertEquals(Integer.valueOf(1), data.getAppointmentsByHospital().get("h1"));
+        assertEquals(Integer.valueOf(1), data.getAppointmentsByDate().get("2030-01-16"));
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class));
+    }
+
+    @Test
+    void refreshAppointmentReport_countsChangeLoggedDuringGenerationOnce() {
+        // A booking is logged while the first snapshot aggregation runs, so the snapshot is recomputed with it
+        AppointmentChange booked = new AppointmentChange();
+        booked.setId(new ObjectId().toHexString());
+        when(mongoTemplate.find(any(Query.class), eq(AppointmentChange.class)))
+            .thenReturn(List.of(), List.of(booked));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class)))
+            .thenReturn(results(List.of(new Document("total", List.of(new Document("n", 0))))))
+            .thenReturn(results(List.of(new Document("total", List.of(new Document("n", 1)))
+                .append("byStatus", List.of(group("SCHEDULED", 1))))));
+
+        var snapshot = service.generateAppointmentReport("admin", null, null);
+
+        assertEquals(1, snapshot.getReportData().getAppointmentData().getTotalAppointments());
+        assertEquals(List.of(booked.getId()), snapshot.getAppliedChangeIds());
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(Appointment.class), eq(Document.class));
+
+        // The change log still holds the booking; the refresh must not add it again
+        Document bookedKey = new Document("status", "SCHEDULED").append("doctorId", "d1").append("doctorName", "Dr A").append("day", "2030-01-15");
+        when(mongoTemplate.findOne(any(Query.class), eq(AnalyticsReport.class))).thenReturn(snapshot);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(AppointmentChange.class), eq(Document.class)))
+            .thenAnswer(i -> i.getArgument(0).toString().contains(booked.getId())
+                ? results(List.of())
+                : results(List.of(new Document("_id", bookedKey).append("delta", 1))));
+
+        var rpt = service.refreshAppointmentReport("admin", null, null);
+
+        assertEquals(1, rpt.getReportData().getAppointmentData().getTotalAppointments());
+        assertEquals(1, rpt.getReportData().getAppointmentData().getScheduledAppointments());
+    }
+}
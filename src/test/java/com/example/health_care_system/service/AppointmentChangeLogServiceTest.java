@@ -0,0 +1,87 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.AppointmentChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AppointmentChangeLogServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private AppointmentChangeLogService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new AppointmentChangeLogService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+    }
+
+    private Appointment appointment(LocalDateTime dateTime, Appointment.AppointmentStatus status) {
+        Appointment apt = new Appointment();
+        apt.setId("a1");
+        apt.setDoctorId("d1");
+        apt.setDoctorName("Dr A");
+        apt.setAppointmentDateTime(dateTime);
+        apt.setStatus(status);
+        return apt;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AppointmentChange> loggedChanges() {
+        ArgumentCaptor<Collection> changes = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate).insertAll(changes.capture());
+        return new ArrayList<>((Collection<AppointmentChange>) changes.getValue());
+    }
+
+    @Test
+    void newAppointment_logsOneIncrement() {
+        service.onAppointmentChanged(AppointmentChangedEvent.created(
+            appointment(LocalDateTime.of(2030, 1, 15, 10, 0), Appointment.AppointmentStatus.SCHEDULED)));
+
+        List<AppointmentChange> changes = loggedChanges();
+        assertEquals(1, changes.size());
+        assertEquals(1, changes.get(0).getDelta());
+        assertEquals(Appointment.AppointmentStatus.SCHEDULED, changes.get(0).getStatus());
+    }
+
+    @Test
+    void reschedule_logsOldSlotLeavingAndNewSlotEntering() {
+        LocalDateTime before = LocalDateTime.of(2030, 1, 15, 10, 0);
+        LocalDateTime after = LocalDateTime.of(2030, 1, 16, 11, 0);
+        Appointment apt = appointment(after, Appointment.AppointmentStatus.SCHEDULED);
+
+        service.onAppointmentChanged(new AppointmentChangedEvent(apt, before, Appointment.AppointmentStatus.SCHEDULED));
+
+        List<AppointmentChange> changes = loggedChanges();
+        assertEquals(2, changes.size());
+        assertEquals(-1, changes.get(0).getDelta());
+        assertEquals(before, changes.get(0).getAppointmentDateTime());
+        assertEquals(1, changes.get(1).getDelta());
+        assertEquals(after, changes.get(1).getAppointmentDateTime());
+    }
+
+    @Test
+    void unchangedAppointment_logsNothing() {
+        LocalDateTime dt = LocalDateTime.of(2030, 1, 15, 10, 0);
+        Appointment apt = appointment(dt, Appointment.AppointmentStatus.SCHEDULED);
+
+        service.onAppointmentChanged(new AppointmentChangedEvent(apt, dt, Appointment.AppointmentStatus.SCHEDULED));
+
+        verifyNoInteractions(mongoTemplate);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.AppointmentDailyRollup;
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.repository.DoctorRepository;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.RenameCollectionOptions;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AppointmentRollupServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private DoctorRepository doctorRepository;
+    @Mock
+    private MongoCollection<Document> stagingCollection;
+    @Mock
+    private MongoDatabase database;
+    @Mock
+    private IndexOperations stagingIndexes;
+
+    private AppointmentRollupService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new AppointmentRollupService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "doctorRepository", doctorRepository);
+        StreamingAggregator aggregator = new StreamingAggregator();
+        TestUtils.injectField(aggregator, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "streamingAggregator", aggregator);
+
+        Doctor doctor = new Doctor(); doctor.setId("d1"); doctor.setSpecialization("Cardiology");
+        when(doctorRepository.findById("d1")).thenReturn(Optional.of(doctor));
+
+        when(mongoTemplate.getCollection(AppointmentRollupService.STAGING_COLLECTION)).thenReturn(stagingCollection);
+        when(mongoTemplate.indexOps(AppointmentRollupService.STAGING_COLLECTION)).thenReturn(stagingIndexes);
+        when(mongoTemplate.getDb()).thenReturn(database);
+        when(database.getName()).thenReturn("health");
+    }
+
+    private Appointment appointment(LocalDateTime dateTime, Appointment.AppointmentStatus status) {
+        Appointment apt = new Appointment();
+        apt.setId("a1");
+        apt.setDoctorId("d1");
+        apt.setDoctorName("Dr A");
+        apt.setAppointmentDateTime(dateTime);
+        apt.setStatus(status);
+        return apt;
+    }
+
+    @Test
+    void newAppointment_incrementsEveryDimensionOfItsDay() {
+        LocalDateTime dt = LocalDate.of(2025, 3, 10).atTime(10, 30);
+
+        service.onAppointmentChanged(AppointmentChangedEvent.created(appointment(dt, Appointment.AppointmentStatus.SCHEDULED)));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(AppointmentDailyRollup.class));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(1L, inc.get("total"));
+        assertEquals(1L, inc.get("byHour.10"));
+        assertEquals(1L, inc.get("byStatus.SCHEDULED"));
+        assertEquals(1L, inc.get("byDoctor.d1"));
+        assertEquals(1L, inc.get("bySpecialization.Cardiology"));
+    }
+
+    @Test
+    void specializationWithDots_keepsDisplayName() {
+        Doctor doctor = new Doctor(); doctor.setId("d3"); doctor.setSpecialization("E.N.T.");
+        when(doctorRepository.findById("d3")).thenReturn(Optional.of(doctor));
+        Appointment apt = appointment(LocalDate.of(2025, 3, 10).atTime(10, 30), Appointment.AppointmentStatus.SCHEDULED);
+        apt.setDoctorId("d3");
+
+        service.onAppointmentChanged(AppointmentChangedEvent.created(apt));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(AppointmentDailyRollup.class));
+        assertEquals(1L, ((Document) update.getValue().getUpdateObject().get("$inc")).get("bySpecialization.E_N_T_"));
+        assertEquals("E.N.T.", ((Document) update.getValue().getUpdateObject().get("$set")).get("specializationNames.E_N_T_"));
+
+        AppointmentDailyRollup day = new AppointmentDailyRollup();
+        day.setBySpecialization(new HashMap<>(Map.of("E_N_T_", 1L)));
+        day.setSpecializationNames(new HashMap<>(Map.of("E_N_T_", "E.N.T.")));
+        assertEquals("E.N.T.", service.combine(List.of(day)).getSpecializationNames().get("E_N_T_"));
+    }
+
+    @Test
+    void statusChange_sameDay_movesOnlyStatusCounters() {
+        LocalDateTime dt = LocalDate.of(2025, 3, 10).atTime(10, 30);
+        Appointment apt = appointment(dt, Appointment.AppointmentStatus.CANCELLED);
+
+        service.onAppointmentChanged(new AppointmentChangedEvent(apt, dt, Appointment.AppointmentStatus.SCHEDULED));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).upsert(any(Query.class), update.capture(), eq(AppointmentDailyRollup.class));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(Map.of("byStatus.SCHEDULED", -1L, "byStatus.CANCELLED", 1L), new HashMap<>(inc));
+    }
+
+    @Test
+    void reschedule_toAnotherDay_updatesBothDays() {
+        LocalDateTime before = LocalDate.of(2025, 3, 10).atTime(10, 0);
+        LocalDateTime after = LocalDate.of(2025, 3, 12).atTime(15, 0);
+        Appointment apt = appointment(after, Appointment.AppointmentStatus.SCHEDULED);
+
+        service.onAppointmentChanged(new AppointmentChangedEvent(apt, before, Appointment.AppointmentStatus.SCHEDULED));
+
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq(AppointmentDailyRollup.class));
+    }
+
+    @Test
+    void combine_sumsDays() {
+        AppointmentDailyRollup monday = new AppointmentDailyRollup();
+        monday.setTotal(2);
+        monday.setByStatus(new HashMap<>(Map.of("SCHEDULED", 2L)));
+        monday.setByDoctor(new HashMap<>(Map.of("d1", 2L)));
+        AppointmentDailyRollup tuesday = new AppointmentDailyRollup();
+        tuesday.setTotal(3);
+        tuesday.setByStatus(new HashMap<>(Map.of("SCHEDULED", 1L, "COMPLETED", 2L)));
+        tuesday.setByDoctor(new HashMap<>(Map.of("d1", 1L, "d2", 2L)));
+
+        AppointmentDailyRollup combined = service.combine(List.of(monday, tuesday));
+
+        assertEquals(5, combined.getTotal());
+        assertEquals(Long.valueOf(3), combined.getByStatus().get("SCHEDULED"));
+        assertEquals(Long.valueOf(2), combined.getByStatus().get("COMPLETED"));
+        assertEquals(Long.valueOf(3), combined.getByDoctor().get("d1"));
+    }
+
+    @Test
+    void rebuild_writesOneUpsertPerDayFromOneStream() {
+        LocalDateTime day1 = LocalDate.of(2025, 3, 10).atTime(9, 0);
+        LocalDateTime day2 = LocalDate.of(2025, 3, 11).atTime(14, 0);
+        when(mongoTemplate.stream(any(Query.class), eq(Appointment.class))).thenReturn(Stream.of(
+            appointment(day1, Appointment.AppointmentStatus.COMPLETED),
+            appointment(day1, Appointment.AppointmentStatus.SCHEDULED),
+            appointment(day2, Appointment.AppointmentStatus.SCHEDULED)
+        ));
+
+        assertEquals(2, service.rebuild());
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), update.capture(), eq(AppointmentDailyRollup.class),
+            eq(AppointmentRollupService.STAGING_COLLECTION));
+        Document set = (Document) update.getAllValues().get(0).getUpdateObject().get("$set");
+        assertEquals(2L, set.get("total"));
+        assertEquals(Map.of("COMPLETED", 1L, "SCHEDULED", 1L), set.get("byStatus"));
+
+        // The staging collection replaces the live one; live counters are never removed in between
+        verify(stagingCollection).renameCollection(
+            eq(new MongoNamespace("health", AppointmentRollupService.ROLLUP_COLLECTION)), any(RenameCollectionOptions.class));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(AppointmentDailyRollup.class));
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(AppointmentDailyRollup.class));
+    }
+
+    @Test
+    void rebuild_recountsDaysChangedByLiveUpdatesWhileItRuns() {
+        LocalDateTime dt = LocalDate.of(2025, 3, 10).atTime(9, 0);
+        Appointment existing = appointment(dt, Appointment.AppointmentStatus.SCHEDULED);
+        Appointment booked = appointment(dt.plusHours(1), Appointment.AppointmentStatus.SCHEDULED);
+        booked.setId("a2");
+        when(mongoTemplate.stream(any(Query.class), eq(Appointment.class)))
+            .thenAnswer(invocation -> {
+                // Booked while the full scan runs; the scan did not see it
+                service.onAppointmentChanged(AppointmentChangedEvent.created(booked));
+                return Stream.of(existing);
+            })
+            .thenAnswer(invocation -> Stream.of(existing, booked));
+
+        assertEquals(1, service.rebuild());
+
+        // The live $inc went to the old collection; the recount overwrites the day in the new one
+        ArgumentCaptor<Update> live = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), live.capture(), eq(AppointmentDailyRollup.class));
+        assertNotNull(live.getAllValues().get(0).getUpdateObject().get("$inc"));
+        Document recount = (Document) live.getAllValues().get(1).getUpdateObject().get("$set");
+        assertEquals(2L, recount.get("total"));
+        verify(mongoTemplate, times(2)).stream(any(Query.class), eq(Appointment.class));
+    }
+
+    @Test
+    void specialization_unknownDoctorIsNotCached_andDoctorChangesAreReRead() {
+        LocalDateTime dt = LocalDate.of(2025, 3, 10).atTime(10, 30);
+        Appointment apt = appointment(dt, Appointment.AppointmentStatus.SCHEDULED);
+        apt.setDoctorId("d2");
+        when(doctorRepository.findById("d2")).thenReturn(Optional.empty());
+
+        service.onAppointmentChanged(AppointmentChangedEvent.created(apt));
+        service.onAppointmentChanged(AppointmentChangedEvent.created(apt));
+        verify(doctorRepository, times(2)).findById("d2");
+
+        Doctor doctor = new Doctor(); doctor.setId("d1"); doctor.setSpecialization("Neurology");
+        service.onAppointmentChanged(AppointmentChangedEvent.created(appointment(dt, Appointment.AppointmentStatus.SCHEDULED)));
+        service.onDoctorChanged(new DoctorChangedEvent(doctor));
+        when(doctorRepository.findById("d1")).thenReturn(Optional.of(doctor));
+        service.onAppointmentChanged(AppointmentChangedEvent.created(appointment(dt, Appointment.AppointmentStatus.SCHEDULED)));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(4)).upsert(any(Query.class), update.capture(), eq(AppointmentDailyRollup.class));
+        Document inc = (Document) update.getAllValues().get(3).getUpdateObject().get("$inc");
+        assertEquals(1L, inc.get("bySpecialization.Neurology"));
+    }
+}
@@ -2,7 +2,6 @@ package com.example.health_care_system.service;
 
 import com.example.health_care_system.model.Appointment;
 import com.example.health_care_system.model.Doctor;
-import com.example.health_care_system.model.Patient;
 import com.example.health_care_system.model.TimeSlotReservation;
 import com.example.health_care_system.repository.AppointmentRepository;
 import com.example.health_care_system.repository.DoctorRepository;
@@ -12,6 +11,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -32,6 +33,10 @@ class AppointmentServiceTest {
     private PatientRepository patientRepository;
     @Mock
     private TimeSlotReservationRepository reservationRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     private AppointmentService service;
 
@@ -43,7 +48,18 @@ class AppointmentServiceTest {
         TestUtils.injectField(service, "appointmentRepository", appointmentRepository);
         TestUtils.injectField(service, "doctorRepository", doctorRepository);
         TestUtils.injectField(service, "patientRepository", patientRepository);
-        TestUtils.injectField(service, "reservationRepository", reservationRepository);
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "eventPublisher", eventPublisher);
+
+        SlotAvailabilityIndex slotIndex = new SlotAvailabilityIndex();
+        TestUtils.injectField(slotIndex, "appointmentRepository", appointmentRepository);
+        TestUtils.injectField(slotIndex, "reservationRepository", reservationRepository);
+        TestUtils.injectField(slotIndex, "eventPublisher", mock(ApplicationEventPublisher.class));
+        TestUtils.injectField(service, "slotIndex", slotIndex);
+
+        StripedSlotLockManager slotLockManager = new StripedSlotLockManager();
+        TestUtils.injectField(slotLockManager, "metrics", new SlotLockMetrics());
+        TestUtils.injectField(service, "slotLockManager", slotLockManager);
     }
 
     @Test
@@ -66,7 +82,7 @@ class AppointmentServiceTest {
         res.setSlotDateTime(date.atTime(9,30));
         res.setPatientId("pX");
         res.setStatus(TimeSlotReservation.ReservationStatus.ACTIVE);
-        when(reservationRepository.findByDoctorIdAndStatus("d1", TimeSlotReservation.ReservationStatus.ACTIVE))
+        when(reservationRepository.findByDoctorIdAndStatusAndCreatedAtAfter(eq("d1"), eq(TimeSlotReservation.ReservationStatus.ACTIVE), any()))
             .thenReturn(List.of(res));
 
         List<LocalTime> slots = service.getAvailableTimeSlots("d1", date, null);
@@ -81,31 +97,44 @@ class AppointmentServiceTest {
         String docId = "doc1";
         String patId = "pat1";
         Doctor doctor = new Doctor(); doctor.setId(docId); doctor.setName("Dr A");
-        Patient patient = new Patient(); patient.setId(patId); patient.setName("P A");
         when(doctorRepository.findById(docId)).thenReturn(Optional.of(doctor));
-        when(patientRepository.findById(patId)).thenReturn(Optional.of(patient));
+        when(patientRepository.existsById(patId)).thenReturn(true);
         when(appointmentRepository.findByDoctorIdAndAppointmentDateTimeBetween(any(), any(), any()))
             .thenReturn(List.of());
-        when(reservationRepository.findByDoctorIdAndStatus(eq(docId), any())).thenReturn(List.of());
+        when(reservationRepository.findByDoctorIdAndStatusAndCreatedAtAfter(eq(docId), any(), any())).thenReturn(List.of());
 
         Appointment saved = new Appointment(); saved.setId("a1");
         when(appointmentRepository.save(any())).thenReturn(saved);
-        when(patientRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
-        when(doctorRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         LocalDateTime dt = LocalDate.now().plusDays(2).atTime(10,0);
         Appointment result = service.bookAppointment(patId, "P A", docId, dt, "Checkup", null);
         assertNotNull(result);
         assertEquals("a1", result.getId());
         verify(appointmentRepository).save(any());
-        verify(patientRepository).save(any());
-        verify(doctorRepository).save(any());
+        // Booking is a single insert; user documents are not rewritten
+        verify(patientRepository, never()).save(any());
+        verify(doctorRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(any(AppointmentChangedEvent.class));
     }
 
     @Test
     void bookAppointment_doctorNotFound_throws() {
         when(doctorRepository.findById("dX")).thenReturn(Optional.empty());
-        assertThrows(RuntimeException.class, () -> service.bookAppointment("p","pname","dX", LocalDateTime.now().plusDays(2), null, null));
+        LocalDateTime dt = LocalDate.now().plusDays(2).atTime(10,0);
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> service.bookAppointment("p","pname","dX", dt, null, null));
+        assertEquals("Doctor not found", ex.getMessage());
+    }
+
+    @Test
+    void bookAppointment_slotLockHeld_failsBeforeLookups() {
+        SlotLockManager busy = mock(SlotLockManager.class);
+        when(busy.tryLock(any(), any())).thenReturn(null);
+        TestUtils.injectField(service, "slotLockManager", busy);
+
+        LocalDateTime dt = LocalDate.now().plusDays(2).atTime(10,0);
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> service.bookAppointment("p","pname","doc1", dt, null, null));
+        assertTrue(ex.getMessage().contains("being booked"));
+        verifyNoInteractions(doctorRepository, patientRepository, appointmentRepository);
     }
 
     @Test
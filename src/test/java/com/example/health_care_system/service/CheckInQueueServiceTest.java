@@ -0,0 +1,124 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CheckInQueueServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private AppointmentRepository appointmentRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private CheckInQueueService service;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new CheckInQueueService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "appointmentRepository", appointmentRepository);
+        TestUtils.injectField(service, "eventPublisher", eventPublisher);
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private Appointment appointment(String id, String doctorId, int hour) {
+        Appointment apt = new Appointment();
+        apt.setId(id);
+        apt.setDoctorId(doctorId);
+        apt.setPatientName("Patient " + id);
+        apt.setAppointmentDateTime(today.atTime(hour, 0));
+        apt.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+        return apt;
+    }
+
+    private Doctor doctor(String id) {
+        Doctor doctor = new Doctor();
+        doctor.setId(id);
+        return doctor;
+    }
+
+    @Test
+    void testHospitalQueueIsLoadedWithTwoQueriesAndServedFromMemory() {
+        when(mongoTemplate.find(any(Query.class), eq(Doctor.class))).thenReturn(List.of(doctor("d1"), doctor("d2")));
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class)))
+            .thenReturn(List.of(appointment("a2", "d2", 11), appointment("a1", "d1", 9)));
+
+        CheckInQueueService.QueueView first = service.getQueue("h1", today);
+        CheckInQueueService.QueueView second = service.getQueue("h1", today);
+
+        assertEquals(List.of("a1", "a2"), first.appointments().stream().map(Appointment::getId).toList());
+        assertEquals(2, second.pendingCount());
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Doctor.class));
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Appointment.class));
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void testCheckInAndUndoUpdateTheQueue() {
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class)))
+            .thenReturn(List.of(appointment("a1", "d1", 9), appointment("a2", "d1", 10)));
+        service.getQueue(null, today);
+
+        Appointment checkedIn = service.checkIn(appointment("a1", "d1", 9), "s1", "Front Desk");
+        CheckInQueueService.QueueView queue = service.getQueue(null, today);
+
+        assertTrue(checkedIn.isCheckedIn());
+        assertEquals("Front Desk", checkedIn.getCheckInStaffName());
+        assertEquals(1, queue.checkedInCount());
+        assertEquals(1, queue.pendingCount());
+        assertTrue(queue.appointments().get(0).isCheckedIn());
+
+        service.undoCheckIn(checkedIn);
+        assertEquals(0, service.getQueue(null, today).checkedInCount());
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Appointment.class));
+    }
+
+    @Test
+    void testAppointmentEventsMoveAppointmentsInAndOut() {
+        when(mongoTemplate.find(any(Query.class), eq(Doctor.class))).thenReturn(List.of(doctor("d1")));
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(List.of(appointment("a1", "d1", 9)));
+        service.getQueue("h1", today);
+
+        // Booked today with one of the hospital's doctors, and with another hospital's doctor
+        service.onAppointmentChanged(AppointmentChangedEvent.created(appointment("a2", "d1", 14)));
+        service.onAppointmentChanged(AppointmentChangedEvent.created(appointment("a3", "d9", 15)));
+
+        // Marked as no-show
+        Appointment noShow = appointment("a1", "d1", 9);
+        noShow.setStatus(Appointment.AppointmentStatus.NO_SHOW);
+        service.onAppointmentChanged(new AppointmentChangedEvent(noShow, noShow.getAppointmentDateTime(),
+            Appointment.AppointmentStatus.SCHEDULED));
+
+        // Rescheduled to tomorrow
+        Appointment moved = appointment("a2", "d1", 14);
+        LocalDateTime previous = moved.getAppointmentDateTime();
+        moved.setAppointmentDateTime(previous.plusDays(1));
+        CheckInQueueService.QueueView beforeMove = service.getQueue("h1", today);
+        service.onAppointmentChanged(new AppointmentChangedEvent(moved, previous, Appointment.AppointmentStatus.SCHEDULED));
+
+        assertEquals(List.of("a2"), beforeMove.appointments().stream().map(Appointment::getId).toList());
+        assertTrue(service.getQueue("h1", today).appointments().isEmpty());
+        // Booking, no-show and reschedule changed the queue; the other hospital's booking did not
+        verify(eventPublisher, times(3)).publishEvent(new CheckInQueueService.QueueChangedEvent("h1", today));
+    }
+}
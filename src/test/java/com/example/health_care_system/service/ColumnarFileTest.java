@@ -0,0 +1,113 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.Appointment.AppointmentStatus;
+import com.example.health_care_system.service.ColumnarFile.Column;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private record Row(String id, AppointmentStatus status, LocalDateTime dateTime, LocalDate date,
+                       BigDecimal amount, Boolean flag, Long number) {
+    }
+
+    private static final List<Column<Row>> COLUMNS = List.of(
+        Column.string("id", Row::id),
+        Column.dictionary("status", Row::status),
+        Column.timestamp("dateTime", Row::dateTime),
+        Column.date("date", Row::date),
+        Column.decimal("amount", Row::amount),
+        Column.bool("flag", Row::flag),
+        Column.int64("number", Row::number)
+    );
+
+    @Test
+    void testRoundTripAcrossChunks() throws IOException {
+        Path path = tempDir.resolve("rows.hcol");
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+        try (ColumnarFile.Writer<Row> writer = new ColumnarFile.Writer<>(path, "rows", COLUMNS, 2)) {
+            writer.write(new Row("a", AppointmentStatus.SCHEDULED, start, LocalDate.of(1990, 5, 1),
+                new BigDecimal("12.50"), true, -5L));
+            writer.write(new Row("b,\"quoted\"", AppointmentStatus.COMPLETED, start.plusHours(1), null,
+                new BigDecimal("0.999"), false, Long.MAX_VALUE));
+            writer.write(new Row(null, AppointmentStatus.SCHEDULED, null, LocalDate.of(2000, 1, 1),
+                null, null, 7L));
+        }
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            assertEquals("rows", reader.getDataset());
+            assertEquals(3, reader.getRowCount());
+            assertEquals(ColumnarFile.ColumnType.DICTIONARY, reader.getColumns().get(1).type());
+            assertEquals(2, reader.getChunks().size());
+            assertEquals(2, reader.getChunks().get(0).rowCount());
+            assertEquals(1, reader.getChunks().get(1).rowCount());
+
+            assertEquals(Arrays.asList("a", "b,\"quoted\""), reader.readColumn(0, "id"));
+            assertEquals(Arrays.asList("SCHEDULED", "COMPLETED"), reader.readColumn(0, "status"));
+            assertEquals(Arrays.asList("SCHEDULED"), reader.readColumn(1, "status"));
+            assertEquals(Arrays.asList(start, start.plusHours(1)), reader.readColumn(0, "dateTime"));
+            assertEquals(Arrays.asList(LocalDate.of(1990, 5, 1), null), reader.readColumn(0, "date"));
+            assertEquals(Arrays.asList(new BigDecimal("12.50"), new BigDecimal("1.00")), reader.readColumn(0, "amount"));
+            assertEquals(Arrays.asList(true, false), reader.readColumn(0, "flag"));
+            assertEquals(Arrays.asList(-5L, Long.MAX_VALUE), reader.readColumn(0, "number"));
+            assertEquals(Arrays.asList((Object) null), reader.readColumn(1, "id"));
+        }
+    }
+
+    @Test
+    void testChunkStatisticsAllowSkipping() throws IOException {
+        Path path = tempDir.resolve("appointments.hcol");
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 8, 0);
+
+        try (ColumnarFile.Writer<Appointment> writer = new ColumnarFile.Writer<>(path, "appointments", List.of(
+                Column.timestamp("appointmentDateTime", Appointment::getAppointmentDateTime),
+                Column.string("notes", Appointment::getNotes)), 10)) {
+            for (int i = 0; i < 20; i++) {
+                Appointment apt = new Appointment();
+                apt.setAppointmentDateTime(start.plusDays(i));
+                apt.setNotes(i == 15 ? "x".repeat(ColumnarFile.MAX_STATS_LENGTH + 1) : (i % 2 == 0 ? null : "note " + i));
+                writer.write(apt);
+            }
+        }
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            ColumnarFile.ColumnStats first = reader.getChunks().get(0).stats().get(0);
+            ColumnarFile.ColumnStats second = reader.getChunks().get(1).stats().get(0);
+            assertEquals(start, first.min());
+            assertEquals(start.plusDays(9), first.max());
+            assertEquals(start.plusDays(10), second.min());
+            assertEquals(0, first.nullCount());
+
+            ColumnarFile.ColumnStats notes = reader.getChunks().get(0).stats().get(1);
+            assertEquals(5, notes.nullCount());
+            assertEquals("note 1", notes.min());
+            assertEquals("note 9", notes.max());
+            // A long value drops the statistics of its chunk instead of truncating them
+            assertNull(reader.getChunks().get(1).stats().get(1).min());
+        }
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path path = tempDir.resolve("not-columnar.csv");
+        Files.writeString(path, "Name,Email\nJohn,john@example.com\n");
+
+        assertThrows(IOException.class, () -> new ColumnarFile.Reader(path));
+    }
+}
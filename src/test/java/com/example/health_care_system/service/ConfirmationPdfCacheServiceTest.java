@@ -0,0 +1,113 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfirmationPdfCacheServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private ConfirmationPdfCacheService service;
+
+    private Appointment appointment;
+    private Patient patient;
+    private Doctor doctor;
+    private Hospital hospital;
+    private Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        service = new ConfirmationPdfCacheService();
+        TestUtils.injectField(service, "pdfGenerationService", new PdfGenerationService());
+        TestUtils.injectField(service, "cacheDir", cacheDir.toString());
+
+        appointment = new Appointment();
+        appointment.setId("apt1");
+        appointment.setAppointmentDateTime(LocalDateTime.now().plusDays(2));
+        appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+        appointment.setUpdatedAt(LocalDateTime.of(2026, 3, 1, 10, 0));
+
+        patient = new Patient();
+        patient.setId("p1");
+        patient.setName("John");
+        patient.setEmail("j@example.com");
+
+        doctor = new Doctor();
+        doctor.setId("d1");
+        doctor.setName("Dr X");
+        doctor.setEmail("dr@example.com");
+        doctor.setSpecialization("Cardio");
+
+        hospital = new Hospital();
+        hospital.setId("h1");
+        hospital.setName("Hospital A");
+        hospital.setType(Hospital.HospitalType.PRIVATE);
+        hospital.setHospitalCharges(new BigDecimal("500"));
+
+        payment = new Payment();
+        payment.setId("pay1");
+        payment.setAppointmentId("apt1");
+        payment.setAmount(new BigDecimal("500"));
+        payment.setPaymentMethod(Payment.PaymentMethod.CARD);
+        payment.setStatus(Payment.PaymentStatus.COMPLETED);
+        payment.setUpdatedAt(LocalDateTime.of(2026, 3, 1, 10, 5));
+    }
+
+    @Test
+    void testSecondDownloadIsServedFromDisk() throws IOException {
+        ConfirmationPdfCacheService.ConfirmationPdf first = service.getConfirmationPdf(appointment, patient, doctor, hospital, payment);
+        ConfirmationPdfCacheService.ConfirmationPdf second = service.getConfirmationPdf(appointment, patient, doctor, hospital, payment);
+
+        assertEquals(first.version(), second.version());
+        assertTrue(second.content() instanceof FileSystemResource);
+        assertArrayEquals(first.content().getContentAsByteArray(), second.content().getContentAsByteArray());
+        assertEquals(first.contentLength(), second.contentLength());
+        assertEquals(1, storedPdfs().size());
+    }
+
+    @Test
+    void testChangedInputGetsNewVersionAndReplacesOldFile() throws IOException {
+        String before = service.getConfirmationPdf(appointment, patient, doctor, hospital, payment).version();
+
+        payment.setStatus(Payment.PaymentStatus.REFUNDED);
+        payment.setUpdatedAt(LocalDateTime.of(2026, 3, 2, 9, 0));
+        String after = service.getConfirmationPdf(appointment, patient, doctor, hospital, payment).version();
+
+        assertNotEquals(before, after);
+        List<Path> stored = storedPdfs();
+        assertEquals(1, stored.size());
+        assertEquals(after + ".pdf", stored.get(0).getFileName().toString());
+    }
+
+    @Test
+    void testAppointmentAndPaymentChangesEvictStoredPdfs() throws IOException {
+        service.getConfirmationPdf(appointment, patient, doctor, hospital, payment);
+        service.onAppointmentChanged(new AppointmentChangedEvent(appointment, appointment.getAppointmentDateTime(),
+            Appointment.AppointmentStatus.SCHEDULED));
+        assertTrue(storedPdfs().isEmpty());
+
+        service.getConfirmationPdf(appointment, patient, doctor, hospital, payment);
+        service.onPaymentChanged(new PaymentChangedEvent(payment));
+        assertTrue(storedPdfs().isEmpty());
+    }
+
+    private List<Path> storedPdfs() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            return files.filter(file -> file.toString().endsWith(".pdf")).toList();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.EmailOutboxMessage;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class EmailOutboxServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final EmailOutboxMetrics metrics = new EmailOutboxMetrics();
+
+    private EmailOutboxService service;
+
+    private SmtpStandIn smtp;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        smtp = new SmtpStandIn();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.getPort());
+
+        service = new EmailOutboxService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "mailSender", mailSender);
+        TestUtils.injectField(service, "metrics", metrics);
+        TestUtils.injectField(service, "fromEmail", "no-reply@example.com");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(EmailOutboxMessage.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        smtp.close();
+    }
+
+    private EmailOutboxMessage message(String id, String to) {
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setId(id);
+        message.setTo(to);
+        message.setSubject("Appointment Confirmation");
+        message.setHtmlContent("<p>Booked</p>");
+        message.setStatus(EmailOutboxMessage.OutboxStatus.SENDING);
+        message.setNextAttemptAt(LocalDateTime.of(2026, 3, 1, 10, 5));
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    @Test
+    void testBatchIsSentOverOneConnection() {
+        service.sendBatch(List.of(message("m1", "a@example.com"), message("m2", "b@example.com"),
+            message("m3", "c@example.com")));
+
+        assertEquals(1, smtp.connections.get());
+        assertEquals(3, smtp.delivered.get());
+        assertEquals(3, metrics.getSentCount());
+        verify(mongoTemplate, times(3)).updateFirst(any(Query.class), any(Update.class), eq(EmailOutboxMessage.class));
+    }
+
+    @Test
+    void testRejectedMessageIsRetriedAndOthersAreSent() {
+        service.sendBatch(List.of(message("m1", "a@example.com"), message("m2", "reject@example.com")));
+
+        assertEquals(1, smtp.delivered.get());
+        assertEquals(1, metrics.getSentCount());
+        assertEquals(1L, metrics.snapshot().get("retried"));
+    }
+
+    @Test
+    void testOutcomeIsOnlyRecordedWhileTheClaimHolds() {
+        // The claim expired and another worker claimed the message again
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(EmailOutboxMessage.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        EmailOutboxMessage message = message("m1", "a@example.com");
+
+        service.sendBatch(List.of(message));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(EmailOutboxMessage.class));
+        Document filter = query.getValue().getQueryObject();
+        assertEquals(EmailOutboxMessage.OutboxStatus.SENDING, filter.get("status"));
+        assertEquals(message.getNextAttemptAt(), filter.get("nextAttemptAt"));
+        assertEquals(0, metrics.getSentCount());
+    }
+
+    @Test
+    void testUnbuildableMessageFailsWithoutRetry() {
+        service.sendBatch(List.of(message("m1", "not an address <")));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(EmailOutboxMessage.class));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(EmailOutboxMessage.OutboxStatus.FAILED, set.get("status"));
+        assertEquals(0, smtp.connections.get());
+        assertEquals(1L, metrics.snapshot().get("failed"));
+    }
+
+    @Test
+    void testRetryDelayDoublesUpToAnHour() {
+        assertEquals(Duration.ofSeconds(30), EmailOutboxService.retryDelay(1));
+        assertEquals(Duration.ofSeconds(60), EmailOutboxService.retryDelay(2));
+        assertEquals(Duration.ofMinutes(8), EmailOutboxService.retryDelay(5));
+        assertEquals(Duration.ofHours(1), EmailOutboxService.retryDelay(30));
+    }
+
+    /**
+     * Minimal local SMTP server; rejects recipients starting with "reject"
+     */
+    private static class SmtpStandIn implements AutoCloseable {
+        private final ServerSocket server = new ServerSocket(0);
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+
+        SmtpStandIn() throws IOException {
+            Thread thread = new Thread(this::acceptLoop, "smtp-stand-in");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    connections.incrementAndGet();
+                    serve(socket);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII);
+            reply(out, "220 localhost");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 localhost");
+                } else if (command.startsWith("RCPT") && command.contains("<REJECT")) {
+                    reply(out, "550 No such user");
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // Message body is not inspected
+                    }
+                    delivered.incrementAndGet();
+                    reply(out, "250 Queued");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private static void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+}
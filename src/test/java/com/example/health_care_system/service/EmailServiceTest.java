@@ -1,12 +1,10 @@
 package com.example.health_care_system.service;
 
 import com.example.health_care_system.model.*;
-import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
@@ -19,7 +17,7 @@ import static org.mockito.Mockito.*;
 class EmailServiceTest {
 
     @Mock
-    private JavaMailSender mailSender;
+    private EmailOutboxService emailOutboxService;
     @Mock
     private TemplateEngine templateEngine;
 
@@ -29,14 +27,15 @@ class EmailServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         emailService = new EmailService();
-        TestUtils.injectField(emailService, "mailSender", mailSender);
-        TestUtils.injectField(emailService, "templateEngine", templateEngine);
-        TestUtils.injectField(emailService, "fromEmail", "no-reply@example.com");
+        TestUtils.injectField(emailService, "emailOutboxService", emailOutboxService);
+        EmailTemplateRenderer renderer = new EmailTemplateRenderer();
+        TestUtils.injectField(renderer, "templateEngine", templateEngine);
+        TestUtils.injectField(emailService, "emailTemplateRenderer", renderer);
         TestUtils.injectField(emailService, "baseUrl", "http://localhost:8080");
     }
 
     @Test
-    void sendGovernmentAppointmentConfirmation_sends() throws Exception {
+    void sendGovernmentAppointmentConfirmation_enqueues() throws Exception {
         Patient p = new Patient(); p.setName("P"); p.setEmail("p@example.com");
         Appointment a = new Appointment(); a.setId("apt1"); a.setAppointmentDateTime(LocalDateTime.now().plusDays(1));
         Doctor d = new Doctor(); d.setName("Dr"); d.setSpecialization("Gen");
@@ -46,15 +45,13 @@ class EmailServiceTest {
         Hospital.ContactInfo ci = new Hospital.ContactInfo(); ci.setEmail("h@ex.com"); ci.setPhoneNumber("123");
         h.setContactInfo(ci);
         when(templateEngine.process(eq("emails/appointment-confirmation-government"), any(Context.class))).thenReturn("<html></html>");
-        MimeMessage mime = mock(MimeMessage.class);
-        when(mailSender.createMimeMessage()).thenReturn(mime);
 
         emailService.sendGovernmentAppointmentConfirmation(p,a,d,h);
-        verify(mailSender).send(mime);
+        verify(emailOutboxService).enqueue(eq("p@example.com"), eq("Appointment Confirmation - " + h.getName()), eq("<html></html>"));
     }
 
     @Test
-    void sendCashPaymentAppointmentConfirmation_sends() throws Exception {
+    void sendCashPaymentAppointmentConfirmation_enqueues() throws Exception {
         Patient p = new Patient(); p.setName("P"); p.setEmail("p@example.com");
         Appointment a = new Appointment(); a.setId("apt2"); a.setAppointmentDateTime(LocalDateTime.now().plusDays(1));
         Doctor d = new Doctor(); d.setName("Dr"); d.setSpecialization("Gen");
@@ -65,11 +62,9 @@ class EmailServiceTest {
         h.setContactInfo(ci);
         Payment payment = new Payment(); payment.setAmount(new BigDecimal("1500")); payment.setId("pay1");
         when(templateEngine.process(eq("emails/appointment-confirmation-cash"), any(Context.class))).thenReturn("<html></html>");
-        MimeMessage mime = mock(MimeMessage.class);
-        when(mailSender.createMimeMessage()).thenReturn(mime);
 
         emailService.sendCashPaymentAppointmentConfirmation(p,a,d,h,payment);
-        verify(mailSender).send(mime);
+        verify(emailOutboxService).enqueue(eq("p@example.com"), eq("Appointment Confirmation - Payment Required at Hospital"), eq("<html></html>"));
     }
 }
 
@@ -0,0 +1,112 @@
+package com.example.health_care_system.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresource.ITemplateResource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailTemplateRendererTest {
+
+    private final AtomicInteger processed = new AtomicInteger();
+
+    private TemplateEngine templateEngine;
+
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        // Not cacheable, so every Thymeleaf render reads the template and can be counted
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver() {
+            @Override
+            protected ITemplateResource computeTemplateResource(IEngineConfiguration configuration, String ownerTemplate,
+                                                                String template, String resourceName, String characterEncoding,
+                                                                Map<String, Object> templateResolutionAttributes) {
+                processed.incrementAndGet();
+                return super.computeTemplateResource(configuration, ownerTemplate, template, resourceName,
+                    characterEncoding, templateResolutionAttributes);
+            }
+        };
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(false);
+
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        renderer = new EmailTemplateRenderer();
+        TestUtils.injectField(renderer, "templateEngine", templateEngine);
+    }
+
+    private Map<String, Object> hospitalAndDoctor() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("doctorName", "Dr. Silva");
+        variables.put("doctorSpecialization", "Cardiology");
+        variables.put("hospitalName", "St. Mary's & Co");
+        variables.put("hospitalAddress", "12 Main Street");
+        variables.put("hospitalCity", "Colombo");
+        variables.put("hospitalPhone", "+94 11 234 5678");
+        variables.put("hospitalEmail", "info@stmarys.lk");
+        variables.put("currentYear", "2026");
+        variables.put("baseUrl", "http://localhost:8080");
+        return variables;
+    }
+
+    private Map<String, String> appointment(String patientName) {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("patientName", patientName);
+        variables.put("appointmentId", "apt-1");
+        variables.put("appointmentDate", "Monday, March 02, 2026");
+        variables.put("appointmentTime", "09:30 AM");
+        variables.put("purpose", "Follow-up <urgent>");
+        variables.put("amount", "LKR 2500.00");
+        variables.put("paymentId", "pay-1");
+        variables.put("transactionId", "cs_test_1");
+        variables.put("paymentDate", "Sunday, March 01, 2026");
+        variables.put("insuranceProvider", "AIA");
+        variables.put("policyNumber", null);
+        return variables;
+    }
+
+    @Test
+    void testOutputMatchesFullThymeleafRender() {
+        for (String template : EmailTemplateRenderer.TEMPLATES) {
+            Map<String, String> appointment = appointment("Ann \"O'Neil\" <ann@example.com>");
+            Context context = new Context();
+            context.setVariables(hospitalAndDoctor());
+            appointment.forEach(context::setVariable);
+            String expected = templateEngine.process(template, context);
+
+            assertEquals(expected,
+                renderer.render(template, hospitalAndDoctor(), appointment), template);
+        }
+    }
+
+    @Test
+    void testTemplateIsRenderedOncePerHospitalAndDoctor() {
+        String template = "emails/appointment-confirmation-cash";
+        String first = renderer.render(template, hospitalAndDoctor(), appointment("Ann"));
+        String second = renderer.render(template, hospitalAndDoctor(), appointment("Ben"));
+        assertEquals(1, processed.get());
+        assertTrue(first.contains("Ann"));
+        assertTrue(second.contains("Ben"));
+
+        // Another doctor is a different static part
+        Map<String, Object> otherDoctor = hospitalAndDoctor();
+        otherDoctor.put("doctorName", "Dr. Perera");
+        assertTrue(renderer.render(template, otherDoctor, appointment("Cy")).contains("Dr. Perera"));
+        assertEquals(2, processed.get());
+    }
+}
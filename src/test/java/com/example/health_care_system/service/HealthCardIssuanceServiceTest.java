@@ -0,0 +1,132 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.HealthCard;
+import com.example.health_care_system.model.Patient;
+import com.example.health_care_system.repository.HealthCardRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HealthCardIssuanceServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private HealthCardRepository healthCardRepository;
+    @Mock
+    private QRCodeService qrCodeService;
+
+    private HealthCardIssuanceService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        HealthCardService healthCardService = new HealthCardService(healthCardRepository, qrCodeService);
+        service = new HealthCardIssuanceService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "healthCardRepository", healthCardRepository);
+        TestUtils.injectField(service, "healthCardService", healthCardService);
+        TestUtils.injectField(service, "workers", 2);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    private Patient patient(String id, String name) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setName(name);
+        return patient;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIssueCardsCreatesMissingCardsAndZipsEveryCard() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Patient.class)))
+            .thenReturn(Stream.of(patient("p1", "Ann Lee"), patient("p2", "Ben"), patient("p3", "Cy")));
+        HealthCard existing = new HealthCard();
+        existing.setId("hc2");
+        existing.setPatientId("p2");
+        existing.setPatientName("Ben");
+        existing.setCreateDate(LocalDate.now());
+        existing.setExpireDate(LocalDate.now().plusYears(1));
+        when(healthCardRepository.findByPatientIdIn(anyCollection())).thenReturn(List.of(existing));
+        when(healthCardRepository.insert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(qrCodeService.generateQRCode(anyString())).thenAnswer(invocation -> "/qr-codes/" + invocation.getArgument(0) + ".png");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HealthCardIssuanceService.IssuanceReport report =
+            service.issueCards(new HealthCardIssuanceService.PatientFilter("h1", false), out);
+
+        assertEquals(3, report.patients());
+        assertEquals(2, report.cardsCreated());
+
+        // One insert for the batch, holding only the patients without a card
+        ArgumentCaptor<List<HealthCard>> saved = ArgumentCaptor.forClass(List.class);
+        verify(healthCardRepository, times(1)).insert(saved.capture());
+        assertEquals(List.of("p1", "p3"), saved.getValue().stream().map(HealthCard::getPatientId).toList());
+        verify(qrCodeService, never()).generateQRCode("p2");
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                if (entry.getName().endsWith(".png")) {
+                    assertEquals((byte) 0x89, zip.readAllBytes()[0]);
+                }
+            }
+        }
+        assertEquals(List.of("health-card-Ann_Lee-p1.png", "health-card-Ben-p2.png", "health-card-Cy-p3.png",
+            "issuance-report.txt"), entries);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIssueCardsUsesCardsCreatedConcurrently() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Patient.class)))
+            .thenReturn(Stream.of(patient("p1", "Ann"), patient("p2", "Ben")));
+        HealthCard concurrent = new HealthCard();
+        concurrent.setId("hc-other");
+        concurrent.setPatientId("p1");
+        concurrent.setPatientName("Ann");
+        concurrent.setCreateDate(LocalDate.now());
+        concurrent.setExpireDate(LocalDate.now().plusYears(1));
+        // No cards when the batch is read; p1's card appears before the insert
+        when(healthCardRepository.findByPatientIdIn(anyCollection())).thenReturn(List.of(), List.of(concurrent));
+        when(healthCardRepository.insert(anyList())).thenThrow(new DuplicateKeyException("E11000 patientId"));
+        when(healthCardRepository.insert(any(HealthCard.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(qrCodeService.generateQRCode(anyString())).thenAnswer(invocation -> "/qr-codes/" + invocation.getArgument(0) + ".png");
+
+        HealthCardIssuanceService.IssuanceReport report =
+            service.issueCards(new HealthCardIssuanceService.PatientFilter(null, false), new ByteArrayOutputStream());
+
+        assertEquals(2, report.patients());
+        assertEquals(1, report.cardsCreated());
+        ArgumentCaptor<HealthCard> inserted = ArgumentCaptor.forClass(HealthCard.class);
+        verify(healthCardRepository).insert(inserted.capture());
+        assertEquals("p2", inserted.getValue().getPatientId());
+        verify(healthCardRepository, never()).findByPatientId(anyString());
+    }
+}
@@ -105,4 +105,42 @@ class HealthCardServiceTest {
         assertNotNull(bytes);
         assertTrue(bytes.length > 0);
     }
+
+    @Test
+    void getHealthCardImage_isCachedUntilCardChanges() throws IOException {
+        HealthCard card = new HealthCard();
+        card.setId("hc5");
+        card.setPatientName("Bob");
+        card.setStatus("ACTIVE");
+        card.setCreateDate(LocalDate.now());
+        card.setExpireDate(LocalDate.now().plusYears(1));
+
+        HealthCardService.HealthCardImage first = healthCardService.getHealthCardImage(card);
+        HealthCardService.HealthCardImage second = healthCardService.getHealthCardImage(card);
+        assertSame(first.png(), second.png());
+        assertTrue(first.version().startsWith("hc5-"));
+
+        // Renewing changes the expiry, so the next download renders a new version
+        card.setExpireDate(LocalDate.now().minusDays(1));
+        when(healthCardRepository.findById("hc5")).thenReturn(Optional.of(card));
+        when(healthCardRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        HealthCard renewed = healthCardService.renewHealthCard("hc5");
+
+        HealthCardService.HealthCardImage third = healthCardService.getHealthCardImage(renewed);
+        assertNotEquals(first.version(), third.version());
+        assertNotSame(first.png(), third.png());
+    }
+
+    @Test
+    void getHealthCardImageVersion_changesWithExpiry() {
+        HealthCard card = new HealthCard();
+        card.setId("hc6");
+        card.setPatientName("Carol");
+        card.setCreateDate(LocalDate.now().minusYears(1));
+        card.setExpireDate(LocalDate.now());
+        String valid = healthCardService.getHealthCardImageVersion(card);
+
+        card.setExpireDate(LocalDate.now().minusDays(1));
+        assertNotEquals(valid, healthCardService.getHealthCardImageVersion(card));
+    }
 }
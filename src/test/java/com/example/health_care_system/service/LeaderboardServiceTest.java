@@ -0,0 +1,193 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.LeaderboardEntry;
+import com.example.health_care_system.model.MedicalRecord;
+import com.example.health_care_system.model.User;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.RenameCollectionOptions;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LeaderboardServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private BulkOperations stagingBulk;
+    @Mock
+    private MongoCollection<Document> stagingCollection;
+    @Mock
+    private MongoDatabase database;
+    @Mock
+    private IndexOperations stagingIndexes;
+
+    private LeaderboardService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new LeaderboardService();
+        StreamingAggregator aggregator = new StreamingAggregator();
+        TestUtils.injectField(aggregator, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "streamingAggregator", aggregator);
+
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(LeaderboardEntry.class),
+            eq(LeaderboardService.STAGING_COLLECTION))).thenReturn(stagingBulk);
+        when(stagingBulk.insert(anyList())).thenReturn(stagingBulk);
+        when(mongoTemplate.getCollection(LeaderboardService.STAGING_COLLECTION)).thenReturn(stagingCollection);
+        when(mongoTemplate.indexOps(LeaderboardService.STAGING_COLLECTION)).thenReturn(stagingIndexes);
+        when(mongoTemplate.getDb()).thenReturn(database);
+        when(database.getName()).thenReturn("health");
+    }
+
+    private Appointment appointment(String patientId, String doctorId, Appointment.AppointmentStatus status) {
+        Appointment apt = new Appointment();
+        apt.setPatientId(patientId);
+        apt.setPatientName("P " + patientId);
+        apt.setDoctorId(doctorId);
+        apt.setDoctorName("Dr " + doctorId);
+        apt.setAppointmentDateTime(LocalDateTime.of(2030, 1, 15, 10, 0));
+        apt.setStatus(status);
+        return apt;
+    }
+
+    private User user(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("User " + id);
+        return user;
+    }
+
+    @Test
+    void newAppointment_incrementsPatientAndDoctorScores() {
+        Appointment apt = appointment("p1", "d1", Appointment.AppointmentStatus.SCHEDULED);
+
+        service.onAppointmentChanged(AppointmentChangedEvent.created(apt));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), update.capture(), eq(LeaderboardEntry.class));
+        for (Update captured : update.getAllValues()) {
+            Document inc = (Document) captured.getUpdateObject().get("$inc");
+            assertEquals(1L, inc.get("appointments"));
+            assertEquals(1L, inc.get("score"));
+        }
+    }
+
+    @Test
+    void completion_movesOnlyDoctorStatusCounter() {
+        Appointment apt = appointment("p1", "d1", Appointment.AppointmentStatus.COMPLETED);
+
+        service.onAppointmentChanged(new AppointmentChangedEvent(apt, apt.getAppointmentDateTime(), Appointment.AppointmentStatus.SCHEDULED));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(LeaderboardEntry.class));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(1L, inc.get("completedAppointments"));
+        assertNull(inc.get("score"));
+    }
+
+    @Test
+    void medicalRecordDeleted_decrementsPatientVisits() {
+        MedicalRecord record = new MedicalRecord();
+        record.setPatientId("p1");
+
+        service.onMedicalRecordChanged(new MedicalRecordChangedEvent(record, -1));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(LeaderboardEntry.class));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(-1L, inc.get("medicalRecords"));
+        assertEquals(-1L, inc.get("score"));
+    }
+
+    @Test
+    void getTop_readsMaintainedBoard() {
+        LeaderboardEntry entry = new LeaderboardEntry();
+        entry.setSubjectId("p1");
+        when(mongoTemplate.find(any(Query.class), eq(LeaderboardEntry.class))).thenReturn(List.of(entry));
+
+        assertEquals(List.of(entry), service.getTop(LeaderboardEntry.Board.PATIENT_VISITS, 5));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(LeaderboardEntry.class));
+        assertEquals(5, query.getValue().getLimit());
+        verify(mongoTemplate, never()).stream(any(Query.class), any());
+    }
+
+    @Test
+    void getTop_emptyBoard_selectsTopKWhileScanning() {
+        when(mongoTemplate.find(any(Query.class), eq(LeaderboardEntry.class))).thenReturn(List.of());
+        when(mongoTemplate.stream(any(Query.class), eq(Appointment.class))).thenReturn(Stream.of(
+            appointment("p1", "d1", Appointment.AppointmentStatus.COMPLETED),
+            appointment("p2", "d1", Appointment.AppointmentStatus.SCHEDULED),
+            appointment("p2", "d1", Appointment.AppointmentStatus.SCHEDULED)
+        ));
+        MedicalRecord record = new MedicalRecord();
+        record.setPatientId("p3");
+        when(mongoTemplate.stream(any(Query.class), eq(MedicalRecord.class))).thenReturn(Stream.of(record));
+        when(mongoTemplate.stream(any(Query.class), eq(User.class))).thenReturn(Stream.of(user("p1"), user("p2"), user("p3"), user("p4")));
+
+        List<LeaderboardEntry> top = service.getTop(LeaderboardEntry.Board.PATIENT_VISITS, 2);
+
+        assertEquals(2, top.size());
+        assertEquals("p2", top.get(0).getSubjectId());
+        assertEquals(2L, top.get(0).getScore());
+        assertEquals("p1", top.get(1).getSubjectId());
+    }
+
+    @Test
+    void rebuild_writesStagingCollectionAndRecountsEntriesChangedWhileItRuns() {
+        Appointment existing = appointment("p1", "d1", Appointment.AppointmentStatus.SCHEDULED);
+        Appointment booked = appointment("p2", "d1", Appointment.AppointmentStatus.SCHEDULED);
+        when(mongoTemplate.stream(any(Query.class), eq(Appointment.class)))
+            .thenAnswer(invocation -> {
+                // Booked while the patient board is scanned; the scan did not see it
+                service.onAppointmentChanged(AppointmentChangedEvent.created(booked));
+                return Stream.of(existing);
+            })
+            .thenAnswer(invocation -> Stream.of(existing));
+        when(mongoTemplate.stream(any(Query.class), eq(MedicalRecord.class))).thenAnswer(invocation -> Stream.empty());
+        when(mongoTemplate.stream(any(Query.class), eq(User.class)))
+            .thenAnswer(invocation -> Stream.of(user("p1"), user("p2")))
+            .thenAnswer(invocation -> Stream.of(user("d1")));
+        when(mongoTemplate.findById(anyString(), eq(User.class))).thenAnswer(invocation -> user(invocation.getArgument(0)));
+        when(mongoTemplate.count(any(Query.class), eq(Appointment.class))).thenReturn(2L);
+
+        assertEquals(3, service.rebuild());
+
+        // Entries go to the staging collection, which then replaces the live one
+        verify(mongoTemplate).dropCollection(LeaderboardService.STAGING_COLLECTION);
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(LeaderboardEntry.class));
+        verify(stagingBulk, times(2)).insert(anyList());
+        verify(stagingCollection).renameCollection(eq(new MongoNamespace("health", LeaderboardService.LEADERBOARD_COLLECTION)),
+            any(RenameCollectionOptions.class));
+
+        // The live $inc went to the old collection; both touched entries are recounted in the new one
+        ArgumentCaptor<LeaderboardEntry> recount = ArgumentCaptor.forClass(LeaderboardEntry.class);
+        verify(mongoTemplate, times(2)).save(recount.capture());
+        LeaderboardEntry patient = recount.getAllValues().stream()
+            .filter(entry -> entry.getBoard() == LeaderboardEntry.Board.PATIENT_VISITS).findFirst().orElseThrow();
+        assertEquals("PATIENT_VISITS:p2", patient.getId());
+        assertEquals(2L, patient.getScore());
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,13 +19,15 @@ class MedicalRecordServiceTest {
 
     @Mock
     private MedicalRecordRepository medicalRecordRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     private MedicalRecordService service;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new MedicalRecordService(medicalRecordRepository);
+        service = new MedicalRecordService(medicalRecordRepository, eventPublisher);
     }
 
     @Test
@@ -43,6 +46,7 @@ class MedicalRecordServiceTest {
 
         MedicalRecord created = service.createMedicalRecord(rec);
         assertNotNull(created.getCreatedAt());
+        verify(eventPublisher).publishEvent(new MedicalRecordChangedEvent(created, 1));
 
         MedicalRecord existing = new MedicalRecord(); existing.setId("r1"); existing.setDiagnosis("old");
         when(medicalRecordRepository.findById("r1")).thenReturn(Optional.of(existing));
@@ -55,6 +59,7 @@ class MedicalRecordServiceTest {
 
         service.deleteMedicalRecord("r1");
         verify(medicalRecordRepository).deleteById("r1");
+        verify(eventPublisher).publishEvent(new MedicalRecordChangedEvent(existing, -1));
 
         when(medicalRecordRepository.findAll()).thenReturn(List.of(created));
         assertEquals(1, service.getAllMedicalRecords().size());
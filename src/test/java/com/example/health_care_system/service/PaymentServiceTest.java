@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -26,6 +27,8 @@ class PaymentServiceTest {
     private HospitalRepository hospitalRepository;
     @Mock
     private PatientRepository patientRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     private PaymentService service;
 
@@ -38,6 +41,7 @@ class PaymentServiceTest {
         TestUtils.injectField(service, "doctorRepository", doctorRepository);
         TestUtils.injectField(service, "hospitalRepository", hospitalRepository);
         TestUtils.injectField(service, "patientRepository", patientRepository);
+        TestUtils.injectField(service, "eventPublisher", eventPublisher);
     }
 
     @Test
@@ -49,7 +53,7 @@ class PaymentServiceTest {
         when(appointmentRepository.findById("a1")).thenReturn(Optional.of(apt));
 
         Patient p = new Patient(); p.setId("p1"); p.setName("P");
-        when(patientRepository.findById("p1")).thenReturn(Optional.of(p));
+        when(patientRepository.findSummaryById("p1")).thenReturn(Optional.of(p));
 
         Doctor d = new Doctor(); d.setId("d1"); d.setName("Dr"); d.setHospitalId("h1"); d.setSpecialization("S");
         when(doctorRepository.findById("d1")).thenReturn(Optional.of(d));
@@ -69,7 +73,7 @@ class PaymentServiceTest {
     void createCashPayment_and_insurance_and_queries() {
         Appointment apt = new Appointment(); apt.setId("a2"); apt.setPatientId("p2"); apt.setDoctorId("d2");
         when(appointmentRepository.findById("a2")).thenReturn(Optional.of(apt));
-        Patient p = new Patient(); p.setId("p2"); p.setName("P2"); when(patientRepository.findById("p2")).thenReturn(Optional.of(p));
+        Patient p = new Patient(); p.setId("p2"); p.setName("P2"); when(patientRepository.findSummaryById("p2")).thenReturn(Optional.of(p));
         Doctor d = new Doctor(); d.setId("d2"); d.setName("Dr2"); d.setHospitalId("h2"); when(doctorRepository.findById("d2")).thenReturn(Optional.of(d));
         Hospital h = new Hospital(); h.setId("h2"); h.setName("H2"); when(hospitalRepository.findById("h2")).thenReturn(Optional.of(h));
 
@@ -98,6 +102,7 @@ class PaymentServiceTest {
 
         Payment updated = service.updatePaymentStatus("p1", Payment.PaymentStatus.COMPLETED);
         assertEquals(Payment.PaymentStatus.COMPLETED, updated.getStatus());
+        verify(eventPublisher).publishEvent(new PaymentChangedEvent(updated));
 
         when(paymentRepository.findByHospitalId("h1")).thenReturn(java.util.List.of(updated));
         assertEquals(1, service.getPaymentsByHospitalId("h1").size());
@@ -1,10 +1,24 @@
 package com.example.health_care_system.service;
 
 import com.example.health_care_system.model.*;
+import com.itextpdf.kernel.geom.Vector;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -70,4 +84,126 @@ class PdfGenerationServiceTest {
         assertNotNull(pdf);
         assertTrue(pdf.length > 0);
     }
+
+    @Test
+    void generateAppointmentConfirmationPdfs_returnsOnePdfPerRequest() {
+        Doctor doctor = new Doctor();
+        doctor.setId("d3");
+        doctor.setName("Dr Z");
+        doctor.setEmail("drz@example.com");
+        doctor.setSpecialization("Neuro");
+
+        Hospital hospital = new Hospital();
+        hospital.setId("h3");
+        hospital.setName("Hospital C");
+        hospital.setType(Hospital.HospitalType.GOVERNMENT);
+
+        List<PdfGenerationService.ConfirmationPdfRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setId("apt-bulk-" + i);
+            appointment.setAppointmentDateTime(LocalDateTime.now().plusDays(1));
+            appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+
+            Patient patient = new Patient();
+            patient.setId("p-bulk-" + i);
+            patient.setName("Patient " + i);
+            patient.setEmail("patient" + i + "@example.com");
+
+            requests.add(new PdfGenerationService.ConfirmationPdfRequest(appointment, patient, doctor, hospital, null));
+        }
+
+        service.start();
+        try {
+            List<byte[]> pdfs = service.generateAppointmentConfirmationPdfs(requests);
+            assertEquals(requests.size(), pdfs.size());
+            for (byte[] pdf : pdfs) {
+                // Pooled buffers are reset, so every PDF starts with its own header
+                assertEquals("%PDF", new String(pdf, 0, 4));
+            }
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void stampedPdfsMatchFullLayout() throws IOException {
+        PdfGenerationService fullLayout = new PdfGenerationService();
+        TestUtils.injectField(fullLayout, "templateStamping", false);
+
+        Appointment appointment = new Appointment();
+        appointment.setId("apt4");
+        appointment.setAppointmentDateTime(LocalDateTime.now().plusDays(1));
+        appointment.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+        appointment.setPurpose("Follow-up");
+
+        Patient patient = new Patient();
+        patient.setId("p4");
+        patient.setName("Nimal Perera");
+        patient.setEmail("nimal@example.com");
+
+        Doctor doctor = new Doctor();
+        doctor.setId("d4");
+        doctor.setName("Silva");
+        doctor.setEmail("silva@example.com");
+        doctor.setSpecialization("Cardiology");
+
+        Hospital hospital = new Hospital();
+        hospital.setId("h4");
+        hospital.setName("Hospital D");
+        hospital.setType(Hospital.HospitalType.PRIVATE);
+        hospital.setHospitalCharges(new BigDecimal("2500"));
+
+        Payment payment = new Payment();
+        payment.setAmount(new BigDecimal("2500"));
+        payment.setPaymentMethod(Payment.PaymentMethod.CARD);
+        payment.setStatus(Payment.PaymentStatus.COMPLETED);
+        payment.setTransactionId("cs_test_4");
+
+        // The first call builds the master template, the second stamps it
+        for (int i = 0; i < 2; i++) {
+            assertEquals(textRuns(fullLayout.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, payment)),
+                textRuns(service.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, payment)));
+            assertEquals(textRuns(fullLayout.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, null)),
+                textRuns(service.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, null)));
+            assertEquals(textRuns(fullLayout.generateInsuranceAppointmentPdf(appointment, patient, doctor, hospital, "AIA", "POL-4")),
+                textRuns(service.generateInsuranceAppointmentPdf(appointment, patient, doctor, hospital, "AIA", "POL-4")));
+        }
+
+        // Too long for one line: laid out in full so the rows below move down
+        appointment.setPurpose("Follow-up ".repeat(20));
+        assertEquals(textRuns(fullLayout.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, null)),
+            textRuns(service.generateAppointmentConfirmationPdf(appointment, patient, doctor, hospital, null)));
+    }
+
+    /**
+     * Text drawn in a PDF with page, baseline position and render mode, sorted
+     */
+    private static List<String> textRuns(byte[] pdf) throws IOException {
+        List<String> runs = new ArrayList<>();
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(pdf)))) {
+            for (int page = 1; page <= document.getNumberOfPages(); page++) {
+                int pageNumber = page;
+                new PdfCanvasProcessor(new IEventListener() {
+                    @Override
+                    public void eventOccurred(IEventData data, EventType type) {
+                        TextRenderInfo info = (TextRenderInfo) data;
+                        // Generation time may cross a minute between the two PDFs
+                        if (!info.getText().startsWith("Generated on")) {
+                            Vector start = info.getBaseline().getStartPoint();
+                            runs.add(String.format("%d %.1f %.1f %d %s", pageNumber, start.get(Vector.I1),
+                                start.get(Vector.I2), info.getTextRenderMode(), info.getText()));
+                        }
+                    }
+
+                    @Override
+                    public Set<EventType> getSupportedEvents() {
+                        return Set.of(EventType.RENDER_TEXT);
+                    }
+                }).processPageContent(document.getPage(page));
+            }
+        }
+        Collections.sort(runs);
+        return runs;
+    }
 }
@@ -1,19 +1,121 @@
 package com.example.health_care_system.service;
 
+import com.example.health_care_system.model.QRCodeAsset;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 public class QRCodeServiceTest {
-    private final QRCodeService qrCodeService = new QRCodeService();
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private QRCodeService qrCodeService;
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        qrCodeService = new QRCodeService();
+        TestUtils.injectField(qrCodeService, "mongoTemplate", mongoTemplate);
+    }
 
     @Test
-    void generateQRCode_shouldReturnBase64PngPrefixed() {
+    void generateQRCode_shouldReturnReferenceToRenderedImage() {
         String userId = "user123";
         String result = qrCodeService.generateQRCode(userId);
-        assertNotNull(result);
-        assertTrue(result.startsWith("data:image/png;base64,"));
-        assertTrue(result.length() > "data:image/png;base64,".length());
+        assertEquals("/qr-codes/user123.png", result);
+
+        byte[] png = qrCodeService.resolveQRCode(result);
+        assertNotNull(png);
+        assertEquals((byte) 0x89, png[0]);
+        assertEquals('P', png[1]);
+    }
+
+    @Test
+    void getQRCodeImage_shouldBeContentAddressedAndCached() {
+        QRCodeService.QRCodeImage first = qrCodeService.getQRCodeImage("user123");
+        QRCodeService.QRCodeImage second = qrCodeService.getQRCodeImage("user123");
+        QRCodeService.QRCodeImage other = qrCodeService.getQRCodeImage("user456");
+
+        assertEquals(64, first.key().length());
+        assertEquals(first.key(), second.key());
+        assertSame(first.png(), second.png());
+        assertNotEquals(first.key(), other.key());
+    }
+
+    @Test
+    void getQRCodeImage_shouldReuseDiskCacheAcrossInstances() throws Exception {
+        TestUtils.injectField(qrCodeService, "cacheDir", cacheDir.toString());
+        QRCodeService.QRCodeImage rendered = qrCodeService.getQRCodeImage("user123");
+
+        Path cached;
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            cached = files.filter(path -> path.toString().endsWith(".png")).findFirst().orElseThrow();
+        }
+        assertEquals(rendered.key() + ".png", cached.getFileName().toString());
+
+        // A fresh instance (restart) reads the stored bytes instead of encoding again
+        Files.write(cached, new byte[]{1, 2, 3});
+        QRCodeService restarted = new QRCodeService();
+        TestUtils.injectField(restarted, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(restarted, "cacheDir", cacheDir.toString());
+        assertArrayEquals(new byte[]{1, 2, 3}, restarted.getQRCodeImage("user123").png());
+    }
+
+    @Test
+    void getQRCodeImage_shouldStoreRenderedImageInAssetsOnce() {
+        QRCodeService.QRCodeImage rendered = qrCodeService.getQRCodeImage("user123");
+        qrCodeService.getQRCodeImage("user123");
+
+        ArgumentCaptor<QRCodeAsset> captor = ArgumentCaptor.forClass(QRCodeAsset.class);
+        verify(mongoTemplate, times(1)).insert(captor.capture());
+        assertEquals(rendered.key(), captor.getValue().getId());
+        assertEquals("user123", captor.getValue().getUserId());
+        assertSame(rendered.png(), captor.getValue().getPng());
+    }
+
+    @Test
+    void getQRCodeImage_shouldServeStoredAssetWithoutRendering() {
+        when(mongoTemplate.findById(anyString(), eq(QRCodeAsset.class)))
+            .thenAnswer(invocation -> new QRCodeAsset(invocation.getArgument(0), "user123", new byte[]{4, 5, 6}, null));
+
+        assertArrayEquals(new byte[]{4, 5, 6}, qrCodeService.getQRCodeImage("user123").png());
+        verify(mongoTemplate, never()).insert(any(QRCodeAsset.class));
+    }
+
+    @Test
+    void importQRCode_shouldStoreLegacyImageAndReturnReference() {
+        when(mongoTemplate.exists(any(Query.class), eq(QRCodeAsset.class))).thenReturn(false, true);
+
+        assertEquals("/qr-codes/user123.png", qrCodeService.importQRCode("user123", new byte[]{9, 8, 7}));
+        qrCodeService.importQRCode("user123", new byte[]{9, 8, 7});
+
+        ArgumentCaptor<QRCodeAsset> captor = ArgumentCaptor.forClass(QRCodeAsset.class);
+        verify(mongoTemplate, times(1)).insert(captor.capture());
+        assertArrayEquals(new byte[]{9, 8, 7}, captor.getValue().getPng());
+    }
+
+    @Test
+    void resolveQRCode_shouldDecodeLegacyDataUri() {
+        String legacy = "data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[]{9, 8, 7});
+        assertArrayEquals(new byte[]{9, 8, 7}, qrCodeService.resolveQRCode(legacy));
+        assertNull(qrCodeService.resolveQRCode("something-else"));
+        assertNull(qrCodeService.resolveQRCode(null));
     }
 
     @Test
@@ -28,4 +130,3 @@ public class QRCodeServiceTest {
         assertThrows(IllegalArgumentException.class, () -> qrCodeService.extractUserIdFromQRContent("INVALID"));
     }
 }
-
@@ -0,0 +1,172 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.ReportJob;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private AnalyticsReportService analyticsReportService;
+
+    private ReportJobService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new ReportJobService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "analyticsReportService", analyticsReportService);
+        TestUtils.injectField(service, "workers", 1);
+        TestUtils.injectField(service, "queueCapacity", 1);
+        service.start();
+
+        when(mongoTemplate.insert(any(ReportJob.class))).thenAnswer(i -> {
+            ReportJob job = i.getArgument(0);
+            job.setId("job-" + System.nanoTime());
+            return job;
+        });
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ReportJob.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    }
+
+    private ReportJob runningJob() {
+        ReportJob job = new ReportJob();
+        job.setId("j1");
+        job.setStatus(ReportJob.JobStatus.RUNNING);
+        return job;
+    }
+
+    private Update lastUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).updateFirst(any(Query.class), update.capture(), eq(ReportJob.class));
+        List<Update> updates = update.getAllValues();
+        return updates.get(updates.size() - 1);
+    }
+
+    @Test
+    void runJob_storesPdfAndCompletes() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(ReportJob.class))).thenReturn(runningJob());
+
+        service.runJob("j1", progress -> {
+            progress.update(50, "Rendering PDF");
+            return new byte[] {1, 2, 3};
+        });
+
+        Update completed = lastUpdate();
+        org.bson.Document set = (org.bson.Document) completed.getUpdateObject().get("$set");
+        assertEquals(ReportJob.JobStatus.COMPLETED, set.get("status"));
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) set.get("pdf"));
+    }
+
+    @Test
+    void runJob_cancelledWhileQueued_doesNotRun() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(ReportJob.class))).thenReturn(null);
+
+        service.runJob("j1", progress -> fail("Cancelled job must not run"));
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(ReportJob.class));
+    }
+
+    @Test
+    void runJob_cancelledWhileRunning_stopsAtNextProgressUpdate() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(ReportJob.class))).thenReturn(runningJob());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(ReportJob.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        service.runJob("j1", progress -> {
+            progress.update(10, "Working");
+            fail("Work must stop once the job is cancelled");
+            return null;
+        });
+
+        // Only the progress update was attempted; the job is not marked failed or completed
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(Update.class), eq(ReportJob.class));
+    }
+
+    @Test
+    void runJob_failure_recordsErrorMessage() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(ReportJob.class))).thenReturn(runningJob());
+
+        service.runJob("j1", progress -> {
+            throw new RuntimeException("boom");
+        });
+
+        org.bson.Document set = (org.bson.Document) lastUpdate().getUpdateObject().get("$set");
+        assertEquals(ReportJob.JobStatus.FAILED, set.get("status"));
+        assertEquals("boom", set.get("errorMessage"));
+    }
+
+    @Test
+    void submit_rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(ReportJob.class))).thenReturn(runningJob());
+        ReportJobService.ReportWork<byte[]> blocking = progress -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new byte[0];
+        };
+
+        try {
+            assertNotNull(service.submitPdf("admin", LocalDate.now(), LocalDate.now(), blocking).getId());
+            // Wait for the worker to take the first job so the second one fills the queue
+            verify(mongoTemplate, timeout(2000)).findAndModify(any(Query.class), any(Update.class), eq(ReportJob.class));
+            service.submitPdf("admin", LocalDate.now(), LocalDate.now(), blocking);
+
+            RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> service.submitPdf("admin", LocalDate.now(), LocalDate.now(), blocking));
+            assertEquals(ReportJobService.QUEUE_FULL_MESSAGE, ex.getMessage());
+        } finally {
+            release.countDown();
+            service.stop();
+        }
+    }
+
+    @Test
+    void failInterruptedJobs_failsOwnAndExpiredJobsOnly() {
+        TestUtils.injectField(service, "instanceId", "node-a");
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ReportJob.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        service.failInterruptedJobs();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(query.capture(), any(Update.class), eq(ReportJob.class));
+        String criteria = query.getValue().getQueryObject().toString();
+        assertTrue(criteria.contains("owner=node-a"));
+        assertTrue(criteria.contains("leaseExpiresAt=Document{{$lt="));
+    }
+
+    @Test
+    void heartbeat_renewsOwnLeasesAndSkipsOwnJobsWhenFailing() {
+        TestUtils.injectField(service, "instanceId", "node-a");
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(ReportJob.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        service.heartbeat();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateMulti(query.capture(), update.capture(), eq(ReportJob.class));
+        assertEquals("node-a", query.getAllValues().get(0).getQueryObject().get("owner"));
+        assertNotNull(((Document) update.getAllValues().get(0).getUpdateObject().get("$set")).get("leaseExpiresAt"));
+        assertTrue(query.getAllValues().get(1).getQueryObject().toString().contains("owner=Document{{$ne=node-a}}"));
+    }
+}
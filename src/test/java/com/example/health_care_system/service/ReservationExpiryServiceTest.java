@@ -0,0 +1,87 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.TimeSlotReservation;
+import com.example.health_care_system.repository.TimeSlotReservationRepository;
+import com.mongodb.client.result.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReservationExpiryServiceTest {
+
+    @Mock
+    private TimeSlotReservationRepository reservationRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private SlotAvailabilityIndex slotIndex;
+
+    private ReservationExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new ReservationExpiryService();
+        TestUtils.injectField(service, "reservationRepository", reservationRepository);
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "slotIndex", slotIndex);
+    }
+
+    private TimeSlotReservation reservation(String id, String patientId, LocalDateTime slot) {
+        TimeSlotReservation reservation = new TimeSlotReservation();
+        reservation.setId(id);
+        reservation.setDoctorId("d1");
+        reservation.setPatientId(patientId);
+        reservation.setSlotDateTime(slot);
+        reservation.setCreatedAt(LocalDateTime.now());
+        reservation.setStatus(TimeSlotReservation.ReservationStatus.ACTIVE);
+        return reservation;
+    }
+
+    @Test
+    void schedule_and_cancel_trackPendingHolds() {
+        LocalDateTime slot = LocalDateTime.now().plusDays(1).withHour(10).withMinute(0).withSecond(0).withNano(0);
+        service.schedule(reservation("r1", "p1", slot));
+        service.schedule(reservation("r2", "p2", slot.plusMinutes(30)));
+        assertEquals(2, service.getPendingCount());
+
+        service.cancel("r1");
+        assertEquals(1, service.getPendingCount());
+    }
+
+    @Test
+    void expireNow_usesOneBulkUpdate_andReleasesSlots() {
+        LocalDateTime slot = LocalDateTime.now().plusDays(1).withHour(11).withMinute(0).withSecond(0).withNano(0);
+        TimeSlotReservation first = reservation("r1", "p1", slot);
+        TimeSlotReservation second = reservation("r2", "p2", slot.plusMinutes(30));
+        service.schedule(first);
+        service.schedule(second);
+
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(TimeSlotReservation.class)))
+            .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+
+        long expired = service.expireNow(List.of(first, second));
+
+        assertEquals(2, expired);
+        assertEquals(0, service.getPendingCount());
+        verify(mongoTemplate, times(1)).updateMulti(any(Query.class), any(Update.class), eq(TimeSlotReservation.class));
+        verify(slotIndex).releaseReservation("d1", slot, "p1");
+        verify(slotIndex).releaseReservation("d1", slot.plusMinutes(30), "p2");
+    }
+
+    @Test
+    void expireNow_emptyList_skipsDatabase() {
+        assertEquals(0, service.expireNow(List.of()));
+        verifyNoInteractions(mongoTemplate);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import com.example.health_care_system.model.TimeSlotReservation;
+import com.example.health_care_system.repository.AppointmentRepository;
+import com.example.health_care_system.repository.TimeSlotReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SlotAvailabilityIndexTest {
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+    @Mock
+    private TimeSlotReservationRepository reservationRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SlotAvailabilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        index = new SlotAvailabilityIndex();
+        TestUtils.injectField(index, "appointmentRepository", appointmentRepository);
+        TestUtils.injectField(index, "reservationRepository", reservationRepository);
+        TestUtils.injectField(index, "eventPublisher", eventPublisher);
+    }
+
+    @Test
+    void loadsDayOnce_thenAppliesIncrementalUpdates() {
+        LocalDate date = LocalDate.now().plusDays(1);
+        Appointment apt = new Appointment();
+        apt.setAppointmentDateTime(date.atTime(9, 0));
+        apt.setStatus(Appointment.AppointmentStatus.SCHEDULED);
+        when(appointmentRepository.findByDoctorIdAndAppointmentDateTimeBetween(eq("d1"), any(), any()))
+            .thenReturn(List.of(apt));
+        when(reservationRepository.findByDoctorIdAndStatusAndCreatedAtAfter(eq("d1"), eq(TimeSlotReservation.ReservationStatus.ACTIVE), any()))
+            .thenReturn(List.of());
+
+        assertTrue(index.getBookedSlots("d1", date).contains(LocalTime.of(9, 0)));
+
+        index.markBooked("d1", date.atTime(10, 0));
+        index.markFree("d1", date.atTime(9, 0));
+        index.markReserved("d1", date.atTime(11, 0), "p1");
+
+        assertEquals(Set.of(LocalTime.of(10, 0)), index.getBookedSlots("d1", date));
+        assertTrue(index.getReservedSlots("d1", date, null).contains(LocalTime.of(11, 0)));
+        assertTrue(index.getReservedSlots("d1", date, "p1").isEmpty());
+
+        index.releaseReservation("d1", date.atTime(11, 0), "p1");
+        assertTrue(index.getReservedSlots("d1", date, null).isEmpty());
+        // Reserve and release of 11:00 were both published
+        verify(eventPublisher, times(2)).publishEvent(new SlotAvailabilityIndex.SlotChangedEvent("d1", date.atTime(11, 0)));
+
+        // Only the first read went to the database
+        verify(appointmentRepository, times(1)).findByDoctorIdAndAppointmentDateTimeBetween(eq("d1"), any(), any());
+        verify(reservationRepository, times(1)).findByDoctorIdAndStatusAndCreatedAtAfter(any(), any(), any());
+    }
+
+    @Test
+    void updatesForUnloadedDays_areIgnoredUntilLoaded() {
+        LocalDate date = LocalDate.now().plusDays(3);
+        when(appointmentRepository.findByDoctorIdAndAppointmentDateTimeBetween(any(), any(), any()))
+            .thenReturn(List.of());
+        when(reservationRepository.findByDoctorIdAndStatusAndCreatedAtAfter(any(), any(), any())).thenReturn(List.of());
+
+        index.markBooked("d2", date.atTime(9, 30));
+        verifyNoInteractions(appointmentRepository);
+
+        assertTrue(index.getBookedSlots("d2", date).isEmpty());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Appointment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StreamingAggregatorTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private StreamingAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        aggregator = new StreamingAggregator();
+        TestUtils.injectField(aggregator, "mongoTemplate", mongoTemplate);
+    }
+
+    private Appointment appointment(String doctorName, LocalDateTime dateTime) {
+        Appointment apt = new Appointment();
+        apt.setDoctorName(doctorName);
+        apt.setAppointmentDateTime(dateTime);
+        return apt;
+    }
+
+    @Test
+    void aggregate_feedsEveryAccumulatorInOnePass() {
+        LocalDateTime march10 = LocalDate.of(2025, 3, 10).atTime(9, 0);
+        LocalDateTime march11 = LocalDate.of(2025, 3, 11).atTime(9, 0);
+        when(mongoTemplate.stream(any(Query.class), eq(Appointment.class))).thenReturn(Stream.of(
+            appointment("Dr A", march10),
+            appointment("Dr B", march10),
+            appointment("Dr A", march11),
+            appointment(null, null)
+        ));
+
+        var byDoctor = new StreamingAggregator.GroupCount<Appointment>(Appointment::getDoctorName);
+        var byDay = new StreamingAggregator.GroupCount<Appointment>(
+            apt -> apt.getAppointmentDateTime() != null ? apt.getAppointmentDateTime().toLocalDate().toString() : null);
+
+        long scanned = aggregator.aggregate(new Query(), Appointment.class, byDoctor, byDay);
+
+        assertEquals(4, scanned);
+        assertEquals(Long.valueOf(2), byDoctor.getCounts().get("Dr A"));
+        assertEquals(2, byDoctor.getCounts().size());
+        assertEquals(Long.valueOf(2), byDay.getCounts().get("2025-03-10"));
+        assertEquals(Long.valueOf(1), byDay.getCounts().get("2025-03-11"));
+        verify(mongoTemplate, never()).findAll(any());
+    }
+
+    @Test
+    void aggregate_setsCursorBatchSize() {
+        when(mongoTemplate.stream(any(Query.class), eq(Appointment.class))).thenReturn(Stream.empty());
+
+        aggregator.aggregate(new Query(), Appointment.class, item -> { });
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Appointment.class));
+        assertEquals(Integer.valueOf(StreamingAggregator.CURSOR_BATCH_SIZE), query.getValue().getMeta().getCursorBatchSize());
+    }
+
+    @Test
+    void topK_keepsLargestItemsInDescendingOrder() {
+        var top = new StreamingAggregator.TopK<Integer>(3, Comparator.naturalOrder());
+        List.of(5, 1, 9, 3, 7, 2).forEach(top::accept);
+
+        assertEquals(List.of(9, 7, 5), top.getTop());
+        assertThrows(IllegalArgumentException.class, () -> new StreamingAggregator.TopK<Integer>(0, Comparator.naturalOrder()));
+    }
+}
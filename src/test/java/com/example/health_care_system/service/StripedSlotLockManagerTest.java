@@ -0,0 +1,87 @@
+package com.example.health_care_system.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedSlotLockManagerTest {
+
+    private StripedSlotLockManager lockManager;
+    private SlotLockMetrics metrics;
+
+    private final LocalDateTime slot = LocalDateTime.of(2030, 1, 15, 10, 0);
+
+    @BeforeEach
+    void setUp() {
+        metrics = new SlotLockMetrics();
+        lockManager = new StripedSlotLockManager();
+        TestUtils.injectField(lockManager, "metrics", metrics);
+    }
+
+    @Test
+    void tryLock_sameSlotFromAnotherThread_isRejectedUntilReleased() throws Exception {
+        SlotLockManager.SlotLock held = lockManager.tryLock("doc1", slot);
+        assertNotNull(held);
+
+        SlotLockManager.SlotLock contender = CompletableFuture.supplyAsync(() -> lockManager.tryLock("doc1", slot)).get();
+        assertNull(contender);
+
+        held.close();
+
+        SlotLockManager.SlotLock afterRelease = CompletableFuture.supplyAsync(() -> {
+            SlotLockManager.SlotLock lock = lockManager.tryLock("doc1", slot);
+            if (lock != null) {
+                lock.close();
+            }
+            return lock;
+        }).get();
+        assertNotNull(afterRelease);
+
+        assertEquals(2, metrics.getAcquiredCount());
+        assertEquals(1, metrics.getRejectedCount());
+    }
+
+    @Test
+    void tryLock_differentSlot_isNotBlocked() throws Exception {
+        try (SlotLockManager.SlotLock held = lockManager.tryLock("doc1", slot)) {
+            assertNotNull(held);
+
+            SlotLockManager.SlotLock other = CompletableFuture.supplyAsync(() -> {
+                SlotLockManager.SlotLock lock = lockManager.tryLock("doc1", slot.plusMinutes(30));
+                if (lock != null) {
+                    lock.close();
+                }
+                return lock;
+            }).get();
+            assertNotNull(other);
+        }
+        assertEquals(0, metrics.getRejectedCount());
+    }
+
+    @Test
+    void tryLock_releasedLocks_areRemoved() throws Exception {
+        try (SlotLockManager.SlotLock held = lockManager.tryLock("doc1", slot)) {
+            assertNotNull(held);
+            assertNull(CompletableFuture.supplyAsync(() -> lockManager.tryLock("doc1", slot)).get());
+            assertEquals(1, lockManager.activeKeys());
+        }
+        assertEquals(0, lockManager.activeKeys());
+    }
+
+    @Test
+    void snapshot_reportsCounts() {
+        try (SlotLockManager.SlotLock lock = lockManager.tryLock("doc2", slot)) {
+            assertNotNull(lock);
+        }
+
+        Map<String, Object> stats = metrics.snapshot();
+        assertEquals(1L, stats.get("acquired"));
+        assertEquals(0L, stats.get("rejected"));
+        assertTrue(stats.containsKey("maxHoldMs"));
+    }
+}
@@ -6,10 +6,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -18,6 +26,12 @@ class TimeSlotReservationServiceTest {
 
     @Mock
     private TimeSlotReservationRepository reservationRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private SlotAvailabilityIndex slotIndex;
+    @Mock
+    private ReservationExpiryService expiryService;
 
     private TimeSlotReservationService service;
 
@@ -26,37 +40,128 @@ class TimeSlotReservationServiceTest {
         MockitoAnnotations.openMocks(this);
         service = new TimeSlotReservationService();
         TestUtils.injectField(service, "reservationRepository", reservationRepository);
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+        TestUtils.injectField(service, "slotIndex", slotIndex);
+        TestUtils.injectField(service, "expiryService", expiryService);
     }
 
     @Test
     void reserveTimeSlot_alreadyReservedByOther_returnsNull() {
         LocalDateTime slot = LocalDateTime.now().plusDays(1).withHour(10).withMinute(0).withSecond(0).withNano(0);
-        TimeSlotReservation existing = new TimeSlotReservation();
-        existing.setPatientId("other");
-        existing.setSlotDateTime(slot);
-        existing.setStatus(TimeSlotReservation.ReservationStatus.ACTIVE);
-        when(reservationRepository.findByDoctorIdAndSlotDateTimeAndStatus("d1", slot, TimeSlotReservation.ReservationStatus.ACTIVE))
-            .thenReturn(List.of(existing));
+        // Upsert hits the unique active-hold index, and no hold by this patient exists
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(TimeSlotReservation.class)))
+            .thenThrow(new DuplicateKeyException("E11000 duplicate key error"))
+            .thenReturn(null);
 
         var res = service.reserveTimeSlot("d1", slot, "me", "s1");
         assertNull(res);
+        verify(slotIndex, never()).markReserved(any(), any(), any());
+    }
+
+    @Test
+    void reserveTimeSlot_slotHeldPastDeadline_expiresStaleHoldAndReserves() {
+        LocalDateTime slot = LocalDateTime.now().plusDays(1).withHour(12).withMinute(0).withSecond(0).withNano(0);
+        TimeSlotReservation saved = new TimeSlotReservation();
+        saved.setId("r1");
+        // First upsert hits a hold whose expiry has not run yet; the retry succeeds
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(TimeSlotReservation.class)))
+            .thenThrow(new DuplicateKeyException("E11000 duplicate key error"))
+            .thenReturn(null)
+            .thenReturn(saved);
+
+        TimeSlotReservation stale = new TimeSlotReservation();
+        stale.setId("r0");
+        stale.setDoctorId("d1");
+        stale.setPatientId("other");
+        stale.setSlotDateTime(slot);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(TimeSlotReservation.class)))
+            .thenReturn(stale, (TimeSlotReservation) null);
+
+        var res = service.reserveTimeSlot("d1", slot, "me", "s1");
+        assertNotNull(res);
+        assertEquals("r1", res.getId());
+        verify(expiryService).cancel("r0");
+        verify(slotIndex).releaseReservation("d1", slot, "other");
+        verify(slotIndex).markReserved("d1", slot, "me");
     }
 
     @Test
     void reserveTimeSlot_createsReservation_and_cancelPrevious() {
         LocalDateTime slot = LocalDateTime.now().plusDays(1).withHour(11).withMinute(0).withSecond(0).withNano(0);
-        when(reservationRepository.findByDoctorIdAndSlotDateTimeAndStatus("d1", slot, TimeSlotReservation.ReservationStatus.ACTIVE))
-            .thenReturn(List.of());
-        when(reservationRepository.findByPatientIdAndStatus("me", TimeSlotReservation.ReservationStatus.ACTIVE))
-            .thenReturn(List.of());
-
         TimeSlotReservation saved = new TimeSlotReservation();
         saved.setId("r1");
-        when(reservationRepository.save(any())).thenReturn(saved);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(TimeSlotReservation.class)))
+            .thenReturn(saved);
+
+        // The patient's previous hold on another slot is cancelled
+        TimeSlotReservation previous = new TimeSlotReservation();
+        previous.setId("r0");
+        previous.setDoctorId("d1");
+        previous.setPatientId("me");
+        previous.setSlotDateTime(slot.minusMinutes(30));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(TimeSlotReservation.class)))
+            .thenReturn(previous, (TimeSlotReservation) null);
 
         var res = service.reserveTimeSlot("d1", slot, "me", "s1");
         assertNotNull(res);
         assertEquals("r1", res.getId());
+        verify(slotIndex).markReserved("d1", slot, "me");
+        verify(slotIndex).releaseReservation("d1", slot.minusMinutes(30), "me");
+        verify(expiryService).cancel("r0");
+        verify(expiryService).schedule(saved);
+    }
+
+    @Test
+    void reserveTimeSlot_parallelRequestsForOneSlot_exactlyOneWins() throws Exception {
+        LocalDateTime slot = LocalDateTime.now().plusDays(1).withHour(15).withMinute(0).withSecond(0).withNano(0);
+        int patients = 2000;
+
+        // Simulate the unique_active_slot_idx partial index: the first insert wins,
+        // later inserts by other patients fail with a duplicate key error
+        AtomicReference<String> holder = new AtomicReference<>();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(TimeSlotReservation.class)))
+            .thenAnswer(invocation -> {
+                Query query = invocation.getArgument(0);
+                FindAndModifyOptions options = invocation.getArgument(2);
+                String patientId = (String) query.getQueryObject().get("patientId");
+
+                boolean inserted = options.isUpsert() && holder.compareAndSet(null, patientId);
+                if (inserted || patientId.equals(holder.get())) {
+                    TimeSlotReservation reservation = new TimeSlotReservation();
+                    reservation.setId("hold-" + patientId);
+                    reservation.setPatientId(patientId);
+                    return reservation;
+                }
+                if (options.isUpsert()) {
+                    throw new DuplicateKeyException("E11000 duplicate key error");
+                }
+                return null;
+            });
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(TimeSlotReservation.class)))
+            .thenReturn(null);
+
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<TimeSlotReservation>> results = new ArrayList<>();
+        for (int i = 0; i < patients; i++) {
+            String patientId = "p" + i;
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.reserveTimeSlot("d1", slot, patientId, "s-" + patientId);
+            }));
+        }
+        start.countDown();
+
+        int winners = 0;
+        for (Future<TimeSlotReservation> result : results) {
+            if (result.get(30, TimeUnit.SECONDS) != null) {
+                winners++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, winners);
+        assertNotNull(holder.get());
     }
 
     @Test
@@ -76,6 +181,7 @@ class TimeSlotReservationServiceTest {
         when(reservationRepository.save(any())).thenAnswer(i -> i.getArgument(0));
         service.confirmReservation("p1","s1");
         assertEquals(TimeSlotReservation.ReservationStatus.CONFIRMED, active.getStatus());
+        verify(expiryService).cancel("r2");
 
         // cancel
         active.setStatus(TimeSlotReservation.ReservationStatus.ACTIVE);
@@ -86,7 +192,7 @@ class TimeSlotReservationServiceTest {
 
         // isReserved
         TimeSlotReservation other = new TimeSlotReservation(); other.setPatientId("other"); other.setSlotDateTime(slot);
-        when(reservationRepository.findByDoctorIdAndSlotDateTimeAndStatus("d1", slot, TimeSlotReservation.ReservationStatus.ACTIVE))
+        when(reservationRepository.findByDoctorIdAndSlotDateTimeAndStatusAndCreatedAtAfter(eq("d1"), eq(slot), eq(TimeSlotReservation.ReservationStatus.ACTIVE), any()))
             .thenReturn(List.of(other));
         assertTrue(service.isSlotReserved("d1", slot, "me"));
 
@@ -0,0 +1,119 @@
+package com.example.health_care_system.service;
+
+import com.example.health_care_system.model.Doctor;
+import com.example.health_care_system.model.Patient;
+import com.example.health_care_system.model.User;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserExportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private UserExportService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new UserExportService();
+        TestUtils.injectField(service, "mongoTemplate", mongoTemplate);
+    }
+
+    private static final String PATIENT_ID = "65a000000000000000000001";
+    private static final String DOCTOR_ID = "65a000000000000000000002";
+
+    private Patient patient(String name) {
+        Patient patient = new Patient();
+        patient.setId(PATIENT_ID);
+        patient.setName(name);
+        patient.setEmail(name.toLowerCase().replace(' ', '.') + "@example.com");
+        patient.setDateOfBirth(LocalDate.of(1990, 5, 1));
+        patient.setCreatedAt(LocalDateTime.of(2025, 1, 2, 9, 30));
+        return patient;
+    }
+
+    @Test
+    void writeCsv_patients_streamsProjectedRows() throws Exception {
+        Patient quoted = patient("Doe, \"Jane\"");
+        quoted.setActive(false);
+        when(mongoTemplate.stream(any(Query.class), eq(Patient.class))).thenReturn(Stream.of(patient("John"), quoted));
+
+        StringWriter out = new StringWriter();
+        String cursor = service.writeCsv("PATIENT", null, out);
+
+        assertEquals("PATIENT:" + PATIENT_ID, cursor);
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("Name,Email,Gender,Contact Number,Date of Birth,Address,Joined Date,Status,ID", lines[0]);
+        assertEquals("John,john@example.com,,,01 May 1990,,02 Jan 2025 09:30,Active," + PATIENT_ID, lines[1]);
+        assertTrue(lines[2].startsWith("\"Doe, \"\"Jane\"\"\","));
+        assertTrue(lines[2].endsWith(",Inactive," + PATIENT_ID));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Patient.class));
+        assertTrue(query.getValue().getFieldsObject().containsKey("email"));
+        assertFalse(query.getValue().getFieldsObject().containsKey("medicalRecords"));
+        verify(mongoTemplate, never()).findAll(any());
+    }
+
+    @Test
+    void writeCsv_all_resumesAfterCursorWithoutHeader() throws Exception {
+        Doctor doctor = new Doctor();
+        doctor.setId(DOCTOR_ID);
+        doctor.setName("Dr B");
+        doctor.setSpecialization("Cardiology");
+        when(mongoTemplate.stream(any(Query.class), eq(Doctor.class))).thenReturn(Stream.of(doctor));
+        when(mongoTemplate.stream(any(Query.class), eq(User.class))).thenReturn(Stream.empty());
+
+        StringWriter out = new StringWriter();
+        String cursor = service.writeCsv("ALL", "Doctor:65a000000000000000000000", out);
+
+        assertEquals("DOCTOR:" + DOCTOR_ID, cursor);
+        assertEquals("Doctor,Dr B,,,,Cardiology,,,Active," + DOCTOR_ID + "\n", out.toString());
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(Patient.class));
+        ArgumentCaptor<Query> doctors = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(doctors.capture(), eq(Doctor.class));
+        Document idFilter = (Document) doctors.getValue().getQueryObject().get("id");
+        assertEquals(new ObjectId("65a000000000000000000000"), idFilter.get("$gt"));
+        assertEquals(0, doctors.getValue().getSkip());
+        // Later sections start from their first row
+        ArgumentCaptor<Query> staff = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(staff.capture(), eq(User.class));
+        assertFalse(staff.getValue().getQueryObject().containsKey("id"));
+    }
+
+    @Test
+    void writeCsv_cursorOfOtherRoleFilter_isRejectedBeforeWriting() {
+        StringWriter out = new StringWriter();
+
+        assertThrows(IllegalArgumentException.class, () -> service.writeCsv("PATIENT", "DOCTOR:" + DOCTOR_ID, out));
+        assertThrows(IllegalArgumentException.class, () -> service.writeCsv("PATIENT", "PATIENT:not-an-id", out));
+        assertEquals("", out.toString());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void writeCsv_unknownRole_writesNothing() throws Exception {
+        StringWriter out = new StringWriter();
+
+        assertNull(service.writeCsv("ADMIN", null, out));
+        assertEquals("", out.toString());
+        verifyNoInteractions(mongoTemplate);
+    }
+}